@@ -67,6 +67,12 @@ public final class ConfigConstants {
 	 */
 	public static final String MEMORY_MANAGER_AVAILABLE_MEMORY_SIZE_KEY = "taskmanager.memory.size";
 
+	/**
+	 * The key for the config parameter defining whether the task manager's memory manager allocates its
+	 * memory outside the java heap.
+	 */
+	public static final String MEMORY_MANAGER_OFF_HEAP_KEY = "taskmanager.memory.offheap";
+
 	/**
 	 * The key for the config parameter defining flag to terminate a job at job-client shutdown.
 	 */
@@ -95,6 +101,11 @@ public final class ConfigConstants {
 	 * The default amount of memory assigned to each task manager (in megabytes).
 	 */
 	public static final int DEFAULT_MEMORY_MANAGER_AVAILABLE_MEMORY = 512;
+
+	/**
+	 * The default setting for the memory manager to allocate its memory outside the java heap.
+	 */
+	public static final boolean DEFAULT_MEMORY_MANAGER_OFF_HEAP = false;
 	
 	/**
 	 * The default number of retries for failed tasks.
@@ -110,6 +110,15 @@ public abstract class AbstractRecordWriter<T extends Record> implements Writer<T
 		return this.outputGate.getOutputChannels();
 	}
 
+	/**
+	 * Returns the channel selector that decides to which output channels the records of this RecordWriter are sent.
+	 * 
+	 * @return the channel selector of the output gate connected to this RecordWriter
+	 */
+	public ChannelSelector<T> getChannelSelector() {
+		return this.outputGate.getChannelSelector();
+	}
+
 	/**
 	 * Subscribes the listener object to receive events of the given type.
 	 * 
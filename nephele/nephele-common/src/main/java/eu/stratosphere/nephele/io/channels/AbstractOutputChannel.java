@@ -76,6 +76,27 @@ public abstract class AbstractOutputChannel<T extends Record> extends AbstractCh
 	 */
 	public abstract void writeRecord(T record) throws IOException, InterruptedException;
 
+	/**
+	 * Writes a record to the channel whose serialized representation is already contained in the given shared
+	 * serialization buffer. Output gates use this method to serialize records only once, if they write them to
+	 * several channels. The default implementation ignores the serialized representation and writes the record
+	 * through {@link #writeRecord(Record)}.
+	 * 
+	 * @param record
+	 *        the record to be written to the channel
+	 * @param serializedRecord
+	 *        the buffer holding the serialized representation of the record
+	 * @throws IOException
+	 *         thrown if an error occurred while transmitting the record
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while waiting for the record to be written
+	 */
+	public void writeSerializedRecord(final T record, final SharedSerializationBuffer<T> serializedRecord)
+			throws IOException, InterruptedException {
+
+		writeRecord(record);
+	}
+
 	/**
 	 * Requests the output channel to close. After calling this method no more records can be written
 	 * to the channel. The channel is finally closed when all remaining data that may exist in internal buffers
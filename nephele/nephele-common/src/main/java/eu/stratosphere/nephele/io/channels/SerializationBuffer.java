@@ -39,6 +39,22 @@ public class SerializationBuffer<T extends IOReadableWritable> {
 
 	private int bytesReadFromBuffer = 0;
 
+	/**
+	 * The shared buffer holding the serialized record, or <code>null</code> if the record has been serialized into
+	 * this buffer.
+	 */
+	private SharedSerializationBuffer<T> sharedBuffer = null;
+
+	/**
+	 * This buffer's view on the length of the shared serialized record.
+	 */
+	private ByteBuffer sharedLengthBuf = null;
+
+	/**
+	 * This buffer's view on the shared serialized record.
+	 */
+	private ByteBuffer sharedDataBuf = null;
+
 	/**
 	 * Translates an integer into an array of bytes.
 	 * 
@@ -67,7 +83,7 @@ public class SerializationBuffer<T extends IOReadableWritable> {
 	 *         empty
 	 */
 	public boolean dataLeftFromPreviousSerialization() {
-		return leftInSerializationBuffer() > 0;
+		return this.sharedBuffer != null || leftInSerializationBuffer() > 0;
 	}
 
 	/**
@@ -82,6 +98,10 @@ public class SerializationBuffer<T extends IOReadableWritable> {
 	 */
 	public int read(final WritableByteChannel writableByteChannel) throws IOException {
 
+		if (this.sharedBuffer != null) {
+			return readShared(writableByteChannel);
+		}
+
 		int bytesReadFromLengthBuf = 0;
 
 		// Deal with length buffer first
@@ -101,6 +121,44 @@ public class SerializationBuffer<T extends IOReadableWritable> {
 		return (bytesReadFromSerializationBuf + bytesReadFromLengthBuf);
 	}
 
+	/**
+	 * Writes the data of the shared serialized record to the given {@link WritableByteChannel} and releases the
+	 * shared buffer once the record has been entirely written.
+	 * 
+	 * @param writableByteChannel
+	 *        the byte channel to write the serialized data to
+	 * @return the number of bytes written the to given byte channel
+	 * @throws IOException
+	 *         thrown if an error occurs while writing to serialized data to the channel
+	 */
+	private int readShared(final WritableByteChannel writableByteChannel) throws IOException {
+
+		int bytesRead = 0;
+
+		if (this.sharedLengthBuf.hasRemaining()) {
+			bytesRead += writableByteChannel.write(this.sharedLengthBuf);
+		}
+
+		bytesRead += writableByteChannel.write(this.sharedDataBuf);
+
+		if (!this.sharedLengthBuf.hasRemaining() && !this.sharedDataBuf.hasRemaining()) {
+			releaseSharedBuffer();
+		}
+
+		return bytesRead;
+	}
+
+	/**
+	 * Releases this buffer's reference to the shared serialized record.
+	 */
+	private void releaseSharedBuffer() {
+
+		this.sharedBuffer.release();
+		this.sharedBuffer = null;
+		this.sharedLengthBuf = null;
+		this.sharedDataBuf = null;
+	}
+
 	/**
 	 * Return the number of bytes that have not been read from the internal serialization
 	 * buffer so far.
@@ -136,7 +194,33 @@ public class SerializationBuffer<T extends IOReadableWritable> {
 		integerToByteBuffer(this.serializationBuffer.getLength(), this.lengthBuf);
 	}
 
+	/**
+	 * Takes the record serialized in the given shared buffer as the next record to be read from this buffer. The
+	 * serialized bytes are not copied, this buffer only keeps a reference to the shared buffer until the record is
+	 * entirely read.
+	 * 
+	 * @param sharedSerializationBuffer
+	 *        the shared buffer holding the serialized record
+	 * @throws IOException
+	 *         Thrown if data from a previous serialization process is still in the internal buffer and has not yet been
+	 *         transfered to a byte buffer
+	 */
+	public void serialize(final SharedSerializationBuffer<T> sharedSerializationBuffer) throws IOException {
+
+		// Check if there is data left in the buffer
+		if (dataLeftFromPreviousSerialization()) {
+			throw new IOException("Cannot write new data, data still left from previous call");
+		}
+
+		this.sharedLengthBuf = sharedSerializationBuffer.retainLength();
+		this.sharedDataBuf = sharedSerializationBuffer.getDataView();
+		this.sharedBuffer = sharedSerializationBuffer;
+	}
+
 	public void clear() {
+		if (this.sharedBuffer != null) {
+			releaseSharedBuffer();
+		}
 		this.bytesReadFromBuffer = 0;
 		this.lengthBuf.clear();
 		this.serializationBuffer.reset();
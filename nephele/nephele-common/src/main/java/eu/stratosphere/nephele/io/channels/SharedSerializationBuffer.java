@@ -0,0 +1,133 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.channels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.stratosphere.nephele.io.DataOutputBuffer;
+import eu.stratosphere.nephele.io.IOReadableWritable;
+
+/**
+ * A buffer holding the serialized representation of a single record, which can be shared by several
+ * {@link SerializationBuffer} objects. An output gate that emits a record to several channels serializes the
+ * record only once into a shared serialization buffer. Each channel then reads the serialized bytes through its own
+ * view on the buffer, without copying the bytes to an intermediate buffer.
+ * <p>
+ * This saves the repeated serialization, but not the copies: Each channel still copies the serialized bytes into its
+ * own write buffer. A write buffer collects the records of a single channel and is shipped in an envelope that
+ * carries the channel's ID and sequence number, so neither the buffer nor the envelope can be shared across the
+ * channels of a record.
+ * <p>
+ * The buffer counts the serialization buffers that still have to read its content. It must not be used to
+ * serialize another record before that count has dropped to zero, see {@link #isShared()}.
+ * 
+ * @param <T>
+ *        the type of the record this serialization buffer can be used for
+ */
+public final class SharedSerializationBuffer<T extends IOReadableWritable> {
+
+	private static final int SIZEOFINT = 4;
+
+	/**
+	 * The buffer holding the serialized record.
+	 */
+	private final DataOutputBuffer serializationBuffer = new DataOutputBuffer();
+
+	/**
+	 * The buffer holding the length of the serialized record.
+	 */
+	private final ByteBuffer lengthBuf = ByteBuffer.allocate(SIZEOFINT);
+
+	/**
+	 * The number of serialization buffers which have not yet read the entire record.
+	 */
+	private final AtomicInteger referenceCounter = new AtomicInteger(0);
+
+	/**
+	 * Serializes the given record into this buffer, replacing the previously serialized record.
+	 * 
+	 * @param record
+	 *        the record to be serialized
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the record
+	 * @throws IllegalStateException
+	 *         thrown if the previously serialized record has not yet been read by all serialization buffers sharing it
+	 */
+	public void serialize(final T record) throws IOException {
+
+		if (isShared()) {
+			throw new IllegalStateException("Cannot serialize a new record, the buffer is still referenced by "
+				+ this.referenceCounter.get() + " serialization buffers");
+		}
+
+		this.serializationBuffer.reset();
+		record.write(this.serializationBuffer);
+
+		// The length is stored in big endian byte order, like in the serialization buffer
+		this.lengthBuf.putInt(0, this.serializationBuffer.getLength());
+	}
+
+	/**
+	 * Checks whether the serialized record is still referenced by serialization buffers which have not yet
+	 * read it entirely.
+	 * 
+	 * @return <code>true</code> if the record is still referenced, <code>false</code> otherwise
+	 */
+	public boolean isShared() {
+
+		return this.referenceCounter.get() > 0;
+	}
+
+	/**
+	 * Registers a new reader of the serialized record and returns the reader's view on the record length.
+	 * 
+	 * @return a view on the length of the serialized record, positioned at its beginning
+	 */
+	ByteBuffer retainLength() {
+
+		this.referenceCounter.incrementAndGet();
+
+		final ByteBuffer view = this.lengthBuf.duplicate();
+		view.clear();
+		return view;
+	}
+
+	/**
+	 * Returns a view on the serialized record. The view has its own position and limit, but shares the bytes with
+	 * this buffer.
+	 * 
+	 * @return a view on the serialized record, positioned at its beginning
+	 */
+	ByteBuffer getDataView() {
+
+		final ByteBuffer view = this.serializationBuffer.getData().duplicate();
+		view.position(0);
+		return view;
+	}
+
+	/**
+	 * Unregisters a reader of the serialized record.
+	 */
+	void release() {
+
+		if (this.referenceCounter.decrementAndGet() < 0) {
+			throw new IllegalStateException("Reference counter of shared serialization buffer is negative");
+		}
+	}
+}
@@ -16,6 +16,9 @@
 package eu.stratosphere.nephele.io.channels.bytebuffered;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +30,7 @@ import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.SerializationBuffer;
+import eu.stratosphere.nephele.io.channels.SharedSerializationBuffer;
 import eu.stratosphere.nephele.io.compression.CompressionEvent;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
@@ -35,6 +39,19 @@ import eu.stratosphere.nephele.types.Record;
 
 public abstract class AbstractByteBufferedOutputChannel<T extends Record> extends AbstractOutputChannel<T> {
 
+	/**
+	 * The key of the configuration entry which specifies the maximum time in milliseconds a record may wait inside a
+	 * partially filled write buffer before the buffer is shipped. The entry is looked up in the task configuration, the
+	 * job configuration and the global configuration, in this order.
+	 */
+	public static final String MAXIMUM_BUFFER_LATENCY_KEY = "channel.output.maximumBufferLatency";
+
+	/**
+	 * The default maximum buffer latency. A non-positive value means write buffers are only shipped when they are full
+	 * or the channel is flushed explicitly, which favors throughput over latency.
+	 */
+	public static final long DEFAULT_MAXIMUM_BUFFER_LATENCY = -1L;
+
 	/**
 	 * The serialization buffer used to serialize records.
 	 */
@@ -65,6 +82,18 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	 */
 	private long amountOfDataTransmitted = 0L;
 
+	/**
+	 * The lock which guards the channel's write path against concurrent timed flushes. Unless a flusher is registered,
+	 * the channel is only accessed by the task thread and the lock does nothing.
+	 */
+	private Lock outputLock = NoOpLock.INSTANCE;
+
+	/**
+	 * The time in milliseconds at which the oldest data which has not been shipped yet was written to the channel, or
+	 * <code>-1</code> if no such data exists.
+	 */
+	private long pendingDataTimestamp = -1L;
+
 	private static final Log LOG = LogFactory.getLog(AbstractByteBufferedOutputChannel.class);
 
 	/**
@@ -92,15 +121,20 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public boolean isClosed() throws IOException, InterruptedException {
 
-		if (this.closeRequested && this.dataBuffer == null
-			&& !this.serializationBuffer.dataLeftFromPreviousSerialization()) {
+		this.outputLock.lock();
+		try {
+			if (this.closeRequested && this.dataBuffer == null
+				&& !this.serializationBuffer.dataLeftFromPreviousSerialization()) {
 
-			if (!this.outputChannelBroker.hasDataLeftToTransmit()) {
-				return true;
+				if (!this.outputChannelBroker.hasDataLeftToTransmit()) {
+					return true;
+				}
 			}
-		}
 
-		return false;
+			return false;
+		} finally {
+			this.outputLock.unlock();
+		}
 	}
 
 	/**
@@ -109,17 +143,22 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public void requestClose() throws IOException, InterruptedException {
 
-		if (!this.closeRequested) {
-			this.closeRequested = true;
-			if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
-				// make sure we serialized all data before we send the close event
-				flush();
-			}
+		this.outputLock.lock();
+		try {
+			if (!this.closeRequested) {
+				this.closeRequested = true;
+				if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
+					// make sure we serialized all data before we send the close event
+					flush();
+				}
 
-			if (!isBroadcastChannel() || getChannelIndex() == 0) {
-				transferEvent(new ByteBufferedChannelCloseEvent());
-				flush();
+				if (!isBroadcastChannel() || getChannelIndex() == 0) {
+					transferEvent(new ByteBufferedChannelCloseEvent());
+					flush();
+				}
 			}
+		} finally {
+			this.outputLock.unlock();
 		}
 	}
 
@@ -156,6 +195,7 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 
 		this.outputChannelBroker.releaseWriteBuffer(this.dataBuffer);
 		this.dataBuffer = null;
+		this.pendingDataTimestamp = -1L;
 	}
 
 	/**
@@ -164,6 +204,48 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public void writeRecord(T record) throws IOException, InterruptedException {
 
+		this.outputLock.lock();
+		try {
+			prepareSerialization();
+
+			this.serializationBuffer.serialize(record);
+
+			transferSerializedRecord();
+		} finally {
+			this.outputLock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeSerializedRecord(final T record, final SharedSerializationBuffer<T> serializedRecord)
+			throws IOException, InterruptedException {
+
+		this.outputLock.lock();
+		try {
+			prepareSerialization();
+
+			this.serializationBuffer.serialize(serializedRecord);
+
+			transferSerializedRecord();
+		} finally {
+			this.outputLock.unlock();
+		}
+	}
+
+	/**
+	 * Makes sure a write buffer is available and transfers the data that is left from the previous record into the
+	 * write buffers, such that the serialization buffer can accept a new record.
+	 * 
+	 * @throws IOException
+	 *         thrown if the channel is already requested to be closed or an I/O error occurs while releasing buffers
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while waiting for a write buffer
+	 */
+	private void prepareSerialization() throws IOException, InterruptedException {
+
 		// Get a write buffer from the broker
 		if (this.dataBuffer == null) {
 			requestWriteBufferFromBroker();
@@ -201,8 +283,18 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 		if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
 			throw new IOException("Serialization buffer is expected to be empty!");
 		}
+	}
 
-		this.serializationBuffer.serialize(record);
+	/**
+	 * Transfers the freshly serialized record into the current write buffer and releases the write buffer if it is
+	 * full. Data that does not fit into the write buffer remains in the serialization buffer.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while releasing the write buffer
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the write buffer
+	 */
+	private void transferSerializedRecord() throws IOException, InterruptedException {
 
 		if (this.compressor != null) {
 			this.serializationBuffer.read(this.dataBuffer);
@@ -218,6 +310,12 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 				releaseWriteBuffer();
 			}
 		}
+
+		// Remember when the record's data started waiting to be shipped
+		if (this.pendingDataTimestamp < 0L
+			&& (this.dataBuffer != null || this.serializationBuffer.dataLeftFromPreviousSerialization())) {
+			this.pendingDataTimestamp = System.currentTimeMillis();
+		}
 	}
 
 	/**
@@ -267,8 +365,13 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public void transferEvent(AbstractEvent event) throws IOException, InterruptedException {
 
-		flush();
-		this.outputChannelBroker.transferEventToInputChannel(event);
+		this.outputLock.lock();
+		try {
+			flush();
+			this.outputChannelBroker.transferEventToInputChannel(event);
+		} finally {
+			this.outputLock.unlock();
+		}
 	}
 
 	/**
@@ -277,6 +380,24 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public void flush() throws IOException, InterruptedException {
 
+		this.outputLock.lock();
+		try {
+			flushInternal();
+		} finally {
+			this.outputLock.unlock();
+		}
+	}
+
+	/**
+	 * Ships the data which is still held by the channel. The caller must hold the channel's output lock.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while releasing the write buffers
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the write buffers
+	 */
+	private void flushInternal() throws IOException, InterruptedException {
+
 		// Get rid of remaining data in the serialization buffer
 		while (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
 
@@ -324,18 +445,88 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	@Override
 	public void releaseAllResources() {
 
-		// TODO: Reconsider release of broker's resources here
-		this.closeRequested = true;
+		this.outputLock.lock();
+		try {
+			// TODO: Reconsider release of broker's resources here
+			this.closeRequested = true;
 
-		this.serializationBuffer.clear();
+			this.serializationBuffer.clear();
 
-		if (this.dataBuffer != null) {
-			this.dataBuffer.recycleBuffer();
-			this.dataBuffer = null;
+			if (this.dataBuffer != null) {
+				this.dataBuffer.recycleBuffer();
+				this.dataBuffer = null;
+			}
+
+			if (this.compressor != null) {
+				this.compressor.shutdown();
+			}
+		} finally {
+			this.outputLock.unlock();
 		}
+	}
 
-		if (this.compressor != null) {
-			this.compressor.shutdown();
+	/**
+	 * Sets the lock which guards the write path of this channel. Channels whose data is shipped through a common
+	 * framework component which is not thread-safe must share the same lock if they are flushed by a timer. This method
+	 * must be called before the task starts writing to the channel. Until it is called, the write path is not locked.
+	 * 
+	 * @param outputLock
+	 *        the lock to guard the write path of this channel
+	 */
+	public void setOutputLock(final Lock outputLock) {
+
+		if (outputLock == null) {
+			throw new IllegalArgumentException("Argument outputLock must not be null");
+		}
+
+		this.outputLock = outputLock;
+	}
+
+	/**
+	 * Ships the partially filled write buffer of this channel if its data has been waiting for at least the given
+	 * number of milliseconds. This method is intended to be called periodically by a thread other than the task
+	 * thread. It does not wait if the task thread is currently writing to the channel, and it never requests a write
+	 * buffer, since that may block until the receivers have consumed data. Data which is still held by the
+	 * serialization buffer because no write buffer is leased is hence left to the task thread.
+	 * 
+	 * @param now
+	 *        the current time in milliseconds
+	 * @param maximumBufferLatency
+	 *        the maximum time in milliseconds data may wait before it is shipped
+	 * @return <code>true</code> if data has been shipped, <code>false</code> otherwise
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while releasing the write buffers
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the write buffers
+	 */
+	public boolean flushIfOlderThan(final long now, final long maximumBufferLatency) throws IOException,
+			InterruptedException {
+
+		if (!this.outputLock.tryLock()) {
+			return false;
+		}
+
+		try {
+			if (this.closeRequested || this.pendingDataTimestamp < 0L) {
+				return false;
+			}
+
+			if (now - this.pendingDataTimestamp < maximumBufferLatency) {
+				return false;
+			}
+
+			if (this.dataBuffer == null) {
+				return false;
+			}
+
+			if (this.compressor != null) {
+				this.dataBuffer = this.compressor.compress(this.dataBuffer);
+			}
+			releaseWriteBuffer();
+
+			return true;
+		} finally {
+			this.outputLock.unlock();
 		}
 	}
 
@@ -347,4 +538,66 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 
 		return this.amountOfDataTransmitted;
 	}
+
+	/**
+	 * A lock which does not synchronize anything. It guards the write path of channels which are not flushed by a
+	 * timer, so the task thread does not pay for locking.
+	 * <p>
+	 * This class is thread-safe.
+	 */
+	private static final class NoOpLock implements Lock {
+
+		/**
+		 * The only instance of the lock.
+		 */
+		private static final NoOpLock INSTANCE = new NoOpLock();
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void lock() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void lockInterruptibly() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryLock() {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryLock(final long time, final TimeUnit unit) {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void unlock() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Condition newCondition() {
+
+			throw new UnsupportedOperationException("A no-op lock does not support conditions");
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.services.iomanager;
+
+/**
+ * The compression methods available for the blocks written by a {@link ChannelWriterOutputView}. The
+ * identifier of a method is stored in the header of every block, such that a {@link ChannelReaderInputView}
+ * detects the compression of a channel by itself.
+ */
+public enum BlockCompression
+{
+	/**
+	 * Blocks are written uncompressed.
+	 */
+	NONE(0),
+	
+	/**
+	 * Blocks are compressed in the Snappy format. Fast, with moderate compression ratios.
+	 */
+	SNAPPY(1),
+	
+	/**
+	 * Blocks are compressed with the deflate algorithm (zlib). Slower, with better compression ratios.
+	 */
+	DEFLATE(2);
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final int id;		// the identifier stored in the block headers
+	
+	private BlockCompression(int id)
+	{
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the identifier of this compression method, as stored in the block headers.
+	 * 
+	 * @return The identifier of this compression method.
+	 */
+	public int getId()
+	{
+		return this.id;
+	}
+	
+	/**
+	 * Creates a new codec for this compression method.
+	 * 
+	 * @return A new codec, or <code>null</code>, if this method is {@link #NONE}.
+	 */
+	public BlockCompressionCodec createCodec()
+	{
+		switch (this) {
+		case SNAPPY:
+			return new SnappyBlockCodec();
+		case DEFLATE:
+			return new DeflateBlockCodec();
+		default:
+			return null;
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the compression method with the given header identifier.
+	 * 
+	 * @param id The identifier, as stored in the block headers.
+	 * @return The compression method for the identifier.
+	 * @throws IllegalArgumentException Thrown, if no compression method has the given identifier.
+	 */
+	public static BlockCompression fromId(int id)
+	{
+		for (BlockCompression c : values()) {
+			if (c.id == id) {
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("Unknown block compression identifier: " + id);
+	}
+	
+	/**
+	 * Parses a compression method from its name, as used in the configuration. The name is case
+	 * insensitive. Besides the constant names, <i>zlib</i> is accepted for {@link #DEFLATE}.
+	 * 
+	 * @param name The name of the compression method.
+	 * @return The compression method, or {@link #NONE}, if the name is null or empty.
+	 * @throws IllegalArgumentException Thrown, if the name does not describe a compression method.
+	 */
+	public static BlockCompression fromString(String name)
+	{
+		if (name == null) {
+			return NONE;
+		}
+		name = name.trim();
+		if (name.length() == 0) {
+			return NONE;
+		}
+		if (name.equalsIgnoreCase("zlib")) {
+			return DEFLATE;
+		}
+		for (BlockCompression c : values()) {
+			if (c.name().equalsIgnoreCase(name)) {
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("Unknown block compression method: '" + name + "'.");
+	}
+}
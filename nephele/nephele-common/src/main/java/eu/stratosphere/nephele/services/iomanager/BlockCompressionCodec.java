@@ -0,0 +1,65 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.services.iomanager;
+
+import java.io.IOException;
+
+/**
+ * A codec that compresses and decompresses individual blocks of bytes. Codecs are used by the
+ * {@link ChannelWriterOutputView} and {@link ChannelReaderInputView} to compress the blocks they write to disk.
+ * <p>
+ * Codec instances may keep internal state (such as hash tables or native compressor handles) between calls
+ * and are hence not thread-safe. Each view creates its own codec instance.
+ */
+public interface BlockCompressionCodec
+{
+	/**
+	 * Gets the maximal number of bytes that the compressed form of a block of the given length may occupy.
+	 * 
+	 * @param uncompressedLength The length of the uncompressed block.
+	 * @return The maximal length of the compressed block.
+	 */
+	int getMaxCompressedLength(int uncompressedLength);
+	
+	/**
+	 * Compresses the given bytes into the target array. The target array must have at least
+	 * {@link #getMaxCompressedLength(int)} bytes of space after the target offset.
+	 * 
+	 * @param src The array holding the bytes to compress.
+	 * @param srcOffset The offset of the first byte to compress.
+	 * @param len The number of bytes to compress.
+	 * @param target The array to write the compressed bytes to.
+	 * @param targetOffset The offset at which the compressed bytes are written.
+	 * @return The length of the compressed data.
+	 */
+	int compress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset);
+	
+	/**
+	 * Decompresses the given bytes into the target array.
+	 * 
+	 * @param src The array holding the compressed bytes.
+	 * @param srcOffset The offset of the first compressed byte.
+	 * @param len The number of compressed bytes.
+	 * @param target The array to write the decompressed bytes to.
+	 * @param targetOffset The offset at which the decompressed bytes are written.
+	 * @param maxLen The maximal number of bytes that may be written to the target array.
+	 * @return The length of the decompressed data.
+	 * @throws IOException Thrown, if the compressed data is corrupt or decompresses to more than
+	 *                     <code>maxLen</code> bytes.
+	 */
+	int decompress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset, int maxLen) throws IOException;
+}
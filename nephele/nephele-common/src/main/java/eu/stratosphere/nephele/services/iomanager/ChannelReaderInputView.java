@@ -29,6 +29,9 @@ import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
  * A {@link DataInputView} that is backed by a {@link BlockChannelReader}, making it effectively a data input
  * stream. The view reads it data in blocks from the underlying channel. The view can only read data that
  * has been written by a {@link ChannelWriterOutputView}, due to block formatting.
+ * <p>
+ * If the blocks have been written with compression, the view detects that from the header of the first block.
+ * It then decompresses the chunks into a staging buffer on the heap and reads the data from there.
  *
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  */
@@ -46,6 +49,20 @@ public class ChannelReaderInputView extends AbstractPagedInputView
 	
 	private boolean closed;							// flag indicating whether the reader is closed
 	
+	private BlockCompressionCodec codec;			// the codec for compressed channels, null, if uncompressed
+	
+	private MemorySegment staging;					// the segment holding the decompressed chunk
+	
+	private int stagingLimit;						// the limit of the data in the staging segment
+	
+	private MemorySegment compressedBlock;			// the block holding the compressed chunks
+	
+	private int compressedBlockPos;					// the read position in the block for compressed chunks
+	
+	private int compressedBlockLimit;				// the limit of the compressed chunks in the block
+	
+	private byte[] compressionBuffer;				// the buffer holding chunks that span multiple blocks
+	
 	// --------------------------------------------------------------------------------------------
 
 	/**
@@ -170,7 +187,7 @@ public class ChannelReaderInputView extends AbstractPagedInputView
 		
 		// re-collect all memory segments
 		ArrayList<MemorySegment> list = this.freeMem;
-		final MemorySegment current = getCurrentSegment();
+		final MemorySegment current = this.codec == null ? getCurrentSegment() : this.compressedBlock;
 		if (current != null) {
 			list.add(current);
 		}
@@ -212,6 +229,11 @@ public class ChannelReaderInputView extends AbstractPagedInputView
 	@Override
 	protected MemorySegment nextSegment(MemorySegment current) throws IOException
 	{
+		if (this.codec != null) {
+			decompressNextChunk();
+			return this.staging;
+		}
+		
 		// check if we are at our end
 		if (this.inLastBlock) {
 			throw new EOFException();
@@ -224,6 +246,38 @@ public class ChannelReaderInputView extends AbstractPagedInputView
 		}
 		
 		// get the next segment
+		final MemorySegment seg = nextBlock();
+		
+		// check whether the channel is compressed. that is decided by the first block
+		final int compressionId = (seg.getShort(ChannelWriterOutputView.HEADER_FLAGS_OFFSET) & 0xffff) >>> 
+				ChannelWriterOutputView.FLAGS_COMPRESSION_SHIFT;
+		if (compressionId != 0) {
+			if (current != null) {
+				throw new IOException("Compressed block found in an uncompressed channel.");
+			}
+			initCompression(seg, compressionId);
+			try {
+				decompressNextChunk();
+			}
+			catch (EOFException eofex) {
+				// empty channel. return the empty staging segment, the next read attempt signals the end
+				this.stagingLimit = this.headerLength;
+			}
+			return this.staging;
+		}
+		
+		return seg;
+	}
+	
+	/**
+	 * Fetches the next block returned by the reader and checks its header.
+	 * 
+	 * @return The next block.
+	 * @throws IOException Thrown, if the block could not be read or does not belong to a channel written
+	 *                     by a {@link ChannelWriterOutputView}.
+	 */
+	private final MemorySegment nextBlock() throws IOException
+	{
 		final MemorySegment seg = this.reader.getNextReturnedSegment();
 		
 		// check the header
@@ -236,16 +290,120 @@ public class ChannelReaderInputView extends AbstractPagedInputView
 			this.numRequestsRemaining = 0;
 			this.inLastBlock = true;
 		}
-		
 		return seg;
 	}
 	
+	// --------------------------------------------------------------------------------------------
+	//                                   Compressed Channels
+	// --------------------------------------------------------------------------------------------
+	
+	private final void initCompression(MemorySegment firstBlock, int compressionId) throws IOException
+	{
+		try {
+			this.codec = BlockCompression.fromId(compressionId).createCodec();
+		}
+		catch (IllegalArgumentException iaex) {
+			throw new IOException(iaex.getMessage());
+		}
+		
+		final int segmentSize = firstBlock.size();
+		this.staging = new MemorySegment(new byte[segmentSize], 0, segmentSize);
+		this.compressionBuffer = new byte[this.codec.getMaxCompressedLength(segmentSize - this.headerLength)];
+		this.compressedBlock = firstBlock;
+		this.compressedBlockPos = this.headerLength;
+		this.compressedBlockLimit = firstBlock.getInt(ChannelWriterOutputView.HEAD_BLOCK_LENGTH_OFFSET);
+	}
+	
+	/**
+	 * Reads the next chunk from the blocks and decompresses it into the staging segment.
+	 * 
+	 * @throws EOFException Thrown, if the channel contains no further chunks.
+	 * @throws IOException Thrown, if a block could not be read, or if the chunk is corrupt.
+	 */
+	private final void decompressNextChunk() throws IOException
+	{
+		// skip over exhausted blocks. empty blocks occur, if the last chunk ended exactly at the block end
+		while (this.compressedBlockPos >= this.compressedBlockLimit) {
+			advanceCompressedBlock();
+		}
+		
+		final byte[] buffer = this.compressionBuffer;
+		readCompressed(buffer, 0, ChannelWriterOutputView.CHUNK_HEADER_LENGTH);
+		final int rawLen = getIntBigEndian(buffer, 0);
+		final int storedLen = getIntBigEndian(buffer, 4);
+		
+		final int maxLen = this.staging.size() - this.headerLength;
+		if (rawLen <= 0 || rawLen > maxLen || storedLen <= 0 || storedLen > rawLen) {
+			throw new IOException("Corrupt chunk header in compressed channel.");
+		}
+		
+		// decompress directly from the block, if the chunk is contained in it
+		final byte[] src;
+		final int srcOffset;
+		final MemorySegment block = this.compressedBlock;
+		if (!block.isOffHeap() && this.compressedBlockLimit - this.compressedBlockPos >= storedLen) {
+			src = block.getBackingArray();
+			srcOffset = block.translateOffset(this.compressedBlockPos);
+			this.compressedBlockPos += storedLen;
+		} else {
+			readCompressed(buffer, 0, storedLen);
+			src = buffer;
+			srcOffset = 0;
+		}
+		
+		final byte[] target = this.staging.getBackingArray();
+		final int targetOffset = this.staging.translateOffset(this.headerLength);
+		if (storedLen == rawLen) {
+			System.arraycopy(src, srcOffset, target, targetOffset, rawLen);
+		} else if (this.codec.decompress(src, srcOffset, storedLen, target, targetOffset, maxLen) != rawLen) {
+			throw new IOException("Corrupt chunk in compressed channel: Wrong decompressed length.");
+		}
+		this.stagingLimit = this.headerLength + rawLen;
+	}
+	
+	private final void readCompressed(byte[] target, int offset, int len) throws IOException
+	{
+		while (len > 0) {
+			if (this.compressedBlockPos >= this.compressedBlockLimit) {
+				advanceCompressedBlock();
+				continue;
+			}
+			final int toCopy = Math.min(len, this.compressedBlockLimit - this.compressedBlockPos);
+			this.compressedBlock.get(this.compressedBlockPos, target, offset, toCopy);
+			this.compressedBlockPos += toCopy;
+			offset += toCopy;
+			len -= toCopy;
+		}
+	}
+	
+	private final void advanceCompressedBlock() throws IOException
+	{
+		if (this.inLastBlock) {
+			throw new EOFException();
+		}
+		sendReadRequest(this.compressedBlock);
+		this.compressedBlock = null;
+		
+		final MemorySegment seg = nextBlock();
+		this.compressedBlock = seg;
+		this.compressedBlockPos = this.headerLength;
+		this.compressedBlockLimit = seg.getInt(ChannelWriterOutputView.HEAD_BLOCK_LENGTH_OFFSET);
+	}
+	
+	private static final int getIntBigEndian(byte[] b, int pos)
+	{
+		return ((b[pos] & 0xff) << 24) | ((b[pos + 1] & 0xff) << 16) | ((b[pos + 2] & 0xff) << 8) | (b[pos + 3] & 0xff);
+	}
+	
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.pact.runtime.io.AbstractPagedInputView#getLimitForSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment)
 	 */
 	@Override
 	protected int getLimitForSegment(MemorySegment segment)
 	{
+		if (segment == this.staging) {
+			return this.stagingLimit;
+		}
 		return segment.getInt(ChannelWriterOutputView.HEAD_BLOCK_LENGTH_OFFSET);
 	}
 	
@@ -28,6 +28,11 @@ import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
  * A {@link DataOutputView} that is backed by a {@link BlockChannelWriter}, making it effectively a data output
  * stream. The view writes it data in blocks to the underlying channel, adding a minimal header to each block.
  * The data can be re-read by a {@link ChannelReaderInputView}, if it uses the same block size.
+ * <p>
+ * If a {@link BlockCompression} is given, the view serializes the data into a staging buffer on the heap and
+ * compresses the staging buffer whenever it is full. The compressed chunks are packed densely into the blocks,
+ * so that a channel with well compressible data occupies fewer blocks. Chunks that do not shrink are stored
+ * uncompressed. The compression method is recorded in the block headers.
  *
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  */
@@ -58,6 +63,17 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	 */
 	protected static final short FLAG_LAST_BLOCK = (short) 0x1;
 	
+	/**
+	 * The shift of the compression method identifier in the header flags.
+	 */
+	protected static final int FLAGS_COMPRESSION_SHIFT = 8;
+	
+	/**
+	 * The length of the header in front of every compressed chunk: the uncompressed length
+	 * and the stored length of the chunk.
+	 */
+	protected static final int CHUNK_HEADER_LENGTH = 8;
+	
 	// --------------------------------------------------------------------------------------------
 	
 	private final BlockChannelWriter writer;		// the writer to the channel
@@ -68,6 +84,16 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	
 	private final int numSegments;					// the number of memory segments used by this view
 	
+	private final BlockCompressionCodec codec;		// the codec compressing the chunks, null, if uncompressed
+	
+	private final short compressionFlags;			// the header flags identifying the compression method
+	
+	private MemorySegment compressedBlock;			// the block that the compressed chunks are written to
+	
+	private int compressedBlockPos;					// the write position in the block for compressed chunks
+	
+	private byte[] compressionBuffer;				// the buffer holding the chunk during compression
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
@@ -81,13 +107,36 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	 * @param segmentSize The size of the memory segments.
 	 */
 	public ChannelWriterOutputView(BlockChannelWriter writer, List<MemorySegment> memory, int segmentSize)
+	{
+		this(writer, memory, segmentSize, BlockCompression.NONE);
+	}
+	
+	/**
+	 * Creates an new ChannelWriterOutputView that writes to the given channel and buffers data
+	 * in the given memory segments, compressing the data with the given method. If the given memory segments
+	 * are null, the writer takes its buffers directly from the return queue of the writer. Note that this
+	 * variant locks if no buffers are contained in the return queue.
+	 * <p>
+	 * With compression, the view additionally allocates a staging buffer of the segment size and a
+	 * compression buffer on the heap. The segment returned by {@link #getCurrentSegment()} is then the
+	 * staging buffer, rather than one of the given memory segments.
+	 * 
+	 * @param writer The writer to write to.
+	 * @param memory The memory used to buffer data, or null, to utilize solely the return queue.
+	 * @param segmentSize The size of the memory segments.
+	 * @param compression The compression method for the written blocks.
+	 */
+	public ChannelWriterOutputView(BlockChannelWriter writer, List<MemorySegment> memory, int segmentSize,
+			BlockCompression compression)
 	{
 		super(segmentSize, HEADER_LENGTH);
 		
-		if (writer == null)
+		if (writer == null || compression == null)
 			throw new NullPointerException();
 		
 		this.writer = writer;
+		this.codec = compression.createCodec();
+		this.compressionFlags = (short) (compression.getId() << FLAGS_COMPRESSION_SHIFT);
 		
 		if (memory == null) {
 			this.numSegments = 0;
@@ -138,7 +187,13 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	public List<MemorySegment> close() throws IOException
 	{
 		// send off set last segment
-		writeSegment(getCurrentSegment(), getCurrentPositionInSegment(), true);
+		if (this.codec == null) {
+			writeSegment(getCurrentSegment(), getCurrentPositionInSegment(), true);
+		} else {
+			compressChunk(getCurrentSegment(), getCurrentPositionInSegment());
+			writeSegment(this.compressedBlock, this.compressedBlockPos, true);
+			this.compressedBlock = null;
+		}
 		clear();
 		
 		// close the writer and gather all segments
@@ -189,7 +244,8 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	 */
 	public long getBytesMemoryUsed()
 	{
-		return (this.blockCount - 1) * getSegmentSize() + getCurrentPositionInSegment();
+		return (this.blockCount - 1) * getSegmentSize() + 
+			(this.codec == null ? getCurrentPositionInSegment() : this.compressedBlockPos);
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -198,8 +254,25 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	
 	protected final MemorySegment nextSegment(MemorySegment current, int posInSegment) throws IOException
 	{
+		if (this.codec != null) {
+			if (current == null) {
+				// first call: set up the staging buffer and fetch the first block
+				final int segmentSize = getSegmentSize();
+				this.compressionBuffer = new byte[CHUNK_HEADER_LENGTH + 
+						this.codec.getMaxCompressedLength(segmentSize - HEADER_LENGTH)];
+				this.compressedBlock = this.writer.getNextReturnedSegment();
+				this.compressedBlockPos = HEADER_LENGTH;
+				this.blockCount++;
+				return new MemorySegment(new byte[segmentSize], 0, segmentSize);
+			} else {
+				compressChunk(current, posInSegment);
+				return current;
+			}
+		}
+		
 		if (current != null) {
 			writeSegment(current, posInSegment, false);
+			this.bytesBeforeSegment += posInSegment - HEADER_LENGTH;
 		}
 		
 		final MemorySegment next = this.writer.getNextReturnedSegment();
@@ -210,10 +283,67 @@ public final class ChannelWriterOutputView extends AbstractPagedOutputView
 	private final void writeSegment(MemorySegment segment, int writePosition, boolean lastSegment) throws IOException
 	{
 		segment.putShort(0, HEADER_MAGIC_NUMBER);
-		segment.putShort(HEADER_FLAGS_OFFSET, lastSegment ? FLAG_LAST_BLOCK : 0);
+		segment.putShort(HEADER_FLAGS_OFFSET, (short) (this.compressionFlags | (lastSegment ? FLAG_LAST_BLOCK : 0)));
 		segment.putInt(HEAD_BLOCK_LENGTH_OFFSET, writePosition);
 		
 		this.writer.writeBlock(segment);
-		this.bytesBeforeSegment += writePosition - HEADER_LENGTH;
+	}
+	
+	/**
+	 * Compresses the contents of the staging segment into a chunk and appends the chunk to the blocks.
+	 * 
+	 * @param staging The staging segment holding the serialized data.
+	 * @param posInSegment The end position of the data in the staging segment.
+	 * @throws IOException Thrown, if a full block could not be written.
+	 */
+	private final void compressChunk(MemorySegment staging, int posInSegment) throws IOException
+	{
+		final int rawLen = posInSegment - HEADER_LENGTH;
+		if (rawLen <= 0) {
+			return;
+		}
+		this.bytesBeforeSegment += rawLen;
+		
+		final byte[] rawData = staging.getBackingArray();
+		final int rawOffset = staging.translateOffset(HEADER_LENGTH);
+		final byte[] compressed = this.compressionBuffer;
+		
+		final int compressedLen = this.codec.compress(rawData, rawOffset, rawLen, compressed, CHUNK_HEADER_LENGTH);
+		final int storedLen;
+		if (compressedLen < rawLen) {
+			storedLen = compressedLen;
+		} else {
+			// the chunk did not shrink, store it uncompressed, as marked by equal lengths
+			System.arraycopy(rawData, rawOffset, compressed, CHUNK_HEADER_LENGTH, rawLen);
+			storedLen = rawLen;
+		}
+		
+		putIntBigEndian(compressed, 0, rawLen);
+		putIntBigEndian(compressed, 4, storedLen);
+		
+		// append the chunk to the blocks, sending off blocks as they fill up
+		final int segmentSize = getSegmentSize();
+		final int chunkLen = storedLen + CHUNK_HEADER_LENGTH;
+		int off = 0;
+		while (off < chunkLen) {
+			if (this.compressedBlockPos == segmentSize) {
+				writeSegment(this.compressedBlock, segmentSize, false);
+				this.compressedBlock = this.writer.getNextReturnedSegment();
+				this.compressedBlockPos = HEADER_LENGTH;
+				this.blockCount++;
+			}
+			final int toCopy = Math.min(chunkLen - off, segmentSize - this.compressedBlockPos);
+			this.compressedBlock.put(this.compressedBlockPos, compressed, off, toCopy);
+			this.compressedBlockPos += toCopy;
+			off += toCopy;
+		}
+	}
+	
+	private static final void putIntBigEndian(byte[] b, int pos, int value)
+	{
+		b[pos] = (byte) (value >>> 24);
+		b[pos + 1] = (byte) (value >>> 16);
+		b[pos + 2] = (byte) (value >>> 8);
+		b[pos + 3] = (byte) value;
 	}
 }
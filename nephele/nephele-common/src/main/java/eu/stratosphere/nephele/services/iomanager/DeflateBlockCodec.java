@@ -0,0 +1,103 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.services.iomanager;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A block codec using the deflate algorithm from <code>java.util.zip</code>, at its fastest compression level.
+ */
+public final class DeflateBlockCodec implements BlockCompressionCodec
+{
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	
+	private final Inflater inflater = new Inflater();
+	
+	private final byte[] probe = new byte[1];
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#getMaxCompressedLength(int)
+	 */
+	@Override
+	public int getMaxCompressedLength(int uncompressedLength)
+	{
+		// the bound of zlib's deflateBound(), plus the zlib wrapper and some slack
+		return uncompressedLength + (uncompressedLength >>> 12) + (uncompressedLength >>> 14) + 
+				(uncompressedLength >>> 25) + 64;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#compress(byte[], int, int, byte[], int)
+	 */
+	@Override
+	public int compress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset)
+	{
+		final Deflater deflater = this.deflater;
+		deflater.reset();
+		deflater.setInput(src, srcOffset, len);
+		deflater.finish();
+		
+		final int maxLen = getMaxCompressedLength(len);
+		int written = 0;
+		while (!deflater.finished() && written < maxLen) {
+			written += deflater.deflate(target, targetOffset + written, maxLen - written);
+		}
+		if (!deflater.finished()) {
+			throw new RuntimeException("BUG: Deflate output exceeds the compression bound.");
+		}
+		return written;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#decompress(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int decompress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset, int maxLen)
+	throws IOException
+	{
+		final Inflater inflater = this.inflater;
+		inflater.reset();
+		inflater.setInput(src, srcOffset, len);
+		
+		int written = 0;
+		try {
+			while (!inflater.finished()) {
+				final int n;
+				if (written < maxLen) {
+					n = inflater.inflate(target, targetOffset + written, maxLen - written);
+				} else {
+					// the target is full. the stream must end without producing further bytes
+					n = inflater.inflate(this.probe);
+					if (n > 0) {
+						throw new IOException("Corrupt deflate block: Data exceeds the block size.");
+					}
+				}
+				if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Corrupt deflate block: Data is truncated.");
+				}
+				written += n;
+			}
+		}
+		catch (DataFormatException dfex) {
+			throw new IOException("Corrupt deflate block: " + dfex.getMessage(), dfex);
+		}
+		return written;
+	}
+}
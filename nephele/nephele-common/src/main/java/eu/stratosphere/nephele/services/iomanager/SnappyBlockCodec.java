@@ -0,0 +1,295 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.services.iomanager;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java block codec that produces the <a href="http://code.google.com/p/snappy/">Snappy</a> format.
+ * The compressor is a greedy LZ77 variant that looks up four byte sequences in a hash table. It favors speed
+ * over compression ratio, which makes it suitable to reduce the number of bytes written to local disks.
+ * <p>
+ * Unlike the Snappy library used for the network channels, this codec needs no native code, so it works in
+ * every environment that runs the I/O manager.
+ */
+public final class SnappyBlockCodec implements BlockCompressionCodec
+{
+	private static final int MAX_HASH_TABLE_BITS = 14;
+	
+	private static final int MIN_HASH_TABLE_BITS = 8;
+	
+	private static final int HASH_MULTIPLIER = 0x1e35a7bd;
+	
+	private static final int LITERAL = 0;
+	
+	private static final int COPY_1_BYTE_OFFSET = 1;
+	
+	private static final int COPY_2_BYTE_OFFSET = 2;
+	
+	private static final int COPY_4_BYTE_OFFSET = 3;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final int[] hashTable = new int[1 << MAX_HASH_TABLE_BITS];	// positions + 1, zero marks empty slots
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#getMaxCompressedLength(int)
+	 */
+	@Override
+	public int getMaxCompressedLength(int uncompressedLength)
+	{
+		return 32 + uncompressedLength + uncompressedLength / 6;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#compress(byte[], int, int, byte[], int)
+	 */
+	@Override
+	public int compress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset)
+	{
+		int op = writeVarInt(len, target, targetOffset);
+		
+		final int end = srcOffset + len;
+		final int limit = end - 4;		// the last position from which four bytes can be read
+		
+		// size the hash table to the input, to keep resetting it cheap for small blocks
+		int bits = MIN_HASH_TABLE_BITS;
+		while (bits < MAX_HASH_TABLE_BITS && (1 << bits) < len) {
+			bits++;
+		}
+		final int shift = 32 - bits;
+		final int[] table = this.hashTable;
+		Arrays.fill(table, 0, 1 << bits, 0);
+		
+		int ip = srcOffset;
+		int nextEmit = srcOffset;
+		int skip = 32;
+		
+		while (ip <= limit) {
+			final int current = readInt(src, ip);
+			final int h = (current * HASH_MULTIPLIER) >>> shift;
+			final int candidate = table[h] - 1 + srcOffset;
+			table[h] = ip - srcOffset + 1;
+			
+			if (candidate >= srcOffset && readInt(src, candidate) == current) {
+				// found a match. emit the pending literal and extend the match as far as possible
+				if (nextEmit < ip) {
+					op = emitLiteral(src, nextEmit, ip - nextEmit, target, op);
+				}
+				int matchLen = 4;
+				while (ip + matchLen < end && src[candidate + matchLen] == src[ip + matchLen]) {
+					matchLen++;
+				}
+				op = emitCopy(ip - candidate, matchLen, target, op);
+				
+				ip += matchLen;
+				nextEmit = ip;
+				skip = 32;
+				
+				// remember the position just before the next input, to allow for back-to-back matches
+				if (ip - 1 <= limit) {
+					table[(readInt(src, ip - 1) * HASH_MULTIPLIER) >>> shift] = ip - 1 - srcOffset + 1;
+				}
+			} else {
+				// no match. skip ahead faster the longer we find no matches, to not waste time on
+				// incompressible data
+				ip += skip >>> 5;
+				skip++;
+			}
+		}
+		
+		if (nextEmit < end) {
+			op = emitLiteral(src, nextEmit, end - nextEmit, target, op);
+		}
+		return op - targetOffset;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.services.iomanager.BlockCompressionCodec#decompress(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int decompress(byte[] src, int srcOffset, int len, byte[] target, int targetOffset, int maxLen)
+	throws IOException
+	{
+		final int end = srcOffset + len;
+		
+		// read the uncompressed length
+		int uncompressedLen = 0;
+		int ip = srcOffset;
+		for (int shift = 0; ; shift += 7) {
+			if (ip >= end || shift > 28) {
+				throw new IOException("Corrupt Snappy block: Invalid length preamble.");
+			}
+			final int b = src[ip++];
+			uncompressedLen |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		if (uncompressedLen < 0 || uncompressedLen > maxLen) {
+			throw new IOException("Corrupt Snappy block: Uncompressed length " + uncompressedLen + 
+				" exceeds the available space of " + maxLen + " bytes.");
+		}
+		
+		final int opEnd = targetOffset + uncompressedLen;
+		int op = targetOffset;
+		
+		while (ip < end) {
+			final int tag = src[ip++] & 0xff;
+			final int length;
+			
+			if ((tag & 0x3) == LITERAL) {
+				int literalLen = tag >>> 2;
+				if (literalLen >= 60) {
+					final int numBytes = literalLen - 59;
+					if (ip + numBytes > end) {
+						throw new IOException("Corrupt Snappy block: Truncated literal length.");
+					}
+					literalLen = 0;
+					for (int i = 0; i < numBytes; i++) {
+						literalLen |= (src[ip++] & 0xff) << (i << 3);
+					}
+				}
+				length = literalLen + 1;
+				if (length <= 0 || ip + length > end || op + length > opEnd) {
+					throw new IOException("Corrupt Snappy block: Literal exceeds the block bounds.");
+				}
+				System.arraycopy(src, ip, target, op, length);
+				ip += length;
+				op += length;
+				continue;
+			}
+			
+			final int offset;
+			switch (tag & 0x3) {
+			case COPY_1_BYTE_OFFSET:
+				if (ip >= end) {
+					throw new IOException("Corrupt Snappy block: Truncated copy offset.");
+				}
+				length = ((tag >>> 2) & 0x7) + 4;
+				offset = ((tag >>> 5) << 8) | (src[ip++] & 0xff);
+				break;
+			case COPY_2_BYTE_OFFSET:
+				if (ip + 2 > end) {
+					throw new IOException("Corrupt Snappy block: Truncated copy offset.");
+				}
+				length = (tag >>> 2) + 1;
+				offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+				ip += 2;
+				break;
+			default:
+				if (ip + 4 > end) {
+					throw new IOException("Corrupt Snappy block: Truncated copy offset.");
+				}
+				length = (tag >>> 2) + 1;
+				offset = readInt(src, ip);
+				ip += 4;
+			}
+			
+			if (offset <= 0 || offset > op - targetOffset || op + length > opEnd) {
+				throw new IOException("Corrupt Snappy block: Copy exceeds the block bounds.");
+			}
+			
+			if (offset >= length) {
+				System.arraycopy(target, op - offset, target, op, length);
+				op += length;
+			} else {
+				// overlapping copy, repeating the last 'offset' bytes
+				for (int i = 0; i < length; i++, op++) {
+					target[op] = target[op - offset];
+				}
+			}
+		}
+		
+		if (op != opEnd) {
+			throw new IOException("Corrupt Snappy block: Expected " + uncompressedLen + " bytes, but found " + 
+				(op - targetOffset) + ".");
+		}
+		return uncompressedLen;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                                     Encoding Utilities
+	// --------------------------------------------------------------------------------------------
+	
+	private static final int readInt(byte[] b, int pos)
+	{
+		return (b[pos] & 0xff) | ((b[pos + 1] & 0xff) << 8) | ((b[pos + 2] & 0xff) << 16) | ((b[pos + 3] & 0xff) << 24);
+	}
+	
+	private static final int writeVarInt(int value, byte[] target, int pos)
+	{
+		while ((value & ~0x7f) != 0) {
+			target[pos++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		target[pos++] = (byte) value;
+		return pos;
+	}
+	
+	private static final int emitLiteral(byte[] src, int srcPos, int len, byte[] target, int op)
+	{
+		final int n = len - 1;
+		if (n < 60) {
+			target[op++] = (byte) (LITERAL | (n << 2));
+		} else {
+			final int numBytes = n < (1 << 8) ? 1 : n < (1 << 16) ? 2 : n < (1 << 24) ? 3 : 4;
+			target[op++] = (byte) (LITERAL | ((59 + numBytes) << 2));
+			for (int i = 0; i < numBytes; i++) {
+				target[op++] = (byte) (n >>> (i << 3));
+			}
+		}
+		System.arraycopy(src, srcPos, target, op, len);
+		return op + len;
+	}
+	
+	private static final int emitCopy(int offset, int len, byte[] target, int op)
+	{
+		// a single copy element covers at most 64 bytes. make sure the remainder keeps at least four bytes
+		while (len >= 68) {
+			op = emitCopyUpTo64(offset, 64, target, op);
+			len -= 64;
+		}
+		if (len > 64) {
+			op = emitCopyUpTo64(offset, 60, target, op);
+			len -= 60;
+		}
+		return emitCopyUpTo64(offset, len, target, op);
+	}
+	
+	private static final int emitCopyUpTo64(int offset, int len, byte[] target, int op)
+	{
+		if (len < 12 && offset < 2048) {
+			target[op++] = (byte) (COPY_1_BYTE_OFFSET | ((len - 4) << 2) | ((offset >>> 8) << 5));
+			target[op++] = (byte) offset;
+		} else if (offset < (1 << 16)) {
+			target[op++] = (byte) (COPY_2_BYTE_OFFSET | ((len - 1) << 2));
+			target[op++] = (byte) offset;
+			target[op++] = (byte) (offset >>> 8);
+		} else {
+			target[op++] = (byte) (COPY_4_BYTE_OFFSET | ((len - 1) << 2));
+			target[op++] = (byte) offset;
+			target[op++] = (byte) (offset >>> 8);
+			target[op++] = (byte) (offset >>> 16);
+			target[op++] = (byte) (offset >>> 24);
+		}
+		return op;
+	}
+}
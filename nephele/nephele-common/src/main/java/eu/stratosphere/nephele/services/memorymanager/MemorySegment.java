@@ -24,8 +24,9 @@ import java.nio.ByteBuffer;
 
 /**
  * This class represents a piece of memory allocated from the memory manager. The segment is backed
- * by a byte array and features random put and get methods for the basic types that are stored in a byte-wise
- * fashion in the memory.
+ * either by a byte array, or by a slice of direct (off-heap) memory, and features random put and get methods
+ * for the basic types that are stored in a byte-wise fashion in the memory. Both variants store the data
+ * in the same (big endian) layout, such that code working on the segments does not need to distinguish them.
  *
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -33,10 +34,16 @@ import java.nio.ByteBuffer;
 public class MemorySegment
 {
 	/**
-	 * The array in which the data is stored.
+	 * The array in which the data is stored, if the segment is backed by heap memory.
 	 */
 	protected byte[] memory;
 	
+	/**
+	 * The direct memory in which the data is stored, if the segment is backed by off-heap memory.
+	 * The buffer's position zero corresponds to the beginning of the segment.
+	 */
+	protected ByteBuffer offHeapMemory;
+	
 	/**
 	 * The offset in the memory array where this segment starts.
 	 */
@@ -52,16 +59,21 @@ public class MemorySegment
 	 */
 	protected ByteBuffer wrapper;
 	
+	/**
+	 * View on the off-heap memory for bulk copies, created lazily.
+	 */
+	protected ByteBuffer bulkAccessor;
+	
 	// -------------------------------------------------------------------------
 	//                             Constructors
 	// -------------------------------------------------------------------------
 
 	/**
-	 * Creates a new memory segment of given size with the provided views.
+	 * Creates a new memory segment that represents the given region of the given byte array.
 	 * 
+	 * @param memory The byte array that backs the memory segment.
+	 * @param offset The offset in the array where the segment starts.
 	 * @param size The size of the memory segment.
-	 * @param inputView The input view to use.
-	 * @param outputView The output view to use.
 	 */
 	public MemorySegment(byte[] memory, int offset, int size)
 	{		
@@ -69,6 +81,25 @@ public class MemorySegment
 		this.offset = offset;
 		this.size = size;
 	}
+	
+	/**
+	 * Creates a new memory segment that represents the remaining bytes of the given buffer, i.e. the bytes
+	 * between its position and its limit. If the buffer is backed by an array, the segment works on that
+	 * array, otherwise it works directly on the buffer's (off-heap) memory.
+	 * 
+	 * @param buffer The buffer that backs the memory segment.
+	 */
+	public MemorySegment(ByteBuffer buffer)
+	{
+		if (buffer.hasArray()) {
+			this.memory = buffer.array();
+			this.offset = buffer.arrayOffset() + buffer.position();
+		} else {
+			this.offHeapMemory = buffer.slice();
+			this.offset = 0;
+		}
+		this.size = buffer.remaining();
+	}
 
 	// -------------------------------------------------------------------------
 	//                        MemorySegment Accessors
@@ -81,7 +112,17 @@ public class MemorySegment
 	 * @return True, if the segment has been freed, false otherwise.
 	 */
 	public boolean isFreed() {
-		return this.memory == null;
+		return this.memory == null && this.offHeapMemory == null;
+	}
+	
+	/**
+	 * Checks whether this memory segment is backed by off-heap memory. Off-heap segments have no backing
+	 * array, but they can be read and written by the I/O manager without an intermediate copy.
+	 * 
+	 * @return True, if the segment is backed by off-heap memory, false if it is backed by a byte array.
+	 */
+	public final boolean isOffHeap() {
+		return this.offHeapMemory != null;
 	}
 	
 	/**
@@ -99,8 +140,11 @@ public class MemorySegment
 	 * Since different regions of the backing array are used by different segments, the logical
 	 * positions in this view do not correspond to the indexes in the backing array and need
 	 * to be translated via the {@link #translateOffset(int)} method.
+	 * <p>
+	 * Segments that are backed by off-heap memory have no backing array. For them, this method returns
+	 * <code>null</code>.
 	 * 
-	 * @return The backing byte array.
+	 * @return The backing byte array, or <code>null</code>, if the segment is backed by off-heap memory.
 	 */
 	public final byte[] getBackingArray() {
 		return this.memory;
@@ -137,7 +181,14 @@ public class MemorySegment
 		}
 		
 		if (this.wrapper == null) {
-			this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
+			} else {
+				// a separate view, such that position and limit changes do not affect the random access
+				this.wrapper = this.offHeapMemory.duplicate();
+				this.wrapper.limit(offset + length);
+				this.wrapper.position(offset);
+			}
 		}
 		else {
 			this.wrapper.position(this.offset + offset);
@@ -148,6 +199,98 @@ public class MemorySegment
 	}
 
 
+	/**
+	 * Gets a view of the off-heap memory that is used for bulk copies. Position and limit of that view
+	 * may be freely changed, as the single value accessors use absolute positions on the original buffer.
+	 * 
+	 * @return The view for bulk copies.
+	 */
+	private final ByteBuffer bulkAccessView() {
+		if (this.bulkAccessor == null) {
+			this.bulkAccessor = this.offHeapMemory.duplicate();
+		}
+		return this.bulkAccessor;
+	}
+	
+	/**
+	 * Compares two regions of memory segments byte-wise, interpreting the bytes as unsigned values.
+	 * 
+	 * @param seg2 The segment to compare this segment with.
+	 * @param offset1 The offset of the region in this segment.
+	 * @param offset2 The offset of the region in the other segment.
+	 * @param len The number of bytes to compare.
+	 * @return A negative integer, zero, or a positive integer, as the region in this segment is less than,
+	 *         equal to, or greater than the region in the other segment.
+	 */
+	public final int compare(MemorySegment seg2, int offset1, int offset2, int len) {
+		final byte[] b1 = this.memory;
+		final byte[] b2 = seg2.memory;
+		
+		if (b1 != null && b2 != null) {
+			for (int pos1 = this.offset + offset1, pos2 = seg2.offset + offset2, end = pos1 + len; pos1 < end; pos1++, pos2++) {
+				final int val = (b1[pos1] & 0xff) - (b2[pos2] & 0xff);
+				if (val != 0) {
+					return val;
+				}
+			}
+		} else {
+			for (int i = 0; i < len; i++) {
+				final int val = (get(offset1 + i) & 0xff) - (seg2.get(offset2 + i) & 0xff);
+				if (val != 0) {
+					return val;
+				}
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Bulk copy method. Copies a region of this memory segment to the given target memory segment.
+	 * 
+	 * @param offset The offset in this segment where the copied region starts.
+	 * @param target The segment to copy the data to.
+	 * @param targetOffset The offset in the target segment where the data is put.
+	 * @param numBytes The number of bytes to copy.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the region exceeds the bounds of either segment.
+	 */
+	public final void copyTo(int offset, MemorySegment target, int targetOffset, int numBytes) {
+		if (numBytes < 0 || offset < 0 || offset > this.size - numBytes ||
+				targetOffset < 0 || targetOffset > target.size - numBytes)
+		{
+			throw new IndexOutOfBoundsException();
+		}
+		
+		if (target.memory != null) {
+			get(offset, target.memory, target.offset + targetOffset, numBytes);
+		} else if (this.memory != null) {
+			target.put(targetOffset, this.memory, this.offset + offset, numBytes);
+		} else if (target == this && offset < targetOffset + numBytes && targetOffset < offset + numBytes) {
+			// overlapping regions of the same segment: copy byte-wise, in the direction that does not
+			// overwrite bytes before they are read
+			final ByteBuffer mem = this.offHeapMemory;
+			if (targetOffset < offset) {
+				for (int i = 0; i < numBytes; i++) {
+					mem.put(targetOffset + i, mem.get(offset + i));
+				}
+			} else {
+				for (int i = numBytes - 1; i >= 0; i--) {
+					mem.put(targetOffset + i, mem.get(offset + i));
+				}
+			}
+		} else {
+			// the cached bulk access view is shared, so the source needs a view of its own in case
+			// the target is this segment
+			final ByteBuffer source = target == this ? this.offHeapMemory.duplicate() : bulkAccessView();
+			source.limit(offset + numBytes);
+			source.position(offset);
+			final ByteBuffer dest = target.bulkAccessView();
+			dest.position(targetOffset);
+			dest.put(source);
+			source.limit(source.capacity());
+		}
+	}
+
 	// --------------------------------------------------------------------
 	//                            Random Access
 	// --------------------------------------------------------------------
@@ -173,7 +316,11 @@ public class MemorySegment
 	 */
 	public final byte get(int index) {
 		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index];
+			if (this.memory != null) {
+				return this.memory[this.offset + index];
+			} else {
+				return this.offHeapMemory.get(index);
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -191,7 +338,11 @@ public class MemorySegment
 	 */
 	public final MemorySegment put(int index, byte b) {
 		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = b;
+			if (this.memory != null) {
+				this.memory[this.offset + index] = b;
+			} else {
+				this.offHeapMemory.put(index, b);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -249,7 +400,13 @@ public class MemorySegment
 	 */
 	public final MemorySegment get(int index, byte[] dst, int offset, int length) {
 		if (index >= 0 && index < this.size && index <= this.size - length && offset <= dst.length - length) {
-			System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+			if (this.memory != null) {
+				System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+			} else {
+				final ByteBuffer view = bulkAccessView();
+				view.position(index);
+				view.get(dst, offset, length);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -273,7 +430,13 @@ public class MemorySegment
 	 */
 	public final MemorySegment put(int index, byte[] src, int offset, int length) {
 		if (index >= 0 && index < this.size && index <= this.size - length && offset <= src.length - length) {
-			System.arraycopy(src, offset, this.memory, this.offset + index, length);
+			if (this.memory != null) {
+				System.arraycopy(src, offset, this.memory, this.offset + index, length);
+			} else {
+				final ByteBuffer view = bulkAccessView();
+				view.position(index);
+				view.put(src, offset, length);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -293,7 +456,17 @@ public class MemorySegment
 	 */
 	public final MemorySegment get(DataOutput out, int offset, int length) throws IOException {
 		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			out.write(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				out.write(this.memory, this.offset + offset, length);
+			} else {
+				// no array to hand to the output, move the data in chunks of eight bytes
+				for (; length >= 8; length -= 8, offset += 8) {
+					out.writeLong(this.offHeapMemory.getLong(offset));
+				}
+				for (; length > 0; length--, offset++) {
+					out.writeByte(this.offHeapMemory.get(offset));
+				}
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -314,7 +487,17 @@ public class MemorySegment
 	 */
 	public final MemorySegment put(DataInput in, int offset, int length) throws IOException {
 		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			in.readFully(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				in.readFully(this.memory, this.offset + offset, length);
+			} else {
+				// no array to fill from the input, move the data in chunks of eight bytes
+				for (; length >= 8; length -= 8, offset += 8) {
+					this.offHeapMemory.putLong(offset, in.readLong());
+				}
+				for (; length > 0; length--, offset++) {
+					this.offHeapMemory.put(offset, in.readByte());
+				}
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -333,7 +516,11 @@ public class MemorySegment
 	 */
 	public final boolean getBoolean(int index) {
 		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index] != 0;
+			if (this.memory != null) {
+				return this.memory[this.offset + index] != 0;
+			} else {
+				return this.offHeapMemory.get(index) != 0;
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -352,7 +539,11 @@ public class MemorySegment
 	 */
 	public final MemorySegment putBoolean(int index, boolean value) {
 		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = (byte) (value ? 1 : 0);
+			if (this.memory != null) {
+				this.memory[this.offset + index] = (byte) (value ? 1 : 0);
+			} else {
+				this.offHeapMemory.put(index, (byte) (value ? 1 : 0));
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -371,8 +562,12 @@ public class MemorySegment
 	 */
 	public final char getChar(int index) {
 		if (index >= 0 && index < this.size - 1) {
-			return (char) ( ((this.memory[this.offset + index + 0] & 0xff) << 8) | 
-					         (this.memory[this.offset + index + 1] & 0xff) );
+			if (this.memory != null) {
+				return (char) ( ((this.memory[this.offset + index + 0] & 0xff) << 8) | 
+						         (this.memory[this.offset + index + 1] & 0xff) );
+			} else {
+				return this.offHeapMemory.getChar(index);
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -391,8 +586,12 @@ public class MemorySegment
 	 */
 	public final MemorySegment putChar(int index, char value) {
 		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+			if (this.memory != null) {
+				this.memory[this.offset + index + 0] = (byte) (value >> 8);
+				this.memory[this.offset + index + 1] = (byte) value;
+			} else {
+				this.offHeapMemory.putChar(index, value);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -411,9 +610,13 @@ public class MemorySegment
 	 */
 	public final short getShort(int index) {
 		if (index >= 0 && index < this.size - 1) {
-			return (short) (
-					((this.memory[this.offset + index + 0] & 0xff) << 8) |
-					((this.memory[this.offset + index + 1] & 0xff)) );
+			if (this.memory != null) {
+				return (short) (
+						((this.memory[this.offset + index + 0] & 0xff) << 8) |
+						((this.memory[this.offset + index + 1] & 0xff)) );
+			} else {
+				return this.offHeapMemory.getShort(index);
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -432,8 +635,12 @@ public class MemorySegment
 	 */
 	public final MemorySegment putShort(int index, short value) {
 		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+			if (this.memory != null) {
+				this.memory[this.offset + index + 0] = (byte) (value >> 8);
+				this.memory[this.offset + index + 1] = (byte) value;
+			} else {
+				this.offHeapMemory.putShort(index, value);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -452,10 +659,14 @@ public class MemorySegment
 	 */
 	public final int getInt(int index) {
 		if (index >= 0 && index < this.size - 3) {
-			return ((this.memory[this.offset + index + 0] & 0xff) << 24)
-				| ((this.memory[this.offset + index + 1] & 0xff) << 16)
-				| ((this.memory[this.offset + index + 2] & 0xff) << 8)
-				| ((this.memory[this.offset + index + 3] & 0xff) << 0);
+			if (this.memory != null) {
+				return ((this.memory[this.offset + index + 0] & 0xff) << 24)
+					| ((this.memory[this.offset + index + 1] & 0xff) << 16)
+					| ((this.memory[this.offset + index + 2] & 0xff) << 8)
+					| ((this.memory[this.offset + index + 3] & 0xff) << 0);
+			} else {
+				return this.offHeapMemory.getInt(index);
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -474,10 +685,14 @@ public class MemorySegment
 	 */
 	public final MemorySegment putInt(int index, int value) {
 		if (index >= 0 && index < this.size - 3) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 24);
-			this.memory[this.offset + index + 1] = (byte) (value >> 16);
-			this.memory[this.offset + index + 2] = (byte) (value >> 8);
-			this.memory[this.offset + index + 3] = (byte) value;
+			if (this.memory != null) {
+				this.memory[this.offset + index + 0] = (byte) (value >> 24);
+				this.memory[this.offset + index + 1] = (byte) (value >> 16);
+				this.memory[this.offset + index + 2] = (byte) (value >> 8);
+				this.memory[this.offset + index + 3] = (byte) value;
+			} else {
+				this.offHeapMemory.putInt(index, value);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -496,14 +711,18 @@ public class MemorySegment
 	 */
 	public final long getLong(int index) {
 		if (index >= 0 && index < this.size - 7) {
-			return (((long) this.memory[this.offset + index + 0] & 0xff) << 56)
-				| (((long) this.memory[this.offset + index + 1] & 0xff) << 48)
-				| (((long) this.memory[this.offset + index + 2] & 0xff) << 40)
-				| (((long) this.memory[this.offset + index + 3] & 0xff) << 32)
-				| (((long) this.memory[this.offset + index + 4] & 0xff) << 24)
-				| (((long) this.memory[this.offset + index + 5] & 0xff) << 16)
-				| (((long) this.memory[this.offset + index + 6] & 0xff) << 8)
-				| (((long) this.memory[this.offset + index + 7] & 0xff) << 0);
+			if (this.memory != null) {
+				return (((long) this.memory[this.offset + index + 0] & 0xff) << 56)
+					| (((long) this.memory[this.offset + index + 1] & 0xff) << 48)
+					| (((long) this.memory[this.offset + index + 2] & 0xff) << 40)
+					| (((long) this.memory[this.offset + index + 3] & 0xff) << 32)
+					| (((long) this.memory[this.offset + index + 4] & 0xff) << 24)
+					| (((long) this.memory[this.offset + index + 5] & 0xff) << 16)
+					| (((long) this.memory[this.offset + index + 6] & 0xff) << 8)
+					| (((long) this.memory[this.offset + index + 7] & 0xff) << 0);
+			} else {
+				return this.offHeapMemory.getLong(index);
+			}
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -522,14 +741,18 @@ public class MemorySegment
 	 */
 	public final MemorySegment putLong(int index, long value) {
 		if (index >= 0 && index < this.size - 7) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 56);
-			this.memory[this.offset + index + 1] = (byte) (value >> 48);
-			this.memory[this.offset + index + 2] = (byte) (value >> 40);
-			this.memory[this.offset + index + 3] = (byte) (value >> 32);
-			this.memory[this.offset + index + 4] = (byte) (value >> 24);
-			this.memory[this.offset + index + 5] = (byte) (value >> 16);
-			this.memory[this.offset + index + 6] = (byte) (value >> 8);
-			this.memory[this.offset + index + 7] = (byte) value;
+			if (this.memory != null) {
+				this.memory[this.offset + index + 0] = (byte) (value >> 56);
+				this.memory[this.offset + index + 1] = (byte) (value >> 48);
+				this.memory[this.offset + index + 2] = (byte) (value >> 40);
+				this.memory[this.offset + index + 3] = (byte) (value >> 32);
+				this.memory[this.offset + index + 4] = (byte) (value >> 24);
+				this.memory[this.offset + index + 5] = (byte) (value >> 16);
+				this.memory[this.offset + index + 6] = (byte) (value >> 8);
+				this.memory[this.offset + index + 7] = (byte) value;
+			} else {
+				this.offHeapMemory.putLong(index, value);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
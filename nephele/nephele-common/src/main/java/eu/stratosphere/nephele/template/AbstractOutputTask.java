@@ -22,4 +22,31 @@ package eu.stratosphere.nephele.template;
  */
 public abstract class AbstractOutputTask extends AbstractInvokable {
 
+	/**
+	 * The key under which the job manager marks the task configuration of a speculative backup attempt.
+	 */
+	public static final String SPECULATIVE_ATTEMPT_KEY = "nephele.speculative.attempt";
+
+	/**
+	 * Indicates whether this output task commits its output atomically and can therefore be executed speculatively. An
+	 * output task which returns <code>true</code> must make sure that a speculative attempt (see
+	 * {@link #isSpeculativeAttempt()}) which is canceled before it finishes leaves no output behind, and that a
+	 * speculative attempt which finishes replaces the output of the original attempt as a whole.
+	 * 
+	 * @return <code>true</code> if this output task commits its output atomically, <code>false</code> otherwise
+	 */
+	public boolean commitsOutputAtomically() {
+
+		return false;
+	}
+
+	/**
+	 * Checks whether this task is executed as a speculative backup attempt of another task.
+	 * 
+	 * @return <code>true</code> if this task is a speculative backup attempt, <code>false</code> otherwise
+	 */
+	public final boolean isSpeculativeAttempt() {
+
+		return getTaskConfiguration().getBoolean(SPECULATIVE_ATTEMPT_KEY, false);
+	}
 }
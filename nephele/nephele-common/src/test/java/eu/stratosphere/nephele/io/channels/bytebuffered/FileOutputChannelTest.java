@@ -18,6 +18,9 @@ package eu.stratosphere.nephele.io.channels.bytebuffered;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -133,4 +136,49 @@ public class FileOutputChannelTest {
 		}
 	}
 
+	/**
+	 * This test checks that a partially filled write buffer is only shipped by a timed flush once its data has waited
+	 * longer than the maximum buffer latency.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void flushIfOlderThanTest() throws IOException, InterruptedException {
+
+		final StringRecord record = new StringRecord("abc");
+		this.uncompressedDataBuffer = mock(Buffer.class);
+
+		@SuppressWarnings("unchecked")
+		final OutputGate<StringRecord> outGate = mock(OutputGate.class);
+		final ByteBufferedOutputChannelBroker outputBroker = mock(ByteBufferedOutputChannelBroker.class);
+		when(outputBroker.requestEmptyWriteBuffer()).thenReturn(this.uncompressedDataBuffer);
+
+		// The record does not fill the write buffer
+		when(this.uncompressedDataBuffer.remaining()).thenReturn(16);
+
+		final FileOutputChannel<StringRecord> fileOutputChannel = new FileOutputChannel<StringRecord>(outGate, 1,
+			new ChannelID(), new ChannelID(), CompressionLevel.NO_COMPRESSION);
+		fileOutputChannel.setByteBufferedOutputChannelBroker(outputBroker);
+
+		Whitebox.setInternalState(fileOutputChannel, "serializationBuffer", this.serializationBuffer);
+
+		// Nothing to flush yet
+		assertEquals(false, fileOutputChannel.flushIfOlderThan(System.currentTimeMillis(), 1L));
+
+		fileOutputChannel.writeRecord(record);
+
+		// The data has not been waiting long enough
+		assertEquals(false, fileOutputChannel.flushIfOlderThan(System.currentTimeMillis(), 60000L));
+		verify(outputBroker, never()).releaseWriteBuffer(this.uncompressedDataBuffer);
+
+		// The data has exceeded the maximum buffer latency
+		assertEquals(true, fileOutputChannel.flushIfOlderThan(System.currentTimeMillis() + 100L, 100L));
+		verify(outputBroker, times(1)).releaseWriteBuffer(this.uncompressedDataBuffer);
+
+		// The buffer has been shipped, so there is nothing left to flush
+		assertEquals(false, fileOutputChannel.flushIfOlderThan(System.currentTimeMillis() + 100L, 100L));
+		verify(outputBroker, times(1)).releaseWriteBuffer(this.uncompressedDataBuffer);
+	}
+
 }
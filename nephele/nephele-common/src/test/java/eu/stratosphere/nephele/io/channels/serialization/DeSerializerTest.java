@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.io.channels.serialization;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -24,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
@@ -33,6 +35,7 @@ import org.junit.Test;
 
 import eu.stratosphere.nephele.io.channels.DefaultDeserializer;
 import eu.stratosphere.nephele.io.channels.SerializationBuffer;
+import eu.stratosphere.nephele.io.channels.SharedSerializationBuffer;
 
 
 /**
@@ -191,6 +194,111 @@ public class DeSerializerTest
 		}
 	}
 	
+	@Test
+	public void testRandomTypesSharedByChannels()
+	{
+		try {
+			final Random rnd = this.rnd;
+			final int NUM_TYPES = 200000;
+			
+			final ArrayList<SerializationTestType> types = new ArrayList<SerializationTestType>(NUM_TYPES);
+			for (int i = 0; i < NUM_TYPES; i++) {
+				types.add(TYPE_FACTORIES[rnd.nextInt(TYPE_FACTORIES.length)].getRandom(rnd));
+			}
+			
+			// channels with different buffer sizes, such that records are left over at different times
+			final int[] bufferSizes = { 2048, 512 * 7, 1013 };
+			final PipeChannel[] channels = new PipeChannel[bufferSizes.length];
+			final ArrayList<SerializationBuffer<SerializationTestType>> serBuffers = 
+					new ArrayList<SerializationBuffer<SerializationTestType>>();
+			final ArrayList<DefaultDeserializer<SerializationTestType>> deserBuffers = 
+					new ArrayList<DefaultDeserializer<SerializationTestType>>();
+			final ArrayList<ArrayDeque<SerializationTestType>> elements = new ArrayList<ArrayDeque<SerializationTestType>>();
+			for (int c = 0; c < channels.length; c++) {
+				channels[c] = new PipeChannel(bufferSizes[c]);
+				serBuffers.add(new SerializationBuffer<SerializationTestType>());
+				deserBuffers.add(new DefaultDeserializer<SerializationTestType>(null));
+				elements.add(new ArrayDeque<SerializationTestType>());
+			}
+			
+			final ArrayList<SharedSerializationBuffer<SerializationTestType>> sharedBuffers = 
+					new ArrayList<SharedSerializationBuffer<SerializationTestType>>();
+			
+			for (SerializationTestType type : types) {
+				// serialize the record once into a shared buffer that is not referenced any more
+				SharedSerializationBuffer<SerializationTestType> shared = null;
+				for (SharedSerializationBuffer<SerializationTestType> candidate : sharedBuffers) {
+					if (!candidate.isShared()) {
+						shared = candidate;
+						break;
+					}
+				}
+				if (shared == null) {
+					shared = new SharedSerializationBuffer<SerializationTestType>();
+					sharedBuffers.add(shared);
+				}
+				shared.serialize(type);
+				
+				for (int c = 0; c < channels.length; c++) {
+					final SerializationBuffer<SerializationTestType> serBuffer = serBuffers.get(c);
+					
+					// drain the data left from the previous record, as the output channels do
+					while (serBuffer.dataLeftFromPreviousSerialization()) {
+						serBuffer.read(channels[c]);
+						if (serBuffer.dataLeftFromPreviousSerialization()) {
+							drain(channels[c], deserBuffers.get(c), elements.get(c));
+						}
+					}
+					
+					serBuffer.serialize(shared);
+					elements.get(c).addLast(type);
+					serBuffer.read(channels[c]);
+					if (serBuffer.dataLeftFromPreviousSerialization()) {
+						drain(channels[c], deserBuffers.get(c), elements.get(c));
+					}
+				}
+			}
+			
+			for (int c = 0; c < channels.length; c++) {
+				final SerializationBuffer<SerializationTestType> serBuffer = serBuffers.get(c);
+				while (serBuffer.dataLeftFromPreviousSerialization()) {
+					serBuffer.read(channels[c]);
+					drain(channels[c], deserBuffers.get(c), elements.get(c));
+				}
+				drain(channels[c], deserBuffers.get(c), elements.get(c));
+				assertEquals("Not all records have been received by channel " + c, 0, elements.get(c).size());
+			}
+			
+			// all shared buffers must have been released, and only few must have been needed
+			for (SharedSerializationBuffer<SerializationTestType> shared : sharedBuffers) {
+				assertFalse(shared.isShared());
+			}
+			assertEquals(2, sharedBuffers.size());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			fail("Test encountered an unexpected exception.");
+		}
+	}
+	
+	private static final void drain(PipeChannel channel, DefaultDeserializer<SerializationTestType> deserBuffer,
+			ArrayDeque<SerializationTestType> elements) throws Exception
+	{
+		channel.flip();
+		while (!elements.isEmpty()) {
+			final SerializationTestType reference = elements.pollFirst();
+			final SerializationTestType result = deserBuffer.readData(reference.getClass().newInstance(), channel);
+			if (result == null) {
+				// not yet complete, we need to break
+				elements.addFirst(reference);
+				break;
+			} else {
+				assertEquals("The deserialized element is not equal to the serialized element.", reference, result);
+			}
+		}
+		channel.clear();
+	}
+	
 	private static final void testSequenceOfTypes(Iterator<SerializationTestType> sequence, int bufferSize) throws Exception
 	{
 		final ArrayDeque<SerializationTestType> elements = new ArrayDeque<SerializationTestType>(512);
@@ -0,0 +1,143 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.services.iomanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the block compression codecs used for compressed channels.
+ */
+public class BlockCompressionCodecTest
+{
+	private static final long SEED = 0x5a9c1e7d4b3f2018L;
+	
+	private static final int BLOCK_SIZE = 64 * 1024;
+	
+	@Test
+	public void testSnappyRoundTrip() throws IOException
+	{
+		testRoundTrip(new SnappyBlockCodec());
+	}
+	
+	@Test
+	public void testDeflateRoundTrip() throws IOException
+	{
+		testRoundTrip(new DeflateBlockCodec());
+	}
+	
+	@Test
+	public void testSnappyCompressesRedundantData()
+	{
+		final SnappyBlockCodec codec = new SnappyBlockCodec();
+		final byte[] data = createRecordLikeData(new Random(SEED), BLOCK_SIZE);
+		final byte[] compressed = new byte[codec.getMaxCompressedLength(data.length)];
+		
+		final int len = codec.compress(data, 0, data.length, compressed, 0);
+		assertTrue("Snappy did not compress redundant data: " + len + " bytes.", len < data.length / 2);
+	}
+	
+	@Test
+	public void testSnappyRejectsCorruptData() throws IOException
+	{
+		final SnappyBlockCodec codec = new SnappyBlockCodec();
+		final byte[] data = createRecordLikeData(new Random(SEED), 4096);
+		final byte[] compressed = new byte[codec.getMaxCompressedLength(data.length)];
+		final int len = codec.compress(data, 0, data.length, compressed, 0);
+		
+		// the decompressed data must not exceed the given maximal length
+		try {
+			codec.decompress(compressed, 0, len, new byte[data.length - 1], 0, data.length - 1);
+			fail("Decompression did not detect the too small target.");
+		}
+		catch (IOException ioex) {}
+		
+		// truncated data must be detected
+		try {
+			codec.decompress(compressed, 0, len / 2, new byte[data.length], 0, data.length);
+			fail("Decompression did not detect the truncated data.");
+		}
+		catch (IOException ioex) {}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private static void testRoundTrip(BlockCompressionCodec codec) throws IOException
+	{
+		final Random rnd = new Random(SEED);
+		final int[] lengths = { 0, 1, 3, 4, 5, 17, 100, 4095, BLOCK_SIZE };
+		
+		for (int len : lengths) {
+			// random data, redundant data and constant data
+			checkRoundTrip(codec, createRandomData(rnd, len));
+			checkRoundTrip(codec, createRecordLikeData(rnd, len));
+			checkRoundTrip(codec, new byte[len]);
+		}
+		
+		// data at non-zero offsets
+		final byte[] data = createRecordLikeData(rnd, BLOCK_SIZE);
+		final byte[] compressed = new byte[codec.getMaxCompressedLength(BLOCK_SIZE) + 13];
+		final int clen = codec.compress(data, 7, BLOCK_SIZE - 100, compressed, 13);
+		final byte[] target = new byte[BLOCK_SIZE];
+		assertEquals(BLOCK_SIZE - 100, codec.decompress(compressed, 13, clen, target, 5, BLOCK_SIZE - 5));
+		for (int i = 0; i < BLOCK_SIZE - 100; i++) {
+			assertEquals(data[i + 7], target[i + 5]);
+		}
+	}
+	
+	private static void checkRoundTrip(BlockCompressionCodec codec, byte[] data) throws IOException
+	{
+		final byte[] compressed = new byte[codec.getMaxCompressedLength(data.length)];
+		final int clen = codec.compress(data, 0, data.length, compressed, 0);
+		assertTrue(clen <= compressed.length);
+		
+		final byte[] target = new byte[data.length];
+		assertEquals(data.length, codec.decompress(compressed, 0, clen, target, 0, target.length));
+		assertArrayEquals(data, target);
+	}
+	
+	private static byte[] createRandomData(Random rnd, int len)
+	{
+		final byte[] data = new byte[len];
+		rnd.nextBytes(data);
+		return data;
+	}
+	
+	private static byte[] createRecordLikeData(Random rnd, int len)
+	{
+		// records with small integer keys and values from a limited vocabulary
+		final String[] words = { "stratosphere", "nephele", "pact", "record", "channel", "block", "sort" };
+		final byte[] data = new byte[len];
+		int pos = 0;
+		while (pos < len) {
+			final int key = rnd.nextInt(1000);
+			final String word = words[rnd.nextInt(words.length)];
+			final String rec = key + "|" + word + "|";
+			for (int i = 0; i < rec.length() && pos < len; i++) {
+				data[pos++] = (byte) rec.charAt(i);
+			}
+		}
+		return data;
+	}
+}
@@ -0,0 +1,143 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+
+/**
+ * A checkpoint buffer provider hands out a small, fixed number of memory buffers which are allocated outside of the
+ * global buffer pool. It is used to back the compression libraries while checkpoints are written or replayed, so the
+ * memory required for checkpoint compression is bounded and does not compete with the network buffers.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class CheckpointBufferProvider implements BufferProvider, MemoryBufferPoolConnector {
+
+	/**
+	 * The buffers which are currently available.
+	 */
+	private final Queue<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+
+	/**
+	 * The size of each buffer in bytes.
+	 */
+	private final int maximumBufferSize;
+
+	/**
+	 * Constructs a new checkpoint buffer provider.
+	 * 
+	 * @param numberOfBuffers
+	 *        the number of buffers to allocate
+	 * @param maximumBufferSize
+	 *        the size of each buffer in bytes
+	 */
+	CheckpointBufferProvider(final int numberOfBuffers, final int maximumBufferSize) {
+
+		this.maximumBufferSize = maximumBufferSize;
+
+		for (int i = 0; i < numberOfBuffers; ++i) {
+			this.buffers.add(ByteBuffer.allocateDirect(maximumBufferSize));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) throws IOException {
+
+		if (minimumSizeOfBuffer > this.maximumBufferSize) {
+			throw new IllegalArgumentException("Buffer of " + minimumSizeOfBuffer
+				+ " bytes is requested, but maximum buffer size is " + this.maximumBufferSize);
+		}
+
+		final ByteBuffer byteBuffer = this.buffers.poll();
+		if (byteBuffer == null) {
+			return null;
+		}
+
+		return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) throws IOException {
+
+		final Buffer buffer = requestEmptyBuffer(minimumSizeOfBuffer);
+		if (buffer == null) {
+			throw new IllegalStateException("All checkpoint buffers are in use");
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getMaximumBufferSize() {
+
+		return this.maximumBufferSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isShared() {
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reportAsynchronousEvent() {
+
+		// Nothing to do here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void recycle(final ByteBuffer byteBuffer) {
+
+		this.buffers.add(byteBuffer);
+	}
+}
@@ -0,0 +1,185 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.CompressionLoader;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * A checkpoint compressor compresses the data of the buffers written to a checkpoint with one of the compression
+ * libraries available to Nephele. The compressed data is written directly into the write buffer of the
+ * {@link WriteThread}, so apart from copying the data to be compressed into a private buffer, no further copies are
+ * required.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class CheckpointCompressor {
+
+	/**
+	 * The log object used to report problems.
+	 */
+	private static final Log LOG = LogFactory.getLog(CheckpointCompressor.class);
+
+	/**
+	 * Connector for buffers which wrap a section of a foreign byte buffer and must therefore never be recycled.
+	 */
+	private static final MemoryBufferPoolConnector NO_OP_CONNECTOR = new MemoryBufferPoolConnector() {
+
+		@Override
+		public void recycle(final ByteBuffer byteBuffer) {
+			// Nothing to do here
+		}
+	};
+
+	private final Compressor compressor;
+
+	private final CompressionBufferProvider compressionBufferProvider;
+
+	private final int maximumBufferSize;
+
+	/**
+	 * The private buffer the data to be compressed is copied to.
+	 */
+	private MemoryBuffer uncompressedBuffer;
+
+	private CheckpointCompressor(final Compressor compressor,
+			final CompressionBufferProvider compressionBufferProvider, final MemoryBuffer uncompressedBuffer,
+			final int maximumBufferSize) {
+
+		this.compressor = compressor;
+		this.compressionBufferProvider = compressionBufferProvider;
+		this.uncompressedBuffer = uncompressedBuffer;
+		this.maximumBufferSize = maximumBufferSize;
+	}
+
+	/**
+	 * Creates a new checkpoint compressor for the given compression level.
+	 * 
+	 * @param compressionLevel
+	 *        the compression level to use
+	 * @param maximumBufferSize
+	 *        the maximum size of the buffers to be compressed in bytes
+	 * @return the checkpoint compressor or <code>null</code> if no compression is requested or the compression library
+	 *         could not be loaded
+	 */
+	static CheckpointCompressor create(final CompressionLevel compressionLevel, final int maximumBufferSize) {
+
+		if (compressionLevel == CompressionLevel.NO_COMPRESSION) {
+			return null;
+		}
+
+		final CheckpointBufferProvider bufferProvider = new CheckpointBufferProvider(2, maximumBufferSize);
+		final CompressionBufferProvider compressionBufferProvider = new CompressionBufferProvider(bufferProvider,
+			false);
+
+		Compressor compressor = null;
+		try {
+			compressor = CompressionLoader.getCompressorByCompressionLevel(compressionLevel,
+				compressionBufferProvider);
+		} catch (RuntimeException e) {
+			LOG.error(StringUtils.stringifyException(e));
+		}
+
+		if (compressor == null) {
+			LOG.error("Cannot load compressor for " + compressionLevel + ", writing uncompressed checkpoints");
+			compressionBufferProvider.shutdown();
+			return null;
+		}
+
+		// Only compressors which operate on the buffers of the buffer provider can write directly into the target
+		if (!(compressor instanceof AbstractCompressor)) {
+			LOG.error("Compressor for " + compressionLevel + " cannot be used for checkpoints, "
+				+ "writing uncompressed checkpoints");
+			compressor.shutdown();
+			return null;
+		}
+
+		try {
+			return new CheckpointCompressor(compressor, compressionBufferProvider,
+				(MemoryBuffer) bufferProvider.requestEmptyBuffer(maximumBufferSize), maximumBufferSize);
+		} catch (IOException ioe) {
+			compressor.shutdown();
+			LOG.error(StringUtils.stringifyException(ioe));
+			return null;
+		}
+	}
+
+	/**
+	 * Compresses the content of the given buffer and writes the compressed data to the given byte buffer starting at
+	 * its current position. The position of the byte buffer is advanced by the number of compressed bytes.
+	 * 
+	 * @param buffer
+	 *        the memory-backed buffer whose content shall be compressed
+	 * @param target
+	 *        the byte buffer to write the compressed data to, must have at least the maximum buffer size remaining
+	 * @return the number of compressed bytes written to the target buffer
+	 * @throws IOException
+	 *         thrown if an error occurs during the compression
+	 */
+	int compress(final MemoryBuffer buffer, final ByteBuffer target) throws IOException {
+
+		if (target.remaining() < this.maximumBufferSize) {
+			throw new IllegalArgumentException("Target buffer has only " + target.remaining() + " bytes remaining");
+		}
+
+		final ByteBuffer src = buffer.getByteBuffer().duplicate();
+		src.position(0);
+		src.limit(buffer.size());
+
+		this.uncompressedBuffer.reset(this.maximumBufferSize);
+		this.uncompressedBuffer.write(src);
+
+		// Let the compression library write directly into the target buffer by exchanging its compression buffer
+		final Buffer targetBuffer = BufferFactory.createFromMemory(this.maximumBufferSize, target.slice(),
+			NO_OP_CONNECTOR);
+		final MemoryBuffer previousCompressionBuffer = this.compressionBufferProvider.lockCompressionBuffer();
+		this.compressionBufferProvider.releaseCompressionBuffer((MemoryBuffer) targetBuffer);
+
+		final MemoryBuffer compressedBuffer = (MemoryBuffer) this.compressor.compress(this.uncompressedBuffer);
+
+		// The uncompressed buffer now serves as the library's compression buffer, so swap the roles
+		this.uncompressedBuffer = previousCompressionBuffer;
+
+		final int numberOfCompressedBytes = compressedBuffer.getByteBuffer().position();
+		target.position(target.position() + numberOfCompressedBytes);
+
+		return numberOfCompressedBytes;
+	}
+
+	/**
+	 * Releases the resources allocated by this compressor.
+	 */
+	void shutdown() {
+
+		this.uncompressedBuffer.recycleBuffer();
+		this.compressor.shutdown();
+	}
+}
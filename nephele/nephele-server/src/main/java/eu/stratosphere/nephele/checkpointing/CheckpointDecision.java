@@ -15,17 +15,44 @@
 
 package eu.stratosphere.nephele.checkpointing;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.execution.RuntimeEnvironment;
+import eu.stratosphere.nephele.io.InputGate;
+import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.taskmanager.runtime.RuntimeTask;
+import eu.stratosphere.nephele.types.Record;
 
 public final class CheckpointDecision {
 
 	private static final Log LOG = LogFactory.getLog(CheckpointDecision.class);
 
+	/**
+	 * The configuration key for the rate in MB/s at which a task is expected to materialize its checkpoint data.
+	 */
+	public static final String WRITE_RATE_KEY = "checkpoint.dynamic.writeRate";
+
+	/**
+	 * The configuration key for the rate in MB/s at which a task is expected to consume its input data again when it
+	 * is recomputed.
+	 */
+	public static final String READ_RATE_KEY = "checkpoint.dynamic.readRate";
+
+	private static final int DEFAULT_WRITE_RATE = 50;
+
+	private static final int DEFAULT_READ_RATE = 100;
+
+	private static final long BYTES_PER_MB = 1024L * 1024L;
+
+	private CheckpointDecision() {
+	}
+
 	public static boolean getDecision(final RuntimeTask task) {
 
 		switch (CheckpointUtils.getCheckpointMode()) {
@@ -35,6 +62,8 @@ public final class CheckpointDecision {
 			return true;
 		case NETWORK:
 			return isNetworkTask(task);
+		case DYNAMIC:
+			return getDynamicDecision(task);
 		}
 
 		return false;
@@ -54,4 +83,102 @@ public final class CheckpointDecision {
 
 		return false;
 	}
+
+	/**
+	 * Decides whether materializing the output the given task has produced so far is cheaper than recomputing it in
+	 * case of a failure. The decision is based on the CPU time the task has consumed so far as well as on the amount
+	 * of data it has read and written.
+	 * 
+	 * @param task
+	 *        the task to decide on
+	 * @return <code>true</code> if the task's output shall be checkpointed, <code>false</code> otherwise
+	 */
+	private static boolean getDynamicDecision(final RuntimeTask task) {
+
+		final RuntimeEnvironment environment = task.getRuntimeEnvironment();
+
+		long inputBytes = 0L;
+		for (int i = 0; i < environment.getNumberOfInputGates(); ++i) {
+			final InputGate<? extends Record> inputGate = environment.getInputGate(i);
+			for (int j = 0; j < inputGate.getNumberOfInputChannels(); ++j) {
+				inputBytes += inputGate.getInputChannel(j).getAmountOfDataTransmitted();
+			}
+		}
+
+		long outputBytes = 0L;
+		for (int i = 0; i < environment.getNumberOfOutputGates(); ++i) {
+			final OutputGate<? extends Record> outputGate = environment.getOutputGate(i);
+			for (int j = 0; j < outputGate.getNumberOfOutputChannels(); ++j) {
+				outputBytes += outputGate.getOutputChannel(j).getAmountOfDataTransmitted();
+			}
+		}
+
+		final long cpuTime = getCPUTime(environment.getExecutingThread());
+
+		final boolean decision = getDynamicDecision(cpuTime, inputBytes, outputBytes,
+			GlobalConfiguration.getInteger(READ_RATE_KEY, DEFAULT_READ_RATE),
+			GlobalConfiguration.getInteger(WRITE_RATE_KEY, DEFAULT_WRITE_RATE));
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Checkpoint decision for " + environment.getTaskNameWithIndex() + " is " + decision
+				+ " (CPU time " + cpuTime + " ms, " + inputBytes + " bytes in, " + outputBytes + " bytes out)");
+		}
+
+		return decision;
+	}
+
+	/**
+	 * Compares the estimated cost of materializing a task's output with the estimated cost of recomputing it. The
+	 * cost of materializing is the time required to write the output data at the given write rate. The cost of
+	 * recomputing is the CPU time the task has consumed so far plus the time required to consume its input data again
+	 * at the given read rate. As a result, tasks which reduce their data volume or spend much CPU time per byte are
+	 * checkpointed while cheap tasks which inflate their data volume are not.
+	 * 
+	 * @param cpuTime
+	 *        the CPU time in milliseconds the task has consumed so far
+	 * @param inputBytes
+	 *        the number of bytes the task has read so far
+	 * @param outputBytes
+	 *        the number of bytes the task has written so far
+	 * @param readRate
+	 *        the rate in MB/s at which input data is consumed again on recomputation
+	 * @param writeRate
+	 *        the rate in MB/s at which checkpoint data is materialized
+	 * @return <code>true</code> if materializing the output is cheaper than recomputing it, <code>false</code>
+	 *         otherwise
+	 */
+	static boolean getDynamicDecision(final long cpuTime, final long inputBytes, final long outputBytes,
+			final int readRate, final int writeRate) {
+
+		if (readRate <= 0 || writeRate <= 0) {
+			throw new IllegalArgumentException("Read and write rate must be greater than zero");
+		}
+
+		final double materializationCost = (double) outputBytes * 1000.0d / (writeRate * BYTES_PER_MB);
+		final double recomputationCost = (double) cpuTime + (double) inputBytes * 1000.0d / (readRate * BYTES_PER_MB);
+
+		return (materializationCost <= recomputationCost);
+	}
+
+	/**
+	 * Returns the CPU time the given thread has consumed so far.
+	 * 
+	 * @param thread
+	 *        the thread to return the CPU time for
+	 * @return the CPU time in milliseconds or <code>0</code> if the CPU time cannot be determined
+	 */
+	private static long getCPUTime(final Thread thread) {
+
+		final ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+		if (!tmx.isThreadCpuTimeSupported() || !tmx.isThreadCpuTimeEnabled()) {
+			return 0L;
+		}
+
+		final long cpuTime = tmx.getThreadCpuTime(thread.getId());
+		if (cpuTime < 0L) {
+			return 0L;
+		}
+
+		return cpuTime / 1000000L;
+	}
 }
@@ -0,0 +1,123 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.compression.AbstractDecompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.CompressionLoader;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+
+/**
+ * A checkpoint decompressor decompresses the buffers read from a compressed checkpoint. The decompressed data is
+ * written directly into the buffer that is later handed to the output channel, so the compressed data is the only
+ * data which is read into a private buffer.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class CheckpointDecompressor {
+
+	private final Decompressor decompressor;
+
+	private final CompressionBufferProvider compressionBufferProvider;
+
+	/**
+	 * The private buffer the compressed data is read into.
+	 */
+	private MemoryBuffer compressedBuffer;
+
+	/**
+	 * Constructs a new checkpoint decompressor.
+	 * 
+	 * @param compressionLevel
+	 *        the compression level the checkpoint has been written with
+	 * @param maximumBufferSize
+	 *        the maximum size of the buffers to be decompressed in bytes
+	 * @throws IOException
+	 *         thrown if the compression library for the given compression level cannot be loaded
+	 */
+	CheckpointDecompressor(final CompressionLevel compressionLevel, final int maximumBufferSize)
+			throws IOException {
+
+		final CheckpointBufferProvider bufferProvider = new CheckpointBufferProvider(2, maximumBufferSize);
+		this.compressionBufferProvider = new CompressionBufferProvider(bufferProvider, false);
+
+		Decompressor decompressor = null;
+		try {
+			decompressor = CompressionLoader.getDecompressorByCompressionLevel(compressionLevel,
+				this.compressionBufferProvider);
+		} catch (RuntimeException e) {
+			throw new IOException(e.getMessage());
+		}
+
+		if (decompressor == null) {
+			this.compressionBufferProvider.shutdown();
+			throw new IOException("Cannot load decompressor for " + compressionLevel);
+		}
+
+		// Only decompressors which operate on the buffers of the buffer provider can write directly into the target
+		if (!(decompressor instanceof AbstractDecompressor)) {
+			decompressor.shutdown();
+			throw new IOException("Decompressor for " + compressionLevel + " cannot be used for checkpoints");
+		}
+
+		this.decompressor = decompressor;
+		this.compressedBuffer = (MemoryBuffer) bufferProvider.requestEmptyBuffer(maximumBufferSize);
+	}
+
+	/**
+	 * Decompresses the content of the given buffer into the given target buffer. The source buffer is recycled.
+	 * 
+	 * @param compressedData
+	 *        the buffer containing the compressed data
+	 * @param target
+	 *        the empty memory buffer to write the decompressed data to
+	 * @return the target buffer, now in read mode and containing the decompressed data
+	 * @throws IOException
+	 *         thrown if an error occurs during the decompression
+	 */
+	Buffer decompress(final Buffer compressedData, final MemoryBuffer target) throws IOException {
+
+		this.compressedBuffer.reset(compressedData.size());
+		compressedData.copyToBuffer(this.compressedBuffer);
+		compressedData.recycleBuffer();
+
+		// Let the compression library write directly into the target buffer by exchanging its compression buffer
+		final MemoryBuffer previousCompressionBuffer = this.compressionBufferProvider.lockCompressionBuffer();
+		this.compressionBufferProvider.releaseCompressionBuffer(target);
+
+		final Buffer uncompressedBuffer = this.decompressor.decompress(this.compressedBuffer);
+
+		// The compressed buffer now serves as the library's compression buffer, so swap the roles
+		this.compressedBuffer = previousCompressionBuffer;
+
+		return uncompressedBuffer;
+	}
+
+	/**
+	 * Releases the resources allocated by this decompressor.
+	 */
+	void shutdown() {
+
+		this.compressedBuffer.recycleBuffer();
+		this.decompressor.shutdown();
+	}
+}
@@ -26,6 +26,7 @@ import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
 import eu.stratosphere.nephele.fs.FileSystem;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.io.channels.FileBufferManager;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
 import eu.stratosphere.nephele.util.StringUtils;
 
 public final class CheckpointUtils {
@@ -43,12 +44,29 @@ public final class CheckpointUtils {
 
 	public static final String COMPLETED_CHECKPOINT_SUFFIX = "_final";
 
+	/**
+	 * The configuration key for the compression level of checkpoints, either "none", "light", "medium" or "heavy".
+	 */
+	public static final String COMPRESSION_LEVEL_KEY = "checkpoint.compression";
+
+	/**
+	 * The configuration key for the maximum number of envelopes queued for being written to a checkpoint.
+	 */
+	public static final String WRITE_QUEUE_CAPACITY_KEY = "checkpoint.writeQueueCapacity";
+
+	/**
+	 * The configuration key for the maximum number of envelopes written to a checkpoint in a single batch.
+	 */
+	public static final String WRITE_BATCH_SIZE_KEY = "checkpoint.writeBatchSize";
+
 	private static Path LOCAL_CHECKPOINT_PATH = null;
 
 	private static Path DISTRIBUTED_CHECKPOINT_PATH = null;
 
 	private static CheckpointMode CHECKPOINT_MODE = null;
 
+	private static CompressionLevel COMPRESSION_LEVEL = null;
+
 	private CheckpointUtils() {
 	}
 
@@ -224,6 +242,8 @@ public final class CheckpointUtils {
 				CHECKPOINT_MODE = CheckpointMode.ALWAYS;
 			} else if ("network".equals(mode)) {
 				CHECKPOINT_MODE = CheckpointMode.NETWORK;
+			} else if ("dynamic".equals(mode)) {
+				CHECKPOINT_MODE = CheckpointMode.DYNAMIC;
 			} else {
 				CHECKPOINT_MODE = CheckpointMode.NEVER;
 			}
@@ -232,6 +252,25 @@ public final class CheckpointUtils {
 		return CHECKPOINT_MODE;
 	}
 
+	public static CompressionLevel getCompressionLevel() {
+
+		if (COMPRESSION_LEVEL == null) {
+
+			final String level = GlobalConfiguration.getString(COMPRESSION_LEVEL_KEY, "none").toLowerCase();
+			if ("light".equals(level)) {
+				COMPRESSION_LEVEL = CompressionLevel.LIGHT_COMPRESSION;
+			} else if ("medium".equals(level)) {
+				COMPRESSION_LEVEL = CompressionLevel.MEDIUM_COMPRESSION;
+			} else if ("heavy".equals(level)) {
+				COMPRESSION_LEVEL = CompressionLevel.HEAVY_COMPRESSION;
+			} else {
+				COMPRESSION_LEVEL = CompressionLevel.NO_COMPRESSION;
+			}
+		}
+
+		return COMPRESSION_LEVEL;
+	}
+
 	public static boolean allowDistributedCheckpoints() {
 
 		return false;
@@ -48,6 +48,11 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 	 */
 	private static final Log LOG = LogFactory.getLog(EphemeralCheckpoint.class);
 
+	/**
+	 * The number of envelopes after which a dynamic checkpoint decision is revised.
+	 */
+	private static final int REVISION_INTERVAL = 128;
+
 	/**
 	 * The enveloped which are currently queued until the state of the checkpoint is decided.
 	 */
@@ -93,6 +98,16 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 	 */
 	private volatile boolean asyncronousCheckpointDecisionRequested = false;
 
+	/**
+	 * Stores whether the checkpoint decision has been made dynamically and may therefore be revised later on.
+	 */
+	private final boolean revisable;
+
+	/**
+	 * The number of envelopes written to the checkpoint since the checkpoint decision has last been revised.
+	 */
+	private int numberOfEnvelopesSinceRevision = 0;
+
 	/**
 	 * Constructs a new ephemeral checkpoint.
 	 * 
@@ -111,6 +126,7 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 
 		this.checkpointingDecision = (ephemeral ? CheckpointingDecisionState.UNDECIDED
 			: CheckpointingDecisionState.CHECKPOINTING);
+		this.revisable = (ephemeral && CheckpointUtils.getCheckpointMode() == CheckpointMode.DYNAMIC);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Created checkpoint for vertex " + task.getVertexID() + ", state " + this.checkpointingDecision);
@@ -186,15 +202,45 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 			this.queuedEnvelopes.add(dup);
 
 			if (this.asyncronousCheckpointDecisionRequested) {
-				// TODO: Move decision logic here
-				setCheckpointDecisionSynchronously(true);
+				this.asyncronousCheckpointDecisionRequested = false;
+				setCheckpointDecisionSynchronously(CheckpointDecision.getDecision(this.task));
 			}
 
 		} else {
 			this.writeThread.write(dup);
+
+			if (this.revisable) {
+				if (this.asyncronousCheckpointDecisionRequested
+					|| ++this.numberOfEnvelopesSinceRevision >= REVISION_INTERVAL) {
+					this.asyncronousCheckpointDecisionRequested = false;
+					this.numberOfEnvelopesSinceRevision = 0;
+					reviseCheckpointDecision();
+				}
+			}
 		}
 	}
 
+	/**
+	 * Checks if materializing the task's output is still cheaper than recomputing it. If not, the checkpoint written
+	 * so far is discarded and no further data is written to it.
+	 */
+	private void reviseCheckpointDecision() {
+
+		if (CheckpointDecision.getDecision(this.task)) {
+			return;
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Revoking checkpoint for vertex " + this.task.getVertexID());
+		}
+
+		this.checkpointingDecision = CheckpointingDecisionState.NO_CHECKPOINTING;
+		this.writeThread.cancelAndDestroy();
+		this.writeThread = null;
+		CheckpointUtils.removeCheckpoint(this.task.getVertexID());
+		this.task.checkpointStateChanged(CheckpointState.NONE);
+	}
+
 	public boolean isUndecided() {
 
 		return (this.checkpointingDecision == CheckpointingDecisionState.UNDECIDED);
@@ -203,7 +249,7 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 	public boolean hasDataLeft() throws IOException, InterruptedException {
 
 		if (isUndecided()) {
-			setCheckpointDecisionSynchronously(true);
+			setCheckpointDecisionSynchronously(CheckpointDecision.getDecision(this.task));
 		}
 
 		if (this.writeThread == null) {
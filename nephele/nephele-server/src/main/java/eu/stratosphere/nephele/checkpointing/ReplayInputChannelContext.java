@@ -171,6 +171,15 @@ final class ReplayInputChannelContext implements InputChannelContext {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void activateCredits() {
+
+		this.encapsulatedContext.activateCredits();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -20,11 +20,13 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.execution.ExecutionObserver;
 import eu.stratosphere.nephele.execution.ExecutionState;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
@@ -33,6 +35,9 @@ import eu.stratosphere.nephele.fs.FileSystem;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.GlobalBufferPool;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.CheckpointDeserializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 import eu.stratosphere.nephele.util.StringUtils;
@@ -194,6 +199,7 @@ final class ReplayThread extends Thread {
 
 		Buffer firstDeserializedFileBuffer = null;
 		FileChannel fileChannel = null;
+		CheckpointDecompressor decompressor = null;
 
 		try {
 
@@ -235,6 +241,13 @@ final class ReplayThread extends Thread {
 
 				fileChannel = getFileChannel(fileSystem, metaDataFile);
 
+				// Each meta data file starts with the compression level of the checkpoint
+				final CompressionLevel compressionLevel = readCompressionLevel(fileChannel);
+				if (compressionLevel != CompressionLevel.NO_COMPRESSION && decompressor == null) {
+					decompressor = new CheckpointDecompressor(compressionLevel, GlobalConfiguration.getInteger(
+						"channel.network.bufferSizeInBytes", GlobalBufferPool.DEFAULT_BUFFER_SIZE_IN_BYTES));
+				}
+
 				while (true) {
 					try {
 						deserializer.read(fileChannel);
@@ -262,10 +275,22 @@ final class ReplayThread extends Thread {
 									continue;
 								}
 
-								final Buffer destBuffer = broker.requestEmptyBufferBlocking(srcBuffer.size());
-								srcBuffer.copyToBuffer(destBuffer);
-								transferEnvelope.setBuffer(destBuffer);
-								srcBuffer.recycleBuffer();
+								if (compressionLevel == CompressionLevel.NO_COMPRESSION) {
+									final Buffer destBuffer = broker.requestEmptyBufferBlocking(srcBuffer.size());
+									srcBuffer.copyToBuffer(destBuffer);
+									transferEnvelope.setBuffer(destBuffer);
+									srcBuffer.recycleBuffer();
+								} else {
+									final Buffer destBuffer = broker.requestEmptyBufferBlocking(broker
+										.getMaximumBufferSize());
+									if (!destBuffer.isBackedByMemory()) {
+										destBuffer.recycleBuffer();
+										srcBuffer.recycleBuffer();
+										throw new IOException("Cannot decompress checkpoint data into a file buffer");
+									}
+									transferEnvelope.setBuffer(decompressor.decompress(srcBuffer,
+										(MemoryBuffer) destBuffer));
+								}
 							}
 
 							broker.outputEnvelope(transferEnvelope);
@@ -294,9 +319,31 @@ final class ReplayThread extends Thread {
 				fileChannel.close();
 				fileChannel = null;
 			}
+			if (decompressor != null) {
+				decompressor.shutdown();
+				decompressor = null;
+			}
 		}
 	}
 
+	private static CompressionLevel readCompressionLevel(final FileChannel fileChannel) throws IOException {
+
+		final ByteBuffer header = ByteBuffer.allocate(1);
+		while (header.hasRemaining()) {
+			if (fileChannel.read(header) < 0) {
+				throw new EOFException("Meta data file does not contain a header");
+			}
+		}
+
+		final int ordinal = header.get(0);
+		final CompressionLevel[] compressionLevels = CompressionLevel.values();
+		if (ordinal < 0 || ordinal >= compressionLevels.length) {
+			throw new IOException("Meta data file contains unknown compression level " + ordinal);
+		}
+
+		return compressionLevels[ordinal];
+	}
+
 	private FileChannel getFileChannel(final FileSystem fs, final Path p) throws IOException {
 
 		// Bypass FileSystem API for local checkpoints
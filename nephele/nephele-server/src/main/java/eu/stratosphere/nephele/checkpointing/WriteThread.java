@@ -19,13 +19,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.event.task.EventList;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
@@ -34,11 +37,24 @@ import eu.stratosphere.nephele.fs.FileSystem;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.FileBuffer;
 import eu.stratosphere.nephele.io.channels.FileBufferManager;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedChannelCloseEvent;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.GlobalBufferPool;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.CheckpointSerializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
+/**
+ * The write thread writes the envelopes of a checkpoint to disk asynchronously. The number of envelopes queued for
+ * writing is bounded, so a task producing data faster than it can be written is slowed down instead of holding an
+ * increasing number of buffers. Queued envelopes are written in batches: the data of all memory-backed buffers of a
+ * batch is optionally compressed, collected in a write buffer and written to the checkpoint file with a single
+ * operation. The memory buffers are recycled as soon as their data has been collected.
+ * <p>
+ * This class is thread-safe.
+ */
 final class WriteThread extends Thread {
 
 	/**
@@ -51,8 +67,55 @@ final class WriteThread extends Thread {
 	 */
 	private static final int BUFFER_SIZE = 4096;
 
+	/**
+	 * The default maximum number of envelopes queued for being written.
+	 */
+	private static final int DEFAULT_WRITE_QUEUE_CAPACITY = 32;
+
+	/**
+	 * The default maximum number of envelopes written in a single batch.
+	 */
+	private static final int DEFAULT_WRITE_BATCH_SIZE = 8;
+
 	private final BlockingQueue<TransferEnvelope> queuedEnvelopes;
 
+	/**
+	 * The maximum number of envelopes written in a single batch.
+	 */
+	private final int writeBatchSize;
+
+	/**
+	 * The maximum size of a buffer in bytes.
+	 */
+	private final int maximumBufferSize;
+
+	/**
+	 * The buffer the data of a batch is collected in before it is written to disk.
+	 */
+	private final ByteBuffer writeBuffer;
+
+	/**
+	 * The positions of the collected buffer data inside the write buffer, indexed by the envelope's position in the
+	 * current batch.
+	 */
+	private final int[] writeBufferOffsets;
+
+	/**
+	 * The number of bytes of the collected buffer data, indexed by the envelope's position in the current batch or
+	 * <code>-1</code> if the envelope's buffer has not been collected in the write buffer.
+	 */
+	private final int[] writeBufferLengths;
+
+	/**
+	 * The compression level of the checkpoint.
+	 */
+	private final CompressionLevel compressionLevel;
+
+	/**
+	 * The compressor used to compress the buffer data or <code>null</code> if the checkpoint is not compressed.
+	 */
+	private final CheckpointCompressor compressor;
+
 	/**
 	 * The serializer to convert a transfer envelope into a byte stream.
 	 */
@@ -123,7 +186,19 @@ final class WriteThread extends Thread {
 		this.fileBufferManager = fileBufferManager;
 		this.vertexID = vertexID;
 		this.numberOfConnectedChannels = numberOfConnectedChannels;
-		this.queuedEnvelopes = new ArrayBlockingQueue<TransferEnvelope>(256);
+		this.queuedEnvelopes = new ArrayBlockingQueue<TransferEnvelope>(Math.max(1, GlobalConfiguration.getInteger(
+			CheckpointUtils.WRITE_QUEUE_CAPACITY_KEY, DEFAULT_WRITE_QUEUE_CAPACITY)));
+		this.writeBatchSize = Math.max(1, GlobalConfiguration.getInteger(CheckpointUtils.WRITE_BATCH_SIZE_KEY,
+			DEFAULT_WRITE_BATCH_SIZE));
+		this.maximumBufferSize = GlobalConfiguration.getInteger("channel.network.bufferSizeInBytes",
+			GlobalBufferPool.DEFAULT_BUFFER_SIZE_IN_BYTES);
+		this.writeBuffer = ByteBuffer.allocateDirect(this.writeBatchSize * this.maximumBufferSize);
+		this.writeBufferOffsets = new int[this.writeBatchSize];
+		this.writeBufferLengths = new int[this.writeBatchSize];
+
+		this.compressor = CheckpointCompressor.create(CheckpointUtils.getCompressionLevel(), this.maximumBufferSize);
+		this.compressionLevel = (this.compressor == null) ? CompressionLevel.NO_COMPRESSION : CheckpointUtils
+			.getCompressionLevel();
 
 		final boolean dist = CheckpointUtils.allowDistributedCheckpoints();
 
@@ -149,14 +224,17 @@ final class WriteThread extends Thread {
 	@Override
 	public void run() {
 
-		while (!this.isCanceled) {
+		final List<TransferEnvelope> batch = new ArrayList<TransferEnvelope>(this.writeBatchSize);
 
-			TransferEnvelope te = null;
+		while (!this.isCanceled) {
 
 			try {
-				te = this.queuedEnvelopes.take();
+				batch.add(this.queuedEnvelopes.take());
+				this.queuedEnvelopes.drainTo(batch, this.writeBatchSize - 1);
 
-				if (!writeToCheckpointAndRecycle(te)) {
+				final boolean moreDataExpected = writeToCheckpointAndRecycle(batch);
+				batch.clear();
+				if (!moreDataExpected) {
 					break;
 				}
 
@@ -167,6 +245,10 @@ final class WriteThread extends Thread {
 			}
 		}
 
+		if (this.compressor != null) {
+			this.compressor.shutdown();
+		}
+
 		if (this.firstSerializedFileBuffer != null) {
 			this.firstSerializedFileBuffer.recycleBuffer();
 			this.firstSerializedFileBuffer = null;
@@ -215,38 +297,122 @@ final class WriteThread extends Thread {
 	}
 
 	/**
-	 * Writes the given transfer envelope to the disk and afterwards recycles its resources. In case of an I/O error,
-	 * the method will save the IOException to ioException, recycle all resources all return <code>false</code>.
+	 * Writes the given batch of transfer envelopes to the disk and afterwards recycles their resources. In case of an
+	 * I/O error, the method will save the IOException to ioException, recycle all resources all return
+	 * <code>false</code>.
 	 * 
-	 * @param transferEnvelope
-	 *        the envelope to be written to disk
+	 * @param batch
+	 *        the batch of envelopes to be written to disk
 	 * @return <code>true</code> if more transfer envelopes are expected to follow, <code>false</code> otherwise
 	 */
-	private boolean writeToCheckpointAndRecycle(final TransferEnvelope transferEnvelope) {
+	private boolean writeToCheckpointAndRecycle(final List<TransferEnvelope> batch) {
 
-		Buffer buffer = transferEnvelope.getBuffer();
-		if (buffer != null) {
-			if (buffer.isBackedByMemory()) {
+		try {
+			writeBufferData(batch);
+		} catch (IOException ioe) {
+			this.ioException = ioe;
+			for (int i = 0; i < batch.size(); ++i) {
+				recycleTransferEnvelope(batch.get(i));
+			}
+			return false;
+		}
 
-				// Make sure we transfer the encapsulated buffer to a file and release the memory buffer again
-				Buffer fileBuffer = null;
-				try {
-					fileBuffer = BufferFactory.createFromFile(buffer.size(), this.vertexID,
-						this.fileBufferManager, this.distributed, false);
-					buffer.copyToBuffer(fileBuffer);
-				} catch (IOException ioe) {
-					this.ioException = ioe;
-					if (fileBuffer != null) {
-						fileBuffer.recycleBuffer();
-					}
-					recycleTransferEnvelope(transferEnvelope);
-					return false;
+		for (int i = 0; i < batch.size(); ++i) {
+
+			if (!writeToCheckpointAndRecycle(batch.get(i))) {
+				// Recycle the resources of the envelopes which have not been written
+				for (int j = i + 1; j < batch.size(); ++j) {
+					recycleTransferEnvelope(batch.get(j));
 				}
+				return false;
+			}
+		}
 
-				transferEnvelope.setBuffer(fileBuffer);
-				buffer.recycleBuffer();
+		return true;
+	}
+
+	/**
+	 * Collects the data of all memory-backed buffers contained in the given batch in the write buffer, optionally
+	 * compresses it, and writes it to the checkpoint file with a single operation. The memory buffers are recycled and
+	 * detached from their envelopes as soon as their data has been collected. Once the data has been written, the
+	 * envelopes are given file buffers referring to it.
+	 * 
+	 * @param batch
+	 *        the batch of envelopes whose buffer data shall be written
+	 * @throws IOException
+	 *         thrown if an error occurs while compressing or writing the data
+	 */
+	private void writeBufferData(final List<TransferEnvelope> batch) throws IOException {
+
+		this.writeBuffer.clear();
+
+		for (int i = 0; i < batch.size(); ++i) {
+
+			this.writeBufferLengths[i] = -1;
+
+			final Buffer buffer = batch.get(i).getBuffer();
+			if (buffer == null || !buffer.isBackedByMemory()) {
+				continue;
+			}
+
+			this.writeBufferOffsets[i] = this.writeBuffer.position();
+
+			if (this.compressor != null) {
+				this.writeBufferLengths[i] = this.compressor.compress((MemoryBuffer) buffer, this.writeBuffer);
+			} else {
+				final ByteBuffer src = ((MemoryBuffer) buffer).getByteBuffer().duplicate();
+				src.position(0);
+				src.limit(buffer.size());
+				this.writeBuffer.put(src);
+				this.writeBufferLengths[i] = buffer.size();
+			}
+
+			// The data has been collected, so the memory buffer can be returned immediately. It is detached from the
+			// envelope, so it is not recycled a second time if writing the batch fails.
+			buffer.recycleBuffer();
+			batch.get(i).setBuffer(null);
+		}
+
+		if (this.writeBuffer.position() == 0) {
+			return;
+		}
+
+		this.writeBuffer.flip();
+
+		final FileBuffer fileBuffer = BufferFactory.createFromFile(this.writeBuffer.remaining(), this.vertexID,
+			this.fileBufferManager, this.distributed, false);
+
+		try {
+			while (this.writeBuffer.hasRemaining()) {
+				fileBuffer.write(this.writeBuffer);
 			}
+			fileBuffer.finishWritePhase();
+
+			for (int i = 0; i < batch.size(); ++i) {
+
+				if (this.writeBufferLengths[i] < 0) {
+					continue;
+				}
+
+				batch.get(i).setBuffer(BufferFactory.createFromCheckpoint(this.writeBufferLengths[i],
+					fileBuffer.getOffset() + this.writeBufferOffsets[i], this.vertexID, this.fileBufferManager,
+					this.distributed));
+			}
+		} finally {
+			fileBuffer.recycleBuffer();
 		}
+	}
+
+	/**
+	 * Writes the meta data of the given transfer envelope to the disk and afterwards recycles its resources. In case
+	 * of an I/O error, the method will save the IOException to ioException, recycle all resources all return
+	 * <code>false</code>.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to be written to disk
+	 * @return <code>true</code> if more transfer envelopes are expected to follow, <code>false</code> otherwise
+	 */
+	private boolean writeToCheckpointAndRecycle(final TransferEnvelope transferEnvelope) {
 
 		if (this.fileSystem == null) {
 			try {
@@ -290,6 +456,13 @@ final class WriteThread extends Thread {
 		if (this.metaDataFileChannel == null) {
 			try {
 				this.metaDataFileChannel = getMetaDataFileChannel("_part");
+
+				// Each meta data file starts with the compression level of the checkpoint
+				final ByteBuffer header = ByteBuffer.allocate(1);
+				header.put(0, (byte) this.compressionLevel.ordinal());
+				while (header.hasRemaining()) {
+					this.metaDataFileChannel.write(header);
+				}
 			} catch (IOException ioe) {
 				this.ioException = ioe;
 				recycleTransferEnvelope(transferEnvelope);
@@ -308,7 +481,7 @@ final class WriteThread extends Thread {
 		}
 
 		// The following code will prevent the underlying file from being closed
-		buffer = transferEnvelope.getBuffer();
+		final Buffer buffer = transferEnvelope.getBuffer();
 		if (buffer != null) {
 			if (this.firstSerializedFileBuffer == null) {
 				this.firstSerializedFileBuffer = buffer;
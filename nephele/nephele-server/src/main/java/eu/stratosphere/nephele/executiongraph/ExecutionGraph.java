@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.executiongraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -796,6 +797,109 @@ public class ExecutionGraph implements ExecutionListener {
 		return this.edgeMap.get(id);
 	}
 
+	/**
+	 * Creates a speculative backup of the pipeline which starts at the given input vertex. A backup can only be
+	 * created if the pipeline is a chain of vertices which are connected by exactly one edge each and which ends with an
+	 * output vertex, so that the backup does not exchange data with any vertex outside of it. All backup vertices are
+	 * assigned to the given resource and are connected among each other by new edges.
+	 * 
+	 * @param inputVertex
+	 *        the input vertex the pipeline to be backed up starts at
+	 * @param allocatedResource
+	 *        the resource to run the backup vertices on
+	 * @return the backup vertices in pipeline order or <code>null</code> if the pipeline cannot be backed up
+	 */
+	public List<ExecutionVertex> createBackupPipeline(final ExecutionVertex inputVertex,
+			final AllocatedResource allocatedResource) {
+
+		if (!inputVertex.isInputVertex()) {
+			return null;
+		}
+
+		final List<ExecutionVertex> pipeline = new ArrayList<ExecutionVertex>();
+		ExecutionVertex vertex = inputVertex;
+		while (true) {
+
+			pipeline.add(vertex);
+			if (vertex.isOutputVertex()) {
+				break;
+			}
+
+			if (vertex.getNumberOfOutputGates() != 1) {
+				return null;
+			}
+
+			final ExecutionGate outputGate = vertex.getOutputGate(0);
+			if (outputGate.getNumberOfEdges() != 1) {
+				return null;
+			}
+
+			final ExecutionEdge edge = outputGate.getEdge(0);
+			if (edge.isBroadcast()) {
+				return null;
+			}
+
+			final ExecutionVertex successor = edge.getInputGate().getVertex();
+			if (successor.getNumberOfInputGates() != 1 || successor.getInputGate(0).getNumberOfEdges() != 1) {
+				return null;
+			}
+
+			vertex = successor;
+		}
+
+		final List<ExecutionVertex> backupPipeline = new ArrayList<ExecutionVertex>(pipeline.size());
+		for (final ExecutionVertex original : pipeline) {
+			backupPipeline.add(original.createBackupVertex(allocatedResource));
+		}
+
+		// Connect the backup vertices
+		for (int i = 1; i < backupPipeline.size(); ++i) {
+
+			final ExecutionGate outputGate = backupPipeline.get(i - 1).getOutputGate(0);
+			final ExecutionGate inputGate = backupPipeline.get(i).getInputGate(0);
+			final ChannelID outputChannelID = new ChannelID();
+			final ChannelID inputChannelID = new ChannelID();
+
+			final ExecutionEdge edge = new ExecutionEdge(outputGate, inputGate, outputGate.getGroupEdge(),
+				outputChannelID, inputChannelID, 0, 0);
+
+			outputGate.replaceAllEdges(Collections.singletonList(edge));
+			inputGate.replaceAllEdges(Collections.singletonList(edge));
+
+			this.edgeMap.put(outputChannelID, edge);
+			this.edgeMap.put(inputChannelID, edge);
+		}
+
+		return backupPipeline;
+	}
+
+	/**
+	 * Commits the given speculative backup pipeline. Each backup vertex replaces its original vertex as a member of the
+	 * respective vertex group. From then on, the execution states of the original vertices no longer influence the
+	 * status of the job, while the execution states of the backup vertices do.
+	 * 
+	 * @param backupPipeline
+	 *        the backup vertices in pipeline order as returned by {@link #createBackupPipeline}
+	 */
+	public void commitBackupPipeline(final List<ExecutionVertex> backupPipeline) {
+
+		for (final ExecutionVertex backupVertex : backupPipeline) {
+
+			final ExecutionVertex originalVertex = backupVertex.getOriginalVertex();
+			originalVertex.unregisterExecutionListener(this);
+
+			if (!backupVertex.getGroupVertex().replaceGroupMember(originalVertex, backupVertex)) {
+				LOG.error("Cannot find " + originalVertex + " to be replaced by its backup");
+			}
+
+			backupVertex.registerExecutionListener(this);
+		}
+
+		// Reevaluate the job status with the committed vertices
+		final ExecutionVertex lastVertex = backupPipeline.get(backupPipeline.size() - 1);
+		executionStateChanged(this.jobID, lastVertex.getID(), lastVertex.getExecutionState(), null);
+	}
+
 	/**
 	 * Registers an execution vertex with the execution graph.
 	 * 
@@ -298,6 +298,28 @@ public final class ExecutionGroupVertex {
 		}
 	}
 
+	/**
+	 * Replaces the given member of this group vertex by another execution vertex.
+	 * 
+	 * @param member
+	 *        the member to be replaced
+	 * @param replacement
+	 *        the execution vertex which replaces the member
+	 * @return <code>true</code> if the member has been replaced, <code>false</code> if the given execution vertex is
+	 *         not a member of this group vertex
+	 */
+	boolean replaceGroupMember(final ExecutionVertex member, final ExecutionVertex replacement) {
+
+		final int pos = this.groupMembers.indexOf(member);
+		if (pos < 0) {
+			return false;
+		}
+
+		this.groupMembers.set(pos, replacement);
+
+		return true;
+	}
+
 	/**
 	 * Returns a specific execution vertex from the list of members.
 	 * 
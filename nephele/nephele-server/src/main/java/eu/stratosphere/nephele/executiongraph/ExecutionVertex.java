@@ -24,11 +24,13 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.deployment.ChannelDeploymentDescriptor;
 import eu.stratosphere.nephele.deployment.GateDeploymentDescriptor;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
@@ -44,6 +46,7 @@ import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
 import eu.stratosphere.nephele.taskmanager.TaskCheckpointResult;
 import eu.stratosphere.nephele.taskmanager.TaskKillResult;
 import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
+import eu.stratosphere.nephele.template.AbstractOutputTask;
 import eu.stratosphere.nephele.util.AtomicEnum;
 import eu.stratosphere.nephele.util.SerializableArrayList;
 import eu.stratosphere.nephele.util.StringUtils;
@@ -149,6 +152,16 @@ public final class ExecutionVertex {
 	 */
 	private final AtomicBoolean cancelRequested = new AtomicBoolean(false);
 
+	/**
+	 * The vertex this vertex is a speculative backup of or <code>null</code> if this vertex is not a backup.
+	 */
+	private volatile ExecutionVertex originalVertex = null;
+
+	/**
+	 * The amount of input the task represented by this vertex has consumed so far.
+	 */
+	private final AtomicLong consumedInput = new AtomicLong(0L);
+
 	/**
 	 * Create a new execution vertex and instantiates its environment.
 	 * 
@@ -260,6 +273,75 @@ public final class ExecutionVertex {
 		return duplicatedVertex;
 	}
 
+	/**
+	 * Creates a speculative backup of this execution vertex. The backup receives a new vertex ID, has the same index in
+	 * the vertex group as this vertex and is assigned to the given {@link AllocatedResource}. The backup is not a member
+	 * of the vertex group and its execution state does not influence the status of the job until the backup is
+	 * committed. The gates of the backup are not connected.
+	 * 
+	 * @param allocatedResource
+	 *        the resource to run the backup on
+	 * @return the speculative backup of this execution vertex
+	 */
+	ExecutionVertex createBackupVertex(final AllocatedResource allocatedResource) {
+
+		final ExecutionVertex backupVertex = duplicateVertex(false);
+		backupVertex.indexInVertexGroup = this.indexInVertexGroup;
+		backupVertex.originalVertex = this;
+		backupVertex.unregisterExecutionListener(this.executionGraph);
+		backupVertex.setAllocatedResource(allocatedResource);
+
+		return backupVertex;
+	}
+
+	/**
+	 * Returns the vertex this vertex is a speculative backup of.
+	 * 
+	 * @return the vertex this vertex is a speculative backup of or <code>null</code> if this vertex is not a backup
+	 */
+	public ExecutionVertex getOriginalVertex() {
+
+		return this.originalVertex;
+	}
+
+	/**
+	 * Checks whether this vertex is a speculative backup of another vertex.
+	 * 
+	 * @return <code>true</code> if this vertex is a speculative backup, <code>false</code> otherwise
+	 */
+	public boolean isBackupVertex() {
+
+		return (this.originalVertex != null);
+	}
+
+	/**
+	 * Updates the amount of input the task represented by this vertex has consumed so far. Updates which would
+	 * decrease the amount are ignored.
+	 * 
+	 * @param consumedInput
+	 *        the amount of input consumed so far
+	 */
+	public void updateConsumedInput(final long consumedInput) {
+
+		while (true) {
+			final long current = this.consumedInput.get();
+			if (consumedInput <= current || this.consumedInput.compareAndSet(current, consumedInput)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the amount of input the task represented by this vertex has consumed so far. The amount is measured in
+	 * bytes for file input splits and in number of input splits otherwise.
+	 * 
+	 * @return the amount of input consumed so far
+	 */
+	public long getConsumedInput() {
+
+		return this.consumedInput.get();
+	}
+
 	/**
 	 * Inserts the output gate at the given position.
 	 * 
@@ -919,6 +1001,9 @@ public final class ExecutionVertex {
 		sb.append('/');
 		sb.append(this.groupVertex.getCurrentNumberOfGroupMembers());
 		sb.append(')');
+		if (this.originalVertex != null) {
+			sb.append(" [backup]");
+		}
 
 		return sb.toString();
 	}
@@ -1110,11 +1195,19 @@ public final class ExecutionVertex {
 			igd.add(new GateDeploymentDescriptor(eg.getGateID(), eg.getChannelType(), eg.getCompressionLevel(), cdd));
 		}
 
+		Configuration taskConfiguration = this.groupVertex.getConfiguration();
+		if (this.originalVertex != null) {
+			// Let the task know that it is a speculative backup attempt
+			final Configuration backupConfiguration = new Configuration();
+			backupConfiguration.addAll(taskConfiguration, "");
+			backupConfiguration.setBoolean(AbstractOutputTask.SPECULATIVE_ATTEMPT_KEY, true);
+			taskConfiguration = backupConfiguration;
+		}
+
 		final TaskDeploymentDescriptor tdd = new TaskDeploymentDescriptor(this.executionGraph.getJobID(),
 			this.vertexID, this.groupVertex.getName(), this.indexInVertexGroup,
 			this.groupVertex.getCurrentNumberOfGroupMembers(), this.executionGraph.getJobConfiguration(),
-			this.groupVertex.getConfiguration(), this.checkpointState.get(), this.groupVertex.getInvokableClass(), ogd,
-			igd);
+			taskConfiguration, this.checkpointState.get(), this.groupVertex.getInvokableClass(), ogd, igd);
 
 		return tdd;
 	}
@@ -28,6 +28,7 @@ import eu.stratosphere.nephele.execution.Environment;
 import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.SharedSerializationBuffer;
 import eu.stratosphere.nephele.io.channels.bytebuffered.FileOutputChannel;
 import eu.stratosphere.nephele.io.channels.bytebuffered.NetworkOutputChannel;
 import eu.stratosphere.nephele.io.channels.bytebuffered.InMemoryOutputChannel;
@@ -79,6 +80,12 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 */
 	private final boolean isBroadcast;
 
+	/**
+	 * Buffers to serialize records which are written to several output channels. A buffer can only be reused once
+	 * all channels have read the record serialized into it.
+	 */
+	private final ArrayList<SharedSerializationBuffer<T>> sharedSerializationBuffers = new ArrayList<SharedSerializationBuffer<T>>();
+
 	/**
 	 * Constructs a new runtime output gate.
 	 * 
@@ -291,8 +298,16 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 			if (getChannelType() == ChannelType.INMEMORY) {
 
 				final int numberOfOutputChannels = this.outputChannels.size();
+				if (numberOfOutputChannels == 1) {
+					this.outputChannels.get(0).writeRecord(record);
+					return;
+				}
+
+				// Serialize the record only once for all channels. Each channel still copies the bytes into its own
+				// write buffer, see SharedSerializationBuffer
+				final SharedSerializationBuffer<T> serializedRecord = serializeRecord(record);
 				for (int i = 0; i < numberOfOutputChannels; ++i) {
-					this.outputChannels.get(i).writeRecord(record);
+					this.outputChannels.get(i).writeSerializedRecord(record, serializedRecord);
 				}
 
 			} else {
@@ -311,16 +326,60 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 				return;
 			}
 
+			if (selectedOutputChannels.length == 1) {
+
+				if (selectedOutputChannels[0] < numberOfOutputChannels) {
+					this.outputChannels.get(selectedOutputChannels[0]).writeRecord(record);
+				}
+				return;
+			}
+
+			// Several target channels, serialize the record only once for all of them
+			SharedSerializationBuffer<T> serializedRecord = null;
 			for (int i = 0; i < selectedOutputChannels.length; ++i) {
 
 				if (selectedOutputChannels[i] < numberOfOutputChannels) {
+					if (serializedRecord == null) {
+						serializedRecord = serializeRecord(record);
+					}
 					final AbstractOutputChannel<T> outputChannel = this.outputChannels.get(selectedOutputChannels[i]);
-					outputChannel.writeRecord(record);
+					outputChannel.writeSerializedRecord(record, serializedRecord);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Serializes the given record into a shared serialization buffer which is no longer referenced by any output
+	 * channel.
+	 * 
+	 * @param record
+	 *        the record to serialize
+	 * @return the shared serialization buffer holding the serialized record
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the record
+	 */
+	private SharedSerializationBuffer<T> serializeRecord(final T record) throws IOException {
+
+		// Every channel references at most one record, so the number of buffers is bounded by the number of channels
+		SharedSerializationBuffer<T> buffer = null;
+		for (int i = 0; i < this.sharedSerializationBuffers.size(); ++i) {
+			final SharedSerializationBuffer<T> candidate = this.sharedSerializationBuffers.get(i);
+			if (!candidate.isShared()) {
+				buffer = candidate;
+				break;
+			}
+		}
+
+		if (buffer == null) {
+			buffer = new SharedSerializationBuffer<T>();
+			this.sharedSerializationBuffers.add(buffer);
+		}
+
+		buffer.serialize(record);
+		return buffer;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -15,6 +15,8 @@
 
 package eu.stratosphere.nephele.io.channels;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 interface ChannelWithAccessInfo {
@@ -33,6 +35,23 @@ interface ChannelWithAccessInfo {
 
 	ChannelWithPosition reserveWriteSpaceAndIncrementReferences(int spaceToReserve);
 
+	/**
+	 * Returns a view on the memory-mapped part of the file which starts at the given offset and has the given size.
+	 * Returns <code>null</code> if the file is not accessed through memory-mapped regions or if the requested part
+	 * cannot be mapped, in which case the caller must fall back to the regular I/O calls of the channel.
+	 * 
+	 * @param offset
+	 *        the offset of the part in the file
+	 * @param size
+	 *        the size of the part in bytes
+	 * @param write
+	 *        <code>true</code> if the part is about to be written, <code>false</code> if it is only read
+	 * @return a view on the mapped part of the file or <code>null</code> if the part is not mapped
+	 * @throws IOException
+	 *         thrown if an error occurs while mapping the file
+	 */
+	ByteBuffer getMappedRegion(long offset, int size, boolean write) throws IOException;
+
 	/**
 	 * Decrements the number of references to this channel. If the number of references is zero after the
 	 * decrement, the channel is deleted.
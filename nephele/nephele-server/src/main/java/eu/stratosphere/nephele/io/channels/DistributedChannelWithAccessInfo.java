@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.io.channels;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -90,6 +91,16 @@ final class DistributedChannelWithAccessInfo implements ChannelWithAccessInfo {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer getMappedRegion(final long offset, final int size, final boolean write) {
+
+		// Files in a distributed file system cannot be mapped into memory
+		return null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -32,6 +32,12 @@ public final class FileBuffer extends Buffer {
 
 	private final FileChannel fileChannel;
 
+	/**
+	 * A view on the memory-mapped part of the file which holds the buffer's data or <code>null</code> if the data is
+	 * accessed through the file channel.
+	 */
+	private final ByteBuffer mappedRegion;
+
 	private long offset;
 
 	private int bufferSize;
@@ -60,6 +66,7 @@ public final class FileBuffer extends Buffer {
 		this.writeMode.set(false);
 
 		this.fileChannel = fileBufferManager.getChannelAndIncrementReferences(ownerID, distributed, deleteOnClose);
+		this.mappedRegion = fileBufferManager.getMappedRegion(ownerID, offset, bufferSize, false);
 	}
 
 	/**
@@ -83,6 +90,7 @@ public final class FileBuffer extends Buffer {
 
 		this.fileChannel = cwp.getChannel();
 		this.offset = cwp.getOffset();
+		this.mappedRegion = fileBufferManager.getMappedRegion(ownerID, this.offset, bufferSize, true);
 	}
 
 	private FileBuffer(final FileBuffer toCopy) {
@@ -90,6 +98,7 @@ public final class FileBuffer extends Buffer {
 		this.ownerID = toCopy.ownerID;
 		this.fileBufferManager = toCopy.fileBufferManager;
 		this.fileChannel = toCopy.fileChannel;
+		this.mappedRegion = (toCopy.mappedRegion != null) ? toCopy.mappedRegion.duplicate() : null;
 		this.offset = toCopy.offset;
 		this.bufferSize = toCopy.bufferSize;
 		this.totalBytesWritten = toCopy.totalBytesWritten;
@@ -111,8 +120,13 @@ public final class FileBuffer extends Buffer {
 			return -1;
 		}
 
-		final long bytesRead = this.fileChannel.transferTo(this.offset + this.totalBytesRead,
-			this.bufferSize - this.totalBytesRead, writableByteChannel);
+		final long bytesRead;
+		if (this.mappedRegion != null) {
+			bytesRead = writableByteChannel.write(mappedView(this.totalBytesRead, this.bufferSize));
+		} else {
+			bytesRead = this.fileChannel.transferTo(this.offset + this.totalBytesRead,
+				this.bufferSize - this.totalBytesRead, writableByteChannel);
+		}
 		this.totalBytesRead += bytesRead;
 
 		return (int) bytesRead;
@@ -132,7 +146,7 @@ public final class FileBuffer extends Buffer {
 			return -1;
 		}
 
-		final int bytesRead = readInternal(dst, this.offset + this.totalBytesRead, remaining());
+		final int bytesRead = readInternal(dst, this.totalBytesRead, remaining());
 		if (bytesRead < 0) {
 			return -1;
 		}
@@ -141,8 +155,16 @@ public final class FileBuffer extends Buffer {
 		return bytesRead;
 	}
 
-	private final int readInternal(final ByteBuffer dst, final long position, final int numBytes) throws IOException {
+	private final int readInternal(final ByteBuffer dst, final int bufferPosition, final int numBytes)
+			throws IOException {
+
+		if (this.mappedRegion != null) {
+			final int bytesRead = Math.min(dst.remaining(), numBytes);
+			dst.put(mappedView(bufferPosition, bufferPosition + bytesRead));
+			return bytesRead;
+		}
 
+		final long position = this.offset + bufferPosition;
 		if (dst.remaining() > numBytes) {
 			final int excess = dst.remaining() - numBytes;
 			dst.limit(dst.limit() - excess);
@@ -155,6 +177,24 @@ public final class FileBuffer extends Buffer {
 		}
 	}
 
+	/**
+	 * Returns a view on the given range of the buffer's memory-mapped data.
+	 * 
+	 * @param start
+	 *        the start of the range relative to the buffer's offset
+	 * @param end
+	 *        the end of the range relative to the buffer's offset
+	 * @return a view on the given range of the mapped data
+	 */
+	private ByteBuffer mappedView(final int start, final int end) {
+
+		final ByteBuffer view = this.mappedRegion.duplicate();
+		view.limit(end);
+		view.position(start);
+
+		return view;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -169,8 +209,14 @@ public final class FileBuffer extends Buffer {
 			return 0;
 		}
 
-		final long bytesWritten = this.fileChannel.transferFrom(readableByteChannel,
-			(this.offset + this.totalBytesWritten), (this.bufferSize - this.totalBytesWritten));
+		final long bytesWritten;
+		if (this.mappedRegion != null) {
+			bytesWritten = Math.max(0,
+				readableByteChannel.read(mappedView(this.totalBytesWritten, this.bufferSize)));
+		} else {
+			bytesWritten = this.fileChannel.transferFrom(readableByteChannel,
+				(this.offset + this.totalBytesWritten), (this.bufferSize - this.totalBytesWritten));
+		}
 		this.totalBytesWritten += bytesWritten;
 
 		return (int) bytesWritten;
@@ -193,7 +239,18 @@ public final class FileBuffer extends Buffer {
 		// Make sure we do not exceed the buffer limit
 		int bytesWritten;
 		final int rem = (int) (this.bufferSize - this.totalBytesWritten);
-		if (src.remaining() > rem) {
+		if (this.mappedRegion != null) {
+			bytesWritten = Math.min(src.remaining(), rem);
+			final ByteBuffer dst = mappedView(this.totalBytesWritten, this.totalBytesWritten + bytesWritten);
+			if (src.remaining() > bytesWritten) {
+				final int excess = src.remaining() - bytesWritten;
+				src.limit(src.limit() - excess);
+				dst.put(src);
+				src.limit(src.limit() + excess);
+			} else {
+				dst.put(src);
+			}
+		} else if (src.remaining() > rem) {
 			final int excess = src.remaining() - rem;
 			src.limit(src.limit() - excess);
 			bytesWritten = this.fileChannel.write(src, this.offset + this.totalBytesWritten);
@@ -302,7 +359,7 @@ public final class FileBuffer extends Buffer {
 
 			int rem = 0;
 			while ((rem = remaining()) > 0) {
-				this.totalBytesRead += readInternal(bb, this.offset + this.totalBytesRead, rem);
+				this.totalBytesRead += readInternal(bb, this.totalBytesRead, rem);
 			}
 
 			destinationBuffer.finishWritePhase();
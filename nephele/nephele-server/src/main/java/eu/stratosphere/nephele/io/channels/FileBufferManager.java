@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.io.channels;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -38,6 +39,9 @@ import eu.stratosphere.nephele.util.StringUtils;
  * {@link AbstractByteBufferedOutputChannel} or {@link AbstractByteBufferedInputChannel} objects, respectively. It is
  * designed as a singleton object.
  * <p>
+ * Optionally, local files can be accessed through memory-mapped regions. In that case, file buffers copy their data
+ * directly from and to the mapped pages instead of issuing a read or write call per buffer.
+ * <p>
  * This class is thread-safe.
  * 
  * @author warneke
@@ -49,6 +53,21 @@ public final class FileBufferManager {
 	 */
 	public static final String FILE_BUFFER_PREFIX = "fb_";
 
+	/**
+	 * The key to enable memory-mapped access to local files in the configuration.
+	 */
+	public static final String MEMORY_MAPPED_KEY = "channel.file.memoryMapped";
+
+	/**
+	 * The key to retrieve the size of the memory-mapped regions in bytes from the configuration.
+	 */
+	public static final String MAPPED_REGION_SIZE_KEY = "channel.file.mappedRegionSizeInBytes";
+
+	/**
+	 * The default size of the memory-mapped regions in bytes.
+	 */
+	private static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
 	/**
 	 * The logging object.
 	 */
@@ -82,6 +101,11 @@ public final class FileBufferManager {
 
 	private final int bufferSize;
 
+	/**
+	 * The size of the memory-mapped regions of local files or <code>0</code> if local files are not mapped.
+	 */
+	private final int mappedRegionSize;
+
 	private final Path distributedTempPath;
 
 	private final FileSystem distributedFileSystem;
@@ -110,6 +134,18 @@ public final class FileBufferManager {
 																											// constants
 																											// here
 
+		if (GlobalConfiguration.getBoolean(MEMORY_MAPPED_KEY, false)) {
+			int regionSize = GlobalConfiguration.getInteger(MAPPED_REGION_SIZE_KEY, DEFAULT_MAPPED_REGION_SIZE);
+			if (regionSize < this.bufferSize) {
+				LOG.warn("Mapped region size " + regionSize + " is smaller than the buffer size, using "
+					+ DEFAULT_MAPPED_REGION_SIZE + " instead");
+				regionSize = DEFAULT_MAPPED_REGION_SIZE;
+			}
+			this.mappedRegionSize = regionSize;
+		} else {
+			this.mappedRegionSize = 0;
+		}
+
 		this.fileMap = new ConcurrentHashMap<AbstractID, ChannelWithAccessInfo>(2048, 0.8f, 64);
 
 		this.distributedTempPath = CheckpointUtils.getDistributedCheckpointPath();
@@ -224,6 +260,38 @@ public final class FileBufferManager {
 		return c;
 	}
 
+	/**
+	 * Returns a view on the memory-mapped part of the file for the owner with the given id. The caller must hold a
+	 * reference to the channel.
+	 * 
+	 * @param id
+	 *        the id of the owner of the file
+	 * @param offset
+	 *        the offset of the part in the file
+	 * @param size
+	 *        the size of the part in bytes
+	 * @param write
+	 *        <code>true</code> if the part is about to be written, <code>false</code> if it is only read
+	 * @return a view on the mapped part of the file or <code>null</code> if the file is not accessed through
+	 *         memory-mapped regions or the part cannot be mapped
+	 * @throws IOException
+	 *         thrown if an error occurs while mapping the file
+	 */
+	public ByteBuffer getMappedRegion(final AbstractID id, final long offset, final int size, final boolean write)
+			throws IOException {
+
+		if (this.mappedRegionSize <= 0) {
+			return null;
+		}
+
+		final ChannelWithAccessInfo info = this.fileMap.get(id);
+		if (info == null) {
+			return null;
+		}
+
+		return info.getMappedRegion(offset, size, write);
+	}
+
 	/**
 	 * Increments the references to the given channel.
 	 * 
@@ -294,7 +362,7 @@ public final class FileBufferManager {
 
 				final File f = constructLocalFile(id);
 				if (f.exists()) {
-					cwa = new LocalChannelWithAccessInfo(f, deleteOnClose);
+					cwa = new LocalChannelWithAccessInfo(f, deleteOnClose, this.mappedRegionSize);
 				}
 			}
 
@@ -311,7 +379,7 @@ public final class FileBufferManager {
 
 					// Construct the filename
 					final File f = constructLocalFile(id);
-					cwa = new LocalChannelWithAccessInfo(f, deleteOnClose);
+					cwa = new LocalChannelWithAccessInfo(f, deleteOnClose, this.mappedRegionSize);
 				}
 			}
 
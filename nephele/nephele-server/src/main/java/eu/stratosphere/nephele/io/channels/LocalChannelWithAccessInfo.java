@@ -18,7 +18,10 @@ package eu.stratosphere.nephele.io.channels;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -43,13 +46,46 @@ final class LocalChannelWithAccessInfo implements ChannelWithAccessInfo {
 
 	private final AtomicBoolean deleteOnClose;
 
-	LocalChannelWithAccessInfo(final File file, final boolean deleteOnClose) throws IOException {
+	/**
+	 * The size of the regions the file is mapped into memory with or <code>0</code> if the file is not mapped.
+	 */
+	private final int mappedRegionSize;
+
+	/**
+	 * The regions of the file which have already been mapped into memory, indexed by their number.
+	 */
+	private final ConcurrentHashMap<Long, MappedByteBuffer> mappedRegions;
+
+	/**
+	 * Indicates whether mapping a region for writing has extended the file beyond the reserved write space.
+	 */
+	private final AtomicBoolean extendedByMapping = new AtomicBoolean(false);
+
+	/**
+	 * Constructs a new channel for the given file. If the mapped region size is positive, the file is accessed
+	 * through memory-mapped regions of that size and write space is reserved such that no reservation smaller than a
+	 * region spans two regions.
+	 * 
+	 * @param file
+	 *        the file to access
+	 * @param deleteOnClose
+	 *        <code>true</code> to delete the file when it is closed, <code>false</code> otherwise
+	 * @param mappedRegionSize
+	 *        the size of the memory-mapped regions in bytes or <code>0</code> to access the file through regular I/O
+	 *        calls only
+	 * @throws IOException
+	 *         thrown if the file cannot be opened
+	 */
+	LocalChannelWithAccessInfo(final File file, final boolean deleteOnClose, final int mappedRegionSize)
+			throws IOException {
 
 		this.file = file;
 		this.channel = new RandomAccessFile(file, "rw").getChannel();
 		this.reservedWritePosition = new AtomicLong(0L);
 		this.referenceCounter = new AtomicInteger(0);
 		this.deleteOnClose = new AtomicBoolean(deleteOnClose);
+		this.mappedRegionSize = mappedRegionSize;
+		this.mappedRegions = (mappedRegionSize > 0) ? new ConcurrentHashMap<Long, MappedByteBuffer>() : null;
 	}
 
 	/**
@@ -78,12 +114,111 @@ final class LocalChannelWithAccessInfo implements ChannelWithAccessInfo {
 	public ChannelWithPosition reserveWriteSpaceAndIncrementReferences(final int spaceToReserve) {
 
 		if (incrementReferences()) {
-			return new ChannelWithPosition(this.channel, this.reservedWritePosition.getAndAdd(spaceToReserve));
+			return new ChannelWithPosition(this.channel, reserveWriteSpace(spaceToReserve));
 		} else {
 			return null;
 		}
 	}
 
+	/**
+	 * Reserves write space of the given size. If the file is memory-mapped, the reservation is moved to the start of
+	 * the next region in case it would otherwise span two regions.
+	 * 
+	 * @param spaceToReserve
+	 *        the number of bytes to reserve
+	 * @return the offset of the reserved space in the file
+	 */
+	private long reserveWriteSpace(final int spaceToReserve) {
+
+		if (this.mappedRegionSize <= 0 || spaceToReserve > this.mappedRegionSize) {
+			return this.reservedWritePosition.getAndAdd(spaceToReserve);
+		}
+
+		while (true) {
+
+			final long current = this.reservedWritePosition.get();
+			long offset = current;
+			final long region = offset / this.mappedRegionSize;
+			if (region != (offset + spaceToReserve - 1) / this.mappedRegionSize) {
+				offset = (region + 1) * this.mappedRegionSize;
+			}
+
+			if (this.reservedWritePosition.compareAndSet(current, offset + spaceToReserve)) {
+				return offset;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer getMappedRegion(final long offset, final int size, final boolean write) throws IOException {
+
+		if (this.mappedRegionSize <= 0 || size > this.mappedRegionSize) {
+			return null;
+		}
+
+		final long region = offset / this.mappedRegionSize;
+		if (region != (offset + size - 1) / this.mappedRegionSize) {
+			return null;
+		}
+
+		final Long key = Long.valueOf(region);
+		MappedByteBuffer mappedRegion = this.mappedRegions.get(key);
+		if (mappedRegion == null) {
+
+			final long regionStart = region * this.mappedRegionSize;
+
+			// Mapping the region for reading must not extend the file
+			if (!write && this.channel.size() < regionStart + this.mappedRegionSize) {
+				return null;
+			}
+
+			mappedRegion = this.channel.map(FileChannel.MapMode.READ_WRITE, regionStart, this.mappedRegionSize);
+			if (write) {
+				this.extendedByMapping.set(true);
+			}
+
+			final MappedByteBuffer alreadyMapped = this.mappedRegions.putIfAbsent(key, mappedRegion);
+			if (alreadyMapped != null) {
+				mappedRegion = alreadyMapped;
+			}
+		}
+
+		final ByteBuffer view = mappedRegion.duplicate();
+		final int position = (int) (offset - region * this.mappedRegionSize);
+		view.limit(position + size);
+		view.position(position);
+
+		return view.slice();
+	}
+
+	/**
+	 * Unmaps the memory-mapped regions of the file and, if mapping the regions has extended the file, truncates the
+	 * file to the reserved write space again. The regions are actually unmapped once they have been garbage
+	 * collected.
+	 * 
+	 * @param reservedSpace
+	 *        the reserved write space before the channel has been disposed
+	 */
+	private void releaseMappedRegions(final long reservedSpace) {
+
+		if (this.mappedRegions == null) {
+			return;
+		}
+
+		this.mappedRegions.clear();
+
+		if (this.extendedByMapping.get() && !this.deleteOnClose.get() && reservedSpace >= 0L) {
+			try {
+				this.channel.truncate(reservedSpace);
+			} catch (IOException ioex) {
+				LOG.error("Error while truncating memory-mapped file " + this.file + ": " + ioex.getMessage(), ioex);
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -115,7 +250,7 @@ final class LocalChannelWithAccessInfo implements ChannelWithAccessInfo {
 		} else if (current == 0) {
 			// delete the channel
 			this.referenceCounter.set(Integer.MIN_VALUE);
-			this.reservedWritePosition.set(Long.MIN_VALUE);
+			releaseMappedRegions(this.reservedWritePosition.getAndSet(Long.MIN_VALUE));
 			try {
 				this.channel.close();
 			} catch (IOException ioex) {
@@ -158,9 +293,10 @@ final class LocalChannelWithAccessInfo implements ChannelWithAccessInfo {
 	public void disposeSilently() {
 
 		this.referenceCounter.set(Integer.MIN_VALUE);
-		this.reservedWritePosition.set(Long.MIN_VALUE);
+		final long reservedSpace = this.reservedWritePosition.getAndSet(Long.MIN_VALUE);
 
 		if (this.channel.isOpen()) {
+			releaseMappedRegions(reservedSpace);
 			try {
 				this.channel.close();
 			} catch (Throwable t) {
@@ -64,6 +64,10 @@ public abstract class AbstractExecutionListener implements ExecutionListener {
 
 		final ExecutionGraph eg = this.executionVertex.getExecutionGraph();
 
+		final SpeculativeExecutionManager speculativeExecutionManager = this.scheduler
+			.getSpeculativeExecutionManager();
+		speculativeExecutionManager.executionStateChanged(this.executionVertex, newExecutionState);
+
 		// Check if we can deploy a new pipeline.
 		if (newExecutionState == ExecutionState.FINISHING) {
 
@@ -114,8 +118,9 @@ public abstract class AbstractExecutionListener implements ExecutionListener {
 			this.scheduler.checkAndReleaseAllocatedResource(eg, this.executionVertex.getAllocatedResource());
 		}
 
-		// In case of an error, check if the vertex shall be recovered
-		if (newExecutionState == ExecutionState.FAILED) {
+		// In case of an error, check if the vertex shall be recovered unless it has been replaced by its backup
+		if (newExecutionState == ExecutionState.FAILED
+			&& !speculativeExecutionManager.isSuperseded(this.executionVertex)) {
 			if (this.executionVertex.decrementRetriesLeftAndCheck()) {
 
 				final Set<ExecutionVertex> assignedVertices = new HashSet<ExecutionVertex>();
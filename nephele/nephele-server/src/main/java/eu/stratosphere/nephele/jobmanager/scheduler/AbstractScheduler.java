@@ -85,6 +85,11 @@ public abstract class AbstractScheduler implements InstanceListener {
 	 */
 	private final Map<ExecutionVertexID, ExecutionVertex> verticesToBeRestarted = new ConcurrentHashMap<ExecutionVertexID, ExecutionVertex>();
 
+	/**
+	 * The speculative execution manager which launches backups of straggling vertices.
+	 */
+	private final SpeculativeExecutionManager speculativeExecutionManager = new SpeculativeExecutionManager(this);
+
 	/**
 	 * Constructs a new abstract scheduler.
 	 * 
@@ -526,6 +531,11 @@ public abstract class AbstractScheduler implements InstanceListener {
 
 		if (resourceCanBeReleased) {
 
+			// Try to use the resource for a speculative backup before releasing it
+			if (this.speculativeExecutionManager.launchBackup(executionGraph, allocatedResource)) {
+				return;
+			}
+
 			LOG.info("Releasing instance " + allocatedResource.getInstance());
 			try {
 				getInstanceManager().releaseAllocatedResource(executionGraph.getJobID(), executionGraph
@@ -567,6 +577,16 @@ public abstract class AbstractScheduler implements InstanceListener {
 		return this.verticesToBeRestarted;
 	}
 
+	/**
+	 * Returns the speculative execution manager of this scheduler.
+	 * 
+	 * @return the speculative execution manager of this scheduler
+	 */
+	SpeculativeExecutionManager getSpeculativeExecutionManager() {
+
+		return this.speculativeExecutionManager;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,106 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.jobmanager.scheduler;
+
+import eu.stratosphere.nephele.execution.ExecutionListener;
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+/**
+ * The speculative execution listener is registered with the backup vertices launched by the
+ * {@link SpeculativeExecutionManager}. Unlike the scheduler's regular execution listeners, it does not attempt to
+ * recover failed vertices since a failed backup is simply abandoned.
+ */
+final class SpeculativeExecutionListener implements ExecutionListener {
+
+	/**
+	 * The scheduler which launched the backup.
+	 */
+	private final AbstractScheduler scheduler;
+
+	/**
+	 * The speculative execution manager the backup belongs to.
+	 */
+	private final SpeculativeExecutionManager speculativeExecutionManager;
+
+	/**
+	 * The backup vertex this listener is registered with.
+	 */
+	private final ExecutionVertex backupVertex;
+
+	/**
+	 * Constructs a new speculative execution listener.
+	 * 
+	 * @param scheduler
+	 *        the scheduler which launched the backup
+	 * @param speculativeExecutionManager
+	 *        the speculative execution manager the backup belongs to
+	 * @param backupVertex
+	 *        the backup vertex this listener is registered with
+	 */
+	SpeculativeExecutionListener(final AbstractScheduler scheduler,
+			final SpeculativeExecutionManager speculativeExecutionManager, final ExecutionVertex backupVertex) {
+
+		this.scheduler = scheduler;
+		this.speculativeExecutionManager = speculativeExecutionManager;
+		this.backupVertex = backupVertex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void executionStateChanged(final JobID jobID, final ExecutionVertexID vertexID,
+			final ExecutionState newExecutionState, final String optionalMessage) {
+
+		this.speculativeExecutionManager.executionStateChanged(this.backupVertex, newExecutionState);
+
+		if (newExecutionState == ExecutionState.FINISHED || newExecutionState == ExecutionState.CANCELED
+			|| newExecutionState == ExecutionState.FAILED) {
+			// Check if instance can be released
+			this.scheduler.checkAndReleaseAllocatedResource(this.backupVertex.getExecutionGraph(),
+				this.backupVertex.getAllocatedResource());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void userThreadStarted(final JobID jobID, final ExecutionVertexID vertexID, final Thread userThread) {
+		// Nothing to do here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void userThreadFinished(final JobID jobID, final ExecutionVertexID vertexID, final Thread userThread) {
+		// Nothing to do here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getPriority() {
+
+		return 2;
+	}
+}
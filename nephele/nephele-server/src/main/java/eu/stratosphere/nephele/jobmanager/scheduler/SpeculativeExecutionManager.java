@@ -0,0 +1,559 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.jobmanager.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionStage;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.executiongraph.InternalJobStatus;
+import eu.stratosphere.nephele.instance.AllocatedResource;
+import eu.stratosphere.nephele.taskmanager.AbstractTaskResult.ReturnCode;
+import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.nephele.template.AbstractOutputTask;
+
+/**
+ * The speculative execution manager launches backup copies of straggling input vertices. Whenever an
+ * {@link AllocatedResource} is about to be released because all vertices assigned to it have finished, the manager
+ * checks the input vertices of the current execution stage for stragglers, i.e. vertices which run considerably
+ * longer and consume their input considerably slower than their finished peers. The progress of an input vertex is
+ * the amount of input it has consumed, which is derived from its input split requests.
+ * <p>
+ * For the worst straggler, the manager backs up the entire pipeline from the input vertex to the output vertex on the
+ * released resource. This requires the pipeline to be a chain which does not exchange data with any other vertex and
+ * the output task to commit its output atomically. The backup consumes the same sequence of input splits as the
+ * original. Whichever copy finishes its output vertex first is committed, the other copy is canceled.
+ * <p>
+ * Speculative execution is disabled by default.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class SpeculativeExecutionManager {
+
+	/**
+	 * The logging object which is used to report information and errors.
+	 */
+	private static final Log LOG = LogFactory.getLog(SpeculativeExecutionManager.class);
+
+	/**
+	 * The key to enable speculative execution in the configuration.
+	 */
+	public static final String ENABLED_KEY = "jobmanager.speculation.enabled";
+
+	/**
+	 * The key to retrieve the minimum runtime in milliseconds before a vertex can be considered a straggler.
+	 */
+	public static final String MINIMUM_RUNTIME_KEY = "jobmanager.speculation.minimumRuntime";
+
+	/**
+	 * The key to retrieve the runtime, in percent of the median runtime of the finished peers, a vertex must exceed to
+	 * be considered a straggler.
+	 */
+	public static final String RUNTIME_THRESHOLD_KEY = "jobmanager.speculation.runtimeThreshold";
+
+	/**
+	 * The key to retrieve the input consumption rate, in percent of the median rate of the finished peers, a vertex
+	 * must fall below to be considered a straggler.
+	 */
+	public static final String RATE_THRESHOLD_KEY = "jobmanager.speculation.rateThreshold";
+
+	/**
+	 * The default minimum runtime in milliseconds.
+	 */
+	private static final long DEFAULT_MINIMUM_RUNTIME = 30000L;
+
+	/**
+	 * The default runtime threshold in percent.
+	 */
+	private static final int DEFAULT_RUNTIME_THRESHOLD = 150;
+
+	/**
+	 * The default rate threshold in percent.
+	 */
+	private static final int DEFAULT_RATE_THRESHOLD = 50;
+
+	/**
+	 * Auxiliary class to store an original pipeline and its speculative backup.
+	 */
+	private static final class Speculation {
+
+		/**
+		 * The original vertices in pipeline order.
+		 */
+		private final List<ExecutionVertex> originalPipeline;
+
+		/**
+		 * The backup vertices in pipeline order.
+		 */
+		private final List<ExecutionVertex> backupPipeline;
+
+		/**
+		 * Constructs a new speculation.
+		 * 
+		 * @param originalPipeline
+		 *        the original vertices in pipeline order
+		 * @param backupPipeline
+		 *        the backup vertices in pipeline order
+		 */
+		private Speculation(final List<ExecutionVertex> originalPipeline, final List<ExecutionVertex> backupPipeline) {
+			this.originalPipeline = originalPipeline;
+			this.backupPipeline = backupPipeline;
+		}
+	}
+
+	/**
+	 * The scheduler this manager belongs to.
+	 */
+	private final AbstractScheduler scheduler;
+
+	/**
+	 * Stores whether speculative execution is enabled.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * The minimum runtime in milliseconds before a vertex can be considered a straggler.
+	 */
+	private final long minimumRuntime;
+
+	/**
+	 * The runtime threshold in percent of the median runtime of the finished peers.
+	 */
+	private final int runtimeThreshold;
+
+	/**
+	 * The rate threshold in percent of the median input consumption rate of the finished peers.
+	 */
+	private final int rateThreshold;
+
+	/**
+	 * The points in time the vertices have switched to <code>RUNNING</code>.
+	 */
+	private final Map<ExecutionVertexID, Long> startTimes = new HashMap<ExecutionVertexID, Long>();
+
+	/**
+	 * The points in time the vertices have switched to <code>FINISHED</code>.
+	 */
+	private final Map<ExecutionVertexID, Long> finishTimes = new HashMap<ExecutionVertexID, Long>();
+
+	/**
+	 * The running speculations, accessible by the IDs of all original and backup vertices involved.
+	 */
+	private final Map<ExecutionVertexID, Speculation> speculations = new HashMap<ExecutionVertexID, Speculation>();
+
+	/**
+	 * The IDs of the vertices which have been superseded by their committed backups.
+	 */
+	private final Set<ExecutionVertexID> supersededVertices = new HashSet<ExecutionVertexID>();
+
+	/**
+	 * Constructs a new speculative execution manager.
+	 * 
+	 * @param scheduler
+	 *        the scheduler the manager belongs to
+	 */
+	SpeculativeExecutionManager(final AbstractScheduler scheduler) {
+
+		this.scheduler = scheduler;
+		this.enabled = GlobalConfiguration.getBoolean(ENABLED_KEY, false);
+		this.minimumRuntime = GlobalConfiguration.getLong(MINIMUM_RUNTIME_KEY, DEFAULT_MINIMUM_RUNTIME);
+		this.runtimeThreshold = GlobalConfiguration.getInteger(RUNTIME_THRESHOLD_KEY, DEFAULT_RUNTIME_THRESHOLD);
+		this.rateThreshold = GlobalConfiguration.getInteger(RATE_THRESHOLD_KEY, DEFAULT_RATE_THRESHOLD);
+	}
+
+	/**
+	 * Checks whether the given vertex has been superseded by its committed backup.
+	 * 
+	 * @param vertex
+	 *        the vertex to check
+	 * @return <code>true</code> if the vertex has been superseded, <code>false</code> otherwise
+	 */
+	synchronized boolean isSuperseded(final ExecutionVertex vertex) {
+
+		return this.supersededVertices.contains(vertex.getID());
+	}
+
+	/**
+	 * Records the execution state change of the given vertex and commits or abandons the speculation the vertex is
+	 * involved in, if any.
+	 * 
+	 * @param vertex
+	 *        the vertex whose execution state has changed
+	 * @param newExecutionState
+	 *        the new execution state of the vertex
+	 */
+	void executionStateChanged(final ExecutionVertex vertex, final ExecutionState newExecutionState) {
+
+		if (!this.enabled) {
+			return;
+		}
+
+		List<ExecutionVertex> verticesToCancel = null;
+		List<ExecutionVertex> pipelineToCommit = null;
+
+		synchronized (this) {
+
+			if (newExecutionState == ExecutionState.RUNNING) {
+				this.startTimes.put(vertex.getID(), Long.valueOf(System.currentTimeMillis()));
+			} else if (newExecutionState == ExecutionState.FINISHED) {
+				this.finishTimes.put(vertex.getID(), Long.valueOf(System.currentTimeMillis()));
+			}
+
+			final Speculation speculation = this.speculations.get(vertex.getID());
+			if (speculation == null) {
+				return;
+			}
+
+			final boolean isBackup = vertex.isBackupVertex();
+			final List<ExecutionVertex> pipeline = isBackup ? speculation.backupPipeline
+				: speculation.originalPipeline;
+			final List<ExecutionVertex> otherPipeline = isBackup ? speculation.originalPipeline
+				: speculation.backupPipeline;
+
+			if (newExecutionState == ExecutionState.FINISHED) {
+
+				// Only the output vertex decides the speculation
+				if (!vertex.equals(pipeline.get(pipeline.size() - 1))) {
+					return;
+				}
+
+				LOG.info((isBackup ? "Backup of " : "Original of ") + pipeline.get(0)
+					+ " finished first, canceling the other copy");
+
+				if (isBackup) {
+					pipelineToCommit = pipeline;
+					for (final ExecutionVertex original : otherPipeline) {
+						this.supersededVertices.add(original.getID());
+					}
+				}
+				verticesToCancel = otherPipeline;
+
+			} else if (newExecutionState == ExecutionState.FAILED || newExecutionState == ExecutionState.CANCELED) {
+
+				// Abandon the backup, the original is subject to the regular recovery procedure
+				LOG.info("Abandoning speculative execution of " + speculation.originalPipeline.get(0));
+				verticesToCancel = speculation.backupPipeline;
+
+			} else {
+				return;
+			}
+
+			removeSpeculation(speculation);
+		}
+
+		if (pipelineToCommit != null) {
+			final ExecutionGraph eg = vertex.getExecutionGraph();
+			synchronized (eg) {
+				eg.commitBackupPipeline(pipelineToCommit);
+			}
+		}
+
+		for (final ExecutionVertex vertexToCancel : verticesToCancel) {
+			final TaskCancelResult result = vertexToCancel.cancelTask();
+			if (result.getReturnCode() != ReturnCode.SUCCESS && result.getReturnCode() != ReturnCode.TASK_NOT_FOUND) {
+				LOG.error("Unable to cancel " + vertexToCancel + ": " + result.getDescription());
+			}
+		}
+	}
+
+	/**
+	 * Attempts to launch a speculative backup of the worst straggler of the given job on the given resource. This
+	 * method is called when all vertices assigned to the resource have finished.
+	 * 
+	 * @param executionGraph
+	 *        the job the resource has been allocated for
+	 * @param allocatedResource
+	 *        the resource which is about to be released
+	 * @return <code>true</code> if a backup has been launched on the resource and the resource must not be released,
+	 *         <code>false</code> otherwise
+	 */
+	boolean launchBackup(final ExecutionGraph executionGraph, final AllocatedResource allocatedResource) {
+
+		if (!this.enabled) {
+			return false;
+		}
+
+		if (executionGraph.getJobStatus() != InternalJobStatus.RUNNING) {
+			return false;
+		}
+
+		final List<ExecutionVertex> backupPipeline;
+
+		synchronized (this) {
+
+			final ExecutionVertex straggler = findStraggler(executionGraph, allocatedResource);
+			if (straggler == null) {
+				return false;
+			}
+
+			synchronized (executionGraph) {
+				backupPipeline = executionGraph.createBackupPipeline(straggler, allocatedResource);
+			}
+
+			if (backupPipeline == null) {
+				return false;
+			}
+
+			final List<ExecutionVertex> originalPipeline = new ArrayList<ExecutionVertex>(backupPipeline.size());
+			for (final ExecutionVertex backupVertex : backupPipeline) {
+				originalPipeline.add(backupVertex.getOriginalVertex());
+			}
+
+			final Speculation speculation = new Speculation(originalPipeline, backupPipeline);
+			for (int i = 0; i < backupPipeline.size(); ++i) {
+				this.speculations.put(originalPipeline.get(i).getID(), speculation);
+				this.speculations.put(backupPipeline.get(i).getID(), speculation);
+			}
+
+			LOG.info("Launching speculative backup of " + straggler + " on " + allocatedResource.getInstance());
+		}
+
+		for (final ExecutionVertex backupVertex : backupPipeline) {
+			backupVertex.registerExecutionListener(new SpeculativeExecutionListener(this.scheduler, this,
+				backupVertex));
+			backupVertex.updateExecutionState(ExecutionState.ASSIGNED);
+		}
+
+		this.scheduler.deployAssignedVertices(backupPipeline);
+
+		return true;
+	}
+
+	/**
+	 * Removes the given speculation from the map of running speculations.
+	 * 
+	 * @param speculation
+	 *        the speculation to be removed
+	 */
+	private void removeSpeculation(final Speculation speculation) {
+
+		for (final ExecutionVertex original : speculation.originalPipeline) {
+			this.speculations.remove(original.getID());
+		}
+
+		for (final ExecutionVertex backup : speculation.backupPipeline) {
+			this.speculations.remove(backup.getID());
+		}
+	}
+
+	/**
+	 * Finds the worst straggler among the input vertices of the current execution stage of the given job which can be
+	 * backed up on the given resource.
+	 * 
+	 * @param executionGraph
+	 *        the job to find the straggler in
+	 * @param allocatedResource
+	 *        the resource to run the backup on
+	 * @return the worst straggler or <code>null</code> if no vertex qualifies as a straggler
+	 */
+	private ExecutionVertex findStraggler(final ExecutionGraph executionGraph,
+			final AllocatedResource allocatedResource) {
+
+		final long now = System.currentTimeMillis();
+		final ExecutionStage stage = executionGraph.getCurrentExecutionStage();
+
+		ExecutionVertex worstStraggler = null;
+		double worstRatio = Double.MAX_VALUE;
+
+		for (int i = 0; i < stage.getNumberOfStageMembers(); ++i) {
+
+			final ExecutionGroupVertex groupVertex = stage.getStageMember(i);
+			if (!groupVertex.isInputVertex() || !commitsOutputAtomically(groupVertex)) {
+				continue;
+			}
+
+			// Collect the runtimes and consumption rates of the finished group members
+			final int numberOfMembers = groupVertex.getCurrentNumberOfGroupMembers();
+			final long[] runtimes = new long[numberOfMembers];
+			final double[] rates = new double[numberOfMembers];
+			int numberOfFinishedMembers = 0;
+			for (int j = 0; j < numberOfMembers; ++j) {
+
+				final ExecutionVertex member = groupVertex.getGroupMember(j);
+				final Long startTime = this.startTimes.get(member.getID());
+				final Long finishTime = this.finishTimes.get(member.getID());
+				if (member.getExecutionState() != ExecutionState.FINISHED || startTime == null || finishTime == null) {
+					continue;
+				}
+
+				final long runtime = Math.max(1L, finishTime.longValue() - startTime.longValue());
+				runtimes[numberOfFinishedMembers] = runtime;
+				rates[numberOfFinishedMembers] = (double) member.getConsumedInput() / (double) runtime;
+				++numberOfFinishedMembers;
+			}
+
+			if (numberOfFinishedMembers == 0) {
+				continue;
+			}
+
+			final long medianRuntime = median(runtimes, numberOfFinishedMembers);
+			final double medianRate = median(rates, numberOfFinishedMembers);
+
+			for (int j = 0; j < numberOfMembers; ++j) {
+
+				final ExecutionVertex member = groupVertex.getGroupMember(j);
+				if (member.getExecutionState() != ExecutionState.RUNNING) {
+					continue;
+				}
+
+				if (this.speculations.containsKey(member.getID())) {
+					continue;
+				}
+
+				// Make sure the backup runs on a different instance of the same type
+				final AllocatedResource memberResource = member.getAllocatedResource();
+				if (memberResource.getInstance().equals(allocatedResource.getInstance())
+					|| !memberResource.getInstanceType().equals(allocatedResource.getInstanceType())) {
+					continue;
+				}
+
+				final Long startTime = this.startTimes.get(member.getID());
+				if (startTime == null) {
+					continue;
+				}
+
+				final long runtime = Math.max(1L, now - startTime.longValue());
+				final long consumedInput = member.getConsumedInput();
+				if (!isStraggler(runtime, consumedInput, medianRuntime, medianRate, this.minimumRuntime,
+					this.runtimeThreshold, this.rateThreshold)) {
+					continue;
+				}
+
+				final double ratio = ((double) consumedInput / (double) runtime) / medianRate;
+				if (ratio < worstRatio) {
+					worstRatio = ratio;
+					worstStraggler = member;
+				}
+			}
+		}
+
+		return worstStraggler;
+	}
+
+	/**
+	 * Checks whether the output vertex of the pipelines starting at the given input group vertex commits its output
+	 * atomically.
+	 * 
+	 * @param inputGroupVertex
+	 *        the input group vertex the pipelines start at
+	 * @return <code>true</code> if the output vertex commits its output atomically, <code>false</code> if it does not
+	 *         or if the pipelines do not form a chain
+	 */
+	private static boolean commitsOutputAtomically(final ExecutionGroupVertex inputGroupVertex) {
+
+		ExecutionGroupVertex groupVertex = inputGroupVertex;
+		while (!groupVertex.isOutputVertex()) {
+
+			if (groupVertex.getNumberOfForwardLinks() != 1) {
+				return false;
+			}
+
+			groupVertex = groupVertex.getForwardEdge(0).getTargetVertex();
+		}
+
+		final AbstractInvokable invokable = groupVertex.getEnvironment().getInvokable();
+		if (!(invokable instanceof AbstractOutputTask)) {
+			return false;
+		}
+
+		return ((AbstractOutputTask) invokable).commitsOutputAtomically();
+	}
+
+	/**
+	 * Decides whether a running vertex is a straggler. A vertex is a straggler if it has been running for at least the
+	 * minimum runtime, its runtime exceeds the given percentage of the median runtime of its finished peers and its
+	 * input consumption rate falls below the given percentage of the median rate of its finished peers.
+	 * 
+	 * @param runtime
+	 *        the time the vertex has been running in milliseconds
+	 * @param consumedInput
+	 *        the amount of input the vertex has consumed so far
+	 * @param medianRuntime
+	 *        the median runtime of the finished peers in milliseconds
+	 * @param medianRate
+	 *        the median input consumption rate of the finished peers per millisecond
+	 * @param minimumRuntime
+	 *        the minimum runtime in milliseconds before a vertex can be considered a straggler
+	 * @param runtimeThreshold
+	 *        the runtime threshold in percent of the median runtime
+	 * @param rateThreshold
+	 *        the rate threshold in percent of the median rate
+	 * @return <code>true</code> if the vertex is a straggler, <code>false</code> otherwise
+	 */
+	static boolean isStraggler(final long runtime, final long consumedInput, final long medianRuntime,
+			final double medianRate, final long minimumRuntime, final int runtimeThreshold, final int rateThreshold) {
+
+		if (runtime < minimumRuntime) {
+			return false;
+		}
+
+		if (runtime * 100L < medianRuntime * runtimeThreshold) {
+			return false;
+		}
+
+		final double rate = (double) consumedInput / (double) runtime;
+
+		return (rate * 100.0 < medianRate * rateThreshold);
+	}
+
+	/**
+	 * Returns the median of the first <code>length</code> entries of the given array.
+	 * 
+	 * @param values
+	 *        the array of values, its entries are reordered
+	 * @param length
+	 *        the number of entries to consider
+	 * @return the median of the entries
+	 */
+	private static long median(final long[] values, final int length) {
+
+		Arrays.sort(values, 0, length);
+
+		return values[length / 2];
+	}
+
+	/**
+	 * Returns the median of the first <code>length</code> entries of the given array.
+	 * 
+	 * @param values
+	 *        the array of values, its entries are reordered
+	 * @param length
+	 *        the number of entries to consider
+	 * @return the median of the entries
+	 */
+	private static double median(final double[] values, final int length) {
+
+		Arrays.sort(values, 0, length);
+
+		return values[length / 2];
+	}
+}
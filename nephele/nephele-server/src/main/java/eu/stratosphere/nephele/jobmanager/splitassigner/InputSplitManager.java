@@ -176,27 +176,36 @@ public final class InputSplitManager {
 	 */
 	public InputSplit getNextInputSplit(final ExecutionVertex vertex, final int sequenceNumber) {
 
-		InputSplit nextInputSplit = this.inputSplitTracker.getInputSplitFromLog(vertex, sequenceNumber);
-		if (nextInputSplit != null) {
-			LOG.info("Input split " + nextInputSplit.getSplitNumber() + " for vertex " + vertex + " replayed from log");
-			return nextInputSplit;
-		}
+		// All input splits requested before have been consumed by now
+		vertex.updateConsumedInput(this.inputSplitTracker.getConsumedInput(vertex, sequenceNumber));
 
-		final ExecutionGroupVertex groupVertex = vertex.getGroupVertex();
-		final InputSplitAssigner inputSplitAssigner = this.assignerCache.get(groupVertex);
-		if (inputSplitAssigner == null) {
-			final JobID jobID = groupVertex.getExecutionStage().getExecutionGraph().getJobID();
-			LOG.error("Cannot find input assigner for group vertex " + groupVertex.getName() + " (job " + jobID + ")");
-			return null;
-		}
+		// Speculative backups and their original vertex must not assign different splits under the same sequence number
+		synchronized (InputSplitTracker.getLogVertex(vertex)) {
 
-		nextInputSplit = inputSplitAssigner.getNextInputSplit(vertex);
-		if (nextInputSplit != null) {
-			this.inputSplitTracker.addInputSplitToLog(vertex, sequenceNumber, nextInputSplit);
-			LOG.info(vertex + " receives input split " + nextInputSplit.getSplitNumber());
-		}
+			InputSplit nextInputSplit = this.inputSplitTracker.getInputSplitFromLog(vertex, sequenceNumber);
+			if (nextInputSplit != null) {
+				LOG.info("Input split " + nextInputSplit.getSplitNumber() + " for vertex " + vertex
+					+ " replayed from log");
+				return nextInputSplit;
+			}
+
+			final ExecutionGroupVertex groupVertex = vertex.getGroupVertex();
+			final InputSplitAssigner inputSplitAssigner = this.assignerCache.get(groupVertex);
+			if (inputSplitAssigner == null) {
+				final JobID jobID = groupVertex.getExecutionStage().getExecutionGraph().getJobID();
+				LOG.error("Cannot find input assigner for group vertex " + groupVertex.getName() + " (job " + jobID
+					+ ")");
+				return null;
+			}
+
+			nextInputSplit = inputSplitAssigner.getNextInputSplit(vertex);
+			if (nextInputSplit != null) {
+				this.inputSplitTracker.addInputSplitToLog(vertex, sequenceNumber, nextInputSplit);
+				LOG.info(vertex + " receives input split " + nextInputSplit.getSplitNumber());
+			}
 
-		return nextInputSplit;
+			return nextInputSplit;
+		}
 	}
 
 	/**
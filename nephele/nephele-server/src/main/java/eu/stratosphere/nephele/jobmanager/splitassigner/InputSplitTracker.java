@@ -20,6 +20,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -30,12 +31,19 @@ import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
 import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertexIterator;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.instance.AbstractInstance;
+import eu.stratosphere.nephele.instance.AllocatedResource;
+import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.template.InputSplit;
 
 /**
  * The input split tracker maintains a log of all the input splits that are handed out to the individual input vertices.
  * In case of an input vertex must be restarted the input split tracker makes sure that the vertex receives the same
- * sequence of input splits as in its original run up to the point that it crashed.
+ * sequence of input splits as in its original run up to the point that it crashed. In addition, the input split tracker
+ * counts for each job how many {@link FileInputSplit} objects have been read locally and how many have been read from a
+ * remote host. Speculative backups of a vertex share the log of the original vertex, so that both consume the same
+ * sequence of input splits.
  * <p>
  * This class is thread-safe.
  * 
@@ -53,6 +61,27 @@ final class InputSplitTracker {
 	 */
 	private final ConcurrentMap<ExecutionVertexID, List<InputSplit>> splitMap = new ConcurrentHashMap<ExecutionVertexID, List<InputSplit>>();
 
+	/**
+	 * The map storing the locality statistics of the individual jobs.
+	 */
+	private final ConcurrentMap<JobID, LocalityStatistics> statisticsMap = new ConcurrentHashMap<JobID, LocalityStatistics>();
+
+	/**
+	 * This is an auxiliary class to count the local and remote reads of a job.
+	 */
+	private static final class LocalityStatistics {
+
+		/**
+		 * The number of file input splits which have been read locally.
+		 */
+		private final AtomicInteger localReads = new AtomicInteger(0);
+
+		/**
+		 * The number of file input splits which have been read from a remote host.
+		 */
+		private final AtomicInteger remoteReads = new AtomicInteger(0);
+	}
+
 	/**
 	 * Constructor with package visibility only.
 	 */
@@ -67,6 +96,8 @@ final class InputSplitTracker {
 	 */
 	void registerJob(final ExecutionGraph eg) {
 
+		this.statisticsMap.put(eg.getJobID(), new LocalityStatistics());
+
 		final Iterator<ExecutionGroupVertex> it = new ExecutionGroupVertexIterator(eg, true, -1);
 		while (it.hasNext()) {
 
@@ -100,10 +131,54 @@ final class InputSplitTracker {
 
 		final Iterator<ExecutionVertex> it = new ExecutionGraphIterator(eg, true);
 		while (it.hasNext()) {
-			this.splitMap.remove(it.next().getID());
+			this.splitMap.remove(getLogVertex(it.next()).getID());
+		}
+
+		final LocalityStatistics statistics = this.statisticsMap.remove(eg.getJobID());
+		if (statistics != null && LOG.isInfoEnabled()) {
+			final int localReads = statistics.localReads.get();
+			final int remoteReads = statistics.remoteReads.get();
+			if (localReads + remoteReads > 0) {
+				LOG.info("Job " + eg.getJobID() + " read " + localReads + " file input splits locally and "
+					+ remoteReads + " remotely");
+			}
 		}
 	}
 
+	/**
+	 * Returns the number of file input splits the given job has read locally so far.
+	 * 
+	 * @param jobID
+	 *        the ID of the job
+	 * @return the number of file input splits the job has read locally or <code>-1</code> if the job is unknown
+	 */
+	int getNumberOfLocalReads(final JobID jobID) {
+
+		final LocalityStatistics statistics = this.statisticsMap.get(jobID);
+		if (statistics == null) {
+			return -1;
+		}
+
+		return statistics.localReads.get();
+	}
+
+	/**
+	 * Returns the number of file input splits the given job has read from remote hosts so far.
+	 * 
+	 * @param jobID
+	 *        the ID of the job
+	 * @return the number of file input splits the job has read remotely or <code>-1</code> if the job is unknown
+	 */
+	int getNumberOfRemoteReads(final JobID jobID) {
+
+		final LocalityStatistics statistics = this.statisticsMap.get(jobID);
+		if (statistics == null) {
+			return -1;
+		}
+
+		return statistics.remoteReads.get();
+	}
+
 	/**
 	 * Returns the input split with the given sequence number from the specified vertex's log or <code>null</code> if no
 	 * such input split exists.
@@ -117,7 +192,7 @@ final class InputSplitTracker {
 	 */
 	InputSplit getInputSplitFromLog(final ExecutionVertex vertex, final int sequenceNumber) {
 
-		final List<InputSplit> inputSplitLog = this.splitMap.get(vertex.getID());
+		final List<InputSplit> inputSplitLog = this.splitMap.get(getLogVertex(vertex).getID());
 		if (inputSplitLog == null) {
 			LOG.error("Cannot find input split log for vertex " + vertex + " (" + vertex.getID() + ")");
 			return null;
@@ -145,7 +220,7 @@ final class InputSplitTracker {
 	 */
 	void addInputSplitToLog(final ExecutionVertex vertex, final int sequenceNumber, final InputSplit inputSplit) {
 
-		final List<InputSplit> inputSplitLog = this.splitMap.get(vertex.getID());
+		final List<InputSplit> inputSplitLog = this.splitMap.get(getLogVertex(vertex).getID());
 		if (inputSplitLog == null) {
 			LOG.error("Cannot find input split log for vertex " + vertex + " (" + vertex.getID() + ")");
 			return;
@@ -160,5 +235,101 @@ final class InputSplitTracker {
 
 			inputSplitLog.add(inputSplit);
 		}
+
+		if (inputSplit instanceof FileInputSplit) {
+			updateLocalityStatistics(vertex, (FileInputSplit) inputSplit);
+		}
+	}
+
+	/**
+	 * Returns the amount of input the given vertex has consumed before requesting the input split with the given
+	 * sequence number, i.e. the accumulated size of all input splits with a lower sequence number. The size of a file
+	 * input split is its length in bytes, all other input splits count as one.
+	 * 
+	 * @param vertex
+	 *        the vertex to compute the consumed input for
+	 * @param sequenceNumber
+	 *        the sequence number of the vertex's current input split request
+	 * @return the amount of input consumed by the vertex
+	 */
+	long getConsumedInput(final ExecutionVertex vertex, final int sequenceNumber) {
+
+		final List<InputSplit> inputSplitLog = this.splitMap.get(getLogVertex(vertex).getID());
+		if (inputSplitLog == null) {
+			return 0L;
+		}
+
+		long consumedInput = 0L;
+		synchronized (inputSplitLog) {
+
+			final int numberOfConsumedSplits = Math.min(sequenceNumber, inputSplitLog.size());
+			for (int i = 0; i < numberOfConsumedSplits; ++i) {
+				final InputSplit inputSplit = inputSplitLog.get(i);
+				if (inputSplit instanceof FileInputSplit) {
+					consumedInput += ((FileInputSplit) inputSplit).getLength();
+				} else {
+					++consumedInput;
+				}
+			}
+		}
+
+		return consumedInput;
+	}
+
+	/**
+	 * Returns the vertex whose log is used for the given vertex. Speculative backups use the log of their original
+	 * vertex.
+	 * 
+	 * @param vertex
+	 *        the vertex to find the log vertex for
+	 * @return the vertex whose log is used for the given vertex
+	 */
+	static ExecutionVertex getLogVertex(final ExecutionVertex vertex) {
+
+		final ExecutionVertex originalVertex = vertex.getOriginalVertex();
+		if (originalVertex != null) {
+			return originalVertex;
+		}
+
+		return vertex;
+	}
+
+	/**
+	 * Checks whether the given file input split is stored on the instance the given vertex runs on and updates the
+	 * locality statistics of the vertex's job accordingly.
+	 * 
+	 * @param vertex
+	 *        the vertex which consumes the file input split
+	 * @param fileInputSplit
+	 *        the file input split consumed by the vertex
+	 */
+	private void updateLocalityStatistics(final ExecutionVertex vertex, final FileInputSplit fileInputSplit) {
+
+		final LocalityStatistics statistics = this.statisticsMap.get(vertex.getExecutionGraph().getJobID());
+		if (statistics == null) {
+			return;
+		}
+
+		final AllocatedResource allocatedResource = vertex.getAllocatedResource();
+		if (allocatedResource == null) {
+			return;
+		}
+
+		final AbstractInstance instance = allocatedResource.getInstance();
+		if (instance == null) {
+			return;
+		}
+
+		final String[] hostNames = fileInputSplit.getHostNames();
+		if (hostNames != null) {
+			for (int i = 0; i < hostNames.length; ++i) {
+				if (instance.getDistance(hostNames[i]) == 0) {
+					statistics.localReads.incrementAndGet();
+					return;
+				}
+			}
+		}
+
+		statistics.remoteReads.incrementAndGet();
 	}
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
 import eu.stratosphere.nephele.fs.FileInputSplit;
@@ -34,7 +35,8 @@ import eu.stratosphere.nephele.template.InputSplit;
  * The file input split assigner is a specific implementation of the {@link InputSplitAssigner} interface for
  * {@link FileInputSplit} objects. The file input split assigner offers to take the storage location of the individual
  * file input splits into account. It attempts to always assign the splits to vertices in a way that the data locality
- * is preserved as well as possible.
+ * is preserved as well as possible. Instances which have consumed all of their local splits steal splits from the hosts
+ * with the most remaining work, while the number of concurrent remote reads per host is limited.
  * <p>
  * This class is thread-safe.
  * 
@@ -47,6 +49,16 @@ public final class FileInputSplitAssigner implements InputSplitAssigner {
 	 */
 	private static final Log LOG = LogFactory.getLog(FileInputSplitAssigner.class);
 
+	/**
+	 * The key to retrieve the maximum number of concurrent remote reads per host from the configuration.
+	 */
+	public static final String MAXIMUM_REMOTE_READS_PER_HOST_KEY = "inputsplit.file.maxRemoteReadsPerHost";
+
+	/**
+	 * The default maximum number of concurrent remote reads per host.
+	 */
+	private static final int DEFAULT_MAXIMUM_REMOTE_READS_PER_HOST = 2;
+
 	private final ConcurrentMap<ExecutionGroupVertex, FileInputSplitList> vertexMap = new ConcurrentHashMap<ExecutionGroupVertex, FileInputSplitList>();
 
 	/**
@@ -81,7 +93,15 @@ public final class FileInputSplitAssigner implements InputSplitAssigner {
 			return;
 		}
 
-		final FileInputSplitList splitStore = new FileInputSplitList();
+		int maximumRemoteReadsPerHost = GlobalConfiguration.getInteger(MAXIMUM_REMOTE_READS_PER_HOST_KEY,
+			DEFAULT_MAXIMUM_REMOTE_READS_PER_HOST);
+		if (maximumRemoteReadsPerHost <= 0) {
+			LOG.warn("Invalid value " + maximumRemoteReadsPerHost + " for " + MAXIMUM_REMOTE_READS_PER_HOST_KEY
+				+ ", using default value " + DEFAULT_MAXIMUM_REMOTE_READS_PER_HOST);
+			maximumRemoteReadsPerHost = DEFAULT_MAXIMUM_REMOTE_READS_PER_HOST;
+		}
+
+		final FileInputSplitList splitStore = new FileInputSplitList(maximumRemoteReadsPerHost);
 		if (this.vertexMap.putIfAbsent(groupVertex, splitStore) != null) {
 			LOG.error(groupVertex.getName()
 				+ " appears to be already registered with the file input split assigner, ignoring vertex...");
@@ -132,7 +152,7 @@ public final class FileInputSplitAssigner implements InputSplitAssigner {
 			return null;
 		}
 
-		return splitStore.getNextInputSplit(instance);
+		return splitStore.getNextInputSplit(vertex.getID(), instance);
 	}
 
 }
@@ -18,6 +18,7 @@ package eu.stratosphere.nephele.jobmanager.splitassigner.file;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
@@ -26,6 +27,7 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
 import eu.stratosphere.nephele.fs.FileInputSplit;
 import eu.stratosphere.nephele.instance.AbstractInstance;
 
@@ -36,6 +38,13 @@ import eu.stratosphere.nephele.instance.AbstractInstance;
  * That way input splits are always given to consuming vertices in a way that data locality is preserved as well as
  * possible.
  * <p>
+ * Splits are handed out in three stages. First, an instance drains the splits which are stored on itself. Once its
+ * local splits are exhausted, it receives the splits without any storage location and finally steals splits from the
+ * host with the largest amount of remaining work. That way, hosts which store a disproportionately large share of the
+ * input are relieved first and all instances finish their scans at roughly the same time. To keep individual hosts
+ * from being overloaded by remote readers, the number of concurrent remote reads per host is limited. The limit is only
+ * ignored if every host with remaining work has reached it, so that no instance is kept idle.
+ * <p>
  * This class is not thread-safe.
  * 
  * @author warneke
@@ -57,6 +66,32 @@ public final class FileInputSplitList {
 	 */
 	private Map<AbstractInstance, Queue<QueueElem>> instanceMap = new HashMap<AbstractInstance, Queue<QueueElem>>();
 
+	/**
+	 * The map storing the file input splits that still must be consumed, grouped by the hosts they are stored on.
+	 */
+	private final Map<String, Set<FileInputSplit>> hostMap = new HashMap<String, Set<FileInputSplit>>();
+
+	/**
+	 * The set containing the file input splits that still must be consumed and have no storage location.
+	 */
+	private final Set<FileInputSplit> unlocatedSplits = new LinkedHashSet<FileInputSplit>();
+
+	/**
+	 * The map storing the number of remote reads which are currently in progress for each host.
+	 */
+	private final Map<String, Integer> remoteReads = new HashMap<String, Integer>();
+
+	/**
+	 * The map storing the host each execution vertex is currently reading its last input split from remotely. Several
+	 * vertices may run on the same {@link AbstractInstance}, so remote reads are tracked per vertex.
+	 */
+	private final Map<ExecutionVertexID, String> currentRemoteReads = new HashMap<ExecutionVertexID, String>();
+
+	/**
+	 * The maximum number of concurrent remote reads per host.
+	 */
+	private final int maximumRemoteReadsPerHost;
+
 	/**
 	 * This is an auxiliary class to store the minimum distance between a file input split's storage locations and an
 	 * {@link AbstractInstance}.
@@ -110,6 +145,21 @@ public final class FileInputSplitList {
 
 	}
 
+	/**
+	 * Constructs a new file input split list.
+	 * 
+	 * @param maximumRemoteReadsPerHost
+	 *        the maximum number of concurrent remote reads per host
+	 */
+	FileInputSplitList(final int maximumRemoteReadsPerHost) {
+
+		if (maximumRemoteReadsPerHost <= 0) {
+			throw new IllegalArgumentException("Argument maximumRemoteReadsPerHost must be greater than zero");
+		}
+
+		this.maximumRemoteReadsPerHost = maximumRemoteReadsPerHost;
+	}
+
 	/**
 	 * Adds the given file input split to the set of file input splits to be consumed.
 	 * 
@@ -119,44 +169,249 @@ public final class FileInputSplitList {
 	synchronized void addSplit(final FileInputSplit fileInputSplit) {
 
 		this.masterSet.add(fileInputSplit);
+
+		final String[] hostNames = fileInputSplit.getHostNames();
+		if (hostNames == null || hostNames.length == 0) {
+			this.unlocatedSplits.add(fileInputSplit);
+			return;
+		}
+
+		for (int i = 0; i < hostNames.length; ++i) {
+			Set<FileInputSplit> hostSplits = this.hostMap.get(hostNames[i]);
+			if (hostSplits == null) {
+				hostSplits = new LinkedHashSet<FileInputSplit>();
+				this.hostMap.put(hostNames[i], hostSplits);
+			}
+			hostSplits.add(fileInputSplit);
+		}
 	}
 
 	/**
-	 * Returns the next file input split to be consumed by the given instance. The returned input split is selected in a
-	 * way that the distance between the split's storage location and the requesting {@link AbstractInstance} is as
-	 * short as possible.
+	 * Returns the next file input split to be consumed by the given execution vertex. Splits stored on the
+	 * {@link AbstractInstance} the vertex runs on are preferred. If no such split is left, the vertex receives a split
+	 * without storage location or steals a split from the host with the most remaining splits.
 	 * 
+	 * @param vertexID
+	 *        the ID of the execution vertex requesting the next file input split
 	 * @param instance
-	 *        the instance requesting the next file input split
-	 * @return the next input split to be consumed by the given instance or <code>null</code> if all input splits have
+	 *        the instance the requesting execution vertex runs on
+	 * @return the next input split to be consumed by the given vertex or <code>null</code> if all input splits have
 	 *         already been consumed.
 	 */
-	synchronized FileInputSplit getNextInputSplit(final AbstractInstance instance) {
+	synchronized FileInputSplit getNextInputSplit(final ExecutionVertexID vertexID, final AbstractInstance instance) {
 
-		final Queue<QueueElem> instanceSplitList = getInstanceSplitList(instance);
+		// The vertex has finished reading its previous split
+		finishRemoteRead(vertexID);
 
+		if (this.masterSet.isEmpty()) {
+			return null;
+		}
+
+		// Local splits first
+		final Queue<QueueElem> instanceSplitList = getInstanceSplitList(instance);
 		while (true) {
 
-			final QueueElem candidate = instanceSplitList.poll();
-			if (candidate == null) {
-				return null;
+			final QueueElem candidate = instanceSplitList.peek();
+			if (candidate == null || candidate.distance > 0) {
+				break;
 			}
 
-			if (this.masterSet.remove(candidate.getInputSplit())) {
+			instanceSplitList.poll();
+			if (this.masterSet.contains(candidate.getInputSplit())) {
 				if (LOG.isInfoEnabled()) {
-					if (candidate.distance == 0) {
-						LOG.info(instance + " receives local file input split");
-					} else {
-						LOG.info(instance + " receives remote file input split (distance " + candidate.distance + ")");
-					}
+					LOG.info(instance + " receives local file input split");
 				}
+				removeSplit(candidate.getInputSplit());
 				return candidate.getInputSplit();
 			}
+		}
+
+		// Splits without any storage location are remote for all instances
+		final Iterator<FileInputSplit> it = this.unlocatedSplits.iterator();
+		if (it.hasNext()) {
+			final FileInputSplit split = it.next();
+			if (LOG.isInfoEnabled()) {
+				LOG.info(instance + " receives file input split without storage location");
+			}
+			removeSplit(split);
+			return split;
+		}
+
+		// Steal from the host with the most remaining work, respecting the remote read limit if possible
+		String hostName = selectHostToStealFrom(instance, true);
+		if (hostName == null) {
+			hostName = selectHostToStealFrom(instance, false);
+		}
+
+		if (hostName == null) {
+			return null;
+		}
+
+		final FileInputSplit split = this.hostMap.get(hostName).iterator().next();
+		if (LOG.isInfoEnabled()) {
+			LOG.info(instance + " receives remote file input split from " + hostName + " (distance "
+				+ getMinimumDistance(instance, split) + ")");
+		}
+		removeSplit(split);
+		startRemoteRead(vertexID, hostName);
+
+		return split;
+	}
+
+	/**
+	 * Selects the host the given instance shall steal its next file input split from. The host with the most remaining
+	 * file input splits is selected. Ties are broken in favor of the host closest to the given instance.
+	 * 
+	 * @param instance
+	 *        the instance which is about to steal a file input split
+	 * @param respectLimit
+	 *        <code>true</code> to skip hosts which have already reached the maximum number of concurrent remote reads,
+	 *        <code>false</code> otherwise
+	 * @return the name of the selected host or <code>null</code> if no host can be selected
+	 */
+	private String selectHostToStealFrom(final AbstractInstance instance, final boolean respectLimit) {
+
+		String selectedHost = null;
+		int selectedRemainingSplits = 0;
+		int selectedDistance = Integer.MAX_VALUE;
+
+		final Iterator<Map.Entry<String, Set<FileInputSplit>>> it = this.hostMap.entrySet().iterator();
+		while (it.hasNext()) {
+
+			final Map.Entry<String, Set<FileInputSplit>> entry = it.next();
+			final String hostName = entry.getKey();
+			final int remainingSplits = entry.getValue().size();
+
+			if (respectLimit && getNumberOfRemoteReads(hostName) >= this.maximumRemoteReadsPerHost) {
+				continue;
+			}
+
+			if (remainingSplits < selectedRemainingSplits) {
+				continue;
+			}
+
+			final int distance = instance.getDistance(hostName);
+			if (remainingSplits == selectedRemainingSplits && distance >= selectedDistance) {
+				continue;
+			}
+
+			selectedHost = hostName;
+			selectedRemainingSplits = remainingSplits;
+			selectedDistance = distance;
+		}
+
+		return selectedHost;
+	}
+
+	/**
+	 * Removes the given file input split from all data structures of this list.
+	 * 
+	 * @param split
+	 *        the file input split to be removed
+	 */
+	private void removeSplit(final FileInputSplit split) {
+
+		this.masterSet.remove(split);
+
+		final String[] hostNames = split.getHostNames();
+		if (hostNames == null || hostNames.length == 0) {
+			this.unlocatedSplits.remove(split);
+			return;
+		}
+
+		for (int i = 0; i < hostNames.length; ++i) {
+			final Set<FileInputSplit> hostSplits = this.hostMap.get(hostNames[i]);
+			if (hostSplits == null) {
+				continue;
+			}
+			hostSplits.remove(split);
+			if (hostSplits.isEmpty()) {
+				this.hostMap.remove(hostNames[i]);
+			}
+		}
+	}
+
+	/**
+	 * Records that the given execution vertex has started to read a file input split remotely from the given host.
+	 * 
+	 * @param vertexID
+	 *        the ID of the execution vertex which reads the file input split
+	 * @param hostName
+	 *        the name of the host the file input split is read from
+	 */
+	private void startRemoteRead(final ExecutionVertexID vertexID, final String hostName) {
+
+		this.currentRemoteReads.put(vertexID, hostName);
+		this.remoteReads.put(hostName, Integer.valueOf(getNumberOfRemoteReads(hostName) + 1));
+	}
 
-			if (this.masterSet.isEmpty()) {
-				return null;
+	/**
+	 * Records that the given execution vertex has finished its current remote read, if any.
+	 * 
+	 * @param vertexID
+	 *        the ID of the execution vertex which has finished reading its current file input split
+	 */
+	private void finishRemoteRead(final ExecutionVertexID vertexID) {
+
+		final String hostName = this.currentRemoteReads.remove(vertexID);
+		if (hostName == null) {
+			return;
+		}
+
+		final int numberOfRemoteReads = getNumberOfRemoteReads(hostName) - 1;
+		if (numberOfRemoteReads <= 0) {
+			this.remoteReads.remove(hostName);
+		} else {
+			this.remoteReads.put(hostName, Integer.valueOf(numberOfRemoteReads));
+		}
+	}
+
+	/**
+	 * Returns the number of remote reads which are currently in progress for the given host.
+	 * 
+	 * @param hostName
+	 *        the name of the host
+	 * @return the number of remote reads which are currently in progress for the given host
+	 */
+	private int getNumberOfRemoteReads(final String hostName) {
+
+		final Integer numberOfRemoteReads = this.remoteReads.get(hostName);
+		if (numberOfRemoteReads == null) {
+			return 0;
+		}
+
+		return numberOfRemoteReads.intValue();
+	}
+
+	/**
+	 * Returns the minimum distance between the given instance and the storage locations of the given file input split.
+	 * 
+	 * @param instance
+	 *        the instance to compute the distance for
+	 * @param split
+	 *        the file input split to compute the distance for
+	 * @return the minimum distance between the instance and the split's storage locations or
+	 *         <code>Integer.MAX_VALUE</code> if the split has no storage location
+	 */
+	private static int getMinimumDistance(final AbstractInstance instance, final FileInputSplit split) {
+
+		final String[] hostNames = split.getHostNames();
+		if (hostNames == null) {
+			return Integer.MAX_VALUE;
+		}
+
+		int minDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < hostNames.length; ++i) {
+			final int distance = instance.getDistance(hostNames[i]);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Distance between " + instance + " and " + hostNames[i] + " is " + distance);
+			}
+			if (distance < minDistance) {
+				minDistance = distance;
 			}
 		}
+
+		return minDistance;
 	}
 
 	/**
@@ -179,25 +434,7 @@ public final class FileInputSplitList {
 			while (it.hasNext()) {
 
 				final FileInputSplit split = it.next();
-				final String[] hostNames = split.getHostNames();
-				if (hostNames == null) {
-					instanceSplitList.add(new QueueElem(split, Integer.MAX_VALUE));
-
-				} else {
-
-					int minDistance = Integer.MAX_VALUE;
-					for (int i = 0; i < hostNames.length; ++i) {
-						final int distance = instance.getDistance(hostNames[i]);
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Distance between " + instance + " and " + hostNames[i] + " is " + distance);
-						}
-						if (distance < minDistance) {
-							minDistance = distance;
-						}
-					}
-
-					instanceSplitList.add(new QueueElem(split, minDistance));
-				}
+				instanceSplitList.add(new QueueElem(split, getMinimumDistance(instance, split)));
 			}
 
 			this.instanceMap.put(instance, instanceSplitList);
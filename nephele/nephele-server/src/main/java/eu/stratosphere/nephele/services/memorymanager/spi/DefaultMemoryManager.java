@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.services.memorymanager.spi;
 
 
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,6 +49,11 @@ import eu.stratosphere.nephele.template.AbstractInvokable;
  * the manager works 2 dimensional byte array (i.e. with memory chunks). Please be aware that in order to keep the array
  * access methods in the {@link DefaultMemorySegment} fast and simple, the actual allocated memory segments must not
  * exceed 2GB and must be contained in a single memory chunk.
+ * <p>
+ * Alternatively, the memory manager can allocate its memory outside the Java heap, as direct memory. The managed
+ * memory then does not occupy the heap and is not subject to garbage collection, and the segments can be read and
+ * written by the I/O manager without copying them into intermediate buffers. Note that the amount of direct memory
+ * the JVM may allocate is limited by the <code>-XX:MaxDirectMemorySize</code> option.
  * 
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -64,6 +70,11 @@ public class DefaultMemoryManager implements MemoryManager
 	 */
 	public static final int MIN_PAGE_SIZE = 4 * 1024;
 	
+	/**
+	 * The maximal size of the chunks in which off-heap memory is allocated. Currently set to 1 GiByte.
+	 */
+	private static final int MAX_OFF_HEAP_CHUNK_SIZE = 1024 * 1024 * 1024;
+	
 	/**
 	 * The Log.
 	 */
@@ -73,7 +84,7 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final Object lock = new Object();	 	// The lock used on the shared structures.
 	
-	private final ArrayDeque<byte[]> freeSegments;	// the free memory segments
+	private final ArrayDeque<ByteBuffer> freeSegments;	// the free memory pages
 	
 	private final HashMap<AbstractInvokable, Set<DefaultMemorySegment>> allocatedSegments;
 	
@@ -85,6 +96,8 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final int totalNumPages;		// The initial total size, for verification.
 	
+	private final boolean offHeap;			// flag whether the memory is allocated outside the java heap
+	
 	private boolean isShutDown;				// flag whether the close() has already been invoked.
 
 	// ------------------------------------------------------------------------
@@ -106,7 +119,19 @@ public class DefaultMemoryManager implements MemoryManager
 	 * @param memorySize The total size of the memory to be managed by this memory manager.
 	 * @param pageSize The size of the pages handed out by the memory manager.
 	 */
-	public DefaultMemoryManager(long memorySize, int pageSize)
+	public DefaultMemoryManager(long memorySize, int pageSize) {
+		this(memorySize, pageSize, false);
+	}
+	
+	/**
+	 * Creates a memory manager with the given capacity and given page size, allocating the memory either
+	 * on the heap or as direct memory outside the heap.
+	 * 
+	 * @param memorySize The total size of the memory to be managed by this memory manager.
+	 * @param pageSize The size of the pages handed out by the memory manager.
+	 * @param offHeap True, if the memory is to be allocated outside the java heap, false otherwise.
+	 */
+	public DefaultMemoryManager(long memorySize, int pageSize, boolean offHeap)
 	{
 		// sanity checks
 		if (memorySize <= 0) {
@@ -134,14 +159,29 @@ public class DefaultMemoryManager implements MemoryManager
 		}
 		
 		// initialize the free segments and allocated segments tracking structures
-		this.freeSegments = new ArrayDeque<byte[]>();
+		this.freeSegments = new ArrayDeque<ByteBuffer>(this.totalNumPages);
 		this.allocatedSegments = new HashMap<AbstractInvokable, Set<DefaultMemorySegment>>();
+		this.offHeap = offHeap;
 
-		
-		// add the full chunks
-		for (int i = 0; i < this.totalNumPages; i++) {
-			// allocate memory of the specified size
-			this.freeSegments.add(new byte[this.pageSize]);
+		if (offHeap) {
+			// allocate the direct memory in large chunks and slice them into pages
+			final int pagesPerChunk = MAX_OFF_HEAP_CHUNK_SIZE / this.pageSize;
+			for (int pagesLeft = this.totalNumPages; pagesLeft > 0; pagesLeft -= pagesPerChunk) {
+				final int numPagesInChunk = Math.min(pagesLeft, pagesPerChunk);
+				final ByteBuffer chunk = ByteBuffer.allocateDirect(numPagesInChunk * this.pageSize);
+				
+				for (int i = 0; i < numPagesInChunk; i++) {
+					chunk.limit((i + 1) * this.pageSize);
+					chunk.position(i * this.pageSize);
+					this.freeSegments.add(chunk.slice());
+				}
+			}
+		} else {
+			// add the full chunks
+			for (int i = 0; i < this.totalNumPages; i++) {
+				// allocate memory of the specified size
+				this.freeSegments.add(ByteBuffer.wrap(new byte[this.pageSize]));
+			}
 		}
 	}
 
@@ -233,8 +273,8 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			
 			for (int i = numPages; i > 0; i--) {
-				byte[] buffer = this.freeSegments.poll();
-				final DefaultMemorySegment segment = new DefaultMemorySegment(owner, buffer, 0, this.pageSize);
+				final ByteBuffer page = this.freeSegments.poll();
+				final DefaultMemorySegment segment = new DefaultMemorySegment(owner, page);
 				target.add(segment);
 				segmentsForOwner.add(segment);
 			}
@@ -300,8 +340,8 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			finally {
 				// release the memory in any case
-				byte[] buffer = defSeg.destroy();
-				this.freeSegments.add(buffer);
+				final ByteBuffer page = defSeg.destroy();
+				this.freeSegments.add(page);
 			}
 		}
 		// -------------------- END CRITICAL SECTION -------------------
@@ -362,8 +402,8 @@ public class DefaultMemoryManager implements MemoryManager
 				}
 				finally {
 					// release the memory in any case
-					byte[] buffer = defSeg.destroy();
-					this.freeSegments.add(buffer);
+					final ByteBuffer page = defSeg.destroy();
+					this.freeSegments.add(page);
 				}
 			}
 		}
@@ -393,8 +433,8 @@ public class DefaultMemoryManager implements MemoryManager
 			
 			// free each segment
 			for (DefaultMemorySegment seg : segments) {
-				final byte[] buffer = seg.destroy();
-				this.freeSegments.add(buffer);
+				final ByteBuffer page = seg.destroy();
+				this.freeSegments.add(page);
 			}
 			
 			segments.clear();
@@ -411,6 +451,15 @@ public class DefaultMemoryManager implements MemoryManager
 	public int getPageSize() {
 		return this.pageSize;
 	}
+	
+	/**
+	 * Checks whether this memory manager allocates its memory outside the java heap.
+	 * 
+	 * @return True, if the memory is allocated outside the heap, false otherwise.
+	 */
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
 
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.memorymanager.MemoryManager#computeNumberOfPages(long)
@@ -448,17 +497,23 @@ public class DefaultMemoryManager implements MemoryManager
 	{
 		private AbstractInvokable owner;
 		
-		DefaultMemorySegment(AbstractInvokable owner, byte[] memory, int offset, int size) {
-			super(memory, offset, size);
+		private ByteBuffer page;
+		
+		DefaultMemorySegment(AbstractInvokable owner, ByteBuffer page) {
+			super(page);
 			this.owner = owner;
+			this.page = page;
 		}
 		
-		byte[] destroy()
+		ByteBuffer destroy()
 		{
-			final byte[] buffer = this.memory;
+			final ByteBuffer page = this.page;
+			this.page = null;
 			this.memory = null;
+			this.offHeapMemory = null;
 			this.wrapper = null;
-			return buffer;
+			this.bulkAccessor = null;
+			return page;
 		}
 	}
 }
@@ -313,9 +313,13 @@ public class TaskManager implements TaskOperationProtocol, PluginCommunicationPr
 		this.hardwareDescription = hardware;
 
 		// Initialize the memory manager
-		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of memory");
+		final boolean offHeap = GlobalConfiguration.getBoolean(ConfigConstants.MEMORY_MANAGER_OFF_HEAP_KEY,
+			ConfigConstants.DEFAULT_MEMORY_MANAGER_OFF_HEAP);
+		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of "
+			+ (offHeap ? "off-heap " : "") + "memory");
 		try {
-			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory());
+			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory(),
+				DefaultMemoryManager.DEFAULT_PAGE_SIZE, offHeap);
 		} catch (RuntimeException rte) {
 			LOG.fatal("Unable to initialize memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20)
 				+ " megabytes of memory", rte);
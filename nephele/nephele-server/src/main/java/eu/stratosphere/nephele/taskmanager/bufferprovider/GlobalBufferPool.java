@@ -16,8 +16,10 @@
 package eu.stratosphere.nephele.taskmanager.bufferprovider;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,6 +45,70 @@ public final class GlobalBufferPool {
 	 */
 	public static final int DEFAULT_BUFFER_SIZE_IN_BYTES = 64 * 1024; // 64k
 
+	/**
+	 * The default sizes of the small buffer classes in bytes.
+	 */
+	private static final String DEFAULT_SMALL_BUFFER_SIZES = "4096,32768";
+
+	/**
+	 * The default number of buffers to create at startup for each small buffer class.
+	 */
+	private static final int DEFAULT_NUMBER_OF_SMALL_BUFFERS = 128;
+
+	/**
+	 * A size class manages buffers of the same size. Requesting and releasing buffers does not require a lock.
+	 */
+	private static final class SizeClass {
+
+		/**
+		 * The size of the buffers in this class in bytes.
+		 */
+		private final int bufferSizeInBytes;
+
+		/**
+		 * The number of buffers created for this class at startup.
+		 */
+		private final int numberOfBuffers;
+
+		/**
+		 * The buffers of this class which are currently available.
+		 */
+		private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+		/**
+		 * The number of buffers of this class which are currently available.
+		 */
+		private final AtomicInteger numberOfAvailableBuffers = new AtomicInteger(0);
+
+		private SizeClass(final int bufferSizeInBytes, final int numberOfBuffers) {
+
+			this.bufferSizeInBytes = bufferSizeInBytes;
+			this.numberOfBuffers = numberOfBuffers;
+
+			for (int i = 0; i < numberOfBuffers; i++) {
+				this.buffers.add(ByteBuffer.allocateDirect(bufferSizeInBytes));
+			}
+			this.numberOfAvailableBuffers.set(numberOfBuffers);
+		}
+
+		private ByteBuffer lock() {
+
+			final ByteBuffer buffer = this.buffers.poll();
+			if (buffer != null) {
+				this.numberOfAvailableBuffers.decrementAndGet();
+			}
+
+			return buffer;
+		}
+
+		private void release(final ByteBuffer buffer) {
+
+			buffer.clear();
+			this.buffers.add(buffer);
+			this.numberOfAvailableBuffers.incrementAndGet();
+		}
+	}
+
 	/**
 	 * The number of buffers created at startup.
 	 */
@@ -53,7 +119,11 @@ public final class GlobalBufferPool {
 	 */
 	private final int bufferSizeInBytes;
 
-	private final Queue<ByteBuffer> buffers;
+	/**
+	 * The size classes of this pool in ascending order of their buffer size. The last class contains the read/write
+	 * buffers of maximum size which are handed out to the local buffer pools.
+	 */
+	private final SizeClass[] sizeClasses;
 
 	/**
 	 * Returns the singleton instance of the global buffer pool. If the instance does not already exist, it is also
@@ -80,16 +150,73 @@ public final class GlobalBufferPool {
 		this.bufferSizeInBytes = GlobalConfiguration.getInteger("channel.network.bufferSizeInBytes",
 			DEFAULT_BUFFER_SIZE_IN_BYTES);
 
-		this.buffers = new ArrayBlockingQueue<ByteBuffer>(this.numberOfBuffers);
+		final int[] smallBufferSizes = parseSmallBufferSizes(GlobalConfiguration.getString(
+			"channel.network.smallBufferSizes", DEFAULT_SMALL_BUFFER_SIZES), this.bufferSizeInBytes);
+		final int numberOfSmallBuffers = GlobalConfiguration.getInteger("channel.network.numberOfSmallBuffers",
+			DEFAULT_NUMBER_OF_SMALL_BUFFERS);
 
 		// Initialize buffers
-		for (int i = 0; i < this.numberOfBuffers; i++) {
-			final ByteBuffer readBuffer = ByteBuffer.allocateDirect(this.bufferSizeInBytes);
-			this.buffers.add(readBuffer);
+		this.sizeClasses = new SizeClass[smallBufferSizes.length + 1];
+		for (int i = 0; i < smallBufferSizes.length; i++) {
+			this.sizeClasses[i] = new SizeClass(smallBufferSizes[i], numberOfSmallBuffers);
 		}
+		this.sizeClasses[smallBufferSizes.length] = new SizeClass(this.bufferSizeInBytes, this.numberOfBuffers);
 
 		LOG.info("Initialized global buffer pool with " + this.numberOfBuffers + " buffers with a size "
-			+ this.bufferSizeInBytes + " bytes each");
+			+ this.bufferSizeInBytes + " bytes each and " + numberOfSmallBuffers + " small buffers for each of the sizes "
+			+ Arrays.toString(smallBufferSizes));
+	}
+
+	/**
+	 * Parses the comma-separated list of small buffer sizes. Sizes which are not positive or not smaller than the
+	 * maximum buffer size are ignored.
+	 * 
+	 * @param smallBufferSizes
+	 *        the comma-separated list of small buffer sizes in bytes
+	 * @param maximumBufferSize
+	 *        the maximum buffer size in bytes
+	 * @return the distinct valid small buffer sizes in ascending order
+	 */
+	private static int[] parseSmallBufferSizes(final String smallBufferSizes, final int maximumBufferSize) {
+
+		final String[] fields = smallBufferSizes.trim().split("\\s*,\\s*");
+		final int[] sizes = new int[fields.length];
+		int numberOfSizes = 0;
+
+		for (int i = 0; i < fields.length; i++) {
+
+			if (fields[i].isEmpty()) {
+				continue;
+			}
+
+			int size;
+			try {
+				size = Integer.parseInt(fields[i]);
+			} catch (NumberFormatException e) {
+				LOG.warn("Ignoring invalid small buffer size " + fields[i]);
+				continue;
+			}
+
+			if (size <= 0 || size >= maximumBufferSize) {
+				LOG.warn("Ignoring small buffer size " + size + ", sizes must be between 0 and " + maximumBufferSize
+					+ " bytes");
+				continue;
+			}
+
+			sizes[numberOfSizes++] = size;
+		}
+
+		Arrays.sort(sizes, 0, numberOfSizes);
+
+		// Remove duplicates
+		int numberOfDistinctSizes = 0;
+		for (int i = 0; i < numberOfSizes; i++) {
+			if (numberOfDistinctSizes == 0 || sizes[numberOfDistinctSizes - 1] != sizes[i]) {
+				sizes[numberOfDistinctSizes++] = sizes[i];
+			}
+		}
+
+		return Arrays.copyOf(sizes, numberOfDistinctSizes);
 	}
 
 	/**
@@ -109,7 +236,33 @@ public final class GlobalBufferPool {
 	 */
 	public ByteBuffer lockGlobalBuffer() {
 
-		return this.buffers.poll();
+		return this.sizeClasses[this.sizeClasses.length - 1].lock();
+	}
+
+	/**
+	 * Locks a buffer from the smallest size class which is smaller than the maximum buffer size and can hold the given
+	 * number of bytes. If the class has no buffer left, the next larger small class is tried.
+	 * 
+	 * @param minimumSizeOfBuffer
+	 *        the minimum size of the requested buffer in bytes
+	 * @return the locked buffer or <code>null</code> if no small buffer of sufficient size is currently available
+	 */
+	public ByteBuffer lockSmallGlobalBuffer(final int minimumSizeOfBuffer) {
+
+		for (int i = 0; i < this.sizeClasses.length - 1; i++) {
+
+			final SizeClass sizeClass = this.sizeClasses[i];
+			if (sizeClass.bufferSizeInBytes < minimumSizeOfBuffer) {
+				continue;
+			}
+
+			final ByteBuffer buffer = sizeClass.lock();
+			if (buffer != null) {
+				return buffer;
+			}
+		}
+
+		return null;
 	}
 
 	/**
@@ -120,8 +273,17 @@ public final class GlobalBufferPool {
 	 */
 	public void releaseGlobalBuffer(final ByteBuffer releasedBuffer) {
 
-		releasedBuffer.clear();
-		this.buffers.add(releasedBuffer);
+		final int capacity = releasedBuffer.capacity();
+		for (int i = 0; i < this.sizeClasses.length; i++) {
+
+			final SizeClass sizeClass = this.sizeClasses[i];
+			if (sizeClass.bufferSizeInBytes == capacity) {
+				sizeClass.release(releasedBuffer);
+				return;
+			}
+		}
+
+		throw new IllegalArgumentException("Buffer with capacity " + capacity + " does not belong to this pool");
 	}
 
 	/**
@@ -141,6 +303,20 @@ public final class GlobalBufferPool {
 	 */
 	public int getCurrentNumberOfBuffers() {
 
-		return this.buffers.size();
+		return this.sizeClasses[this.sizeClasses.length - 1].numberOfAvailableBuffers.get();
+	}
+
+	/**
+	 * Writes the utilization of each size class of this pool to the console. This method is primarily for debugging
+	 * purposes.
+	 */
+	public void logBufferUtilization() {
+
+		for (int i = 0; i < this.sizeClasses.length; i++) {
+
+			final SizeClass sizeClass = this.sizeClasses[i];
+			System.out.println("\t\t" + sizeClass.bufferSizeInBytes + " bytes: "
+				+ sizeClass.numberOfAvailableBuffers.get() + " of " + sizeClass.numberOfBuffers + " unused");
+		}
 	}
 }
@@ -17,8 +17,8 @@ package eu.stratosphere.nephele.taskmanager.bufferprovider;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +27,16 @@ import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
 import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
 
+/**
+ * A local buffer pool caches a designated number of buffers from the {@link GlobalBufferPool} for a task or a gate.
+ * <p>
+ * Requesting and recycling a cached buffer does not require a lock. The monitor of the buffer queue is only taken to
+ * change the number of cached buffers, to wait for a buffer, or to notify threads and listeners waiting for one.
+ * Requests for buffers smaller than the maximum buffer size are preferably served from the global pool's small size
+ * classes, so they do not occupy one of the designated buffers.
+ * <p>
+ * This class is thread-safe.
+ */
 public final class LocalBufferPool implements BufferProvider {
 
 	private static final class LocalBufferPoolConnector implements MemoryBufferPoolConnector {
@@ -48,29 +58,51 @@ public final class LocalBufferPool implements BufferProvider {
 
 	}
 
+	private static final class GlobalBufferPoolConnector implements MemoryBufferPoolConnector {
+
+		private final GlobalBufferPool globalBufferPool;
+
+		private GlobalBufferPoolConnector(final GlobalBufferPool globalBufferPool) {
+			this.globalBufferPool = globalBufferPool;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void recycle(final ByteBuffer byteBuffer) {
+
+			this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
+		}
+	}
+
 	private final static Log LOG = LogFactory.getLog(LocalBufferPool.class);
 
 	private final GlobalBufferPool globalBufferPool;
 
 	private final int maximumBufferSize;
 
-	private int designatedNumberOfBuffers;
+	private volatile int designatedNumberOfBuffers;
 
-	private int requestedNumberOfBuffers = 0;
+	private volatile int requestedNumberOfBuffers = 0;
 
 	private final boolean isShared;
 
 	private boolean asynchronousEventOccurred = false;
 
-	private boolean isDestroyed = false;
+	private volatile boolean isDestroyed = false;
+
+	private volatile int numberOfWaitingThreads = 0;
 
 	private final AsynchronousEventListener eventListener;
 
-	private final Queue<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
 
 	private final LocalBufferPoolConnector bufferPoolConnector;
 
-	private final Queue<BufferAvailabilityListener> bufferAvailabilityListenerQueue = new ArrayDeque<BufferAvailabilityListener>();
+	private final GlobalBufferPoolConnector smallBufferPoolConnector;
+
+	private final Queue<BufferAvailabilityListener> bufferAvailabilityListenerQueue = new ConcurrentLinkedQueue<BufferAvailabilityListener>();
 
 	public LocalBufferPool(final int designatedNumberOfBuffers, final boolean isShared,
 			final AsynchronousEventListener eventListener) {
@@ -81,6 +113,7 @@ public final class LocalBufferPool implements BufferProvider {
 		this.isShared = isShared;
 		this.eventListener = eventListener;
 		this.bufferPoolConnector = new LocalBufferPoolConnector(this);
+		this.smallBufferPoolConnector = new GlobalBufferPoolConnector(this.globalBufferPool);
 	}
 
 	public LocalBufferPool(final int designatedNumberOfBuffers, final boolean isShared) {
@@ -119,6 +152,22 @@ public final class LocalBufferPool implements BufferProvider {
 				+ " bytes is requested, but maximum buffer size is " + this.maximumBufferSize);
 		}
 
+		// Serve small requests from the global pool's small size classes if possible
+		if (minimumSizeOfBuffer < this.maximumBufferSize) {
+			final ByteBuffer byteBuffer = this.globalBufferPool.lockSmallGlobalBuffer(minimumSizeOfBuffer);
+			if (byteBuffer != null) {
+				return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.smallBufferPoolConnector);
+			}
+		}
+
+		// Fast path, take a cached buffer without acquiring the monitor
+		if (this.requestedNumberOfBuffers <= this.designatedNumberOfBuffers) {
+			final ByteBuffer byteBuffer = this.buffers.poll();
+			if (byteBuffer != null) {
+				return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.bufferPoolConnector);
+			}
+		}
+
 		while (true) {
 
 			boolean async = false;
@@ -126,28 +175,18 @@ public final class LocalBufferPool implements BufferProvider {
 			synchronized (this.buffers) {
 
 				// Make sure we return excess buffers immediately
-				while (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
-
-					final ByteBuffer buffer = this.buffers.poll();
-					if (buffer == null) {
-						break;
-					}
-
-					this.globalBufferPool.releaseGlobalBuffer(buffer);
-					this.requestedNumberOfBuffers--;
-				}
+				returnExcessBuffers();
 
-				while (this.buffers.isEmpty()) {
+				ByteBuffer byteBuffer = this.buffers.poll();
+				while (byteBuffer == null) {
 
 					// Check if the number of cached buffers matches the number of designated buffers
 					if (this.requestedNumberOfBuffers < this.designatedNumberOfBuffers) {
 
-						final ByteBuffer buffer = this.globalBufferPool.lockGlobalBuffer();
-						if (buffer != null) {
-
-							this.buffers.add(buffer);
+						byteBuffer = this.globalBufferPool.lockGlobalBuffer();
+						if (byteBuffer != null) {
 							this.requestedNumberOfBuffers++;
-							continue;
+							break;
 						}
 					}
 
@@ -158,14 +197,20 @@ public final class LocalBufferPool implements BufferProvider {
 					}
 
 					if (block) {
-						this.buffers.wait(100);
+						this.numberOfWaitingThreads++;
+						try {
+							this.buffers.wait(100);
+						} finally {
+							this.numberOfWaitingThreads--;
+						}
 					} else {
 						return null;
 					}
+
+					byteBuffer = this.buffers.poll();
 				}
 
 				if (!async) {
-					final ByteBuffer byteBuffer = this.buffers.poll();
 					return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.bufferPoolConnector);
 				}
 			}
@@ -176,6 +221,25 @@ public final class LocalBufferPool implements BufferProvider {
 		}
 	}
 
+	/**
+	 * Returns cached buffers to the global buffer pool until the number of requested buffers no longer exceeds the
+	 * number of designated buffers or no more cached buffers are available. The caller must hold the monitor of the
+	 * buffer queue.
+	 */
+	private void returnExcessBuffers() {
+
+		while (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
+
+			final ByteBuffer buffer = this.buffers.poll();
+			if (buffer == null) {
+				break;
+			}
+
+			this.globalBufferPool.releaseGlobalBuffer(buffer);
+			this.requestedNumberOfBuffers--;
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -198,15 +262,7 @@ public final class LocalBufferPool implements BufferProvider {
 			this.designatedNumberOfBuffers = designatedNumberOfBuffers;
 
 			// Make sure we return excess buffers immediately
-			while (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
-
-				if (this.buffers.isEmpty()) {
-					break;
-				}
-
-				this.globalBufferPool.releaseGlobalBuffer(this.buffers.poll());
-				this.requestedNumberOfBuffers--;
-			}
+			returnExcessBuffers();
 
 			this.buffers.notify();
 		}
@@ -242,41 +298,66 @@ public final class LocalBufferPool implements BufferProvider {
 
 	public int getNumberOfAvailableBuffers() {
 
-		synchronized (this.buffers) {
-			return this.buffers.size();
-		}
+		return this.buffers.size();
 	}
 
 	public int getDesignatedNumberOfBuffers() {
 
-		synchronized (this.buffers) {
-			return this.designatedNumberOfBuffers;
-		}
+		return this.designatedNumberOfBuffers;
 	}
 
 	public int getRequestedNumberOfBuffers() {
 
-		synchronized (this.buffers) {
-			return this.requestedNumberOfBuffers;
-		}
+		return this.requestedNumberOfBuffers;
 	}
 
 	private void recycleBuffer(final ByteBuffer byteBuffer) {
 
-		synchronized (this.buffers) {
+		if (this.isDestroyed || this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
 
-			if (this.isDestroyed) {
-				this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
-				this.requestedNumberOfBuffers--;
-			} else {
-				this.buffers.add(byteBuffer);
-				this.buffers.notify();
+			synchronized (this.buffers) {
+
+				if (this.isDestroyed) {
+					this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
+					this.requestedNumberOfBuffers--;
+				} else if (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
+					this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
+					this.requestedNumberOfBuffers--;
+					return;
+				} else {
+					this.buffers.add(byteBuffer);
+					this.buffers.notify();
+				}
 			}
 
-			while (!this.bufferAvailabilityListenerQueue.isEmpty()) {
-				this.bufferAvailabilityListenerQueue.poll().bufferAvailable();
+		} else {
+
+			// Fast path, only acquire the monitor if a thread is actually waiting for a buffer
+			this.buffers.add(byteBuffer);
+
+			if (this.numberOfWaitingThreads > 0) {
+				synchronized (this.buffers) {
+					this.buffers.notify();
+				}
+			}
+
+			// The pool might have been destroyed while the buffer was added
+			if (this.isDestroyed) {
+				synchronized (this.buffers) {
+					ByteBuffer buffer = this.buffers.poll();
+					while (buffer != null) {
+						this.globalBufferPool.releaseGlobalBuffer(buffer);
+						buffer = this.buffers.poll();
+					}
+				}
 			}
 		}
+
+		BufferAvailabilityListener listener = this.bufferAvailabilityListenerQueue.poll();
+		while (listener != null) {
+			listener.bufferAvailable();
+			listener = this.bufferAvailabilityListenerQueue.poll();
+		}
 	}
 
 	/**
@@ -309,6 +390,11 @@ public final class LocalBufferPool implements BufferProvider {
 			this.bufferAvailabilityListenerQueue.add(bufferAvailabilityListener);
 		}
 
+		// A buffer might have been recycled without the monitor in the meantime
+		if (!this.buffers.isEmpty() && this.bufferAvailabilityListenerQueue.remove(bufferAvailabilityListener)) {
+			return false;
+		}
+
 		return true;
 	}
 }
@@ -231,6 +231,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 				context.destroy();
 			}
 			this.receiverCache.remove(outputChannelID);
+			this.networkConnectionManager.discardCredits(outputChannelID);
 		}
 
 		channelIterator = environment.getInputChannelIDs().iterator();
@@ -298,7 +299,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		final JobID jobID = envelope.getJobID();
 
 		final TransferEnvelope transferEnvelope = ReceiverNotFoundEvent.createEnvelopeWithEvent(jobID, receiver,
-			envelope.getSequenceNumber());
+			envelope.getSequenceNumber(), envelope.getBuffer() != null);
 
 		final TransferEnvelopeReceiverList receiverList = getReceiverList(jobID, receiver);
 		if (receiverList == null) {
@@ -328,6 +329,27 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 			return;
 		}
 
+		// Credits announced by a remote input channel are evaluated by the outgoing connections of this instance
+		if (receiverList.hasLocalReceivers()) {
+
+			if (ChannelCreditEvent.isChannelCreditEvent(transferEnvelope)) {
+
+				final ChannelCreditEvent cce = (ChannelCreditEvent) transferEnvelope.getEventList().get(0);
+				grantCredits(receiverList.getLocalReceivers(), cce.getCredits());
+				if (!receiverList.hasRemoteReceivers()) {
+					return;
+				}
+
+			} else if (ReceiverNotFoundEvent.isReceiverNotFoundEvent(transferEnvelope)) {
+
+				// The lost envelope will never be consumed, so return its credit to the sender if it consumed one
+				final ReceiverNotFoundEvent rnfe = (ReceiverNotFoundEvent) transferEnvelope.getEventList().get(0);
+				if (rnfe.isBufferLost()) {
+					grantCredits(receiverList.getLocalReceivers(), 1);
+				}
+			}
+		}
+
 		// This envelope is known to have either no buffer or an memory-based input buffer
 		if (transferEnvelope.getBuffer() == null) {
 			processEnvelopeEnvelopeWithoutBuffer(transferEnvelope, receiverList);
@@ -455,6 +477,14 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		}
 	}
 
+	private void grantCredits(final List<ChannelID> outputChannelIDs, final int credits) {
+
+		final Iterator<ChannelID> it = outputChannelIDs.iterator();
+		while (it.hasNext()) {
+			this.networkConnectionManager.grantCredits(it.next(), credits);
+		}
+	}
+
 	private void processEnvelopeEnvelopeWithoutBuffer(final TransferEnvelope transferEnvelope,
 			final TransferEnvelopeReceiverList receiverList) throws IOException, InterruptedException {
 
@@ -659,9 +689,15 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 			// Check if this is the final destination of the sender hint event before adding it
 			final SenderHintEvent seh = (SenderHintEvent) transferEnvelope.getEventList().get(0);
-			if (this.registeredChannels.get(seh.getSource()) != null) {
+			final ChannelContext cc = this.registeredChannels.get(seh.getSource());
+			if (cc != null) {
 
 				addReceiverListHint(seh.getSource(), seh.getRemoteReceiver());
+
+				// The sender is about to transmit its first envelope, so the input channel can announce its credits
+				if (cc.isInputChannel()) {
+					((InputChannelContext) cc).activateCredits();
+				}
 				return;
 			}
 		}
@@ -679,6 +715,8 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 		System.out.println("\tUnused global buffers: " + GlobalBufferPool.getInstance().getCurrentNumberOfBuffers());
 
+		GlobalBufferPool.getInstance().logBufferUtilization();
+
 		System.out.println("\tLocal buffer pool status:");
 
 		final Iterator<LocalBufferPoolOwner> it = this.localBufferPoolOwner.values().iterator();
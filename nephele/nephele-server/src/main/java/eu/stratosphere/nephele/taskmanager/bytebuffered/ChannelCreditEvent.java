@@ -0,0 +1,126 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.event.task.EventList;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * A channel credit event is sent by the framework from an input channel to its connected output channel in order to
+ * announce that the input channel has consumed a number of buffer-carrying {@link TransferEnvelope} objects and is
+ * therefore able to accept the same number of new ones. The event is evaluated by the {@link OutgoingConnection} which
+ * transmits the envelopes of the output channel and never reaches the output channel itself.
+ */
+public final class ChannelCreditEvent extends AbstractEvent {
+
+	/**
+	 * The sequence number that will be set for transfer envelopes which contain the channel credit event.
+	 */
+	private static final int CHANNEL_CREDIT_SEQUENCE_NUMBER = 0;
+
+	/**
+	 * The number of credits announced by this event.
+	 */
+	private int credits;
+
+	/**
+	 * Constructs a new channel credit event.
+	 * 
+	 * @param credits
+	 *        the number of credits announced by this event
+	 */
+	public ChannelCreditEvent(final int credits) {
+
+		if (credits <= 0) {
+			throw new IllegalArgumentException("Argument credits must be positive");
+		}
+
+		this.credits = credits;
+	}
+
+	/**
+	 * Default constructor for serialization/deserialization.
+	 */
+	public ChannelCreditEvent() {
+	}
+
+	/**
+	 * Returns the number of credits announced by this event.
+	 * 
+	 * @return the number of credits announced by this event
+	 */
+	public int getCredits() {
+
+		return this.credits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final DataOutput out) throws IOException {
+
+		out.writeInt(this.credits);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(final DataInput in) throws IOException {
+
+		this.credits = in.readInt();
+	}
+
+	/**
+	 * Checks if the given envelope only contains a ChannelCreditEvent.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to be checked
+	 * @return <code>true</code> if the envelope only contains a ChannelCreditEvent, <code>false</code> otherwise
+	 */
+	public static boolean isChannelCreditEvent(final TransferEnvelope transferEnvelope) {
+
+		if (transferEnvelope.getSequenceNumber() != CHANNEL_CREDIT_SEQUENCE_NUMBER) {
+			return false;
+		}
+
+		if (transferEnvelope.getBuffer() != null) {
+			return false;
+		}
+
+		final EventList eventList = transferEnvelope.getEventList();
+		if (eventList == null) {
+			return false;
+		}
+
+		if (eventList.size() != 1) {
+			return false;
+		}
+
+		if (!(eventList.get(0) instanceof ChannelCreditEvent)) {
+			return false;
+		}
+
+		return true;
+	}
+}
@@ -25,7 +25,9 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -46,6 +48,23 @@ public class IncomingConnectionThread extends Thread {
 
 	private final ServerSocketChannel listeningSocket;
 
+	/**
+	 * Accepted connections which have been assigned to this thread but are not yet registered with its selector.
+	 */
+	private final Queue<SocketChannel> pendingIncomingConnections = new ArrayDeque<SocketChannel>();
+
+	/**
+	 * The threads among which the listening thread distributes accepted connections, <code>null</code> for threads
+	 * which do not listen.
+	 */
+	private final List<IncomingConnectionThread> connectionThreads;
+
+	/**
+	 * The number of connections currently served by this thread. The value is updated by the thread itself and read by
+	 * the listening thread when it assigns a new connection.
+	 */
+	private final AtomicInteger numberOfConnections = new AtomicInteger(0);
+
 	private static final class IncomingConnectionBufferAvailListener implements BufferAvailabilityListener {
 
 		private final Queue<SelectionKey> pendingReadEventSubscribeRequests;
@@ -68,15 +87,40 @@ public class IncomingConnectionThread extends Thread {
 			synchronized (this.pendingReadEventSubscribeRequests) {
 				this.pendingReadEventSubscribeRequests.add(this.key);
 			}
+
+			// Resume reading right away instead of waiting for the select timeout
+			this.key.selector().wakeup();
 		}
 	}
 
 	public IncomingConnectionThread(ByteBufferedChannelManager byteBufferedChannelManager,
 			boolean isListeningThread, InetSocketAddress listeningAddress) throws IOException {
+		this(byteBufferedChannelManager, isListeningThread, listeningAddress, null);
+	}
+
+	/**
+	 * Constructs a new incoming connection thread.
+	 * 
+	 * @param byteBufferedChannelManager
+	 *        the byte buffered channel manager to pass the received envelopes to
+	 * @param isListeningThread
+	 *        <code>true</code> if the thread shall accept incoming connections, <code>false</code> otherwise
+	 * @param listeningAddress
+	 *        the address to listen on, only used if the thread is a listening thread
+	 * @param connectionThreads
+	 *        the threads among which a listening thread distributes the accepted connections, possibly including the
+	 *        listening thread itself, or <code>null</code> to let the listening thread serve all connections on its own
+	 * @throws IOException
+	 *         thrown if the selector or the listening socket cannot be opened
+	 */
+	public IncomingConnectionThread(final ByteBufferedChannelManager byteBufferedChannelManager,
+			final boolean isListeningThread, final InetSocketAddress listeningAddress,
+			final List<IncomingConnectionThread> connectionThreads) throws IOException {
 		super("Incoming Connection Thread");
 
 		this.selector = Selector.open();
 		this.byteBufferedChannelManager = byteBufferedChannelManager;
+		this.connectionThreads = connectionThreads;
 
 		if (isListeningThread) {
 			this.listeningSocket = ServerSocketChannel.open();
@@ -94,6 +138,8 @@ public class IncomingConnectionThread extends Thread {
 
 		while (!this.isInterrupted()) {
 
+			registerPendingIncomingConnections();
+
 			synchronized (this.pendingReadEventSubscribeRequests) {
 				while (!this.pendingReadEventSubscribeRequests.isEmpty()) {
 					final SelectionKey key = this.pendingReadEventSubscribeRequests.poll();
@@ -168,15 +214,95 @@ public class IncomingConnectionThread extends Thread {
 			return;
 		}
 
-		final IncomingConnection incomingConnection = new IncomingConnection(this.byteBufferedChannelManager,
-			clientSocket);
-		SelectionKey clientKey = null;
-		try {
-			clientSocket.configureBlocking(false);
-			clientKey = clientSocket.register(this.selector, SelectionKey.OP_READ);
-			clientKey.attach(incomingConnection);
-		} catch (IOException ioe) {
-			incomingConnection.reportTransmissionProblem(clientKey, ioe);
+		getLeastLoadedThread().addIncomingConnection(clientSocket);
+	}
+
+	/**
+	 * Returns the thread which currently serves the least number of connections among the threads this listening thread
+	 * distributes connections to.
+	 * 
+	 * @return the least loaded incoming connection thread
+	 */
+	private IncomingConnectionThread getLeastLoadedThread() {
+
+		if (this.connectionThreads == null) {
+			return this;
+		}
+
+		IncomingConnectionThread leastLoadedThread = this;
+		int minimumNumberOfConnections = Integer.MAX_VALUE;
+
+		final Iterator<IncomingConnectionThread> it = this.connectionThreads.iterator();
+		while (it.hasNext()) {
+
+			final IncomingConnectionThread thread = it.next();
+			final int numberOfConnections = thread.getNumberOfConnections();
+			if (numberOfConnections < minimumNumberOfConnections) {
+				minimumNumberOfConnections = numberOfConnections;
+				leastLoadedThread = thread;
+			}
+		}
+
+		return leastLoadedThread;
+	}
+
+	/**
+	 * Assigns an accepted connection to this thread. The connection is registered with the thread's selector the next
+	 * time the thread wakes up.
+	 * 
+	 * @param clientSocket
+	 *        the socket of the accepted connection
+	 */
+	private void addIncomingConnection(final SocketChannel clientSocket) {
+
+		synchronized (this.pendingIncomingConnections) {
+			this.pendingIncomingConnections.add(clientSocket);
+			this.numberOfConnections.incrementAndGet();
+		}
+
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Returns the number of connections currently served by this thread, including assigned connections which have
+	 * not been registered with the selector yet.
+	 * 
+	 * @return the number of connections currently served by this thread
+	 */
+	int getNumberOfConnections() {
+
+		return this.numberOfConnections.get();
+	}
+
+	/**
+	 * Registers the connections assigned to this thread with its selector and updates the thread's connection count.
+	 * This method must only be called by the thread itself.
+	 */
+	private void registerPendingIncomingConnections() {
+
+		synchronized (this.pendingIncomingConnections) {
+
+			while (!this.pendingIncomingConnections.isEmpty()) {
+
+				final SocketChannel clientSocket = this.pendingIncomingConnections.poll();
+				final IncomingConnection incomingConnection = new IncomingConnection(this.byteBufferedChannelManager,
+					clientSocket);
+				SelectionKey clientKey = null;
+				try {
+					clientSocket.configureBlocking(false);
+					clientKey = clientSocket.register(this.selector, SelectionKey.OP_READ);
+					clientKey.attach(incomingConnection);
+				} catch (IOException ioe) {
+					incomingConnection.reportTransmissionProblem(clientKey, ioe);
+				}
+			}
+
+			// Keys of closed connections are removed from the key set during the next select operation
+			int numberOfKeys = this.selector.keys().size();
+			if (this.listeningSocket != null) {
+				--numberOfKeys;
+			}
+			this.numberOfConnections.set(numberOfKeys);
 		}
 	}
 
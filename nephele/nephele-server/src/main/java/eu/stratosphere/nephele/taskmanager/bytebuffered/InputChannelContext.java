@@ -20,4 +20,11 @@ import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
 public interface InputChannelContext extends ChannelContext, BufferProvider {
 
 	void logQueuedEnvelopes();
+
+	/**
+	 * Notifies the context that the connected output channel has started to transmit envelopes over the network. If
+	 * credit-based flow control applies to the channel, the context then reserves buffers for these envelopes and
+	 * announces them as credits to the output channel.
+	 */
+	void activateCredits();
 }
@@ -27,6 +27,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
 /**
@@ -43,20 +44,38 @@ public final class NetworkConnectionManager {
 	 */
 	private static final int DEFAULT_NUMBER_OF_OUTGOING_CONNECTION_THREADS = 1;
 
+	/**
+	 * The default number of threads dealing with incoming connections.
+	 */
+	private static final int DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS = 1;
+
 	/**
 	 * The default number of connection retries before giving up.
 	 */
 	private static final int DEFAULT_NUMBER_OF_CONNECTION_RETRIES = 10;
 
+	/**
+	 * The configuration key for the maximum number of buffers an input channel reserves for the envelopes in flight
+	 * towards it and announces as credits to its connected output channel. A value of <code>0</code> disables
+	 * credit-based flow control.
+	 */
+	public static final String CREDITS_PER_CHANNEL_KEY = "channel.network.creditsPerChannel";
+
+	/**
+	 * The default number of credits per channel.
+	 */
+	public static final int DEFAULT_CREDITS_PER_CHANNEL = 16;
+
 	/**
 	 * List of active threads dealing with outgoing connections.
 	 */
 	private final List<OutgoingConnectionThread> outgoingConnectionThreads = new CopyOnWriteArrayList<OutgoingConnectionThread>();
 
 	/**
-	 * Thread dealing with incoming connections.
+	 * List of active threads dealing with incoming connections. The first thread accepts new connections and
+	 * distributes them among all threads of this list.
 	 */
-	private final IncomingConnectionThread incomingConnectionThread;
+	private final List<IncomingConnectionThread> incomingConnectionThreads = new CopyOnWriteArrayList<IncomingConnectionThread>();
 
 	/**
 	 * Map containing currently active outgoing connections.
@@ -68,6 +87,11 @@ public final class NetworkConnectionManager {
 	 */
 	private final int numberOfConnectionRetries;
 
+	/**
+	 * The number of credits per channel, <code>0</code> if credit-based flow control is disabled.
+	 */
+	private final int creditsPerChannel;
+
 	/**
 	 * A buffer provider for read buffers
 	 */
@@ -90,22 +114,51 @@ public final class NetworkConnectionManager {
 			this.outgoingConnectionThreads.add(outgoingConnectionThread);
 		}
 
-		this.incomingConnectionThread = new IncomingConnectionThread(
-			this.byteBufferedChannelManager, true, new InetSocketAddress(bindAddress, dataPort));
-		this.incomingConnectionThread.start();
+		final int numberOfIncomingConnectionThreads = Math.max(1, configuration.getInteger(
+			"channel.network.numberOfIncomingConnectionThreads", DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS));
+
+		for (int i = 0; i < numberOfIncomingConnectionThreads; i++) {
+			final IncomingConnectionThread incomingConnectionThread = new IncomingConnectionThread(
+				this.byteBufferedChannelManager, (i == 0), new InetSocketAddress(bindAddress, dataPort),
+				this.incomingConnectionThreads);
+			this.incomingConnectionThreads.add(incomingConnectionThread);
+		}
+
+		final Iterator<IncomingConnectionThread> it = this.incomingConnectionThreads.iterator();
+		while (it.hasNext()) {
+			it.next().start();
+		}
 
 		this.numberOfConnectionRetries = configuration.getInteger("channel.network.numberOfConnectionRetries",
 			DEFAULT_NUMBER_OF_CONNECTION_RETRIES);
+
+		this.creditsPerChannel = Math.max(0,
+			configuration.getInteger(CREDITS_PER_CHANNEL_KEY, DEFAULT_CREDITS_PER_CHANNEL));
 	}
 
 	/**
-	 * Randomly selects one of the active threads dealing with outgoing connections.
+	 * Selects the active thread dealing with outgoing connections which has been assigned the least number of
+	 * connections so far.
 	 * 
-	 * @return one of the active threads dealing with outgoing connections
+	 * @return the least loaded thread dealing with outgoing connections
 	 */
 	private OutgoingConnectionThread getOutgoingConnectionThread() {
 
-		return this.outgoingConnectionThreads.get((int) (this.outgoingConnectionThreads.size() * Math.random()));
+		OutgoingConnectionThread leastLoadedThread = null;
+		int minimumNumberOfConnections = Integer.MAX_VALUE;
+
+		final Iterator<OutgoingConnectionThread> it = this.outgoingConnectionThreads.iterator();
+		while (it.hasNext()) {
+
+			final OutgoingConnectionThread thread = it.next();
+			final int numberOfConnections = thread.getNumberOfConnections();
+			if (numberOfConnections < minimumNumberOfConnections) {
+				minimumNumberOfConnections = numberOfConnections;
+				leastLoadedThread = thread;
+			}
+		}
+
+		return leastLoadedThread;
 	}
 
 	/**
@@ -121,6 +174,46 @@ public final class NetworkConnectionManager {
 		getOutgoingConnection(remoteReceiver).queueEnvelope(transferEnvelope);
 	}
 
+	/**
+	 * Passes credits announced by a remote input channel to the outgoing connections which transmit the envelopes of
+	 * the connected output channel.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel the credits have been announced for
+	 * @param credits
+	 *        the number of announced credits
+	 */
+	public void grantCredits(final ChannelID outputChannelID, final int credits) {
+
+		if (this.creditsPerChannel == 0) {
+			return;
+		}
+
+		final Iterator<OutgoingConnection> it = this.outgoingConnections.values().iterator();
+		while (it.hasNext()) {
+			it.next().grantCredits(outputChannelID, credits);
+		}
+	}
+
+	/**
+	 * Discards the credit information of the output channel with the given ID including all of the channel's envelopes
+	 * which are still waiting for credits.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel whose credit information shall be discarded
+	 */
+	public void discardCredits(final ChannelID outputChannelID) {
+
+		if (this.creditsPerChannel == 0) {
+			return;
+		}
+
+		final Iterator<OutgoingConnection> it = this.outgoingConnections.values().iterator();
+		while (it.hasNext()) {
+			it.next().discardCredits(outputChannelID);
+		}
+	}
+
 	/**
 	 * Returns (and possibly creates) the outgoing connection for the given target address.
 	 * 
@@ -135,7 +228,7 @@ public final class NetworkConnectionManager {
 		if (outgoingConnection == null) {
 
 			outgoingConnection = new OutgoingConnection(remoteReceiver, getOutgoingConnectionThread(),
-				this.numberOfConnectionRetries);
+				this.numberOfConnectionRetries, this.creditsPerChannel > 0);
 
 			final OutgoingConnection oldEntry = this.outgoingConnections
 				.putIfAbsent(remoteReceiver, outgoingConnection);
@@ -143,6 +236,8 @@ public final class NetworkConnectionManager {
 			// We had a race, use the old value
 			if (oldEntry != null) {
 				outgoingConnection = oldEntry;
+			} else {
+				outgoingConnection.getConnectionThread().increaseNumberOfConnections();
 			}
 		}
 
@@ -152,11 +247,14 @@ public final class NetworkConnectionManager {
 	public void shutDown() {
 
 		// Interrupt the threads we started
-		this.incomingConnectionThread.interrupt();
+		final Iterator<IncomingConnectionThread> it1 = this.incomingConnectionThreads.iterator();
+		while (it1.hasNext()) {
+			it1.next().interrupt();
+		}
 
-		final Iterator<OutgoingConnectionThread> it = this.outgoingConnectionThreads.iterator();
-		while (it.hasNext()) {
-			it.next().interrupt();
+		final Iterator<OutgoingConnectionThread> it2 = this.outgoingConnectionThreads.iterator();
+		while (it2.hasNext()) {
+			it2.next().interrupt();
 		}
 	}
 
@@ -21,7 +21,9 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Queue;
 
 import org.apache.commons.logging.Log;
@@ -36,6 +38,12 @@ import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
  * {@link TransferEnvelope} objects are received from the {@link ByteBufferedChannelManager} and added to a queue. An
  * additional network thread then takes the envelopes from the queue and transmits them to the respective destination
  * host.
+ * <p>
+ * If credit-based flow control is enabled, an envelope carrying a buffer is only added to the transmission queue if its
+ * source channel has a credit left, i.e. if the connected input channel has announced that it can accept the envelope.
+ * Source channels start without credits; every credit is announced by the input channel for a buffer it has reserved.
+ * Envelopes without credit are parked in a backlog of their source channel, so a slow receiver can no longer block the
+ * other channels multiplexed over the same TCP connection.
  * 
  * @author warneke
  */
@@ -61,6 +69,18 @@ public class OutgoingConnection {
 	 */
 	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
 
+	/**
+	 * The credit accounts of the source channels which have transmitted envelopes through this connection. This map is
+	 * protected by the monitor of the transmission queue.
+	 */
+	private final Map<ChannelID, ChannelCreditAccount> creditAccounts = new HashMap<ChannelID, ChannelCreditAccount>();
+
+	/**
+	 * Indicates whether buffer-carrying envelopes may only be transmitted with a credit announced by the connected input
+	 * channel.
+	 */
+	private final boolean creditBasedFlowControl;
+
 	/**
 	 * The {@link DefaultSerializer} object used to transform the envelopes into a byte stream.
 	 */
@@ -118,13 +138,17 @@ public class OutgoingConnection {
 	 *        the connection thread which actually handles the network transfer
 	 * @param numberOfConnectionRetries
 	 *        the number of connection retries allowed before an I/O error is reported
+	 * @param creditBasedFlowControl
+	 *        <code>true</code> if buffer-carrying envelopes may only be transmitted with a credit announced by the
+	 *        connected input channel, <code>false</code> otherwise
 	 */
 	public OutgoingConnection(RemoteReceiver remoteReceiver, OutgoingConnectionThread connectionThread,
-			int numberOfConnectionRetries) {
+			int numberOfConnectionRetries, boolean creditBasedFlowControl) {
 
 		this.remoteReceiver = remoteReceiver;
 		this.connectionThread = connectionThread;
 		this.numberOfConnectionRetries = numberOfConnectionRetries;
+		this.creditBasedFlowControl = creditBasedFlowControl;
 	}
 
 	/**
@@ -140,11 +164,68 @@ public class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
+			if (this.creditBasedFlowControl) {
+
+				final ChannelID sourceChannelID = transferEnvelope.getSource();
+				ChannelCreditAccount account = this.creditAccounts.get(sourceChannelID);
+				if (account == null) {
+					account = new ChannelCreditAccount();
+					this.creditAccounts.put(sourceChannelID, account);
+				}
+
+				// Preserve the order of the channel's envelopes if some of them are already waiting for credits
+				if (!account.backlog.isEmpty() || !account.consumeCredit(transferEnvelope)) {
+					account.backlog.add(transferEnvelope);
+					return;
+				}
+			}
+
 			checkConnection();
 			this.queuedEnvelopes.add(transferEnvelope);
 		}
 	}
 
+	/**
+	 * Adds the given number of credits to the account of the source channel with the given ID and moves as many of the
+	 * channel's parked envelopes to the transmission queue as the credits allow.
+	 * <p>
+	 * This method should only be called by the {@link NetworkConnectionManager} object.
+	 * 
+	 * @param sourceChannelID
+	 *        the ID of the source channel the credits have been announced for
+	 * @param credits
+	 *        the number of announced credits
+	 */
+	public void grantCredits(final ChannelID sourceChannelID, final int credits) {
+
+		synchronized (this.queuedEnvelopes) {
+
+			final ChannelCreditAccount account = this.creditAccounts.get(sourceChannelID);
+			if (account == null) {
+				return;
+			}
+
+			account.credits += credits;
+
+			boolean envelopesMoved = false;
+			while (!account.backlog.isEmpty()) {
+
+				final TransferEnvelope transferEnvelope = account.backlog.peek();
+				if (!account.consumeCredit(transferEnvelope)) {
+					break;
+				}
+
+				account.backlog.poll();
+				this.queuedEnvelopes.add(transferEnvelope);
+				envelopesMoved = true;
+			}
+
+			if (envelopesMoved) {
+				checkConnection();
+			}
+		}
+	}
+
 	private void checkConnection() {
 
 		synchronized (this.queuedEnvelopes) {
@@ -167,6 +248,16 @@ public class OutgoingConnection {
 		}
 	}
 
+	/**
+	 * Returns the outgoing connection thread which transmits the envelopes of this connection.
+	 * 
+	 * @return the outgoing connection thread which transmits the envelopes of this connection
+	 */
+	OutgoingConnectionThread getConnectionThread() {
+
+		return this.connectionThread;
+	}
+
 	/**
 	 * Returns the {@link InetSocketAddress} to the destination host this outgoing connection is supposed to be
 	 * connected to.
@@ -249,6 +340,14 @@ public class OutgoingConnection {
 			}
 
 			this.queuedEnvelopes.clear();
+
+			// Envelopes which are still waiting for credits cannot be transmitted either
+			final Iterator<ChannelCreditAccount> accountIt = this.creditAccounts.values().iterator();
+			while (accountIt.hasNext()) {
+				accountIt.next().recycleBacklog();
+			}
+
+			this.creditAccounts.clear();
 		}
 	}
 
@@ -445,13 +544,19 @@ public class OutgoingConnection {
 				}
 			}
 
+			final ChannelCreditAccount account = this.creditAccounts.get(sourceChannelID);
+			if (account != null) {
+				number += account.backlog.size();
+			}
+
 			return number;
 		}
 	}
 
 	/**
 	 * Removes all queued {@link TransferEnvelope} objects from the transmission which match the given source channel
-	 * ID.
+	 * ID. The credits consumed by the dropped envelopes are returned to the channel's account, because the buffers the
+	 * connected input channel has reserved for them remain unused.
 	 * 
 	 * @param sourceChannelID
 	 *        the source channel ID of the transfered transfer envelopes to be dropped
@@ -460,6 +565,7 @@ public class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
+			int droppedBuffers = 0;
 			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
 			while (it.hasNext()) {
 				final TransferEnvelope te = it.next();
@@ -467,9 +573,36 @@ public class OutgoingConnection {
 					it.remove();
 					if (te.getBuffer() != null) {
 						te.getBuffer().recycleBuffer();
+						++droppedBuffers;
 					}
 				}
 			}
+
+			final ChannelCreditAccount account = this.creditAccounts.get(sourceChannelID);
+			if (account != null) {
+				account.credits += droppedBuffers;
+				account.recycleBacklog();
+			}
+		}
+	}
+
+	/**
+	 * Discards the credit account of the source channel with the given ID. Envelopes of the channel which are still
+	 * waiting for credits are dropped and their buffers are recycled.
+	 * <p>
+	 * This method should only be called by the {@link NetworkConnectionManager} object.
+	 * 
+	 * @param sourceChannelID
+	 *        the ID of the source channel whose credit account shall be discarded
+	 */
+	public void discardCredits(final ChannelID sourceChannelID) {
+
+		synchronized (this.queuedEnvelopes) {
+
+			final ChannelCreditAccount account = this.creditAccounts.remove(sourceChannelID);
+			if (account != null) {
+				account.recycleBacklog();
+			}
 		}
 	}
 
@@ -494,7 +627,16 @@ public class OutgoingConnection {
 				return false;
 			}
 
-			return this.queuedEnvelopes.isEmpty();
+			if (!this.queuedEnvelopes.isEmpty()) {
+				return false;
+			}
+
+			// The credit accounts hold credits announced by the input channels and must therefore be kept
+			if (!this.creditAccounts.isEmpty()) {
+				return false;
+			}
+
+			return true;
 		}
 	}
 
@@ -527,8 +669,72 @@ public class OutgoingConnection {
 					++retVal;
 				}
 			}
+
+			final Iterator<ChannelCreditAccount> accountIt = this.creditAccounts.values().iterator();
+			while (accountIt.hasNext()) {
+
+				final Iterator<TransferEnvelope> backlogIt = accountIt.next().backlog.iterator();
+				while (backlogIt.hasNext()) {
+					if (backlogIt.next().getBuffer() != null) {
+						++retVal;
+					}
+				}
+			}
 		}
 
 		return retVal;
 	}
+
+	/**
+	 * Keeps track of the credits of a single source channel and the envelopes of that channel which are waiting for
+	 * credits to be transmitted. Objects of this class are protected by the monitor of the transmission queue.
+	 */
+	private static final class ChannelCreditAccount {
+
+		/**
+		 * The envelopes of the source channel waiting for credits in the order they have been queued.
+		 */
+		private final Queue<TransferEnvelope> backlog = new ArrayDeque<TransferEnvelope>();
+
+		/**
+		 * The number of buffer-carrying envelopes the source channel may currently transmit.
+		 */
+		private int credits = 0;
+
+		/**
+		 * Consumes a credit for the given envelope if necessary. Envelopes which do not carry a buffer only transport
+		 * events and therefore do not require a credit.
+		 * 
+		 * @param transferEnvelope
+		 *        the envelope to be transmitted
+		 * @return <code>true</code> if the envelope may be transmitted, <code>false</code> otherwise
+		 */
+		private boolean consumeCredit(final TransferEnvelope transferEnvelope) {
+
+			if (transferEnvelope.getBuffer() == null) {
+				return true;
+			}
+
+			if (this.credits <= 0) {
+				return false;
+			}
+
+			--this.credits;
+
+			return true;
+		}
+
+		/**
+		 * Drops all envelopes waiting for credits and recycles their buffers.
+		 */
+		private void recycleBacklog() {
+
+			while (!this.backlog.isEmpty()) {
+				final TransferEnvelope envelope = this.backlog.poll();
+				if (envelope.getBuffer() != null) {
+					envelope.getBuffer().recycleBuffer();
+				}
+			}
+		}
+	}
 }
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,12 +49,35 @@ public class OutgoingConnectionThread extends Thread {
 
 	private final Map<OutgoingConnection, Long> connectionsToClose = new HashMap<OutgoingConnection, Long>();
 
+	/**
+	 * The number of outgoing connections assigned to this thread.
+	 */
+	private final AtomicInteger numberOfConnections = new AtomicInteger(0);
+
 	public OutgoingConnectionThread() throws IOException {
 		super("Outgoing Connection Thread");
 
 		this.selector = Selector.open();
 	}
 
+	/**
+	 * Returns the number of outgoing connections assigned to this thread.
+	 * 
+	 * @return the number of outgoing connections assigned to this thread
+	 */
+	int getNumberOfConnections() {
+
+		return this.numberOfConnections.get();
+	}
+
+	/**
+	 * Records that a further outgoing connection has been assigned to this thread.
+	 */
+	void increaseNumberOfConnections() {
+
+		this.numberOfConnections.incrementAndGet();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
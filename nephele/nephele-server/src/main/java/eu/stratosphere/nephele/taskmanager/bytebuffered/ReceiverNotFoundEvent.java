@@ -48,6 +48,11 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 	 */
 	private int sequenceNumber;
 
+	/**
+	 * Indicates whether the envelope this event refers to carried a buffer
+	 */
+	private boolean bufferLost;
+
 	/**
 	 * Constructs a new unknown receiver event.
 	 * 
@@ -55,8 +60,10 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 	 *        the ID of the receiver which could not be found
 	 * @param sequenceNumber
 	 *        the sequence number of the envelope this event refers to
+	 * @param bufferLost
+	 *        <code>true</code> if the envelope this event refers to carried a buffer, <code>false</code> otherwise
 	 */
-	public ReceiverNotFoundEvent(final ChannelID receiverID, final int sequenceNumber) {
+	public ReceiverNotFoundEvent(final ChannelID receiverID, final int sequenceNumber, final boolean bufferLost) {
 
 		if (receiverID == null) {
 			throw new IllegalArgumentException("Argument unknownReceiverID must not be null");
@@ -68,6 +75,7 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 
 		this.receiverID = receiverID;
 		this.sequenceNumber = sequenceNumber;
+		this.bufferLost = bufferLost;
 	}
 
 	/**
@@ -98,6 +106,17 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 		return this.sequenceNumber;
 	}
 
+	/**
+	 * Checks whether the envelope this event refers to carried a buffer. Only such an envelope has consumed a credit of
+	 * its sender.
+	 * 
+	 * @return <code>true</code> if the envelope this event refers to carried a buffer, <code>false</code> otherwise
+	 */
+	public boolean isBufferLost() {
+
+		return this.bufferLost;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -106,6 +125,7 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 
 		this.receiverID.write(out);
 		out.writeInt(this.sequenceNumber);
+		out.writeBoolean(this.bufferLost);
 	}
 
 	/**
@@ -116,6 +136,7 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 
 		this.receiverID.read(in);
 		this.sequenceNumber = in.readInt();
+		this.bufferLost = in.readBoolean();
 	}
 
 	/**
@@ -127,15 +148,19 @@ public final class ReceiverNotFoundEvent extends AbstractEvent {
 	 *        the channel ID of the receiver that could not be found
 	 * @param sequenceNumber
 	 *        the sequence number of the transfer envelope which caused the creation of this event
+	 * @param bufferLost
+	 *        <code>true</code> if the transfer envelope which caused the creation of this event carried a buffer,
+	 *        <code>false</code> otherwise
 	 * @return a transfer envelope which only contains a ReceiverNotFoundEvent
 	 */
 	public static TransferEnvelope createEnvelopeWithEvent(final JobID jobID, final ChannelID receiver,
-			final int sequenceNumber) {
+			final int sequenceNumber, final boolean bufferLost) {
 
 		final TransferEnvelope transferEnvelope = new TransferEnvelope(RECEIVER_NOT_FOUND_SEQUENCE_NUMBER, jobID,
 			receiver);
 
-		final ReceiverNotFoundEvent unknownReceiverEvent = new ReceiverNotFoundEvent(receiver, sequenceNumber);
+		final ReceiverNotFoundEvent unknownReceiverEvent = new ReceiverNotFoundEvent(receiver, sequenceNumber,
+			bufferLost);
 		transferEnvelope.addEvent(unknownReceiverEvent);
 
 		return transferEnvelope;
@@ -0,0 +1,136 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * The output buffer flusher periodically ships the partially filled write buffers of a task's output channels once
+ * their data has been waiting longer than the configured maximum buffer latency. All channels registered with the
+ * flusher share a common output lock, so the timer thread and the task thread never push envelopes through the task's
+ * forwarding chains at the same time. The timer thread is shared by all tasks, so it never waits for a channel: it
+ * skips channels whose task is writing and only ships write buffers which are already leased, never requesting new
+ * ones.
+ * <p>
+ * This class is thread-safe.
+ */
+final class OutputBufferFlusher extends TimerTask {
+
+	/**
+	 * The log object used to report errors.
+	 */
+	private static final Log LOG = LogFactory.getLog(OutputBufferFlusher.class);
+
+	/**
+	 * The timer which runs the flushers of all tasks on this task manager.
+	 */
+	private static final Timer TIMER = new Timer("Output Buffer Flusher", true);
+
+	/**
+	 * The maximum time in milliseconds data may wait inside an output channel.
+	 */
+	private final long maximumBufferLatency;
+
+	/**
+	 * The lock shared by all output channels registered with this flusher.
+	 */
+	private final Lock outputLock = new ReentrantLock();
+
+	/**
+	 * The output channels to be flushed.
+	 */
+	private final CopyOnWriteArrayList<AbstractByteBufferedOutputChannel<?>> outputChannels = new CopyOnWriteArrayList<AbstractByteBufferedOutputChannel<?>>();
+
+	/**
+	 * Constructs a new output buffer flusher and schedules it for periodic execution. The flusher checks the registered
+	 * channels twice per latency period, so data is shipped at most one and a half latency periods after it has been
+	 * written.
+	 * 
+	 * @param maximumBufferLatency
+	 *        the maximum time in milliseconds data may wait inside an output channel, must be positive
+	 */
+	OutputBufferFlusher(final long maximumBufferLatency) {
+
+		if (maximumBufferLatency <= 0L) {
+			throw new IllegalArgumentException("Argument maximumBufferLatency must be positive");
+		}
+
+		this.maximumBufferLatency = maximumBufferLatency;
+
+		final long period = Math.max(1L, maximumBufferLatency / 2L);
+		TIMER.schedule(this, period, period);
+	}
+
+	/**
+	 * Registers an output channel with this flusher.
+	 * 
+	 * @param outputChannel
+	 *        the output channel to be flushed periodically
+	 */
+	void registerOutputChannel(final AbstractByteBufferedOutputChannel<?> outputChannel) {
+
+		outputChannel.setOutputLock(this.outputLock);
+		this.outputChannels.add(outputChannel);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+
+		final long now = System.currentTimeMillis();
+
+		final Iterator<AbstractByteBufferedOutputChannel<?>> it = this.outputChannels.iterator();
+		while (it.hasNext()) {
+
+			final AbstractByteBufferedOutputChannel<?> outputChannel = it.next();
+			try {
+				outputChannel.flushIfOlderThan(now, this.maximumBufferLatency);
+			} catch (InterruptedException e) {
+				// The timer thread is shared, so only stop flushing this task
+				cancel();
+				return;
+			} catch (Exception e) {
+				LOG.error("Cannot flush output channel " + outputChannel.getID() + ": "
+					+ StringUtils.stringifyException(e));
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean cancel() {
+
+		this.outputChannels.clear();
+
+		return super.cancel();
+	}
+}
@@ -23,11 +23,13 @@ import java.util.Queue;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.event.task.EventList;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedInputChannel;
 import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedChannelCloseEvent;
 import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedInputChannelBroker;
@@ -35,7 +37,9 @@ import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.Decompressor;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bytebuffered.ChannelCreditEvent;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.InputChannelContext;
+import eu.stratosphere.nephele.taskmanager.bytebuffered.NetworkConnectionManager;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.ReceiverNotFoundEvent;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.UnexpectedEnvelopeEvent;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
@@ -62,6 +66,60 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private boolean destroyCalled = false;
 
+	/**
+	 * The maximum number of buffers reserved for the envelopes in flight towards this channel, <code>0</code> if
+	 * credit-based flow control does not apply to this channel.
+	 */
+	private final int maximumCredits;
+
+	/**
+	 * The empty buffers reserved in the gate's local buffer pool for envelopes the connected output channel may
+	 * transmit. Each credit announced to the output channel is backed by one of these buffers. The monitor of this queue
+	 * also protects the other fields related to credits.
+	 */
+	private final Queue<Buffer> reservedBuffers = new ArrayDeque<Buffer>();
+
+	/**
+	 * The number of reserved buffers which have not been announced as credits yet.
+	 */
+	private int unannouncedCredits = 0;
+
+	/**
+	 * The number of reserved buffers which have been handed out for incoming envelopes and have not been recycled yet.
+	 */
+	private int buffersInUse = 0;
+
+	/**
+	 * Indicates whether this channel reserves buffers for the envelopes of its connected output channel.
+	 */
+	private boolean creditsActivated = false;
+
+	/**
+	 * Indicates whether the reserved buffers have been released because the channel has been destroyed.
+	 */
+	private boolean creditsReleased = false;
+
+	/**
+	 * Indicates whether the credit listener is registered with the gate's local buffer pool.
+	 */
+	private boolean waitingForBuffer = false;
+
+	/**
+	 * Continues the reservation of buffers as soon as the gate's local buffer pool has a buffer available again.
+	 */
+	private final BufferAvailabilityListener creditListener = new BufferAvailabilityListener() {
+
+		@Override
+		public void bufferAvailable() {
+
+			synchronized (RuntimeInputChannelContext.this.reservedBuffers) {
+				RuntimeInputChannelContext.this.waitingForBuffer = false;
+			}
+
+			reserveBuffersAndAnnounceCredits();
+		}
+	};
+
 	RuntimeInputChannelContext(final RuntimeInputGateContext inputGateContext,
 			final TransferEnvelopeDispatcher transferEnvelopeDispatcher,
 			final AbstractByteBufferedInputChannel<?> byteBufferedInputChannel,
@@ -73,6 +131,14 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		this.byteBufferedInputChannel.setInputChannelBroker(this);
 		this.envelopeConsumptionLog = envelopeConsumptionLog;
 		this.isReexecuted = (envelopeConsumptionLog.getNumberOfInitialLogEntries() > 0L);
+
+		// Only channels which receive their envelopes over the network reserve buffers for credits
+		if (byteBufferedInputChannel.getType() == ChannelType.NETWORK) {
+			this.maximumCredits = Math.max(0, GlobalConfiguration.getInteger(
+				NetworkConnectionManager.CREDITS_PER_CHANNEL_KEY, NetworkConnectionManager.DEFAULT_CREDITS_PER_CHANNEL));
+		} else {
+			this.maximumCredits = 0;
+		}
 	}
 
 	/**
@@ -159,6 +225,115 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 		// Recycle consumed read buffer
 		buffer.recycleBuffer();
+
+		returnCredit();
+	}
+
+	/**
+	 * Returns the credit of a buffer-carrying envelope which has been consumed or discarded by this channel. The
+	 * envelope's buffer has been recycled to the gate's local buffer pool, so a new buffer is reserved in its place.
+	 */
+	private void returnCredit() {
+
+		if (this.maximumCredits == 0) {
+			return;
+		}
+
+		synchronized (this.reservedBuffers) {
+			if (this.buffersInUse > 0) {
+				--this.buffersInUse;
+			}
+		}
+
+		reserveBuffersAndAnnounceCredits();
+	}
+
+	/**
+	 * Reserves empty buffers in the gate's local buffer pool until this channel holds its share of the pool and
+	 * announces the new buffers as credits to the connected output channel. If the pool is exhausted, the reservation
+	 * continues once a buffer has become available again. Credits are announced in batches to limit the event traffic,
+	 * unless the output channel has run out of credits.
+	 */
+	private void reserveBuffersAndAnnounceCredits() {
+
+		final int credits;
+		synchronized (this.reservedBuffers) {
+
+			if (!this.creditsActivated || this.creditsReleased) {
+				return;
+			}
+
+			final int targetNumberOfBuffers = Math.min(this.maximumCredits,
+				this.inputGateContext.getNumberOfBuffersPerChannel());
+
+			boolean registrationFailed = false;
+			while (!this.waitingForBuffer && this.reservedBuffers.size() + this.buffersInUse < targetNumberOfBuffers) {
+
+				Buffer buffer = null;
+				try {
+					buffer = this.inputGateContext.requestEmptyBuffer(this.inputGateContext.getMaximumBufferSize());
+				} catch (IOException e) {
+					LOG.error(StringUtils.stringifyException(e));
+					break;
+				}
+
+				if (buffer == null) {
+
+					// The registration fails if a buffer has been recycled in the meantime, so try once more
+					if (this.inputGateContext.registerBufferAvailabilityListener(this.creditListener)) {
+						this.waitingForBuffer = true;
+					} else if (!registrationFailed) {
+						registrationFailed = true;
+						continue;
+					}
+					break;
+				}
+
+				this.reservedBuffers.add(buffer);
+				++this.unannouncedCredits;
+			}
+
+			if (this.unannouncedCredits == 0) {
+				return;
+			}
+
+			// The output channel still holds a credit for each reserved buffer which has already been announced
+			final boolean senderHasCredits = (this.reservedBuffers.size() > this.unannouncedCredits);
+			if (senderHasCredits && this.unannouncedCredits < (targetNumberOfBuffers + 1) / 2) {
+				return;
+			}
+
+			credits = this.unannouncedCredits;
+			this.unannouncedCredits = 0;
+		}
+
+		try {
+			transferEventToOutputChannel(new ChannelCreditEvent(credits));
+		} catch (Exception e) {
+			LOG.error(StringUtils.stringifyException(e));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void activateCredits() {
+
+		if (this.maximumCredits == 0) {
+			return;
+		}
+
+		synchronized (this.reservedBuffers) {
+
+			if (this.creditsActivated) {
+				return;
+			}
+
+			this.creditsActivated = true;
+		}
+
+		reserveBuffersAndAnnounceCredits();
 	}
 
 	/**
@@ -184,6 +359,8 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 		AbstractEvent eventToSend = null;
 
+		boolean discardedBuffer = false;
+
 		if (ReceiverNotFoundEvent.isReceiverNotFoundEvent(transferEnvelope)) {
 			return;
 		}
@@ -238,6 +415,7 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 				final Buffer buffer = transferEnvelope.getBuffer();
 				if (buffer != null) {
 					buffer.recycleBuffer();
+					discardedBuffer = true;
 				}
 			} else {
 
@@ -256,6 +434,11 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 				LOG.error(StringUtils.stringifyException(e));
 			}
 		}
+
+		// The sender has used a credit for the discarded envelope as well
+		if (discardedBuffer) {
+			returnCredit();
+		}
 	}
 
 	/**
@@ -330,6 +513,15 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 			}
 		}
 
+		synchronized (this.reservedBuffers) {
+
+			this.creditsReleased = true;
+
+			while (!this.reservedBuffers.isEmpty()) {
+				buffersToRecycle.add(this.reservedBuffers.poll());
+			}
+		}
+
 		while (!buffersToRecycle.isEmpty()) {
 			buffersToRecycle.poll().recycleBuffer();
 		}
@@ -376,6 +568,23 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 	@Override
 	public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) throws IOException {
 
+		// Envelopes transmitted with a credit are read into the buffers reserved for them
+		if (this.maximumCredits > 0) {
+
+			synchronized (this.reservedBuffers) {
+
+				if (this.reservedBuffers.size() > this.unannouncedCredits) {
+
+					// The reserved buffers are taken from the local buffer pool and are therefore backed by memory
+					final MemoryBuffer buffer = (MemoryBuffer) this.reservedBuffers.poll();
+					buffer.reset(minimumSizeOfBuffer);
+					++this.buffersInUse;
+
+					return buffer;
+				}
+			}
+		}
+
 		return this.inputGateContext.requestEmptyBuffer(minimumSizeOfBuffer);
 	}
 
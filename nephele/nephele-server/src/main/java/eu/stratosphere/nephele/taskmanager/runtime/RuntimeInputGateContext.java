@@ -208,6 +208,18 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		return this;
 	}
 
+	/**
+	 * Returns the number of buffers of the gate's local buffer pool each input channel may hold for envelopes which
+	 * have not been consumed yet. The share is computed from the current number of designated buffers, but is at least
+	 * one buffer.
+	 * 
+	 * @return the number of buffers each input channel of this gate may hold
+	 */
+	int getNumberOfBuffersPerChannel() {
+
+		return Math.max(1, this.localBufferPool.getDesignatedNumberOfBuffers() / getNumberOfChannels());
+	}
+
 	/**
 	 * Returns the name of the task this gate belongs to.
 	 * 
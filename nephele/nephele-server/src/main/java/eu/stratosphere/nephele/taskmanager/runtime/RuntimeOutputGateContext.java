@@ -197,6 +197,9 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 		// Set forwarding chain for broker
 		outputChannelBroker.setForwardingChain(forwardingChain);
 
+		// Ship partially filled buffers in time if the task is latency-bounded
+		this.taskContext.registerForTimedFlushing(outputChannel);
+
 		return new RuntimeOutputChannelContext(outputChannel, forwardingChain);
 	}
 
@@ -20,7 +20,9 @@ import java.io.IOException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.checkpointing.CheckpointDecision;
 import eu.stratosphere.nephele.checkpointing.EphemeralCheckpoint;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.execution.RuntimeEnvironment;
 import eu.stratosphere.nephele.executiongraph.CheckpointState;
 import eu.stratosphere.nephele.io.AbstractID;
@@ -28,6 +30,8 @@ import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
 import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.AsynchronousEventListener;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
@@ -55,6 +59,8 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 
 	private final EnvelopeConsumptionLog envelopeConsumptionLog;
 
+	private final OutputBufferFlusher outputBufferFlusher;
+
 	private CompressionBufferProvider compressionBufferProvider = null;
 
 	RuntimeTaskContext(final RuntimeTask task, final CheckpointState initialCheckpointState,
@@ -87,6 +93,19 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 
 		this.transferEnvelopeDispatcher = transferEnvelopeDispatcher;
 		this.envelopeConsumptionLog = new EnvelopeConsumptionLog(task.getVertexID(), environment);
+
+		// The task configuration may override the job's and the task manager's maximum buffer latency
+		final long maximumBufferLatency = environment.getTaskConfiguration().getLong(
+			AbstractByteBufferedOutputChannel.MAXIMUM_BUFFER_LATENCY_KEY,
+			environment.getJobConfiguration().getLong(AbstractByteBufferedOutputChannel.MAXIMUM_BUFFER_LATENCY_KEY,
+				GlobalConfiguration.getLong(AbstractByteBufferedOutputChannel.MAXIMUM_BUFFER_LATENCY_KEY,
+					AbstractByteBufferedOutputChannel.DEFAULT_MAXIMUM_BUFFER_LATENCY)));
+
+		if (maximumBufferLatency > 0L) {
+			this.outputBufferFlusher = new OutputBufferFlusher(maximumBufferLatency);
+		} else {
+			this.outputBufferFlusher = null;
+		}
 	}
 
 	TransferEnvelopeDispatcher getTransferEnvelopeDispatcher() {
@@ -99,6 +118,27 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		return this.ephemeralCheckpoint;
 	}
 
+	/**
+	 * Registers the given output channel for timed flushing if a maximum buffer latency is configured for the task.
+	 * File channels are never flushed by the timer since their receivers do not consume the data while the task is
+	 * running.
+	 * 
+	 * @param outputChannel
+	 *        the output channel to be registered
+	 */
+	void registerForTimedFlushing(final AbstractByteBufferedOutputChannel<?> outputChannel) {
+
+		if (this.outputBufferFlusher == null) {
+			return;
+		}
+
+		if (outputChannel.getType() == ChannelType.FILE) {
+			return;
+		}
+
+		this.outputBufferFlusher.registerOutputChannel(outputChannel);
+	}
+
 	/**
 	 * Returns (and if necessary previously creates) a compression buffer provider for output gate contexts. This method
 	 * must not be called from input gate contexts since input gate contexts are supposed to have their own compression
@@ -151,6 +191,11 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 	@Override
 	public void clearLocalBufferPool() {
 
+		// Stop flushing the task's output channels
+		if (this.outputBufferFlusher != null) {
+			this.outputBufferFlusher.cancel();
+		}
+
 		// Clear the buffer cache
 		this.localBufferPool.destroy();
 
@@ -200,9 +245,8 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 			return;
 		}
 
-		// TODO: Remove this and implement decision logic for ephemeral checkpoint
-		LOG.error("Checkpoint state of " + this.task.getRuntimeEnvironment().getTaskNameWithIndex() + " is UNDECIDED");
-		this.ephemeralCheckpoint.setCheckpointDecisionSynchronously(false);
+		// The queued envelopes must either be written or discarded now
+		this.ephemeralCheckpoint.setCheckpointDecisionSynchronously(CheckpointDecision.getDecision(this.task));
 
 	}
 
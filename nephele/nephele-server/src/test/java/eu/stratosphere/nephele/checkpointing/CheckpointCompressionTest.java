@@ -0,0 +1,249 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.AbstractDecompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.CompressionLibrary;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+
+/**
+ * This class contains tests for the compression of checkpoint data with the {@link CheckpointCompressor} and the
+ * {@link CheckpointDecompressor}.
+ */
+public class CheckpointCompressionTest {
+
+	/**
+	 * The maximum buffer size used during the tests.
+	 */
+	private static final int MAXIMUM_BUFFER_SIZE = 4096;
+
+	/**
+	 * Connector for buffers which are not taken from a buffer pool.
+	 */
+	private static final MemoryBufferPoolConnector NO_OP_CONNECTOR = new MemoryBufferPoolConnector() {
+
+		@Override
+		public void recycle(final ByteBuffer byteBuffer) {
+		}
+	};
+
+	/**
+	 * A compression library based on the deflate implementation of the JDK, so the tests do not depend on native
+	 * code.
+	 */
+	public static final class DeflateLibrary implements CompressionLibrary {
+
+		public DeflateLibrary(final String nativeLibraryDir) {
+		}
+
+		@Override
+		public Compressor createNewCompressor(final CompressionBufferProvider bufferProvider) {
+
+			return new DeflateCompressor(bufferProvider);
+		}
+
+		@Override
+		public Decompressor createNewDecompressor(final CompressionBufferProvider bufferProvider) {
+
+			return new DeflateDecompressor(bufferProvider);
+		}
+
+		@Override
+		public int getUncompressedBufferSize(final int compressedBufferSize) {
+
+			return compressedBufferSize;
+		}
+
+		@Override
+		public String getLibraryName() {
+
+			return "DEFLATE";
+		}
+	}
+
+	private static final class DeflateCompressor extends AbstractCompressor {
+
+		private DeflateCompressor(final CompressionBufferProvider bufferProvider) {
+			super(bufferProvider);
+		}
+
+		@Override
+		protected int compressBytesDirect(final int offset) {
+
+			final byte[] uncompressed = new byte[this.uncompressedDataBufferLength];
+			final ByteBuffer src = this.uncompressedDataBuffer.duplicate();
+			src.position(0);
+			src.get(uncompressed);
+
+			final Deflater deflater = new Deflater();
+			deflater.setInput(uncompressed);
+			deflater.finish();
+			final byte[] compressed = new byte[this.compressedDataBufferLength - SIZE_LENGTH];
+			final int numberOfCompressedBytes = deflater.deflate(compressed);
+			deflater.end();
+
+			this.compressedDataBuffer.putInt(offset, numberOfCompressedBytes);
+			this.compressedDataBuffer.putInt(offset + 4, uncompressed.length);
+			final ByteBuffer dst = this.compressedDataBuffer.duplicate();
+			dst.position(offset + SIZE_LENGTH);
+			dst.put(compressed, 0, numberOfCompressedBytes);
+
+			return numberOfCompressedBytes;
+		}
+	}
+
+	private static final class DeflateDecompressor extends AbstractDecompressor {
+
+		private DeflateDecompressor(final CompressionBufferProvider bufferProvider) {
+			super(bufferProvider);
+		}
+
+		@Override
+		protected int decompressBytesDirect(final int offset) {
+
+			final byte[] compressed = new byte[this.compressedDataBufferLength - offset];
+			final ByteBuffer src = this.compressedDataBuffer.duplicate();
+			src.position(offset);
+			src.get(compressed);
+
+			final Inflater inflater = new Inflater();
+			inflater.setInput(compressed);
+			final byte[] uncompressed = new byte[this.uncompressedDataBufferLength];
+			try {
+				inflater.inflate(uncompressed);
+			} catch (DataFormatException e) {
+				return -1;
+			} finally {
+				inflater.end();
+			}
+
+			final ByteBuffer dst = this.uncompressedDataBuffer.duplicate();
+			dst.position(0);
+			dst.put(uncompressed);
+
+			return uncompressed.length;
+		}
+	}
+
+	@BeforeClass
+	public static void registerCompressionLibrary() {
+
+		final Configuration configuration = new Configuration();
+		configuration.setString("channel.compression.lightClass", DeflateLibrary.class.getName());
+		GlobalConfiguration.includeConfiguration(configuration);
+	}
+
+	/**
+	 * Tests that several buffers can be compressed directly into a shared write buffer and decompressed again.
+	 */
+	@Test
+	public void testCompressionRoundTrip() throws IOException {
+
+		final CheckpointCompressor compressor = CheckpointCompressor.create(CompressionLevel.LIGHT_COMPRESSION,
+			MAXIMUM_BUFFER_SIZE);
+		assertNotNull(compressor);
+
+		final int numberOfBuffers = 3;
+		final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(numberOfBuffers * MAXIMUM_BUFFER_SIZE);
+		final int[] offsets = new int[numberOfBuffers];
+		final int[] lengths = new int[numberOfBuffers];
+
+		for (int i = 0; i < numberOfBuffers; ++i) {
+			final MemoryBuffer buffer = createBuffer(i);
+			offsets[i] = writeBuffer.position();
+			lengths[i] = compressor.compress(buffer, writeBuffer);
+			assertEquals(offsets[i] + lengths[i], writeBuffer.position());
+			assertTrue(lengths[i] < MAXIMUM_BUFFER_SIZE);
+
+			// The source buffer must not be modified by the compression
+			assertEquals(createBuffer(i).getByteBuffer(), buffer.getByteBuffer());
+		}
+
+		compressor.shutdown();
+
+		final CheckpointDecompressor decompressor = new CheckpointDecompressor(CompressionLevel.LIGHT_COMPRESSION,
+			MAXIMUM_BUFFER_SIZE);
+
+		for (int i = 0; i < numberOfBuffers; ++i) {
+
+			final ByteBuffer compressedData = writeBuffer.duplicate();
+			compressedData.position(offsets[i]);
+			compressedData.limit(offsets[i] + lengths[i]);
+			final MemoryBuffer compressedBuffer = (MemoryBuffer) BufferFactory.createFromMemory(lengths[i],
+				compressedData.slice(), NO_OP_CONNECTOR);
+			compressedBuffer.getByteBuffer().position(lengths[i]);
+			compressedBuffer.finishWritePhase();
+
+			final MemoryBuffer target = (MemoryBuffer) BufferFactory.createFromMemory(MAXIMUM_BUFFER_SIZE,
+				ByteBuffer.allocateDirect(MAXIMUM_BUFFER_SIZE), NO_OP_CONNECTOR);
+
+			final Buffer uncompressedBuffer = decompressor.decompress(compressedBuffer, target);
+			assertSame(target, uncompressedBuffer);
+			assertEquals(createBuffer(i).getByteBuffer(), target.getByteBuffer());
+		}
+
+		decompressor.shutdown();
+	}
+
+	/**
+	 * Creates a memory buffer in read mode filled with compressible data.
+	 * 
+	 * @param seed
+	 *        the seed of the data
+	 * @return the memory buffer
+	 */
+	private static MemoryBuffer createBuffer(final int seed) throws IOException {
+
+		final int size = MAXIMUM_BUFFER_SIZE - 100 * seed;
+		final ByteBuffer data = ByteBuffer.allocate(size);
+		for (int i = 0; i < size; ++i) {
+			data.put((byte) ((i / 16) + seed));
+		}
+		data.flip();
+
+		final MemoryBuffer buffer = (MemoryBuffer) BufferFactory.createFromMemory(size,
+			ByteBuffer.allocate(MAXIMUM_BUFFER_SIZE), NO_OP_CONNECTOR);
+		buffer.write(data);
+		buffer.finishWritePhase();
+
+		return buffer;
+	}
+}
@@ -0,0 +1,73 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests for the cost model used by the dynamic checkpoint mode.
+ */
+public class CheckpointDecisionTest {
+
+	private static final long MB = 1024L * 1024L;
+
+	/**
+	 * Tests that tasks which reduce their data volume are checkpointed.
+	 */
+	@Test
+	public void testDataReducingTask() {
+
+		assertTrue(CheckpointDecision.getDynamicDecision(0L, 1000L * MB, 10L * MB, 100, 50));
+	}
+
+	/**
+	 * Tests that cheap tasks which inflate their data volume are not checkpointed.
+	 */
+	@Test
+	public void testDataInflatingTask() {
+
+		assertFalse(CheckpointDecision.getDynamicDecision(100L, 10L * MB, 1000L * MB, 100, 50));
+	}
+
+	/**
+	 * Tests that the consumed CPU time favors checkpointing.
+	 */
+	@Test
+	public void testCPUIntensiveTask() {
+
+		// Writing 500 MB at 50 MB/s takes 10 seconds, reading 100 MB at 100 MB/s takes 1 second
+		assertFalse(CheckpointDecision.getDynamicDecision(5000L, 100L * MB, 500L * MB, 100, 50));
+		assertTrue(CheckpointDecision.getDynamicDecision(20000L, 100L * MB, 500L * MB, 100, 50));
+	}
+
+	/**
+	 * Tests that invalid rates are rejected.
+	 */
+	@Test
+	public void testInvalidRates() {
+
+		try {
+			CheckpointDecision.getDynamicDecision(0L, 0L, 0L, 0, 50);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.FileBufferManager;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
+import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedChannelCloseEvent;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.CheckpointDeserializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This class contains tests for writing checkpoints with the {@link WriteThread}.
+ */
+public class WriteThreadTest {
+
+	/**
+	 * The number of envelopes with data written to the checkpoint.
+	 */
+	private static final int NUMBER_OF_ENVELOPES = 20;
+
+	/**
+	 * Tests that all envelopes written in batches can be read back from the checkpoint and that all memory buffers are
+	 * recycled.
+	 */
+	@Test
+	public void testWriteAndReadCheckpoint() throws Exception {
+
+		final ExecutionVertexID vertexID = new ExecutionVertexID();
+		final JobID jobID = new JobID();
+		final ChannelID source = new ChannelID();
+		final AtomicInteger recycledBuffers = new AtomicInteger(0);
+		final MemoryBufferPoolConnector connector = new MemoryBufferPoolConnector() {
+
+			@Override
+			public void recycle(final ByteBuffer byteBuffer) {
+				recycledBuffers.incrementAndGet();
+			}
+		};
+
+		final WriteThread writeThread = new WriteThread(FileBufferManager.getInstance(), vertexID, 1);
+		writeThread.start();
+
+		try {
+			for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+				final TransferEnvelope transferEnvelope = new TransferEnvelope(i, jobID, source);
+				final byte[] data = createData(i);
+				final MemoryBuffer buffer = (MemoryBuffer) BufferFactory.createFromMemory(data.length,
+					ByteBuffer.allocateDirect(data.length), connector);
+				buffer.write(ByteBuffer.wrap(data));
+				buffer.finishWritePhase();
+				transferEnvelope.setBuffer(buffer);
+				writeThread.write(transferEnvelope);
+			}
+
+			final TransferEnvelope closeEnvelope = new TransferEnvelope(NUMBER_OF_ENVELOPES, jobID, source);
+			closeEnvelope.addEvent(new ByteBufferedChannelCloseEvent());
+			writeThread.write(closeEnvelope);
+
+			writeThread.join(10000L);
+			assertFalse(writeThread.isAlive());
+			assertFalse(writeThread.hasDataLeft());
+			assertEquals(NUMBER_OF_ENVELOPES, recycledBuffers.get());
+			assertTrue(CheckpointUtils.hasCompleteCheckpointAvailable(vertexID));
+
+			final FileChannel metaDataChannel = new FileInputStream(CheckpointUtils.getLocalCheckpointPath().toUri()
+				.getPath() + Path.SEPARATOR + CheckpointUtils.METADATA_PREFIX + "_" + vertexID + "_0").getChannel();
+
+			try {
+				final ByteBuffer header = ByteBuffer.allocate(1);
+				metaDataChannel.read(header);
+				assertEquals(CompressionLevel.NO_COMPRESSION.ordinal(), header.get(0));
+
+				final CheckpointDeserializer deserializer = new CheckpointDeserializer(vertexID, false);
+				int numberOfEnvelopes = 0;
+				boolean closeEventFound = false;
+				while (true) {
+					try {
+						deserializer.read(metaDataChannel);
+					} catch (EOFException e) {
+						break;
+					}
+
+					final TransferEnvelope transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+					if (transferEnvelope == null) {
+						continue;
+					}
+
+					assertEquals(numberOfEnvelopes, transferEnvelope.getSequenceNumber());
+					final Buffer buffer = transferEnvelope.getBuffer();
+					if (buffer == null) {
+						closeEventFound = true;
+					} else {
+						final byte[] data = createData(transferEnvelope.getSequenceNumber());
+						final MemoryBuffer copy = (MemoryBuffer) BufferFactory.createFromMemory(buffer.size(),
+							ByteBuffer.allocate(buffer.size()), connector);
+						buffer.copyToBuffer(copy);
+						buffer.recycleBuffer();
+						assertEquals(ByteBuffer.wrap(data), copy.getByteBuffer());
+					}
+
+					++numberOfEnvelopes;
+				}
+
+				assertEquals(NUMBER_OF_ENVELOPES + 1, numberOfEnvelopes);
+				assertTrue(closeEventFound);
+			} finally {
+				metaDataChannel.close();
+			}
+
+		} finally {
+			writeThread.cancelAndDestroy();
+			CheckpointUtils.removeCheckpoint(vertexID);
+		}
+
+	}
+
+	/**
+	 * Tests that every memory buffer is recycled exactly once and no longer referenced by its envelope if the buffer
+	 * data of a batch cannot be written.
+	 */
+	@Test
+	public void testFailingWriteRecyclesBuffersOnce() throws Exception {
+
+		final ExecutionVertexID vertexID = new ExecutionVertexID();
+		final JobID jobID = new JobID();
+		final ChannelID source = new ChannelID();
+		final AtomicInteger recycledBuffers = new AtomicInteger(0);
+		final MemoryBufferPoolConnector connector = new MemoryBufferPoolConnector() {
+
+			@Override
+			public void recycle(final ByteBuffer byteBuffer) {
+				recycledBuffers.incrementAndGet();
+			}
+		};
+
+		// A directory in place of the vertex's file buffer makes the file buffer creation fail
+		final File blockingDir = new File(ConfigConstants.DEFAULT_TASK_MANAGER_TMP_PATH,
+			FileBufferManager.FILE_BUFFER_PREFIX + vertexID);
+		assertTrue(blockingDir.mkdir());
+
+		final WriteThread writeThread = new WriteThread(FileBufferManager.getInstance(), vertexID, 1);
+
+		try {
+			// Queue all envelopes before the thread starts, so that none of them is written after the failure
+			final int numberOfEnvelopes = 3;
+			final List<TransferEnvelope> envelopes = new ArrayList<TransferEnvelope>(numberOfEnvelopes);
+			for (int i = 0; i < numberOfEnvelopes; ++i) {
+				final TransferEnvelope transferEnvelope = new TransferEnvelope(i, jobID, source);
+				final byte[] data = createData(i);
+				final MemoryBuffer buffer = (MemoryBuffer) BufferFactory.createFromMemory(data.length,
+					ByteBuffer.allocateDirect(data.length), connector);
+				buffer.write(ByteBuffer.wrap(data));
+				buffer.finishWritePhase();
+				transferEnvelope.setBuffer(buffer);
+				envelopes.add(transferEnvelope);
+				writeThread.write(transferEnvelope);
+			}
+
+			writeThread.start();
+			writeThread.join(10000L);
+			assertFalse(writeThread.isAlive());
+			assertEquals(numberOfEnvelopes, recycledBuffers.get());
+			for (final TransferEnvelope transferEnvelope : envelopes) {
+				assertNull(transferEnvelope.getBuffer());
+			}
+
+			try {
+				writeThread.write(new TransferEnvelope(numberOfEnvelopes, jobID, source));
+				fail("The write error has not been reported");
+			} catch (IOException e) {
+				// expected
+			}
+
+		} finally {
+			writeThread.cancelAndDestroy();
+			blockingDir.delete();
+		}
+	}
+
+	/**
+	 * Creates the test data for the envelope with the given sequence number.
+	 * 
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @return the test data
+	 */
+	private static byte[] createData(final int sequenceNumber) {
+
+		final byte[] data = new byte[1000 + sequenceNumber * 100];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) (i + sequenceNumber);
+		}
+
+		return data;
+	}
+}
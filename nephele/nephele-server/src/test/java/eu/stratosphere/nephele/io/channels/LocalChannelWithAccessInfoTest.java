@@ -0,0 +1,136 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the memory-mapped access to local files in {@link LocalChannelWithAccessInfo}.
+ */
+public class LocalChannelWithAccessInfoTest {
+
+	/**
+	 * The size of the mapped regions used throughout the tests.
+	 */
+	private static final int REGION_SIZE = 4096;
+
+	/**
+	 * The file used throughout the tests.
+	 */
+	private File file;
+
+	/**
+	 * Creates the file used throughout the tests.
+	 * 
+	 * @throws IOException
+	 *         thrown if the file cannot be created
+	 */
+	@Before
+	public void createFile() throws IOException {
+
+		this.file = File.createTempFile("fb_test", ".tmp");
+	}
+
+	/**
+	 * Deletes the file used throughout the tests.
+	 */
+	@After
+	public void deleteFile() {
+
+		this.file.delete();
+	}
+
+	/**
+	 * Checks that reservations which would span two regions are moved to the start of the next region.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while accessing the file
+	 */
+	@Test
+	public void testRegionAlignedReservation() throws IOException {
+
+		final LocalChannelWithAccessInfo channel = new LocalChannelWithAccessInfo(this.file, true, REGION_SIZE);
+
+		assertEquals(0L, channel.reserveWriteSpaceAndIncrementReferences(3000).getOffset());
+		assertEquals(REGION_SIZE, channel.reserveWriteSpaceAndIncrementReferences(3000).getOffset());
+		assertEquals(REGION_SIZE + 3000, channel.reserveWriteSpaceAndIncrementReferences(1096).getOffset());
+
+		// Reservations larger than a region cannot be mapped and are not aligned
+		assertEquals(2 * REGION_SIZE, channel.reserveWriteSpaceAndIncrementReferences(2 * REGION_SIZE).getOffset());
+		assertNull(channel.getMappedRegion(2 * REGION_SIZE, 2 * REGION_SIZE, true));
+
+		channel.disposeSilently();
+	}
+
+	/**
+	 * Checks that data written to a mapped region can be read through the file channel and that the file is truncated
+	 * to the reserved space when it is closed.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while accessing the file
+	 */
+	@Test
+	public void testMappedWriteAndTruncate() throws IOException {
+
+		final LocalChannelWithAccessInfo channel = new LocalChannelWithAccessInfo(this.file, false, REGION_SIZE);
+
+		final long offset = channel.reserveWriteSpaceAndIncrementReferences(8).getOffset();
+		final ByteBuffer region = channel.getMappedRegion(offset, 8, true);
+		assertNotNull(region);
+		assertEquals(8, region.remaining());
+		region.putLong(0x0123456789ABCDEFL);
+
+		final ByteBuffer dst = ByteBuffer.allocate(8);
+		channel.getChannel().read(dst, offset);
+		dst.flip();
+		assertEquals(0x0123456789ABCDEFL, dst.getLong());
+
+		// Mapping the region has extended the file to the region size
+		assertEquals(REGION_SIZE, this.file.length());
+
+		channel.decrementReferences();
+		assertEquals(8L, this.file.length());
+	}
+
+	/**
+	 * Checks that a region is not mapped for reading if that would extend the file.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while accessing the file
+	 */
+	@Test
+	public void testNoMappingBeyondEndOfFileForReading() throws IOException {
+
+		final LocalChannelWithAccessInfo channel = new LocalChannelWithAccessInfo(this.file, true, REGION_SIZE);
+		channel.getChannel().write(ByteBuffer.allocate(16), 0L);
+
+		assertNull(channel.getMappedRegion(0L, 16, false));
+		assertEquals(16L, this.file.length());
+
+		channel.disposeSilently();
+	}
+}
@@ -0,0 +1,404 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.jobmanager.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.executiongraph.ExecutionEdge;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraph;
+import eu.stratosphere.nephele.executiongraph.ExecutionGraphIterator;
+import eu.stratosphere.nephele.executiongraph.ExecutionGroupVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertex;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.executiongraph.InternalJobStatus;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.instance.AbstractInstance;
+import eu.stratosphere.nephele.instance.AllocatedResource;
+import eu.stratosphere.nephele.instance.AllocationID;
+import eu.stratosphere.nephele.instance.InstanceManager;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.library.FileLineReader;
+import eu.stratosphere.nephele.io.library.FileLineWriter;
+import eu.stratosphere.nephele.jobgraph.JobFileInputVertex;
+import eu.stratosphere.nephele.jobgraph.JobFileOutputVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobmanager.splitassigner.InputSplitManager;
+import eu.stratosphere.nephele.taskmanager.AbstractTaskResult.ReturnCode;
+import eu.stratosphere.nephele.taskmanager.TaskCancelResult;
+import eu.stratosphere.nephele.template.InputSplit;
+import eu.stratosphere.nephele.util.ServerTestUtils;
+
+/**
+ * This class contains tests for the straggler detection of the {@link SpeculativeExecutionManager} and for the
+ * creation, commitment and cancellation of speculative backup pipelines.
+ */
+public class SpeculativeExecutionManagerTest {
+
+	/**
+	 * The minimum runtime used throughout the tests.
+	 */
+	private static final long MINIMUM_RUNTIME = 1000L;
+
+	/**
+	 * The runtime threshold used throughout the tests.
+	 */
+	private static final int RUNTIME_THRESHOLD = 150;
+
+	/**
+	 * The rate threshold used throughout the tests.
+	 */
+	private static final int RATE_THRESHOLD = 50;
+
+	/**
+	 * The number of parallel pipelines of the test job.
+	 */
+	private static final int NUMBER_OF_SUBTASKS = 2;
+
+	/**
+	 * The instance type of all resources used throughout the tests.
+	 */
+	private static final InstanceType INSTANCE_TYPE = InstanceTypeFactory.construct("test", 4, 4, 1024, 50, 10);
+
+	/**
+	 * File output task which commits its output atomically, so that its pipelines can be backed up.
+	 */
+	public static final class AtomicFileLineWriter extends FileLineWriter {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean commitsOutputAtomically() {
+
+			return true;
+		}
+	}
+
+	/**
+	 * Checks that a slow vertex which has been running long enough is detected as a straggler.
+	 */
+	@Test
+	public void testSlowVertexIsStraggler() {
+
+		// Peers consumed 10 units per millisecond within 2 seconds, the vertex only 2 units per millisecond
+		assertTrue(SpeculativeExecutionManager.isStraggler(4000L, 8000L, 2000L, 10.0, MINIMUM_RUNTIME,
+			RUNTIME_THRESHOLD, RATE_THRESHOLD));
+	}
+
+	/**
+	 * Checks that a vertex is not considered a straggler before the thresholds are exceeded.
+	 */
+	@Test
+	public void testThresholds() {
+
+		// Below the minimum runtime
+		assertFalse(SpeculativeExecutionManager.isStraggler(500L, 0L, 100L, 10.0, MINIMUM_RUNTIME,
+			RUNTIME_THRESHOLD, RATE_THRESHOLD));
+
+		// Not yet running considerably longer than the median
+		assertFalse(SpeculativeExecutionManager.isStraggler(2900L, 0L, 2000L, 10.0, MINIMUM_RUNTIME,
+			RUNTIME_THRESHOLD, RATE_THRESHOLD));
+
+		// Running long, but consuming its input at a normal rate, e.g. because it received larger splits
+		assertFalse(SpeculativeExecutionManager.isStraggler(4000L, 32000L, 2000L, 10.0, MINIMUM_RUNTIME,
+			RUNTIME_THRESHOLD, RATE_THRESHOLD));
+	}
+
+	/**
+	 * Checks that a backup pipeline is a connected copy of the original pipeline which replaces the original vertices
+	 * in their groups once it is committed.
+	 */
+	@Test
+	public void testCreateAndCommitBackupPipeline() throws Exception {
+
+		final File inputFile = ServerTestUtils.createInputFile(100);
+		final ExecutionGraph eg = createExecutionGraph(inputFile);
+
+		try {
+			final ExecutionGroupVertex inputGroup = eg.getInputVertex(0).getGroupVertex();
+			final ExecutionGroupVertex outputGroup = eg.getOutputVertex(0).getGroupVertex();
+			final ExecutionVertex originalInput = inputGroup.getGroupMember(1);
+			final ExecutionVertex originalOutput = originalInput.getOutputGate(0).getEdge(0).getInputGate()
+				.getVertex();
+			final AllocatedResource backupResource = createResource(mock(AbstractInstance.class));
+
+			final List<ExecutionVertex> backupPipeline = eg.createBackupPipeline(originalInput, backupResource);
+			assertNotNull(backupPipeline);
+			assertEquals(2, backupPipeline.size());
+
+			final ExecutionVertex backupInput = backupPipeline.get(0);
+			final ExecutionVertex backupOutput = backupPipeline.get(1);
+			assertTrue(backupInput.isBackupVertex());
+			assertSame(originalInput, backupInput.getOriginalVertex());
+			assertSame(originalOutput, backupOutput.getOriginalVertex());
+			assertSame(backupResource, backupInput.getAllocatedResource());
+			assertSame(backupResource, backupOutput.getAllocatedResource());
+
+			// The backup vertices are connected among each other only
+			final ExecutionEdge backupEdge = backupInput.getOutputGate(0).getEdge(0);
+			assertSame(backupOutput, backupEdge.getInputGate().getVertex());
+			assertSame(backupEdge, backupOutput.getInputGate(0).getEdge(0));
+			assertSame(backupInput, eg.getVertexByChannelID(backupEdge.getOutputChannelID()));
+			assertSame(originalOutput, originalInput.getOutputGate(0).getEdge(0).getInputGate().getVertex());
+
+			// Until the backup is committed, the original vertices remain the group members
+			assertSame(originalInput, inputGroup.getGroupMember(1));
+			assertTrue(isGroupMember(outputGroup, originalOutput));
+			assertFalse(isGroupMember(outputGroup, backupOutput));
+
+			eg.commitBackupPipeline(backupPipeline);
+
+			assertSame(backupInput, inputGroup.getGroupMember(1));
+			assertTrue(isGroupMember(outputGroup, backupOutput));
+			assertFalse(isGroupMember(outputGroup, originalOutput));
+			assertEquals(NUMBER_OF_SUBTASKS, outputGroup.getCurrentNumberOfGroupMembers());
+
+		} finally {
+			LibraryCacheManager.unregister(eg.getJobID());
+			inputFile.delete();
+		}
+	}
+
+	/**
+	 * Checks that a backup shares the input split log of its original vertex, so that both consume the same sequence
+	 * of input splits regardless of which copy requests a split first.
+	 */
+	@Test
+	public void testBackupReadsSameInputSplits() throws Exception {
+
+		final File inputFile = ServerTestUtils.createInputFile(100);
+		final ExecutionGraph eg = createExecutionGraph(inputFile);
+		final InputSplitManager inputSplitManager = new InputSplitManager();
+
+		try {
+			final ExecutionVertex original = eg.getInputVertex(0).getGroupVertex().getGroupMember(1);
+			original.setAllocatedResource(createResource(mock(AbstractInstance.class)));
+			inputSplitManager.registerJob(eg);
+
+			final InputSplit firstSplit = inputSplitManager.getNextInputSplit(original, 0);
+			assertNotNull(firstSplit);
+
+			final ExecutionVertex backup = eg.createBackupPipeline(original,
+				createResource(mock(AbstractInstance.class))).get(0);
+
+			// The backup replays the split the original has already received
+			assertSame(firstSplit, inputSplitManager.getNextInputSplit(backup, 0));
+
+			// The original replays the split the backup has received first
+			final InputSplit secondSplit = inputSplitManager.getNextInputSplit(backup, 1);
+			assertSame(secondSplit, inputSplitManager.getNextInputSplit(original, 1));
+			assertEquals(((FileInputSplit) firstSplit).getLength(), backup.getConsumedInput());
+
+			inputSplitManager.unregisterJob(eg);
+
+		} finally {
+			LibraryCacheManager.unregister(eg.getJobID());
+			inputFile.delete();
+		}
+	}
+
+	/**
+	 * Checks that the speculative execution manager backs up a straggling pipeline and, once the backup finishes
+	 * first, commits the backup and cancels the original pipeline.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testLoserIsCanceled() throws Exception {
+
+		final Configuration conf = new Configuration();
+		conf.setBoolean(SpeculativeExecutionManager.ENABLED_KEY, true);
+		conf.setLong(SpeculativeExecutionManager.MINIMUM_RUNTIME_KEY, 0L);
+		GlobalConfiguration.includeConfiguration(conf);
+
+		final File inputFile = ServerTestUtils.createInputFile(100);
+		final ExecutionGraph eg = createExecutionGraph(inputFile);
+
+		try {
+			final AbstractScheduler scheduler = mock(AbstractScheduler.class);
+			final SpeculativeExecutionManager manager = new SpeculativeExecutionManager(scheduler);
+
+			final AbstractInstance originalInstance = mock(AbstractInstance.class);
+			final AbstractInstance backupInstance = mock(AbstractInstance.class);
+			when(originalInstance.cancelTask(any(ExecutionVertexID.class))).thenReturn(
+				new TaskCancelResult(new ExecutionVertexID(), ReturnCode.SUCCESS));
+
+			// Run all original vertices on the same instance
+			final AllocatedResource originalResource = createResource(originalInstance);
+			final Iterator<ExecutionVertex> it = new ExecutionGraphIterator(eg, true);
+			while (it.hasNext()) {
+				final ExecutionVertex vertex = it.next();
+				vertex.setAllocatedResource(originalResource);
+				updateExecutionState(vertex, ExecutionState.SCHEDULED, ExecutionState.ASSIGNED, ExecutionState.READY,
+					ExecutionState.STARTING, ExecutionState.RUNNING);
+				manager.executionStateChanged(vertex, ExecutionState.RUNNING);
+			}
+
+			// The first pipeline finishes its input quickly, the second one does not consume any input
+			final ExecutionGroupVertex inputGroup = eg.getInputVertex(0).getGroupVertex();
+			final ExecutionVertex finished = inputGroup.getGroupMember(0);
+			final ExecutionVertex straggler = inputGroup.getGroupMember(1);
+			final ExecutionVertex stragglerOutput = straggler.getOutputGate(0).getEdge(0).getInputGate().getVertex();
+			finished.updateConsumedInput(1000L);
+			updateExecutionState(finished, ExecutionState.FINISHING, ExecutionState.FINISHED);
+			manager.executionStateChanged(finished, ExecutionState.FINISHED);
+			Thread.sleep(100L);
+			eg.updateJobStatus(InternalJobStatus.RUNNING, null);
+
+			assertTrue(manager.launchBackup(eg, createResource(backupInstance)));
+
+			final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+			verify(scheduler).deployAssignedVertices(captor.capture());
+			final List<ExecutionVertex> backupPipeline = captor.getValue();
+			assertEquals(2, backupPipeline.size());
+			assertSame(straggler, backupPipeline.get(0).getOriginalVertex());
+			assertEquals(ExecutionState.ASSIGNED, backupPipeline.get(0).getExecutionState());
+
+			// The backup finishes first
+			for (final ExecutionVertex backupVertex : backupPipeline) {
+				updateExecutionState(backupVertex, ExecutionState.READY, ExecutionState.STARTING,
+					ExecutionState.RUNNING, ExecutionState.FINISHING, ExecutionState.FINISHED);
+			}
+
+			assertSame(backupPipeline.get(0), inputGroup.getGroupMember(1));
+			assertTrue(manager.isSuperseded(straggler));
+			assertTrue(manager.isSuperseded(stragglerOutput));
+			assertFalse(manager.isSuperseded(finished));
+
+			verify(originalInstance).cancelTask(straggler.getID());
+			verify(originalInstance).cancelTask(stragglerOutput.getID());
+			verify(originalInstance, never()).cancelTask(finished.getID());
+			verify(backupInstance, never()).cancelTask(any(ExecutionVertexID.class));
+			assertEquals(ExecutionState.CANCELING, straggler.getExecutionState());
+			assertEquals(ExecutionState.CANCELING, stragglerOutput.getExecutionState());
+
+		} finally {
+			LibraryCacheManager.unregister(eg.getJobID());
+			inputFile.delete();
+
+			conf.setBoolean(SpeculativeExecutionManager.ENABLED_KEY, false);
+			conf.setLong(SpeculativeExecutionManager.MINIMUM_RUNTIME_KEY, 30000L);
+			GlobalConfiguration.includeConfiguration(conf);
+		}
+	}
+
+	/**
+	 * Creates an execution graph with {@link #NUMBER_OF_SUBTASKS} parallel pipelines, each consisting of a file input
+	 * vertex which is connected to an atomically committing file output vertex.
+	 * 
+	 * @param inputFile
+	 *        the file to be read by the input vertices
+	 * @return the execution graph
+	 * @throws Exception
+	 *         thrown if the job graph cannot be built or converted into an execution graph
+	 */
+	private static ExecutionGraph createExecutionGraph(final File inputFile) throws Exception {
+
+		final JobGraph jg = new JobGraph("Speculation Job");
+
+		final JobFileInputVertex input = new JobFileInputVertex("Input", jg);
+		input.setFileInputClass(FileLineReader.class);
+		input.setFilePath(new Path(inputFile.toURI()));
+		input.setNumberOfSubtasks(NUMBER_OF_SUBTASKS);
+
+		final JobFileOutputVertex output = new JobFileOutputVertex("Output", jg);
+		output.setFileOutputClass(AtomicFileLineWriter.class);
+		output.setFilePath(new Path(new File(ServerTestUtils.getRandomFilename()).toURI()));
+		output.setNumberOfSubtasks(NUMBER_OF_SUBTASKS);
+
+		input.connectTo(output, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+
+		LibraryCacheManager.register(jg.getJobID(), new String[0]);
+
+		final InstanceManager instanceManager = mock(InstanceManager.class);
+		when(instanceManager.getDefaultInstanceType()).thenReturn(INSTANCE_TYPE);
+		when(instanceManager.getInstanceTypeByName(INSTANCE_TYPE.getIdentifier())).thenReturn(INSTANCE_TYPE);
+
+		return new ExecutionGraph(jg, instanceManager);
+	}
+
+	/**
+	 * Creates a resource of the test instance type on the given instance.
+	 * 
+	 * @param instance
+	 *        the instance of the resource
+	 * @return the resource
+	 */
+	private static AllocatedResource createResource(final AbstractInstance instance) {
+
+		return new AllocatedResource(instance, INSTANCE_TYPE, new AllocationID());
+	}
+
+	/**
+	 * Checks whether the given vertex is a member of the given group vertex.
+	 * 
+	 * @param groupVertex
+	 *        the group vertex
+	 * @param vertex
+	 *        the vertex to look for
+	 * @return <code>true</code> if the vertex is a member of the group vertex, <code>false</code> otherwise
+	 */
+	private static boolean isGroupMember(final ExecutionGroupVertex groupVertex, final ExecutionVertex vertex) {
+
+		for (int i = 0; i < groupVertex.getCurrentNumberOfGroupMembers(); ++i) {
+			if (groupVertex.getGroupMember(i) == vertex) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Moves the given vertex through the given sequence of execution states.
+	 * 
+	 * @param vertex
+	 *        the vertex to update
+	 * @param executionStates
+	 *        the execution states to switch to in the given order
+	 */
+	private static void updateExecutionState(final ExecutionVertex vertex, final ExecutionState... executionStates) {
+
+		for (final ExecutionState executionState : executionStates) {
+			vertex.updateExecutionState(executionState);
+		}
+	}
+}
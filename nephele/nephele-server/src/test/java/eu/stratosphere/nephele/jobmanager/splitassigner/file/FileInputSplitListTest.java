@@ -0,0 +1,231 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.jobmanager.splitassigner.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.instance.AbstractInstance;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.topology.NetworkTopology;
+
+/**
+ * This class contains tests for the locality-aware assignment of file input splits by the {@link FileInputSplitList}.
+ */
+public class FileInputSplitListTest {
+
+	/**
+	 * Test implementation of {@link AbstractInstance}.
+	 */
+	private static final class TestInstance extends AbstractInstance {
+
+		/**
+		 * Constructs a new test instance.
+		 * 
+		 * @param hostName
+		 *        the host name of the instance
+		 * @param index
+		 *        the index of the instance which is used to derive its address
+		 * @param networkTopology
+		 *        the network topology the instance belongs to
+		 * @throws UnknownHostException
+		 *         thrown if the address of the instance cannot be constructed
+		 */
+		private TestInstance(final String hostName, final int index, final NetworkTopology networkTopology)
+				throws UnknownHostException {
+			super(InstanceTypeFactory.construct("test", 1, 1, 1024, 1024, 10), new InstanceConnectionInfo(
+				InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) index }), hostName, null, 1, 1),
+				networkTopology.getRootNode(), networkTopology, HardwareDescriptionFactory.construct(1, 1L, 1L));
+		}
+	}
+
+	/**
+	 * Creates a new file input split which is stored on the given host.
+	 * 
+	 * @param splitNumber
+	 *        the number of the split
+	 * @param hostName
+	 *        the name of the host storing the split or <code>null</code> if the split has no storage location
+	 * @return the new file input split
+	 */
+	private static FileInputSplit createSplit(final int splitNumber, final String hostName) {
+
+		return new FileInputSplit(splitNumber, new Path("file:///tmp/test"), splitNumber * 1024L, 1024L,
+			(hostName == null) ? null : new String[] { hostName });
+	}
+
+	/**
+	 * Tests that instances consume their local splits before any remote split and that every split is handed out
+	 * exactly once.
+	 */
+	@Test
+	public void testLocalSplitsFirst() throws UnknownHostException {
+
+		final NetworkTopology topology = new NetworkTopology();
+		final AbstractInstance host1 = new TestInstance("host1", 1, topology);
+		final AbstractInstance host2 = new TestInstance("host2", 2, topology);
+		final ExecutionVertexID vertex1 = new ExecutionVertexID();
+		final ExecutionVertexID vertex2 = new ExecutionVertexID();
+
+		final FileInputSplitList splitList = new FileInputSplitList(2);
+		for (int i = 0; i < 4; ++i) {
+			splitList.addSplit(createSplit(i, "host1"));
+		}
+		for (int i = 4; i < 6; ++i) {
+			splitList.addSplit(createSplit(i, "host2"));
+		}
+		splitList.addSplit(createSplit(6, null));
+
+		final Set<Integer> assignedSplits = new HashSet<Integer>();
+		for (int i = 0; i < 2; ++i) {
+			final FileInputSplit split1 = splitList.getNextInputSplit(vertex1, host1);
+			assertEquals("host1", split1.getHostNames()[0]);
+			assertTrue(assignedSplits.add(Integer.valueOf(split1.getSplitNumber())));
+
+			final FileInputSplit split2 = splitList.getNextInputSplit(vertex2, host2);
+			assertEquals("host2", split2.getHostNames()[0]);
+			assertTrue(assignedSplits.add(Integer.valueOf(split2.getSplitNumber())));
+		}
+
+		// host2 has run out of local work, so it receives the split without storage location and then steals
+		FileInputSplit split = splitList.getNextInputSplit(vertex2, host2);
+		assertEquals(0, split.getHostNames().length);
+		assertTrue(assignedSplits.add(Integer.valueOf(split.getSplitNumber())));
+
+		split = splitList.getNextInputSplit(vertex2, host2);
+		assertEquals("host1", split.getHostNames()[0]);
+		assertTrue(assignedSplits.add(Integer.valueOf(split.getSplitNumber())));
+
+		split = splitList.getNextInputSplit(vertex1, host1);
+		assertEquals("host1", split.getHostNames()[0]);
+		assertTrue(assignedSplits.add(Integer.valueOf(split.getSplitNumber())));
+
+		assertNull(splitList.getNextInputSplit(vertex1, host1));
+		assertNull(splitList.getNextInputSplit(vertex2, host2));
+		assertEquals(7, assignedSplits.size());
+	}
+
+	/**
+	 * Tests that instances without local work steal from the host with the most remaining splits and that the number
+	 * of concurrent remote reads per host is limited as long as other hosts still have remaining work.
+	 */
+	@Test
+	public void testWorkStealingWithRemoteReadLimit() throws UnknownHostException {
+
+		final NetworkTopology topology = new NetworkTopology();
+		new TestInstance("host1", 1, topology);
+		new TestInstance("host2", 2, topology);
+		final AbstractInstance host3 = new TestInstance("host3", 3, topology);
+		final AbstractInstance host4 = new TestInstance("host4", 4, topology);
+		final AbstractInstance host5 = new TestInstance("host5", 5, topology);
+		final ExecutionVertexID vertex3 = new ExecutionVertexID();
+		final ExecutionVertexID vertex4 = new ExecutionVertexID();
+		final ExecutionVertexID vertex5 = new ExecutionVertexID();
+
+		final FileInputSplitList splitList = new FileInputSplitList(1);
+		for (int i = 0; i < 6; ++i) {
+			splitList.addSplit(createSplit(i, "host1"));
+		}
+		for (int i = 6; i < 8; ++i) {
+			splitList.addSplit(createSplit(i, "host2"));
+		}
+
+		// host1 has the most remaining work
+		FileInputSplit split = splitList.getNextInputSplit(vertex3, host3);
+		assertNotNull(split);
+		assertEquals("host1", split.getHostNames()[0]);
+
+		// host1 has reached the remote read limit
+		split = splitList.getNextInputSplit(vertex4, host4);
+		assertNotNull(split);
+		assertEquals("host2", split.getHostNames()[0]);
+
+		// All hosts have reached the limit, so the limit is ignored
+		split = splitList.getNextInputSplit(vertex5, host5);
+		assertNotNull(split);
+		assertEquals("host1", split.getHostNames()[0]);
+
+		// Requesting the next split finishes the previous remote read, host1 is still at the limit
+		split = splitList.getNextInputSplit(vertex4, host4);
+		assertNotNull(split);
+		assertEquals("host2", split.getHostNames()[0]);
+
+		int remainingSplits = 0;
+		while (splitList.getNextInputSplit(vertex3, host3) != null) {
+			++remainingSplits;
+		}
+
+		assertEquals(4, remainingSplits);
+	}
+
+	/**
+	 * Tests that remote reads are tracked per execution vertex, so that a vertex requesting its next split does not
+	 * finish the remote read of another vertex running on the same instance.
+	 */
+	@Test
+	public void testRemoteReadsOfVerticesOnSameInstance() throws UnknownHostException {
+
+		final NetworkTopology topology = new NetworkTopology();
+		new TestInstance("host1", 1, topology);
+		new TestInstance("host2", 2, topology);
+		final AbstractInstance host3 = new TestInstance("host3", 3, topology);
+		final ExecutionVertexID vertexA = new ExecutionVertexID();
+		final ExecutionVertexID vertexB = new ExecutionVertexID();
+
+		final FileInputSplitList splitList = new FileInputSplitList(1);
+		for (int i = 0; i < 6; ++i) {
+			splitList.addSplit(createSplit(i, "host1"));
+		}
+		for (int i = 6; i < 10; ++i) {
+			splitList.addSplit(createSplit(i, "host2"));
+		}
+
+		// host1 has the most remaining work
+		FileInputSplit split = splitList.getNextInputSplit(vertexA, host3);
+		assertNotNull(split);
+		assertEquals("host1", split.getHostNames()[0]);
+
+		// The request of the second vertex must not finish the remote read of the first one
+		split = splitList.getNextInputSplit(vertexB, host3);
+		assertNotNull(split);
+		assertEquals("host2", split.getHostNames()[0]);
+
+		// The first vertex finishes its remote read and steals from host1 again
+		split = splitList.getNextInputSplit(vertexA, host3);
+		assertNotNull(split);
+		assertEquals("host1", split.getHostNames()[0]);
+
+		// host1 is still at the limit because of the first vertex
+		split = splitList.getNextInputSplit(vertexB, host3);
+		assertNotNull(split);
+		assertEquals("host2", split.getHostNames()[0]);
+	}
+}
@@ -0,0 +1,134 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.services.memorymanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+
+/**
+ * Runs the memory segment tests against segments backed by off-heap memory, and checks the
+ * interplay between heap and off-heap segments.
+ */
+public class OffHeapMemorySegmentTest extends MemorySegmentTest
+{
+	@Override
+	protected DefaultMemoryManager createMemoryManager() {
+		return new DefaultMemoryManager(MANAGED_MEMORY_SIZE, PAGE_SIZE, true);
+	}
+	
+	@Test
+	public void offHeapAllocation() throws Exception
+	{
+		final DefaultMemoryManager memMan = createMemoryManager();
+		final List<MemorySegment> segments = memMan.allocatePages(new DefaultMemoryManagerTest.DummyInvokable(), 4);
+		
+		for (MemorySegment seg : segments) {
+			assertTrue(seg.isOffHeap());
+			assertEquals(PAGE_SIZE, seg.size());
+		}
+		
+		// write into all segments and check that they do not overlap
+		for (int i = 0; i < segments.size(); i++) {
+			final MemorySegment seg = segments.get(i);
+			seg.putInt(0, i);
+			seg.putInt(PAGE_SIZE - 4, i);
+		}
+		for (int i = 0; i < segments.size(); i++) {
+			final MemorySegment seg = segments.get(i);
+			assertEquals(i, seg.getInt(0));
+			assertEquals(i, seg.getInt(PAGE_SIZE - 4));
+		}
+		
+		memMan.release(segments);
+		for (MemorySegment seg : segments) {
+			assertTrue(seg.isFreed());
+		}
+		assertTrue(memMan.verifyEmpty());
+		memMan.shutdown();
+	}
+	
+	@Test
+	public void copyAndCompareAcrossHeapAndOffHeap()
+	{
+		final Random rnd = new Random(RANDOM_SEED);
+		final MemorySegment heap = new MemorySegment(new byte[1024], 0, 1024);
+		final MemorySegment offHeap = new MemorySegment(ByteBuffer.allocateDirect(1024));
+		
+		final byte[] data = new byte[1024];
+		rnd.nextBytes(data);
+		heap.put(0, data);
+		
+		heap.copyTo(0, offHeap, 0, 1024);
+		assertEquals(0, heap.compare(offHeap, 0, 0, 1024));
+		assertEquals(0, offHeap.compare(heap, 0, 0, 1024));
+		
+		final byte[] result = new byte[1024];
+		offHeap.get(0, result);
+		assertArrayEquals(data, result);
+		
+		// compare interprets the bytes as unsigned values
+		offHeap.put(17, (byte) 0xff);
+		heap.put(17, (byte) 0x01);
+		assertTrue(offHeap.compare(heap, 0, 0, 1024) > 0);
+		assertTrue(heap.compare(offHeap, 0, 0, 1024) < 0);
+		
+		// the wrapper for I/O covers exactly the requested region
+		final ByteBuffer wrapper = offHeap.wrap(16, 32);
+		assertEquals(32, wrapper.remaining());
+		assertEquals((byte) 0xff, wrapper.get(17));
+	}
+	
+	@Test
+	public void copyWithinOffHeapSegment()
+	{
+		final Random rnd = new Random(RANDOM_SEED);
+		final MemorySegment offHeap = new MemorySegment(ByteBuffer.allocateDirect(1024));
+		
+		final byte[] data = new byte[1024];
+		rnd.nextBytes(data);
+		offHeap.put(0, data);
+		
+		// disjoint regions, as when swapping records in a sort buffer
+		offHeap.copyTo(0, offHeap, 512, 256);
+		final byte[] result = new byte[256];
+		offHeap.get(512, result);
+		for (int i = 0; i < 256; i++) {
+			assertEquals(data[i], result[i]);
+		}
+		
+		// overlapping regions, moving the data forwards and backwards
+		offHeap.put(0, data);
+		offHeap.copyTo(0, offHeap, 16, 512);
+		for (int i = 0; i < 512; i++) {
+			assertEquals(data[i], offHeap.get(16 + i));
+		}
+		
+		offHeap.put(0, data);
+		offHeap.copyTo(16, offHeap, 0, 512);
+		for (int i = 0; i < 512; i++) {
+			assertEquals(data[16 + i], offHeap.get(i));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bufferprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+
+/**
+ * This class contains tests for the {@link LocalBufferPool} and its interaction with the size classes of the
+ * {@link GlobalBufferPool}.
+ */
+public class LocalBufferPoolTest {
+
+	/**
+	 * Tests that small buffer requests are served from the global pool's small size classes without occupying one of
+	 * the designated buffers of the local pool.
+	 */
+	@Test
+	public void testSmallBufferRequest() throws IOException {
+
+		final GlobalBufferPool globalBufferPool = GlobalBufferPool.getInstance();
+		final LocalBufferPool localBufferPool = new LocalBufferPool(1, false);
+
+		try {
+			final int numberOfGlobalBuffers = globalBufferPool.getCurrentNumberOfBuffers();
+
+			final Buffer buffer = localBufferPool.requestEmptyBuffer(100);
+			assertNotNull(buffer);
+			assertEquals(100, buffer.size());
+			assertEquals(0, localBufferPool.getRequestedNumberOfBuffers());
+			assertEquals(numberOfGlobalBuffers, globalBufferPool.getCurrentNumberOfBuffers());
+
+			buffer.recycleBuffer();
+			assertEquals(0, localBufferPool.getNumberOfAvailableBuffers());
+		} finally {
+			localBufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that the local pool never hands out more than its designated number of full-size buffers and that recycled
+	 * buffers are reused.
+	 */
+	@Test
+	public void testDesignatedNumberOfBuffers() throws IOException {
+
+		final int maximumBufferSize = GlobalBufferPool.getInstance().getMaximumBufferSize();
+		final LocalBufferPool localBufferPool = new LocalBufferPool(1, false);
+
+		try {
+			final Buffer buffer = localBufferPool.requestEmptyBuffer(maximumBufferSize);
+			assertNotNull(buffer);
+			assertEquals(1, localBufferPool.getRequestedNumberOfBuffers());
+			assertNull(localBufferPool.requestEmptyBuffer(maximumBufferSize));
+
+			buffer.recycleBuffer();
+			assertEquals(1, localBufferPool.getNumberOfAvailableBuffers());
+
+			final Buffer reusedBuffer = localBufferPool.requestEmptyBuffer(maximumBufferSize);
+			assertNotNull(reusedBuffer);
+			assertEquals(1, localBufferPool.getRequestedNumberOfBuffers());
+
+			// Shrinking the pool must return the buffer to the global pool on recycling
+			localBufferPool.setDesignatedNumberOfBuffers(0);
+			reusedBuffer.recycleBuffer();
+			assertEquals(0, localBufferPool.getRequestedNumberOfBuffers());
+			assertEquals(0, localBufferPool.getNumberOfAvailableBuffers());
+		} finally {
+			localBufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that registered buffer availability listeners are notified when a buffer is recycled.
+	 */
+	@Test
+	public void testBufferAvailabilityListener() throws IOException {
+
+		final int maximumBufferSize = GlobalBufferPool.getInstance().getMaximumBufferSize();
+		final LocalBufferPool localBufferPool = new LocalBufferPool(1, false);
+		final AtomicInteger notifications = new AtomicInteger(0);
+		final BufferAvailabilityListener listener = new BufferAvailabilityListener() {
+
+			@Override
+			public void bufferAvailable() {
+				notifications.incrementAndGet();
+			}
+		};
+
+		try {
+			final Buffer buffer = localBufferPool.requestEmptyBuffer(maximumBufferSize);
+			assertNotNull(buffer);
+
+			assertTrue(localBufferPool.registerBufferAvailabilityListener(listener));
+			buffer.recycleBuffer();
+			assertEquals(1, notifications.get());
+
+			// A buffer is available now, so registering must be refused
+			assertFalse(localBufferPool.registerBufferAvailabilityListener(listener));
+		} finally {
+			localBufferPool.destroy();
+		}
+	}
+}
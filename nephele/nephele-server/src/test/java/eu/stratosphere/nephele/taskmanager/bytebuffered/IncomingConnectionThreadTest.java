@@ -0,0 +1,139 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests covering the distribution of incoming connections among several
+ * {@link IncomingConnectionThread} objects.
+ */
+public class IncomingConnectionThreadTest {
+
+	/**
+	 * The number of incoming connection threads used during the test.
+	 */
+	private static final int NUMBER_OF_THREADS = 3;
+
+	/**
+	 * The maximum time in milliseconds to wait for the connections to be distributed.
+	 */
+	private static final long TIMEOUT = 10000L;
+
+	/**
+	 * Tests that the listening thread assigns each accepted connection to the least loaded incoming connection thread.
+	 */
+	@Test
+	public void testConnectionsAreSpreadAcrossThreads() throws IOException, InterruptedException {
+
+		final InetSocketAddress listeningAddress = new InetSocketAddress("localhost", getFreePort());
+
+		final List<IncomingConnectionThread> threads = new CopyOnWriteArrayList<IncomingConnectionThread>();
+		for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+			threads.add(new IncomingConnectionThread(null, (i == 0), listeningAddress, threads));
+		}
+
+		final List<SocketChannel> clients = new ArrayList<SocketChannel>();
+
+		try {
+			for (final IncomingConnectionThread thread : threads) {
+				thread.start();
+			}
+
+			for (int i = 0; i < 2 * NUMBER_OF_THREADS; ++i) {
+				clients.add(SocketChannel.open(listeningAddress));
+				waitForNumberOfConnections(threads, i + 1);
+			}
+
+			for (final IncomingConnectionThread thread : threads) {
+				assertEquals(2, thread.getNumberOfConnections());
+			}
+
+		} finally {
+
+			for (final SocketChannel client : clients) {
+				client.close();
+			}
+
+			for (final IncomingConnectionThread thread : threads) {
+				thread.interrupt();
+				thread.join();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the given threads serve the given number of connections in total.
+	 * 
+	 * @param threads
+	 *        the incoming connection threads
+	 * @param expectedNumberOfConnections
+	 *        the expected total number of connections
+	 * @throws InterruptedException
+	 *         thrown if the test is interrupted while waiting
+	 */
+	private static void waitForNumberOfConnections(final List<IncomingConnectionThread> threads,
+			final int expectedNumberOfConnections) throws InterruptedException {
+
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+
+		while (System.currentTimeMillis() < deadline) {
+
+			int numberOfConnections = 0;
+			final Iterator<IncomingConnectionThread> it = threads.iterator();
+			while (it.hasNext()) {
+				numberOfConnections += it.next().getNumberOfConnections();
+			}
+
+			if (numberOfConnections == expectedNumberOfConnections) {
+				return;
+			}
+
+			Thread.sleep(10L);
+		}
+
+		throw new IllegalStateException("Connections have not been accepted within " + TIMEOUT + " ms");
+	}
+
+	/**
+	 * Returns a port which is currently not in use.
+	 * 
+	 * @return a free port
+	 * @throws IOException
+	 *         thrown if no port could be determined
+	 */
+	private static int getFreePort() throws IOException {
+
+		final ServerSocket serverSocket = new ServerSocket(0);
+		try {
+			return serverSocket.getLocalPort();
+		} finally {
+			serverSocket.close();
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedChannelCloseEvent;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests covering the credit-based flow control of the {@link OutgoingConnection}.
+ */
+public class OutgoingConnectionTest {
+
+	/**
+	 * The size of the test buffers in bytes.
+	 */
+	private static final int BUFFER_SIZE = 8;
+
+	/**
+	 * The number of credits announced per channel during the tests.
+	 */
+	private static final int CREDITS_PER_CHANNEL = 2;
+
+	/**
+	 * The job ID used during the tests.
+	 */
+	private static final JobID JOB_ID = new JobID();
+
+	/**
+	 * The pipe whose sink replaces the TCP connection during the tests.
+	 */
+	private Pipe pipe;
+
+	/**
+	 * The selector the sink of the pipe is registered with.
+	 */
+	private Selector selector;
+
+	/**
+	 * The selection key of the sink of the pipe.
+	 */
+	private SelectionKey selectionKey;
+
+	/**
+	 * Sets up the pipe which replaces the TCP connection.
+	 * 
+	 * @throws IOException
+	 *         thrown if the pipe cannot be opened
+	 */
+	@Before
+	public void setUp() throws IOException {
+
+		this.pipe = Pipe.open();
+		this.pipe.sink().configureBlocking(false);
+		this.selector = Selector.open();
+		this.selectionKey = this.pipe.sink().register(this.selector, SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Closes the pipe and the selector.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while closing the pipe
+	 */
+	@After
+	public void tearDown() throws IOException {
+
+		this.pipe.sink().close();
+		this.pipe.source().close();
+		this.selector.close();
+	}
+
+	/**
+	 * Tests that a channel without credits neither transmits its envelopes nor blocks the other channels of the
+	 * connection and that channels start without credits.
+	 */
+	@Test
+	public void testCreditsLimitTransmission() throws IOException {
+
+		final OutgoingConnection connection = createConnection(true);
+
+		final ChannelID slowChannel = new ChannelID();
+		final ChannelID fastChannel = new ChannelID();
+		final Queue<ByteBuffer> slowPool = new ArrayDeque<ByteBuffer>();
+		final Queue<ByteBuffer> fastPool = new ArrayDeque<ByteBuffer>();
+
+		for (int i = 0; i < 3; ++i) {
+			connection.queueEnvelope(createEnvelope(slowChannel, i, slowPool));
+		}
+		// The close event must not overtake the data waiting for credits
+		final TransferEnvelope closeEnvelope = new TransferEnvelope(3, JOB_ID, slowChannel);
+		closeEnvelope.addEvent(new ByteBufferedChannelCloseEvent());
+		connection.queueEnvelope(closeEnvelope);
+
+		connection.queueEnvelope(createEnvelope(fastChannel, 0, fastPool));
+		connection.queueEnvelope(createEnvelope(fastChannel, 1, fastPool));
+
+		drain(connection);
+
+		// No buffer is transmitted before the input channels have announced credits
+		assertEquals(0, slowPool.size());
+		assertEquals(0, fastPool.size());
+
+		connection.grantCredits(slowChannel, CREDITS_PER_CHANNEL);
+		connection.grantCredits(fastChannel, 2);
+		drain(connection);
+
+		assertEquals(CREDITS_PER_CHANNEL, slowPool.size());
+		assertEquals(2, fastPool.size());
+		assertEquals(2, connection.getNumberOfQueuedEnvelopesFromChannel(slowChannel));
+		assertEquals(1, connection.getNumberOfQueuedWriteBuffers());
+
+		connection.grantCredits(slowChannel, 1);
+		drain(connection);
+
+		assertEquals(3, slowPool.size());
+		assertEquals(0, connection.getNumberOfQueuedEnvelopesFromChannel(slowChannel));
+	}
+
+	/**
+	 * Tests that all envelopes are transmitted right away if credit-based flow control is disabled.
+	 */
+	@Test
+	public void testCreditsDisabled() throws IOException {
+
+		final OutgoingConnection connection = createConnection(false);
+
+		final ChannelID channelID = new ChannelID();
+		final Queue<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+
+		for (int i = 0; i < 2 * CREDITS_PER_CHANNEL; ++i) {
+			connection.queueEnvelope(createEnvelope(channelID, i, pool));
+		}
+
+		drain(connection);
+
+		assertEquals(2 * CREDITS_PER_CHANNEL, pool.size());
+	}
+
+	/**
+	 * Tests that discarding the credits of a channel recycles the buffers of its parked envelopes.
+	 */
+	@Test
+	public void testDiscardCredits() throws IOException {
+
+		final OutgoingConnection connection = createConnection(true);
+
+		final ChannelID channelID = new ChannelID();
+		final Queue<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+
+		connection.queueEnvelope(createEnvelope(channelID, 0, pool));
+		connection.grantCredits(channelID, CREDITS_PER_CHANNEL);
+
+		for (int i = 1; i < CREDITS_PER_CHANNEL + 2; ++i) {
+			connection.queueEnvelope(createEnvelope(channelID, i, pool));
+		}
+
+		connection.discardCredits(channelID);
+		drain(connection);
+
+		assertEquals(CREDITS_PER_CHANNEL + 2, pool.size());
+		assertEquals(0, connection.getNumberOfQueuedEnvelopesFromChannel(channelID));
+
+		// Credits announced after the channel has been released must be ignored
+		connection.grantCredits(channelID, 1);
+	}
+
+	/**
+	 * Tests that dropping the queued envelopes of a channel returns the credits they have consumed.
+	 */
+	@Test
+	public void testDropQueuedEnvelopesKeepsCredits() throws IOException {
+
+		final OutgoingConnection connection = createConnection(true);
+
+		final ChannelID channelID = new ChannelID();
+		final Queue<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+
+		connection.queueEnvelope(createEnvelope(channelID, 0, pool));
+		connection.grantCredits(channelID, CREDITS_PER_CHANNEL);
+		connection.queueEnvelope(createEnvelope(channelID, 1, pool));
+		connection.queueEnvelope(createEnvelope(channelID, 2, pool));
+
+		connection.dropAllQueuedEnvelopesFromChannel(channelID);
+		assertEquals(3, pool.size());
+
+		// The input channel still holds the buffers it has reserved for the dropped envelopes
+		for (int i = 0; i < CREDITS_PER_CHANNEL; ++i) {
+			connection.queueEnvelope(createEnvelope(channelID, i, pool));
+		}
+		drain(connection);
+
+		assertEquals(3 + CREDITS_PER_CHANNEL, pool.size());
+		assertEquals(0, connection.getNumberOfQueuedEnvelopesFromChannel(channelID));
+	}
+
+	/**
+	 * Creates an outgoing connection which writes to the sink of the test pipe.
+	 * 
+	 * @param creditBasedFlowControl
+	 *        <code>true</code> to enable credit-based flow control, <code>false</code> otherwise
+	 * @return the outgoing connection
+	 * @throws IOException
+	 *         thrown if the connection thread cannot be created
+	 */
+	private OutgoingConnection createConnection(final boolean creditBasedFlowControl) throws IOException {
+
+		final OutgoingConnection connection = new OutgoingConnection(new RemoteReceiver(new InetSocketAddress(
+			"localhost", 0), 0), new OutgoingConnectionThread(), 1, creditBasedFlowControl);
+		connection.setSelectionKey(this.selectionKey);
+
+		return connection;
+	}
+
+	/**
+	 * Creates a transfer envelope carrying a buffer whose memory is returned to the given pool once it is recycled.
+	 * 
+	 * @param source
+	 *        the source channel of the envelope
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @param pool
+	 *        the pool the buffer's memory is returned to
+	 * @return the transfer envelope
+	 * @throws IOException
+	 *         thrown if the buffer cannot be written
+	 */
+	private static TransferEnvelope createEnvelope(final ChannelID source, final int sequenceNumber,
+			final Queue<ByteBuffer> pool) throws IOException {
+
+		final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+			new BufferPoolConnector(pool));
+		buffer.write(ByteBuffer.allocate(BUFFER_SIZE));
+		buffer.finishWritePhase();
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, JOB_ID, source);
+		transferEnvelope.setBuffer(buffer);
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * Writes all envelopes of the given connection's transmission queue to the test pipe.
+	 * 
+	 * @param connection
+	 *        the connection to drain
+	 * @throws IOException
+	 *         thrown if an error occurs while writing to the pipe
+	 */
+	private static void drain(final OutgoingConnection connection) throws IOException {
+
+		while (connection.write())
+			;
+	}
+}
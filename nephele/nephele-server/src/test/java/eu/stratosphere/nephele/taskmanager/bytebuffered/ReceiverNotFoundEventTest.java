@@ -0,0 +1,69 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.ServerTestUtils;
+
+/**
+ * This class contains tests for the {@link ReceiverNotFoundEvent} class.
+ */
+public class ReceiverNotFoundEventTest {
+
+	/**
+	 * Tests that the event reports whether the lost envelope carried a buffer, also after serialization.
+	 */
+	@Test
+	public void testBufferLost() throws IOException {
+
+		final ChannelID receiverID = new ChannelID();
+
+		final ReceiverNotFoundEvent withBuffer = ServerTestUtils.createCopy(new ReceiverNotFoundEvent(receiverID, 5,
+			true));
+		assertEquals(receiverID, withBuffer.getReceiverID());
+		assertEquals(5, withBuffer.getSequenceNumber());
+		assertTrue(withBuffer.isBufferLost());
+
+		final ReceiverNotFoundEvent withoutBuffer = ServerTestUtils.createCopy(new ReceiverNotFoundEvent(receiverID,
+			6, false));
+		assertEquals(6, withoutBuffer.getSequenceNumber());
+		assertFalse(withoutBuffer.isBufferLost());
+	}
+
+	/**
+	 * Tests that an envelope created for a lost event-only envelope is recognized, but does not report a lost buffer.
+	 */
+	@Test
+	public void testCreateEnvelopeWithEvent() {
+
+		final TransferEnvelope envelope = ReceiverNotFoundEvent.createEnvelopeWithEvent(new JobID(), new ChannelID(),
+			3, false);
+
+		assertTrue(ReceiverNotFoundEvent.isReceiverNotFoundEvent(envelope));
+		assertFalse(((ReceiverNotFoundEvent) envelope.getEventList().get(0)).isBufferLost());
+	}
+}
@@ -0,0 +1,137 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.SerializationBuffer;
+import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedOutputChannelBroker;
+import eu.stratosphere.nephele.io.channels.bytebuffered.FileOutputChannel;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.types.StringRecord;
+
+/**
+ * This class contains tests for the {@link OutputBufferFlusher}.
+ */
+public class OutputBufferFlusherTest {
+
+	/**
+	 * The maximum buffer latency used by the flushers in this test in milliseconds.
+	 */
+	private static final long MAXIMUM_BUFFER_LATENCY = 10L;
+
+	/**
+	 * The maximum time in milliseconds to wait for a flush.
+	 */
+	private static final int FLUSH_TIMEOUT = 10000;
+
+	/**
+	 * Checks that a channel which cannot get a write buffer does not stop the timed flushing of other tasks' channels
+	 * and that the timer thread never requests a write buffer itself.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while running the test
+	 */
+	@Test
+	public void testFlushWhileAnotherChannelCannotGetBuffer() throws Exception {
+
+		final CountDownLatch releaseBlockedRequest = new CountDownLatch(1);
+
+		// The first channel has a full record left in its serialization buffer, but no write buffer
+		final ByteBufferedOutputChannelBroker blockedBroker = mock(ByteBufferedOutputChannelBroker.class);
+		when(blockedBroker.requestEmptyWriteBuffer()).thenAnswer(new Answer<Buffer>() {
+
+			@Override
+			public Buffer answer(final InvocationOnMock invocation) throws Throwable {
+
+				// The receivers do not consume any data, so no buffer becomes available
+				releaseBlockedRequest.await();
+				return null;
+			}
+		});
+		final FileOutputChannel<StringRecord> blockedChannel = createChannel(blockedBroker, null, true);
+
+		// The second channel holds a partially filled write buffer
+		final Buffer partialBuffer = mock(Buffer.class);
+		final ByteBufferedOutputChannelBroker broker = mock(ByteBufferedOutputChannelBroker.class);
+		final FileOutputChannel<StringRecord> channel = createChannel(broker, partialBuffer, false);
+
+		final OutputBufferFlusher blockedFlusher = new OutputBufferFlusher(MAXIMUM_BUFFER_LATENCY);
+		final OutputBufferFlusher flusher = new OutputBufferFlusher(MAXIMUM_BUFFER_LATENCY);
+		try {
+			blockedFlusher.registerOutputChannel(blockedChannel);
+			flusher.registerOutputChannel(channel);
+
+			verify(broker, timeout(FLUSH_TIMEOUT)).releaseWriteBuffer(partialBuffer);
+			verify(blockedBroker, never()).requestEmptyWriteBuffer();
+
+			// The data of the first channel is left to the task thread
+			assertEquals(false, blockedChannel.flushIfOlderThan(Long.MAX_VALUE, MAXIMUM_BUFFER_LATENCY));
+		} finally {
+			blockedFlusher.cancel();
+			flusher.cancel();
+			releaseBlockedRequest.countDown();
+		}
+	}
+
+	/**
+	 * Creates an output channel whose data has been waiting longer than the maximum buffer latency.
+	 * 
+	 * @param broker
+	 *        the broker the channel requests its write buffers from
+	 * @param dataBuffer
+	 *        the write buffer the channel currently holds or <code>null</code> if it holds none
+	 * @param dataLeftInSerializationBuffer
+	 *        <code>true</code> if the channel's serialization buffer holds data which has not been written to a write
+	 *        buffer yet, <code>false</code> otherwise
+	 * @return the output channel
+	 */
+	private static FileOutputChannel<StringRecord> createChannel(final ByteBufferedOutputChannelBroker broker,
+			final Buffer dataBuffer, final boolean dataLeftInSerializationBuffer) {
+
+		@SuppressWarnings("unchecked")
+		final OutputGate<StringRecord> outputGate = mock(OutputGate.class);
+		@SuppressWarnings("unchecked")
+		final SerializationBuffer<StringRecord> serializationBuffer = mock(SerializationBuffer.class);
+		when(serializationBuffer.dataLeftFromPreviousSerialization()).thenReturn(dataLeftInSerializationBuffer);
+
+		final FileOutputChannel<StringRecord> channel = new FileOutputChannel<StringRecord>(outputGate, 0,
+			new ChannelID(), new ChannelID(), CompressionLevel.NO_COMPRESSION);
+		channel.setByteBufferedOutputChannelBroker(broker);
+
+		Whitebox.setInternalState(channel, "serializationBuffer", serializationBuffer);
+		Whitebox.setInternalState(channel, "dataBuffer", dataBuffer);
+		Whitebox.setInternalState(channel, "pendingDataTimestamp", 0L);
+
+		return channel;
+	}
+}
@@ -0,0 +1,223 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import eu.stratosphere.nephele.execution.RuntimeEnvironment;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.InputGate;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedInputChannel;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bytebuffered.ChannelCreditEvent;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeDispatcher;
+
+/**
+ * This class contains tests for the credit-based flow control of the {@link RuntimeInputChannelContext}.
+ */
+public class RuntimeInputChannelContextTest {
+
+	/**
+	 * The number of buffers designated to the input gate during the tests.
+	 */
+	private static final int DESIGNATED_NUMBER_OF_BUFFERS = 4;
+
+	/**
+	 * The size of the buffers the deserializer requests during the tests.
+	 */
+	private static final int BUFFER_SIZE = 128;
+
+	/**
+	 * The dispatcher which receives the credit announcements of the input channel.
+	 */
+	private TransferEnvelopeDispatcher dispatcher;
+
+	/**
+	 * The context of the input gate the tested channel belongs to.
+	 */
+	private RuntimeInputGateContext gateContext;
+
+	/**
+	 * The context of the tested input channel.
+	 */
+	private RuntimeInputChannelContext channelContext;
+
+	/**
+	 * Sets up an input gate with a single network input channel.
+	 */
+	@Before
+	public void setUp() {
+
+		final ChannelID channelID = new ChannelID();
+
+		@SuppressWarnings("unchecked")
+		final AbstractByteBufferedInputChannel<?> inputChannel = mock(AbstractByteBufferedInputChannel.class);
+		when(inputChannel.getID()).thenReturn(channelID);
+		when(inputChannel.getJobID()).thenReturn(new JobID());
+		when(inputChannel.getType()).thenReturn(ChannelType.NETWORK);
+
+		final InputGate<?> inputGate = mock(InputGate.class);
+		when(inputGate.getNumberOfInputChannels()).thenReturn(1);
+		doReturn(inputChannel).when(inputGate).getInputChannel(0);
+		doReturn(inputGate).when(inputChannel).getInputGate();
+
+		this.dispatcher = mock(TransferEnvelopeDispatcher.class);
+
+		final EnvelopeConsumptionLog consumptionLog = new EnvelopeConsumptionLog(new ExecutionVertexID(),
+			mock(RuntimeEnvironment.class));
+
+		this.gateContext = new RuntimeInputGateContext("task", this.dispatcher, inputGate, consumptionLog);
+		this.gateContext.setDesignatedNumberOfBuffers(DESIGNATED_NUMBER_OF_BUFFERS);
+		this.channelContext = (RuntimeInputChannelContext) this.gateContext.createInputChannelContext(channelID,
+			null);
+	}
+
+	/**
+	 * Releases the buffers of the input channel and the input gate.
+	 */
+	@After
+	public void tearDown() {
+
+		this.channelContext.destroy();
+		this.gateContext.clearLocalBufferPool();
+	}
+
+	/**
+	 * Tests that the input channel only announces credits for buffers it has reserved in the gate's buffer pool, so
+	 * every envelope transmitted with a credit finds a buffer.
+	 */
+	@Test
+	public void testCreditsAreBackedByReservedBuffers() throws Exception {
+
+		// No credits are announced before the sender has started to transmit over the network
+		verify(this.dispatcher, never()).processEnvelopeFromInputChannel(any(TransferEnvelope.class));
+
+		this.channelContext.activateCredits();
+
+		assertEquals(DESIGNATED_NUMBER_OF_BUFFERS, getAnnouncedCredits().get(0).intValue());
+
+		// All buffers of the gate are reserved for the announced credits
+		assertNull(this.gateContext.requestEmptyBuffer(this.gateContext.getMaximumBufferSize()));
+
+		final Buffer[] buffers = new Buffer[DESIGNATED_NUMBER_OF_BUFFERS];
+		for (int i = 0; i < DESIGNATED_NUMBER_OF_BUFFERS; ++i) {
+			buffers[i] = this.channelContext.requestEmptyBuffer(BUFFER_SIZE);
+			assertNotNull(buffers[i]);
+			assertEquals(BUFFER_SIZE, buffers[i].size());
+		}
+
+		for (int i = 0; i < DESIGNATED_NUMBER_OF_BUFFERS; ++i) {
+			buffers[i].recycleBuffer();
+		}
+	}
+
+	/**
+	 * Tests that consumed buffers are reserved again and announced in batches.
+	 */
+	@Test
+	public void testConsumedBuffersAreAnnouncedAgain() throws Exception {
+
+		this.channelContext.activateCredits();
+
+		for (int i = 0; i < 2; ++i) {
+
+			final Buffer buffer = this.channelContext.requestEmptyBuffer(BUFFER_SIZE);
+			buffer.write(ByteBuffer.allocate(BUFFER_SIZE));
+			buffer.finishWritePhase();
+
+			final TransferEnvelope envelope = new TransferEnvelope(i, this.channelContext.getJobID(),
+				this.channelContext.getChannelID());
+			envelope.setBuffer(buffer);
+			this.channelContext.queueTransferEnvelope(envelope);
+		}
+
+		// The sender still holds credits, so a single returned credit is not announced yet
+		this.channelContext.releaseConsumedReadBuffer(this.channelContext.getReadBufferToConsume());
+		assertEquals(1, getAnnouncedCredits().size());
+
+		this.channelContext.releaseConsumedReadBuffer(this.channelContext.getReadBufferToConsume());
+		final List<Integer> credits = getAnnouncedCredits();
+		assertEquals(2, credits.size());
+		assertEquals(2, credits.get(1).intValue());
+
+		// The credits are backed by the recycled buffers
+		assertNull(this.gateContext.requestEmptyBuffer(this.gateContext.getMaximumBufferSize()));
+	}
+
+	/**
+	 * Tests that the input channel waits for a buffer of the gate's pool before it announces a credit.
+	 */
+	@Test
+	public void testCreditsWaitForAvailableBuffers() throws Exception {
+
+		final Buffer foreignBuffer = this.gateContext.requestEmptyBuffer(this.gateContext.getMaximumBufferSize());
+
+		this.channelContext.activateCredits();
+		assertEquals(DESIGNATED_NUMBER_OF_BUFFERS - 1, getAnnouncedCredits().get(0).intValue());
+
+		// Use up the announced credits, so the next reserved buffer is announced immediately
+		for (int i = 0; i < DESIGNATED_NUMBER_OF_BUFFERS - 1; ++i) {
+			assertNotNull(this.channelContext.requestEmptyBuffer(BUFFER_SIZE));
+		}
+
+		foreignBuffer.recycleBuffer();
+
+		final List<Integer> credits = getAnnouncedCredits();
+		assertEquals(2, credits.size());
+		assertEquals(1, credits.get(1).intValue());
+	}
+
+	/**
+	 * Returns the credits announced by the input channel so far in the order of their announcement.
+	 * 
+	 * @return the announced credits
+	 */
+	private List<Integer> getAnnouncedCredits() throws Exception {
+
+		final ArgumentCaptor<TransferEnvelope> captor = ArgumentCaptor.forClass(TransferEnvelope.class);
+		verify(this.dispatcher, atLeastOnce()).processEnvelopeFromInputChannel(captor.capture());
+
+		final List<Integer> credits = new ArrayList<Integer>();
+		for (final TransferEnvelope envelope : captor.getAllValues()) {
+			credits.add(Integer.valueOf(((ChannelCreditEvent) envelope.getEventList().get(0)).getCredits()));
+		}
+
+		return credits;
+	}
+}
@@ -28,6 +28,8 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.DataStatistics;
 import eu.stratosphere.pact.compiler.PactCompiler;
@@ -47,6 +49,8 @@ public class Client {
 	private final Configuration nepheleConfig;	// the configuration describing the job manager address
 	
 	private final PactCompiler compiler;		// the compiler to compile the jobs
+	
+	private final PlanCache planCache;			// the plans of previously compiled jobs, null if disabled
 
 	// ------------------------------------------------------------------------
 	//                            Construction
@@ -64,6 +68,7 @@ public class Client {
 		nepheleConfig.setInteger(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, jobManagerAddress.getPort());
 		
 		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.planCache = createPlanCache();
 	}
 
 	/**
@@ -88,6 +93,20 @@ public class Client {
 
 		final InetSocketAddress jobManagerAddress = new InetSocketAddress(address, port);
 		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.planCache = createPlanCache();
+	}
+	
+	/**
+	 * Creates the cache for the optimized plans, as configured in the global configuration.
+	 * 
+	 * @return The plan cache, or null, if plans should not be cached.
+	 */
+	private static PlanCache createPlanCache() {
+		final int size = GlobalConfiguration.getInteger(PactConfigConstants.CLIENT_PLAN_CACHE_SIZE_KEY,
+			PactConfigConstants.DEFAULT_CLIENT_PLAN_CACHE_SIZE);
+		final int ttl = GlobalConfiguration.getInteger(PactConfigConstants.CLIENT_PLAN_CACHE_TTL_KEY,
+			PactConfigConstants.DEFAULT_CLIENT_PLAN_CACHE_TTL);
+		return size > 0 && ttl > 0 ? new PlanCache(size, ttl * 1000L) : null;
 	}
 
 	
@@ -96,7 +115,9 @@ public class Client {
 	// ------------------------------------------------------------------------
 	
 	/**
-	 * Creates the optimized plan for a given pact program, using this client's compiler.
+	 * Creates the optimized plan for a given pact program, using this client's compiler. If the same program
+	 * has been compiled before, with unchanged input files, the previously optimized plan is returned, until
+	 * it expires from the plan cache.
 	 *  
 	 * @param prog The program to be compiled.
 	 * @return The compiled and optimized plan, as returned by the compiler.
@@ -106,7 +127,29 @@ public class Client {
 	 */
 	public OptimizedPlan getOptimizedPlan(PactProgram prog) throws CompilerException, ProgramInvocationException, ErrorInPlanAssemblerException {
 		prog.checkPlan();
-		return compiler.compile(prog.getPlan());
+		final Plan plan = prog.getPlan();
+		
+		if (this.planCache == null) {
+			return compiler.compile(plan);
+		}
+		
+		String fingerprint;
+		try {
+			fingerprint = PlanCache.computeFingerprint(plan, prog.getJarFile());
+		}
+		catch (IOException ioex) {
+			// without the status of the inputs, the plan cannot be cached
+			fingerprint = null;
+		}
+		
+		OptimizedPlan optPlan = fingerprint == null ? null : this.planCache.get(fingerprint);
+		if (optPlan == null) {
+			optPlan = compiler.compile(plan);
+			if (fingerprint != null) {
+				this.planCache.put(fingerprint, optPlan);
+			}
+		}
+		return optPlan;
 	}
 	
 	/**
@@ -0,0 +1,325 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.pact.common.contract.AbstractPact;
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.CompilerHints;
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.contract.DualInputContract;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.contract.SingleInputContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.plan.Visitor;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+
+/**
+ * A cache of optimized plans, used to skip the compilation of programs that are submitted repeatedly.
+ * The plans are keyed by a fingerprint of the program: the structure of the plan with the stub classes,
+ * keys, parameters, compiler hints and degrees of parallelism of all contracts, together with the sizes
+ * and modification times of the jar file and of all input files. A cached plan is returned until it
+ * expires, which bounds the time for which changes that are not part of the fingerprint, such as the
+ * available instances or newly recorded statistics, are ignored.
+ * <p>
+ * This class is thread safe.
+ */
+public class PlanCache
+{
+	private final Map<String, Entry> entries;	// the cached plans, in the order of their last use
+	
+	private final long maxAge;					// the time in milliseconds for which a plan is used
+	
+	/**
+	 * Creates a new plan cache.
+	 * 
+	 * @param maxEntries The maximal number of cached plans. The least recently used plan is evicted first.
+	 * @param maxAge The time in milliseconds for which a cached plan is used.
+	 */
+	public PlanCache(final int maxEntries, long maxAge)
+	{
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("The plan cache must hold at least one plan.");
+		}
+		
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.maxAge = maxAge;
+	}
+	
+	/**
+	 * Gets the plan cached for the given fingerprint.
+	 * 
+	 * @param fingerprint The fingerprint of the program.
+	 * @return The cached plan, or null, if no plan is cached or the cached plan has expired.
+	 */
+	public synchronized OptimizedPlan get(String fingerprint)
+	{
+		final Entry entry = this.entries.get(fingerprint);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.timestamp > this.maxAge) {
+			this.entries.remove(fingerprint);
+			return null;
+		}
+		return entry.plan;
+	}
+	
+	/**
+	 * Caches the plan for the given fingerprint.
+	 * 
+	 * @param fingerprint The fingerprint of the program.
+	 * @param plan The optimized plan of the program.
+	 */
+	public synchronized void put(String fingerprint, OptimizedPlan plan)
+	{
+		this.entries.put(fingerprint, new Entry(plan, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Removes all cached plans.
+	 */
+	public synchronized void clear()
+	{
+		this.entries.clear();
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Computes the fingerprint of a program, consisting of the given plan and the jar file with its code.
+	 * 
+	 * @param plan The plan of the program.
+	 * @param jarFile The jar file of the program, or null, if the code is on the class path.
+	 * @return The fingerprint of the program.
+	 * @throws IOException Thrown, if the status of an input file could not be obtained.
+	 */
+	public static String computeFingerprint(Plan plan, File jarFile) throws IOException
+	{
+		final StringBuilder bld = new StringBuilder();
+		bld.append(plan.getJobName()).append('|').append(plan.getMaxNumberMachines());
+		bld.append('|').append(plan.getDefaultParallelism()).append('|');
+		appendConfiguration(bld, plan.getPlanConfiguration());
+		
+		if (jarFile != null) {
+			bld.append("|jar:").append(jarFile.getAbsolutePath()).append(':').append(jarFile.length());
+			bld.append(':').append(jarFile.lastModified());
+		}
+		
+		// describe every contract after its inputs, referring to the inputs by the order of their visit
+		final Map<Contract, Integer> ids = new HashMap<Contract, Integer>();
+		final List<Contract> contracts = new ArrayList<Contract>();
+		plan.accept(new Visitor<Contract>() {
+			@Override
+			public boolean preVisit(Contract c) {
+				if (ids.containsKey(c)) {
+					return false;
+				}
+				ids.put(c, ids.size());
+				return true;
+			}
+
+			@Override
+			public void postVisit(Contract c) {
+				contracts.add(c);
+			}
+		});
+		
+		for (Contract c : contracts) {
+			bld.append("\n#").append(ids.get(c)).append(' ').append(c.getClass().getName());
+			bld.append(" '").append(c.getName()).append("' ").append(c.getUserCodeClass().getName());
+			bld.append(" dop:").append(c.getDegreeOfParallelism());
+			
+			if (c instanceof AbstractPact<?>) {
+				final AbstractPact<?> pact = (AbstractPact<?>) c;
+				bld.append(" keys:");
+				for (Class<?> keyClass : pact.getKeyClasses()) {
+					bld.append(keyClass.getName()).append(',');
+				}
+				for (int i = 0; i < pact.getNumberOfInputs(); i++) {
+					bld.append(Arrays.toString(pact.getKeyColumnNumbers(i)));
+				}
+			}
+			if (c instanceof ReduceContract) {
+				bld.append(" order:").append(((ReduceContract) c).getGroupOrder());
+			} else if (c instanceof CoGroupContract) {
+				bld.append(" orders:").append(((CoGroupContract) c).getGroupOrderForInputOne());
+				bld.append(',').append(((CoGroupContract) c).getGroupOrderForInputTwo());
+			} else if (c instanceof GenericDataSink) {
+				final GenericDataSink sink = (GenericDataSink) c;
+				bld.append(" orders:").append(sink.getLocalOrder()).append(',').append(sink.getPartitionOrdering());
+				bld.append(" distribution:");
+				bld.append(sink.getDataDistribution() == null ? null : sink.getDataDistribution().getClass().getName());
+			}
+			
+			bld.append(" inputs:");
+			for (List<Contract> inputs : getInputLists(c)) {
+				bld.append('(');
+				for (Contract input : inputs) {
+					bld.append(ids.get(input)).append(',');
+				}
+				bld.append(')');
+			}
+			
+			bld.append(" parameters:");
+			appendConfiguration(bld, c.getParameters());
+			bld.append(" hints:");
+			appendHints(bld, c.getCompilerHints());
+			
+			// the input statistics, as far as they can be obtained cheaply
+			if (c instanceof FileDataSource) {
+				bld.append(" files:");
+				appendFileStatus(bld, new Path(((FileDataSource) c).getFilePath()));
+			}
+		}
+		
+		return digest(bld.toString());
+	}
+	
+	private static List<List<Contract>> getInputLists(Contract c)
+	{
+		final List<List<Contract>> lists = new ArrayList<List<Contract>>(2);
+		if (c instanceof DualInputContract<?>) {
+			lists.add(((DualInputContract<?>) c).getFirstInputs());
+			lists.add(((DualInputContract<?>) c).getSecondInputs());
+		} else if (c instanceof SingleInputContract<?>) {
+			lists.add(((SingleInputContract<?>) c).getInputs());
+		} else if (c instanceof GenericDataSink) {
+			lists.add(((GenericDataSink) c).getInputs());
+		}
+		return lists;
+	}
+	
+	private static void appendConfiguration(StringBuilder bld, Configuration config)
+	{
+		if (config == null) {
+			bld.append("null");
+			return;
+		}
+		
+		final Map<String, String> sorted = new TreeMap<String, String>();
+		for (String key : config.keySet()) {
+			sorted.put(key, config.getString(key, null));
+		}
+		bld.append(sorted);
+	}
+	
+	private static void appendHints(StringBuilder bld, CompilerHints hints)
+	{
+		bld.append(hints.getAvgBytesPerRecord()).append(',').append(hints.getAvgRecordsEmittedPerStubCall());
+		
+		// the field sets have no order, their string representations do
+		final Map<String, Object> sorted = new TreeMap<String, Object>();
+		for (Map.Entry<?, ?> e : hints.getDistinctCounts().entrySet()) {
+			sorted.put("distinct" + e.getKey(), e.getValue());
+		}
+		for (Map.Entry<?, ?> e : hints.getAvgNumRecordsPerDistinctFields().entrySet()) {
+			sorted.put("avgRecords" + e.getKey(), e.getValue());
+		}
+		if (hints.getUniqueFields() != null) {
+			for (Object fields : hints.getUniqueFields()) {
+				sorted.put("unique" + fields, Boolean.TRUE);
+			}
+		}
+		bld.append(',').append(sorted);
+	}
+	
+	private static void appendFileStatus(StringBuilder bld, Path path) throws IOException
+	{
+		final FileSystem fs = path.getFileSystem();
+		final FileStatus status = fs.getFileStatus(path);
+		
+		final List<FileStatus> files = new ArrayList<FileStatus>();
+		if (status.isDir()) {
+			final FileStatus[] contained = fs.listStatus(path);
+			if (contained != null) {
+				files.addAll(Arrays.asList(contained));
+			}
+		} else {
+			files.add(status);
+		}
+		
+		final Map<String, String> sorted = new TreeMap<String, String>();
+		for (FileStatus file : files) {
+			sorted.put(file.getPath().toString(), file.getLen() + "@" + file.getModificationTime());
+		}
+		bld.append(sorted);
+	}
+	
+	private static String digest(String description)
+	{
+		final byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-1").digest(description.getBytes("UTF-8"));
+		}
+		catch (NoSuchAlgorithmException nsaex) {
+			throw new RuntimeException("The SHA-1 digest is not available.", nsaex);
+		}
+		catch (UnsupportedEncodingException ueex) {
+			throw new RuntimeException("The UTF-8 encoding is not available.", ueex);
+		}
+		
+		final StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			hex.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * A cached plan with the time it was created.
+	 */
+	private static final class Entry
+	{
+		private final OptimizedPlan plan;
+		
+		private final long timestamp;
+		
+		private Entry(OptimizedPlan plan, long timestamp)
+		{
+			this.plan = plan;
+			this.timestamp = timestamp;
+		}
+	}
+}
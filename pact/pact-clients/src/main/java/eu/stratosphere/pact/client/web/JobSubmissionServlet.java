@@ -249,10 +249,10 @@ public class JobSubmissionServlet extends HttpServlet {
 				// redirect to the plan display page
 				resp.sendRedirect("showPlan?id=" + uid + "&suspended=" + (suspend ? "true" : "false"));
 			} else {
-				// don't show any plan. directly submit the job and redirect to the
+				// don't show any plan. directly submit the already optimized job and redirect to the
 				// nephele runtime monitor
 				try {
-					client.run(pactProgram);
+					client.run(pactProgram, optPlan);
 				} catch (Exception ex) {
 					LOG.error("Error submitting job to the job-manager.", ex);
 					// HACK: Is necessary because Message contains whole stack trace
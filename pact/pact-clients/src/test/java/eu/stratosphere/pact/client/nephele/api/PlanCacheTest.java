@@ -0,0 +1,132 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.io.RecordOutputFormat;
+import eu.stratosphere.pact.common.io.TextInputFormat;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.testing.IdentityMap;
+
+/**
+ * Tests the fingerprints and the eviction of the {@link PlanCache}.
+ */
+public class PlanCacheTest
+{
+	private File inputFile;
+	
+	@Before
+	public void setup() throws IOException
+	{
+		this.inputFile = File.createTempFile("plancache", ".txt");
+		writeInput("first line\n");
+	}
+	
+	@After
+	public void cleanup()
+	{
+		this.inputFile.delete();
+	}
+	
+	@Test
+	public void testEqualPlansHaveEqualFingerprints() throws IOException
+	{
+		Assert.assertEquals(PlanCache.computeFingerprint(createPlan(4, "a"), null),
+			PlanCache.computeFingerprint(createPlan(4, "a"), null));
+	}
+	
+	@Test
+	public void testFingerprintCoversContracts() throws IOException
+	{
+		final String fingerprint = PlanCache.computeFingerprint(createPlan(4, "a"), null);
+		
+		Assert.assertFalse(fingerprint.equals(PlanCache.computeFingerprint(createPlan(8, "a"), null)));
+		Assert.assertFalse(fingerprint.equals(PlanCache.computeFingerprint(createPlan(4, "b"), null)));
+		
+		final Plan hinted = createPlan(4, "a");
+		hinted.getDataSinks().iterator().next().getInputs().get(0).getCompilerHints().setAvgBytesPerRecord(42.0f);
+		Assert.assertFalse(fingerprint.equals(PlanCache.computeFingerprint(hinted, null)));
+	}
+	
+	@Test
+	public void testFingerprintCoversInputFiles() throws IOException
+	{
+		final String fingerprint = PlanCache.computeFingerprint(createPlan(4, "a"), null);
+		
+		writeInput("first line\nsecond line\n");
+		Assert.assertFalse(fingerprint.equals(PlanCache.computeFingerprint(createPlan(4, "a"), null)));
+	}
+	
+	@Test
+	public void testEviction() throws Exception
+	{
+		final OptimizedPlan plan1 = Mockito.mock(OptimizedPlan.class);
+		final OptimizedPlan plan2 = Mockito.mock(OptimizedPlan.class);
+		final OptimizedPlan plan3 = Mockito.mock(OptimizedPlan.class);
+		
+		// the least recently used plan is evicted
+		final PlanCache cache = new PlanCache(2, 60000);
+		cache.put("1", plan1);
+		cache.put("2", plan2);
+		Assert.assertSame(plan1, cache.get("1"));
+		cache.put("3", plan3);
+		Assert.assertSame(plan1, cache.get("1"));
+		Assert.assertNull(cache.get("2"));
+		Assert.assertSame(plan3, cache.get("3"));
+		
+		// expired plans are not returned
+		final PlanCache shortLived = new PlanCache(2, 1);
+		shortLived.put("1", plan1);
+		Thread.sleep(20);
+		Assert.assertNull(shortLived.get("1"));
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private Plan createPlan(int dop, String parameter)
+	{
+		FileDataSource source = new FileDataSource(TextInputFormat.class, this.inputFile.toURI().toString(), "Source");
+		MapContract mapper = MapContract.builder(IdentityMap.class).input(source).name("Mapper").build();
+		mapper.setParameter("parameter", parameter);
+		mapper.setDegreeOfParallelism(dop);
+		FileDataSink sink = new FileDataSink(RecordOutputFormat.class, "file:///tmp/plancache-out", mapper, "Sink");
+		return new Plan(sink, "Plan Cache Test");
+	}
+	
+	private void writeInput(String contents) throws IOException
+	{
+		final FileWriter writer = new FileWriter(this.inputFile);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+	}
+}
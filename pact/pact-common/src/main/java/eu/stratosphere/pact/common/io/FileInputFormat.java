@@ -214,6 +214,16 @@ public abstract class FileInputFormat implements InputFormat<PactRecord, FileInp
 		}
 	}
 	
+	/**
+	 * Gets the path of the file (or directory of files) that this format reads.
+	 * 
+	 * @return The path of the input, or null, if the format has not been configured.
+	 */
+	public Path getFilePath()
+	{
+		return this.filePath;
+	}
+	
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.pact.common.io.InputFormat#getInputSplitType()
 	 */
@@ -17,6 +17,7 @@ package eu.stratosphere.pact.common.io;
 
 
 import java.io.IOException;
+import java.util.Random;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -65,6 +66,21 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 	 * Stream opening timeout.
 	 */
 	private long openTimeout;
+	
+	/**
+	 * Flag indicating whether the output is written to a temporary file which is renamed to the target file on close.
+	 */
+	private boolean atomicCommit;
+	
+	/**
+	 * The file the output is written to, or committed to, if the output is committed atomically.
+	 */
+	private Path targetFile;
+	
+	/**
+	 * The temporary file the output is written to, if the output is committed atomically.
+	 */
+	private Path temporaryFile;
 
 	// --------------------------------------------------------------------------------------------
 
@@ -99,6 +115,19 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 	}
 
 
+	/**
+	 * Makes the format write its output to a temporary file next to the target file. The temporary file replaces the
+	 * target file when the format is closed and is deleted when the format is discarded (see {@link #discard()}).
+	 * That way, the target file never contains partial output of this format. This is used by speculative attempts
+	 * of a data sink which write the same target file as the original attempt. Must be called before
+	 * {@link #open(int)}.
+	 */
+	public void enableAtomicCommit()
+	{
+		this.atomicCommit = true;
+	}
+
+
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.pact.common.recordio.OutputFormat#open()
 	 */
@@ -106,7 +135,8 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 	public void open(int taskNumber) throws IOException
 	{
 		// obtain FSDataOutputStream asynchronously, since HDFS client can not handle InterruptedExceptions
-		OutputPathOpenThread opot = new OutputPathOpenThread(this.outputFilePath, taskNumber, this.openTimeout);
+		OutputPathOpenThread opot = new OutputPathOpenThread(this.outputFilePath, taskNumber, this.openTimeout,
+			this.atomicCommit);
 		opot.start();
 		
 		try {
@@ -116,6 +146,22 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 		catch (Exception e) {
 			throw new RuntimeException("Stream to output file could not be opened: " + e.getMessage(), e);
 		}
+		
+		this.targetFile = opot.targetPath;
+		if (this.atomicCommit) {
+			this.temporaryFile = opot.filePath;
+		}
+	}
+	
+	/**
+	 * Gets the file that this format writes its output to. If the output is committed atomically, this is the file
+	 * that the output is committed to.
+	 * 
+	 * @return The output file, or null, if the format has not been opened.
+	 */
+	public Path getOutputFile()
+	{
+		return this.targetFile;
 	}
 
 
@@ -130,6 +176,44 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 			this.stream = null;
 			s.close();
 		}
+		
+		// commit the output written to the temporary file
+		final Path tmp = this.temporaryFile;
+		if (tmp != null) {
+			this.temporaryFile = null;
+			final FileSystem fs = tmp.getFileSystem();
+			if (fs.exists(this.targetFile)) {
+				fs.delete(this.targetFile, false);
+			}
+			if (!fs.rename(tmp, this.targetFile)) {
+				throw new IOException("Could not commit output file " + tmp + " to " + this.targetFile);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the format without committing its output. If the output is committed atomically (see
+	 * {@link #enableAtomicCommit()}), the temporary file is deleted. Otherwise, this method is equivalent to
+	 * {@link #close()}.
+	 * 
+	 * @throws IOException Thrown, if the stream or the temporary file could not be closed or deleted.
+	 */
+	public void discard() throws IOException
+	{
+		final Path tmp = this.temporaryFile;
+		this.temporaryFile = null;
+		
+		try {
+			close();
+		}
+		finally {
+			if (tmp != null) {
+				final FileSystem fs = tmp.getFileSystem();
+				if (fs.exists(tmp)) {
+					fs.delete(tmp, false);
+				}
+			}
+		}
 	}
 	
 	// ============================================================================================
@@ -142,6 +226,12 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 		
 		private final long timeoutMillies;
 		
+		private final boolean atomicCommit;
+		
+		private volatile Path targetPath;
+		
+		private volatile Path filePath;
+		
 		private volatile FSDataOutputStream fdos;
 
 		private volatile Throwable error;
@@ -149,10 +239,11 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 		private volatile boolean aborted;
 
 		
-		public OutputPathOpenThread(Path path, int taskIndex, long timeoutMillies) {
+		public OutputPathOpenThread(Path path, int taskIndex, long timeoutMillies, boolean atomicCommit) {
 			this.path = path;
 			this.timeoutMillies = timeoutMillies;
 			this.taskIndex = taskIndex;
+			this.atomicCommit = atomicCommit;
 		}
 
 		@Override
@@ -167,11 +258,17 @@ public abstract class FileOutputFormat implements OutputFormat<PactRecord>
 					p = p.suffix("/" + this.taskIndex);
 				}
 				
-				// remove the existing file before creating the output stream
-				if (fs.exists(p)) {
+				this.targetPath = p;
+				
+				if (this.atomicCommit) {
+					// write to a temporary file, the target file is replaced on commit
+					p = p.suffix(".inprogress-" + Long.toHexString(new Random().nextLong()));
+				} else if (fs.exists(p)) {
+					// remove the existing file before creating the output stream
 					fs.delete(p, false);
 				}
 				
+				this.filePath = p;
 				this.fdos = fs.create(p, true);
 				
 				// check for canceling and close the stream in that case, because no one will obtain it
@@ -0,0 +1,171 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct elements in a stream of 64 bit hash codes with a
+ * fixed amount of memory. The standard error of the estimate is about <code>1.04 / sqrt(2^precision)</code>.
+ * Sketches with the same precision can be merged, which yields the sketch of the union of their streams.
+ */
+public class HyperLogLog implements IOReadableWritable
+{
+	/**
+	 * The smallest supported precision.
+	 */
+	public static final int MIN_PRECISION = 4;
+	
+	/**
+	 * The largest supported precision.
+	 */
+	public static final int MAX_PRECISION = 16;
+	
+	private int precision;			// the number of hash bits that select the register
+	
+	private byte[] registers;		// the maximal rank observed per register
+	
+	/**
+	 * Creates an empty sketch that is to be filled by the {@link #read(DataInput)} method.
+	 */
+	public HyperLogLog()
+	{}
+	
+	/**
+	 * Creates a new empty sketch with <code>2^precision</code> registers.
+	 * 
+	 * @param precision The number of hash bits that select the register.
+	 */
+	public HyperLogLog(int precision)
+	{
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("The precision must be between " + MIN_PRECISION + " and " +
+				MAX_PRECISION + ".");
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Adds the element with the given hash code to the sketch. The hash codes must be uniformly distributed
+	 * over all 64 bits.
+	 * 
+	 * @param hash The hash code of the element.
+	 */
+	public void offer(long hash)
+	{
+		final int index = (int) (hash >>> (64 - this.precision));
+		// the guard bit bounds the rank, if all remaining bits are zero
+		final long remaining = (hash << this.precision) | (1L << (this.precision - 1));
+		final byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+		if (rank > this.registers[index]) {
+			this.registers[index] = rank;
+		}
+	}
+	
+	/**
+	 * Merges the given sketch into this sketch.
+	 * 
+	 * @param other The sketch to merge.
+	 * @throws IllegalArgumentException Thrown, if the sketches have different precisions.
+	 */
+	public void merge(HyperLogLog other)
+	{
+		if (other.precision != this.precision) {
+			throw new IllegalArgumentException("Cannot merge sketches of different precision.");
+		}
+		final byte[] own = this.registers;
+		final byte[] others = other.registers;
+		for (int i = 0; i < own.length; i++) {
+			if (others[i] > own[i]) {
+				own[i] = others[i];
+			}
+		}
+	}
+	
+	/**
+	 * Estimates the number of distinct elements that were added to the sketch.
+	 * 
+	 * @return The estimated number of distinct elements.
+	 */
+	public long estimate()
+	{
+		final byte[] registers = this.registers;
+		final int m = registers.length;
+		
+		double sum = 0.0;
+		int zeros = 0;
+		for (int i = 0; i < m; i++) {
+			sum += 1.0 / (1L << registers[i]);
+			if (registers[i] == 0) {
+				zeros++;
+			}
+		}
+		
+		final double alpha = m >= 128 ? 0.7213 / (1.0 + 1.079 / m) : (m == 64 ? 0.709 : (m == 32 ? 0.697 : 0.673));
+		final double estimate = alpha * m * m / sum;
+		
+		// small cardinalities are estimated more accurately by linear counting over the empty registers
+		if (estimate <= 2.5 * m && zeros > 0) {
+			return Math.round(m * Math.log(((double) m) / zeros));
+		}
+		return Math.round(estimate);
+	}
+	
+	/**
+	 * Gets the precision of this sketch.
+	 * 
+	 * @return The number of hash bits that select the register.
+	 */
+	public int getPrecision()
+	{
+		return this.precision;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeByte(this.precision);
+		out.write(this.registers);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException
+	{
+		final int precision = in.readByte();
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IOException("Corrupt sketch: Invalid precision " + precision + '.');
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+		in.readFully(this.registers);
+	}
+}
@@ -0,0 +1,206 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * Statistics that the runtime observed on the records of a file (or a part of a file), while reading or writing it.
+ * Besides the size and the number of records, the statistics contain a {@link HyperLogLog} sketch for the number
+ * of distinct values of each of the leading fields of the records. Statistics on different parts of a file can be
+ * merged into the statistics of the whole file.
+ */
+public class ObservedStatistics implements BaseStatistics, IOReadableWritable
+{
+	/**
+	 * The precision of the distinct count sketches, giving a standard error of about 3%.
+	 */
+	public static final int SKETCH_PRECISION = 10;
+	
+	private long totalInputSize;			// the number of bytes covered by the statistics
+	
+	private long numRecords;				// the number of observed records
+	
+	private HyperLogLog[] fieldSketches;	// the distinct count sketches of the leading fields
+	
+	/**
+	 * Creates empty statistics that are to be filled by the {@link #read(DataInput)} method.
+	 */
+	public ObservedStatistics()
+	{
+		this.fieldSketches = new HyperLogLog[0];
+	}
+	
+	/**
+	 * Creates new empty statistics that observe the distinct values of the given number of leading fields.
+	 * 
+	 * @param numObservedFields The number of leading fields whose distinct values are counted.
+	 */
+	public ObservedStatistics(int numObservedFields)
+	{
+		this.fieldSketches = new HyperLogLog[numObservedFields];
+		for (int i = 0; i < numObservedFields; i++) {
+			this.fieldSketches[i] = new HyperLogLog(SKETCH_PRECISION);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Adds the given record to the statistics.
+	 * 
+	 * @param record The observed record.
+	 */
+	public void addRecord(PactRecord record)
+	{
+		this.numRecords++;
+		
+		final HyperLogLog[] sketches = this.fieldSketches;
+		final int numFields = Math.min(record.getNumFields(), sketches.length);
+		for (int i = 0; i < numFields; i++) {
+			if (!record.isNull(i)) {
+				sketches[i].offer(record.hashSerializedField(i));
+			}
+		}
+	}
+	
+	/**
+	 * Sets the number of bytes that are covered by these statistics.
+	 * 
+	 * @param totalInputSize The number of bytes.
+	 */
+	public void setTotalInputSize(long totalInputSize)
+	{
+		this.totalInputSize = totalInputSize;
+	}
+	
+	/**
+	 * Merges the given statistics, which must cover a disjoint part of the data, into these statistics.
+	 * Fields which are observed only by one of the statistics are dropped.
+	 * 
+	 * @param other The statistics to merge.
+	 */
+	public void merge(ObservedStatistics other)
+	{
+		this.totalInputSize += other.totalInputSize;
+		this.numRecords += other.numRecords;
+		
+		final int numFields = Math.min(this.fieldSketches.length, other.fieldSketches.length);
+		if (numFields < this.fieldSketches.length) {
+			final HyperLogLog[] sketches = new HyperLogLog[numFields];
+			System.arraycopy(this.fieldSketches, 0, sketches, 0, numFields);
+			this.fieldSketches = sketches;
+		}
+		for (int i = 0; i < numFields; i++) {
+			this.fieldSketches[i].merge(other.fieldSketches[i]);
+		}
+	}
+	
+	/**
+	 * Gets the number of leading fields whose distinct values are counted.
+	 * 
+	 * @return The number of observed fields.
+	 */
+	public int getNumberOfObservedFields()
+	{
+		return this.fieldSketches.length;
+	}
+	
+	/**
+	 * Gets the estimated number of distinct non-null values of the given field.
+	 * 
+	 * @param field The position of the field.
+	 * @return The estimated number of distinct values, or {@link BaseStatistics#UNKNOWN}, if the field was not
+	 *         observed.
+	 */
+	public long getDistinctCount(int field)
+	{
+		if (field < 0 || field >= this.fieldSketches.length) {
+			return UNKNOWN;
+		}
+		// the estimate may exceed the number of records by the error margin
+		return Math.min(this.fieldSketches[field].estimate(), this.numRecords);
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.io.statistics.BaseStatistics#getTotalInputSize()
+	 */
+	@Override
+	public long getTotalInputSize()
+	{
+		return this.totalInputSize;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.io.statistics.BaseStatistics#getNumberOfRecords()
+	 */
+	@Override
+	public long getNumberOfRecords()
+	{
+		return this.numRecords;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.io.statistics.BaseStatistics#getAverageRecordWidth()
+	 */
+	@Override
+	public float getAverageRecordWidth()
+	{
+		return this.numRecords > 0 ? ((float) this.totalInputSize) / this.numRecords : UNKNOWN;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeLong(this.totalInputSize);
+		out.writeLong(this.numRecords);
+		out.writeInt(this.fieldSketches.length);
+		for (int i = 0; i < this.fieldSketches.length; i++) {
+			this.fieldSketches[i].write(out);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException
+	{
+		this.totalInputSize = in.readLong();
+		this.numRecords = in.readLong();
+		
+		final int numFields = in.readInt();
+		if (numFields < 0) {
+			throw new IOException("Corrupt statistics: Negative number of fields.");
+		}
+		this.fieldSketches = new HyperLogLog[numFields];
+		for (int i = 0; i < numFields; i++) {
+			this.fieldSketches[i] = new HyperLogLog();
+			this.fieldSketches[i].read(in);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io.statistics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+
+/**
+ * A persistent catalog of {@link ObservedStatistics} on files. The tasks that read or write files record the
+ * statistics they observe, and the compiler looks them up instead of sampling the files again.
+ * <p>
+ * The catalog is a directory (typically on the distributed file system) that holds one entry per observed part
+ * of a file. An entry is keyed by the path and the modification time of the file, by the run (job) that observed
+ * it, and by the offset of the observed part. Parts that are observed twice in the same run (for example by a
+ * speculative attempt) replace each other. The statistics of a file are available once the parts of one run cover
+ * the whole file. Only the newest complete run of a file is kept; the entries of the runs it supersedes and the
+ * entries for earlier versions of a file are removed when the file is recorded or looked up.
+ */
+public class StatisticsCatalog
+{
+	private static final Log LOG = LogFactory.getLog(StatisticsCatalog.class);
+	
+	private static final String ENTRY_SUFFIX = ".stats";
+	
+	private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+	
+	private final Path directory;		// the directory holding the entries
+	
+	private final int numObservedFields;	// the number of fields whose distinct values are observed
+	
+	/**
+	 * Creates a catalog that stores its entries in the given directory.
+	 * 
+	 * @param directory The directory holding the entries.
+	 * @param numObservedFields The number of leading fields whose distinct values are observed.
+	 */
+	public StatisticsCatalog(Path directory, int numObservedFields)
+	{
+		if (directory == null) {
+			throw new NullPointerException("The catalog directory must not be null.");
+		}
+		if (numObservedFields < 0) {
+			throw new IllegalArgumentException("The number of observed fields must not be negative.");
+		}
+		this.directory = directory;
+		this.numObservedFields = numObservedFields;
+	}
+	
+	/**
+	 * Gets the catalog from the global configuration.
+	 * 
+	 * @return The configured catalog, or null, if no catalog is configured.
+	 */
+	public static StatisticsCatalog getConfiguredCatalog()
+	{
+		final String path = GlobalConfiguration.getString(PactConfigConstants.STATISTICS_CATALOG_PATH_KEY, null);
+		if (path == null || path.trim().length() == 0) {
+			return null;
+		}
+		final int fields = GlobalConfiguration.getInteger(PactConfigConstants.STATISTICS_CATALOG_FIELDS_KEY,
+			PactConfigConstants.DEFAULT_STATISTICS_CATALOG_FIELDS);
+		return new StatisticsCatalog(new Path(path.trim()), Math.max(fields, 0));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates new empty statistics that observe the fields tracked by this catalog.
+	 * 
+	 * @return The new statistics.
+	 */
+	public ObservedStatistics createObservation()
+	{
+		return new ObservedStatistics(this.numObservedFields);
+	}
+	
+	/**
+	 * Records the statistics observed on a part of the given file.
+	 * 
+	 * @param file The observed file.
+	 * @param modificationTime The modification time of the observed file.
+	 * @param offset The offset of the observed part in the file.
+	 * @param runId The identifier of the run (job) that observed the part.
+	 * @param statistics The observed statistics. Their total input size must be the length of the part.
+	 * @throws IOException Thrown, if the entry could not be written.
+	 */
+	public void record(Path file, long modificationTime, long offset, String runId, ObservedStatistics statistics)
+	throws IOException
+	{
+		final String name = getEntryPrefix(file, modificationTime) + runId.replaceAll("[^A-Za-z0-9]", "-") + '_' +
+			Long.toHexString(offset) + ENTRY_SUFFIX;
+		final Path entry = new Path(this.directory, name);
+		final Path tmp = entry.suffix(IN_PROGRESS_SUFFIX);
+		
+		final FileSystem fs = this.directory.getFileSystem();
+		if (!fs.exists(this.directory)) {
+			fs.mkdirs(this.directory);
+		}
+		
+		// write to a temporary entry first, such that no one reads a partially written entry
+		final DataOutputStream out = new DataOutputStream(fs.create(tmp, true));
+		try {
+			out.writeUTF(getKey(file));
+			out.writeLong(modificationTime);
+			out.writeLong(offset);
+			statistics.write(out);
+		}
+		finally {
+			out.close();
+		}
+		
+		if (fs.exists(entry)) {
+			fs.delete(entry, false);
+		}
+		if (!fs.rename(tmp, entry)) {
+			fs.delete(tmp, false);
+			throw new IOException("Could not commit statistics catalog entry " + entry);
+		}
+		
+		// the part may have completed the run, which then supersedes the earlier runs on the file
+		try {
+			final FileStatus status = file.getFileSystem().getFileStatus(file);
+			if (status.getModificationTime() == modificationTime) {
+				lookupFile(status, fs.listStatus(this.directory), fs);
+			}
+		}
+		catch (IOException ioex) {
+			if (LOG.isDebugEnabled())
+				LOG.debug("Could not remove superseded statistics catalog entries of " + file + ": " + ioex.getMessage());
+		}
+	}
+	
+	/**
+	 * Looks up the statistics of the given file, or directory of files.
+	 * 
+	 * @param path The path of the file or directory.
+	 * @return The statistics of the whole file or directory, or null, if they are not (completely) recorded for
+	 *         the current version of all files.
+	 * @throws IOException Thrown, if the file or the catalog could not be accessed.
+	 */
+	public ObservedStatistics lookup(Path path) throws IOException
+	{
+		final FileSystem catalogFs = this.directory.getFileSystem();
+		if (!catalogFs.exists(this.directory)) {
+			return null;
+		}
+		final FileStatus[] entries = catalogFs.listStatus(this.directory);
+		if (entries == null) {
+			return null;
+		}
+		
+		// get the files, as the input formats do
+		final FileSystem fs = path.getFileSystem();
+		final FileStatus status = fs.getFileStatus(path);
+		final List<FileStatus> files = new ArrayList<FileStatus>();
+		if (status.isDir()) {
+			for (FileStatus s : fs.listStatus(path)) {
+				if (!s.isDir()) {
+					files.add(s);
+				}
+			}
+		} else {
+			files.add(status);
+		}
+		
+		final ObservedStatistics statistics = createObservation();
+		for (FileStatus file : files) {
+			final ObservedStatistics fileStatistics = lookupFile(file, entries, catalogFs);
+			if (fileStatistics == null) {
+				return null;
+			}
+			statistics.merge(fileStatistics);
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Looks up the statistics of a single file among the given catalog entries. The entries of the runs that are
+	 * superseded by the newest complete run are removed.
+	 */
+	private ObservedStatistics lookupFile(FileStatus file, FileStatus[] entries, FileSystem catalogFs)
+	throws IOException
+	{
+		if (file.getLen() == 0) {
+			return createObservation();
+		}
+		
+		final String key = getKey(file.getPath());
+		final String filePrefix = getFilePrefix(file.getPath());
+		final String prefix = getEntryPrefix(file.getPath(), file.getModificationTime());
+		
+		// group the entries of the current version of the file by run
+		final Map<String, List<FileStatus>> runs = new HashMap<String, List<FileStatus>>();
+		for (FileStatus entry : entries) {
+			final String name = entry.getPath().getName();
+			if (!name.startsWith(filePrefix) || !name.endsWith(ENTRY_SUFFIX)) {
+				continue;
+			}
+			if (name.startsWith(prefix)) {
+				final String run = name.substring(prefix.length(), name.lastIndexOf('_'));
+				List<FileStatus> parts = runs.get(run);
+				if (parts == null) {
+					parts = new ArrayList<FileStatus>();
+					runs.put(run, parts);
+				}
+				parts.add(entry);
+			} else {
+				// the entry belongs to another version of the file (or to a file with a colliding hash)
+				removeIfStale(entry.getPath(), key, file.getModificationTime(), catalogFs);
+			}
+		}
+		
+		// take the newest run whose parts cover the whole file, a run is as old as its latest part
+		final Map<String, List<Path>> ownParts = new HashMap<String, List<Path>>();
+		final Map<String, Long> runTimes = new HashMap<String, Long>();
+		ObservedStatistics newestStatistics = null;
+		String newestRun = null;
+		long newestTime = Long.MIN_VALUE;
+		for (Map.Entry<String, List<FileStatus>> run : runs.entrySet()) {
+			final ObservedStatistics statistics = createObservation();
+			final List<Path> parts = new ArrayList<Path>();
+			long time = Long.MIN_VALUE;
+			for (FileStatus part : run.getValue()) {
+				final ObservedStatistics partStatistics = readEntry(part.getPath(), key, catalogFs);
+				if (partStatistics != null) {
+					statistics.merge(partStatistics);
+					parts.add(part.getPath());
+					time = Math.max(time, part.getModificationTime());
+				}
+			}
+			ownParts.put(run.getKey(), parts);
+			runTimes.put(run.getKey(), Long.valueOf(time));
+			if (statistics.getTotalInputSize() == file.getLen() && (newestRun == null || time > newestTime)) {
+				newestStatistics = statistics;
+				newestRun = run.getKey();
+				newestTime = time;
+			}
+		}
+		if (newestRun == null) {
+			return null;
+		}
+		
+		// remove the runs that are not newer than the complete run, runs still in progress are kept
+		for (Map.Entry<String, List<Path>> run : ownParts.entrySet()) {
+			if (!run.getKey().equals(newestRun) && runTimes.get(run.getKey()).longValue() <= newestTime) {
+				for (Path part : run.getValue()) {
+					removeEntry(part, catalogFs);
+				}
+			}
+		}
+		return newestStatistics;
+	}
+	
+	/**
+	 * Reads the statistics of the given entry, if it belongs to the file with the given key.
+	 */
+	private ObservedStatistics readEntry(Path entry, String key, FileSystem catalogFs) throws IOException
+	{
+		final DataInputStream in = new DataInputStream(catalogFs.open(entry));
+		try {
+			if (!in.readUTF().equals(key)) {
+				return null;
+			}
+			in.readLong();
+			in.readLong();
+			final ObservedStatistics statistics = new ObservedStatistics();
+			statistics.read(in);
+			return statistics;
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Removes the given entry, if it belongs to the file with the given key and another modification time.
+	 */
+	private void removeIfStale(Path entry, String key, long modificationTime, FileSystem catalogFs)
+	{
+		try {
+			final DataInputStream in = new DataInputStream(catalogFs.open(entry));
+			final boolean stale;
+			try {
+				stale = in.readUTF().equals(key) && in.readLong() != modificationTime;
+			}
+			finally {
+				in.close();
+			}
+			if (stale) {
+				removeEntry(entry, catalogFs);
+			}
+		}
+		catch (IOException ioex) {
+			// the entry may have been removed concurrently
+			if (LOG.isDebugEnabled())
+				LOG.debug("Could not remove stale statistics catalog entry " + entry + ": " + ioex.getMessage());
+		}
+	}
+	
+	/**
+	 * Removes the given entry. Failures are ignored, because the entry may have been removed concurrently.
+	 */
+	private void removeEntry(Path entry, FileSystem catalogFs)
+	{
+		try {
+			catalogFs.delete(entry, false);
+		}
+		catch (IOException ioex) {
+			if (LOG.isDebugEnabled())
+				LOG.debug("Could not remove statistics catalog entry " + entry + ": " + ioex.getMessage());
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the key of a file, which is the path without scheme and authority, such that qualified and unqualified
+	 * paths to the same file have the same key.
+	 */
+	private static String getKey(Path file)
+	{
+		return file.toUri().getPath();
+	}
+	
+	private static String getFilePrefix(Path file)
+	{
+		// FNV-1a over the key
+		final String key = getKey(file);
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return Long.toHexString(hash) + '_';
+	}
+	
+	private static String getEntryPrefix(Path file, long modificationTime)
+	{
+		return getFilePrefix(file) + Long.toHexString(modificationTime) + '_';
+	}
+}
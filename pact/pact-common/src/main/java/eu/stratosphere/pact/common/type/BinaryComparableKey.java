@@ -0,0 +1,45 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.type;
+
+
+/**
+ * The base interface for keys that can be compared in their serialized form. Comparators that find the keys of two
+ * records in serialized form, for example when merging sorted runs, use this method to compare the keys without
+ * deserializing them into key objects first.
+ * <p>
+ * The result of the binary comparison must be consistent with {@link Key#compareTo(Object)}: For two keys that
+ * were serialized through their {@link Key#write(java.io.DataOutput)} method, the signs of both comparisons must
+ * be identical.
+ */
+public interface BinaryComparableKey extends Key
+{
+	/**
+	 * Compares two keys in their serialized form. The method does not use or modify the state of this object, it
+	 * is merely invoked on an instance of the key type.
+	 * 
+	 * @param data1 The array holding the serialized first key.
+	 * @param offset1 The offset of the serialized first key in the array.
+	 * @param len1 The length of the serialized first key in bytes.
+	 * @param data2 The array holding the serialized second key.
+	 * @param offset2 The offset of the serialized second key in the array.
+	 * @param len2 The length of the serialized second key in bytes.
+	 * @return A negative integer, zero, or a positive integer as the first key is less than, equal to, or greater
+	 *         than the second key.
+	 */
+	int compareSerialized(byte[] data1, int offset1, int len1, byte[] data2, int offset2, int len2);
+}
@@ -472,6 +472,85 @@ public final class PactRecord implements Value
 		final int offset = this.offsets[fieldNum];
 		return offset == NULL_INDICATOR_OFFSET;
 	}
+	
+	/**
+	 * Compares the given field of this record with the same field of the other record on their serialized
+	 * representations, without deserializing the fields. The comparison is delegated to the given key instance,
+	 * which must be of the field's type.
+	 * 
+	 * @param fieldNum The position of the field to compare.
+	 * @param other The record to compare the field with.
+	 * @param comparator An instance of the field's type that performs the binary comparison.
+	 * @return A negative integer, zero, or a positive integer as the field in this record is less than, equal to,
+	 *         or greater than the field in the other record.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, when the position is not between 0 (inclusive) and the
+	 *                                   number of fields (exclusive) in either record.
+	 * @throws NullKeyFieldException Thrown, if the field is null in either record.
+	 */
+	public int compareSerializedField(int fieldNum, PactRecord other, BinaryComparableKey comparator)
+	{
+		// make sure the binary representations reflect all modifications
+		updateBinaryRepresenation();
+		other.updateBinaryRepresenation();
+		
+		// range check
+		if (fieldNum < 0 || fieldNum >= this.numFields || fieldNum >= other.numFields) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		final int offset1 = this.offsets[fieldNum];
+		final int offset2 = other.offsets[fieldNum];
+		if (offset1 == NULL_INDICATOR_OFFSET || offset2 == NULL_INDICATOR_OFFSET) {
+			throw new NullKeyFieldException(fieldNum);
+		}
+		
+		return comparator.compareSerialized(this.binaryData, offset1, this.lengths[fieldNum],
+			other.binaryData, offset2, other.lengths[fieldNum]);
+	}
+	
+	/**
+	 * Computes a 64 bit hash code of the serialized representation of the given field, without deserializing the
+	 * field. Fields with equal serialized representations have equal hash codes, independent of their type.
+	 * 
+	 * @param fieldNum The position of the field to hash.
+	 * @return The hash code of the field's serialized representation.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, when the position is not between 0 (inclusive) and the
+	 *                                   number of fields (exclusive).
+	 * @throws NullKeyFieldException Thrown, if the field is null.
+	 */
+	public long hashSerializedField(int fieldNum)
+	{
+		// make sure the binary representation reflects all modifications
+		updateBinaryRepresenation();
+		
+		// range check
+		if (fieldNum < 0 || fieldNum >= this.numFields) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		final int offset = this.offsets[fieldNum];
+		if (offset == NULL_INDICATOR_OFFSET) {
+			throw new NullKeyFieldException(fieldNum);
+		}
+		
+		// FNV-1a over the bytes, followed by a finalizer that spreads the bits over the whole word
+		final byte[] data = this.binaryData;
+		final int end = offset + this.lengths[fieldNum];
+		long hash = 0xcbf29ce484222325L;
+		for (int i = offset; i < end; i++) {
+			hash ^= data[i] & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
 //	/**
 //	 * Removes the field at the given position.
 //	 * 
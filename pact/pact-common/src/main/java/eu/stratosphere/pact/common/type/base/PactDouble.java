@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
 import eu.stratosphere.pact.common.type.Key;
 
 /**
@@ -28,7 +29,7 @@ import eu.stratosphere.pact.common.type.Key;
  * @see eu.stratosphere.pact.common.type.Key
  * @author Fabian Hueske (fabian.hueske@tu-berlin.de)
  */
-public class PactDouble implements Key {
+public class PactDouble implements Key, BinaryComparableKey {
 
 	private double value;
 
@@ -114,6 +115,19 @@ public class PactDouble implements Key {
 		return this.value < other ? -1 : this.value > other ? 1 : 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.type.BinaryComparableKey#compareSerialized(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int compareSerialized(byte[] data1, int offset1, int len1, byte[] data2, int offset2, int len2)
+	{
+		final double value1 = Double.longBitsToDouble(PactLong.readLong(data1, offset1));
+		final double value2 = Double.longBitsToDouble(PactLong.readLong(data2, offset2));
+
+		return value1 < value2 ? -1 : value1 > value2 ? 1 : 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
 import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.NormalizableKey;
 
@@ -32,7 +33,7 @@ import eu.stratosphere.pact.common.type.NormalizableKey;
  * @author Stephan Ewen
  *
  */
-public class PactInteger implements Key, NormalizableKey
+public class PactInteger implements Key, NormalizableKey, BinaryComparableKey
 {
 	private int value;
 
@@ -112,6 +113,30 @@ public class PactInteger implements Key, NormalizableKey
 		return this.value < other ? -1 : this.value > other ? 1 : 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.type.BinaryComparableKey#compareSerialized(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int compareSerialized(byte[] data1, int offset1, int len1, byte[] data2, int offset2, int len2) {
+		final int value1 = readInt(data1, offset1);
+		final int value2 = readInt(data2, offset2);
+
+		return value1 < value2 ? -1 : value1 > value2 ? 1 : 0;
+	}
+
+	/**
+	 * Reads a big-endian integer, as written by {@link #write(DataOutput)}, from the given array.
+	 * 
+	 * @param data The array to read from.
+	 * @param offset The offset of the integer in the array.
+	 * @return The integer.
+	 */
+	static int readInt(byte[] data, int offset) {
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) | ((data[offset + 2] & 0xff) << 8)
+			| (data[offset + 3] & 0xff);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
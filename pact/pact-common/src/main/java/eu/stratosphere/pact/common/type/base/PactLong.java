@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
 import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.NormalizableKey;
 
@@ -31,7 +32,7 @@ import eu.stratosphere.pact.common.type.NormalizableKey;
  * @author Fabian Hueske (fabian.hueske@tu-berlin.de)
  *
  */
-public class PactLong implements Key, NormalizableKey
+public class PactLong implements Key, NormalizableKey, BinaryComparableKey
 {
 
 	private long value;
@@ -112,6 +113,30 @@ public class PactLong implements Key, NormalizableKey
 		return this.value < other ? -1 : this.value > other ? 1 : 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.type.BinaryComparableKey#compareSerialized(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int compareSerialized(byte[] data1, int offset1, int len1, byte[] data2, int offset2, int len2) {
+		final long value1 = readLong(data1, offset1);
+		final long value2 = readLong(data2, offset2);
+
+		return value1 < value2 ? -1 : value1 > value2 ? 1 : 0;
+	}
+
+	/**
+	 * Reads a big-endian long, as written by {@link #write(DataOutput)}, from the given array.
+	 * 
+	 * @param data The array to read from.
+	 * @param offset The offset of the long in the array.
+	 * @return The long.
+	 */
+	static long readLong(byte[] data, int offset) {
+		return (((long) PactInteger.readInt(data, offset)) << 32)
+			| (PactInteger.readInt(data, offset + 4) & 0xffffffffL);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
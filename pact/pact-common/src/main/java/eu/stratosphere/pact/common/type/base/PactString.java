@@ -20,6 +20,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.CharBuffer;
 
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
 import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.NormalizableKey;
 
@@ -40,7 +41,7 @@ import eu.stratosphere.pact.common.type.NormalizableKey;
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  * @author Fabian Hueske (fabian.hueske@tu-berlin.de)
  */
-public class PactString implements Key, NormalizableKey, CharSequence
+public class PactString implements Key, NormalizableKey, BinaryComparableKey, CharSequence
 {
 	private static final char[] EMPTY_STRING = new char[0];
 	
@@ -514,6 +515,65 @@ public class PactString implements Key, NormalizableKey, CharSequence
 			throw new ClassCastException("Cannot compare PactString to " + o.getClass().getName());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.type.BinaryComparableKey#compareSerialized(byte[], int, int, byte[], int, int)
+	 */
+	@Override
+	public int compareSerialized(byte[] data1, int offset1, int len1, byte[] data2, int offset2, int len2)
+	{
+		// decode the variable length encoded string lengths
+		long lenAndPos = readVarLengthValue(data1, offset1);
+		final int strLen1 = (int) (lenAndPos >>> 32);
+		int pos1 = (int) lenAndPos;
+		
+		lenAndPos = readVarLengthValue(data2, offset2);
+		final int strLen2 = (int) (lenAndPos >>> 32);
+		int pos2 = (int) lenAndPos;
+		
+		// compare the variable length encoded characters one by one
+		final int n = Math.min(strLen1, strLen2);
+		for (int k = 0; k < n; k++) {
+			final long charAndPos1 = readVarLengthValue(data1, pos1);
+			pos1 = (int) charAndPos1;
+			
+			final long charAndPos2 = readVarLengthValue(data2, pos2);
+			pos2 = (int) charAndPos2;
+			
+			final char c1 = (char) (charAndPos1 >>> 32);
+			final char c2 = (char) (charAndPos2 >>> 32);
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return strLen1 - strLen2;
+	}
+	
+	/**
+	 * Reads one variable length encoded value, as written for the string length and the characters, from the
+	 * given array. The serialized keys are compared directly in their arrays, so the value and the position
+	 * after it are returned together, rather than through a stream object.
+	 * 
+	 * @param data The array holding the encoded value.
+	 * @param pos The position of the first byte of the encoded value.
+	 * @return The decoded value in the upper 32 bits and the position after the encoded value in the lower 32 bits.
+	 */
+	private static long readVarLengthValue(byte[] data, int pos)
+	{
+		int value = data[pos++] & 0xff;
+		if (value >= HIGH_BIT) {
+			int shift = 7;
+			int curr;
+			value = value & 0x7f;
+			while ((curr = data[pos++] & 0xff) >= HIGH_BIT) {
+				value |= (curr & 0x7f) << shift;
+				shift += 7;
+			}
+			value |= curr << shift;
+		}
+		return (((long) value) << 32) | (pos & 0xffffffffL);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
@@ -49,6 +49,14 @@ public final class PactConfigConstants {
 	 */
 	public static final String DEFAULT_INSTANCE_TYPE_KEY = "pact.parallelization.default-instance-type";
 	
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The key for the config parameter defining whether the compiler reorders chains of matches by their
+	 * estimated cost, where the stub annotations of the matches allow it.
+	 */
+	public static final String COMPILER_JOIN_REORDERING_KEY = "pact.compiler.join-reordering";
+	
 	// ------------------------------- Runtime --------------------------------
 	
 	/**
@@ -57,6 +65,47 @@ public final class PactConfigConstants {
 	 */
 	public static final String FS_STREAM_OPENING_TIMEOUT_KEY = "pact.runtime.fs_timeout";
 	
+	/**
+	 * The key for the config parameter defining the number of threads that sort the in-memory buffers of
+	 * an external sort concurrently.
+	 */
+	public static final String SORT_PARALLELISM_KEY = "pact.runtime.sort.parallelism";
+	
+	/**
+	 * The key for the config parameter defining the compression of the runs spilled by external sorts.
+	 * Valid values are <i>none</i>, <i>snappy</i> and <i>deflate</i> (or <i>zlib</i>).
+	 */
+	public static final String SPILL_COMPRESSION_KEY = "pact.runtime.spill.compression";
+	
+	// ------------------------------ Statistics ------------------------------
+	
+	/**
+	 * The key for the config parameter defining the directory of the statistics catalog, in which the tasks
+	 * record the statistics they observe on files. The directory must be accessible from all nodes, for example
+	 * on the distributed file system. If the parameter is not set, no statistics are recorded.
+	 */
+	public static final String STATISTICS_CATALOG_PATH_KEY = "pact.statistics.catalog.path";
+	
+	/**
+	 * The key for the config parameter defining the number of leading record fields for which the statistics
+	 * catalog records distinct counts.
+	 */
+	public static final String STATISTICS_CATALOG_FIELDS_KEY = "pact.statistics.catalog.fields";
+	
+	// -------------------------------- Client --------------------------------
+	
+	/**
+	 * The key for the config parameter defining the number of optimized plans that a client keeps to
+	 * serve repeated submissions of the same program. A value of 0 disables the plan cache.
+	 */
+	public static final String CLIENT_PLAN_CACHE_SIZE_KEY = "pact.client.plancache.size";
+	
+	/**
+	 * The key for the config parameter defining the number of seconds for which a cached optimized plan
+	 * is used, before the program is compiled again.
+	 */
+	public static final String CLIENT_PLAN_CACHE_TTL_KEY = "pact.client.plancache.ttl";
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
@@ -121,6 +170,13 @@ public final class PactConfigConstants {
 	 */
 	public static final String DEFAULT_INSTANCE_TYPE_DESCRIPTION = "standard,2,1,300,10,0";
 
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The default setting for the join reordering: enabled.
+	 */
+	public static final boolean DEFAULT_COMPILER_JOIN_REORDERING = true;
+
 	// ------------------------------- Runtime --------------------------------
 	
 	/**
@@ -128,6 +184,35 @@ public final class PactConfigConstants {
 	 */
 	public static final int DEFAULT_FS_STREAM_OPENING_TIMEOUT = 10000;
 	
+	/**
+	 * The default number of threads that sort in-memory buffers: 1, i.e. a single sorting thread.
+	 */
+	public static final int DEFAULT_SORT_PARALLELISM = 1;
+	
+	/**
+	 * The default compression of spilled runs: Snappy, which costs little CPU time compared to the disk I/O it saves.
+	 */
+	public static final String DEFAULT_SPILL_COMPRESSION = "snappy";
+	
+	// ------------------------------ Statistics ------------------------------
+	
+	/**
+	 * The default number of fields with recorded distinct counts: the first 8 fields of a record.
+	 */
+	public static final int DEFAULT_STATISTICS_CATALOG_FIELDS = 8;
+	
+	// -------------------------------- Client --------------------------------
+	
+	/**
+	 * The default number of cached optimized plans.
+	 */
+	public static final int DEFAULT_CLIENT_PLAN_CACHE_SIZE = 32;
+	
+	/**
+	 * The default time for which a cached optimized plan is used: 5 minutes.
+	 */
+	public static final int DEFAULT_CLIENT_PLAN_CACHE_TTL = 300;
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
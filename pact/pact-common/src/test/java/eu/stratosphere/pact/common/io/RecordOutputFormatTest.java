@@ -205,6 +205,62 @@ public class RecordOutputFormatTest {
 		}
 	}
 	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testWriteAtomicCommit()
+	{
+		try {
+			Configuration config = new Configuration();
+			config.setString(RecordOutputFormat.FILE_PARAMETER_KEY, "file://"+this.tempFile.getAbsolutePath());
+			config.setString(RecordOutputFormat.FIELD_DELIMITER_PARAMETER, "|");
+			config.setInteger(RecordOutputFormat.NUM_FIELDS_PARAMETER, 2);
+			config.setClass(RecordOutputFormat.FIELD_TYPE_PARAMETER_PREFIX + 0, PactString.class);
+			config.setClass(RecordOutputFormat.FIELD_TYPE_PARAMETER_PREFIX + 1, PactInteger.class);
+			
+			// a discarded attempt must leave neither the target file nor a temporary file behind
+			RecordOutputFormat discarded = new RecordOutputFormat();
+			discarded.configure(config);
+			discarded.enableAtomicCommit();
+			this.tempFile.delete();
+			discarded.open(0);
+			
+			PactRecord r = new PactRecord(2);
+			r.setField(0, new PactString("Lost"));
+			r.setField(1, new PactInteger(7));
+			discarded.writeRecord(r);
+			discarded.discard();
+			
+			assertFalse(this.tempFile.exists());
+			assertTrue(this.tempFile.getParentFile().list(new java.io.FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String name) {
+					return name.startsWith(tempFile.getName() + ".inprogress-");
+				}
+			}).length == 0);
+			
+			// a committed attempt replaces the target file on close
+			format.configure(config);
+			format.enableAtomicCommit();
+			format.open(0);
+			
+			r.setField(0, new PactString("Hello World"));
+			r.setField(1, new PactInteger(42));
+			format.writeRecord(r);
+			
+			assertFalse(this.tempFile.exists());
+			format.close();
+			assertTrue(this.tempFile.exists());
+			
+			DataInputStream dis = new DataInputStream(new FileInputStream(tempFile));
+			assertTrue((dis.readLine()+"\n").equals("Hello World|42\n"));
+			assertTrue(dis.readLine() == null);
+			dis.close();
+		}
+		catch (Exception ex) {
+			Assert.fail("Test failed due to a " + ex.getClass().getSimpleName() + ": " + ex.getMessage());
+		}
+	}
+	
 	@Test
 	public void testWriteNoRecPosNoLenientFail()
 	{
@@ -0,0 +1,236 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactString;
+
+/**
+ * Tests for the {@link StatisticsCatalog} and the {@link HyperLogLog} sketches of the {@link ObservedStatistics}.
+ */
+public class StatisticsCatalogTest
+{
+	private File catalogDir;
+	
+	private File dataFile;
+	
+	private StatisticsCatalog catalog;
+	
+	@Before
+	public void setup() throws IOException
+	{
+		final File tmp = new File(System.getProperty("java.io.tmpdir"));
+		this.catalogDir = new File(tmp, "statistics-catalog-" + System.nanoTime());
+		this.dataFile = File.createTempFile("statistics-data", ".txt");
+		writeDataFile(1000);
+		
+		this.catalog = new StatisticsCatalog(new Path(this.catalogDir.toURI().toString()), 2);
+	}
+	
+	@After
+	public void cleanup()
+	{
+		this.dataFile.delete();
+		final File[] entries = this.catalogDir.listFiles();
+		if (entries != null) {
+			for (File entry : entries) {
+				entry.delete();
+			}
+		}
+		this.catalogDir.delete();
+	}
+	
+	@Test
+	public void testLookupRequiresAllParts() throws IOException
+	{
+		final Path file = new Path(this.dataFile.toURI().toString());
+		final long modTime = getModificationTime(file);
+		
+		assertNull(this.catalog.lookup(file));
+		
+		this.catalog.record(file, modTime, 0, "run1", observe(0, 300, 400));
+		assertNull("Statistics must not be complete with a part missing.", this.catalog.lookup(file));
+		
+		this.catalog.record(file, modTime, 400, "run1", observe(300, 700, 600));
+		final ObservedStatistics stats = this.catalog.lookup(file);
+		assertNotNull(stats);
+		assertEquals(1000, stats.getTotalInputSize());
+		assertEquals(700, stats.getNumberOfRecords());
+		assertEquals(1000.0f / 700, stats.getAverageRecordWidth(), 0.001f);
+		assertEquals(2, stats.getNumberOfObservedFields());
+		assertWithinError(700, stats.getDistinctCount(0));
+		assertWithinError(7, stats.getDistinctCount(1));
+		assertEquals(BaseStatistics.UNKNOWN, stats.getDistinctCount(2));
+	}
+	
+	@Test
+	public void testRunsAreNotMixed() throws IOException
+	{
+		final Path file = new Path(this.dataFile.toURI().toString());
+		final long modTime = getModificationTime(file);
+		
+		// two runs observed half of the file each, and a repeated observation replaces the previous one
+		this.catalog.record(file, modTime, 0, "run1", observe(0, 100, 500));
+		this.catalog.record(file, modTime, 500, "run2", observe(100, 200, 500));
+		this.catalog.record(file, modTime, 0, "run2", observe(0, 50, 500));
+		this.catalog.record(file, modTime, 0, "run2", observe(0, 100, 500));
+		
+		final ObservedStatistics stats = this.catalog.lookup(file);
+		assertNotNull(stats);
+		assertEquals(1000, stats.getTotalInputSize());
+		assertEquals(200, stats.getNumberOfRecords());
+	}
+	
+	@Test
+	public void testOnlyNewestCompleteRunIsKept() throws IOException
+	{
+		final Path file = new Path(this.dataFile.toURI().toString());
+		final long modTime = getModificationTime(file);
+		
+		this.catalog.record(file, modTime, 0, "run1", observe(0, 100, 1000));
+		assertEquals(1, this.catalogDir.listFiles().length);
+		
+		// age the entry of the first run, so that the second run is the newer one
+		final File run1Entry = this.catalogDir.listFiles()[0];
+		assertTrue(run1Entry.setLastModified(run1Entry.lastModified() - 10000));
+		
+		this.catalog.record(file, modTime, 0, "run2", observe(0, 200, 1000));
+		assertEquals("The superseded run must have been removed.", 1, this.catalogDir.listFiles().length);
+		
+		final ObservedStatistics stats = this.catalog.lookup(file);
+		assertNotNull(stats);
+		assertEquals(200, stats.getNumberOfRecords());
+		assertEquals(1, this.catalogDir.listFiles().length);
+	}
+	
+	@Test
+	public void testModifiedFileInvalidatesStatistics() throws IOException
+	{
+		final Path file = new Path(this.dataFile.toURI().toString());
+		final long modTime = getModificationTime(file);
+		this.catalog.record(file, modTime, 0, "run1", observe(0, 100, 1000));
+		assertNotNull(this.catalog.lookup(file));
+		
+		writeDataFile(1000);
+		assertTrue(this.dataFile.setLastModified(modTime + 10000));
+		assertNull(this.catalog.lookup(file));
+		assertEquals("The stale entry must have been removed.", 0, this.catalogDir.listFiles().length);
+	}
+	
+	@Test
+	public void testDirectoryOfFiles() throws IOException
+	{
+		final File dir = new File(this.catalogDir.getParentFile(), "statistics-dir-" + System.nanoTime());
+		assertTrue(dir.mkdir());
+		final File f1 = new File(dir, "1");
+		final File f2 = new File(dir, "2");
+		try {
+			write(f1, 100);
+			write(f2, 200);
+			
+			final Path p1 = new Path(f1.toURI().toString());
+			final Path p2 = new Path(f2.toURI().toString());
+			this.catalog.record(p1, getModificationTime(p1), 0, "run", observe(0, 10, 100));
+			assertNull(this.catalog.lookup(new Path(dir.toURI().toString())));
+			
+			this.catalog.record(p2, getModificationTime(p2), 0, "run", observe(10, 30, 200));
+			final ObservedStatistics stats = this.catalog.lookup(new Path(dir.toURI().toString()));
+			assertNotNull(stats);
+			assertEquals(300, stats.getTotalInputSize());
+			assertEquals(30, stats.getNumberOfRecords());
+		}
+		finally {
+			f1.delete();
+			f2.delete();
+			dir.delete();
+		}
+	}
+	
+	@Test
+	public void testHyperLogLogAccuracy()
+	{
+		for (int n : new int[] { 10, 1000, 100000 }) {
+			final ObservedStatistics stats = observe(0, n, n);
+			assertWithinError(n, stats.getDistinctCount(0));
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Observes records with the keys from <code>from</code> (inclusive) to <code>to</code> (exclusive) in the first
+	 * field, and the keys modulo 100 as strings in the second field.
+	 */
+	private ObservedStatistics observe(int from, int to, long size)
+	{
+		final ObservedStatistics stats = new ObservedStatistics(2);
+		final PactRecord record = new PactRecord();
+		final PactInteger key = new PactInteger();
+		final PactString value = new PactString();
+		for (int i = from; i < to; i++) {
+			key.setValue(i);
+			value.setValue(String.valueOf(i / 100));
+			record.setField(0, key);
+			record.setField(1, value);
+			stats.addRecord(record);
+		}
+		stats.setTotalInputSize(size);
+		return stats;
+	}
+	
+	private static void assertWithinError(long expected, long actual)
+	{
+		// the standard error of the sketches is about 3%, allow for three times that
+		assertTrue("Expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.1);
+	}
+	
+	private static long getModificationTime(Path file) throws IOException
+	{
+		return file.getFileSystem().getFileStatus(file).getModificationTime();
+	}
+	
+	private void writeDataFile(int size) throws IOException
+	{
+		write(this.dataFile, size);
+	}
+	
+	private static void write(File file, int size) throws IOException
+	{
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[size]);
+		}
+		finally {
+			out.close();
+		}
+	}
+}
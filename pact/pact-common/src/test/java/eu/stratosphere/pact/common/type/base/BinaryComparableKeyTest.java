@@ -0,0 +1,110 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.common.type.base;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
+import eu.stratosphere.pact.common.type.NullKeyFieldException;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+public class BinaryComparableKeyTest {
+
+	@Test
+	public void testPactInteger() {
+		final int[] values = { 10, -10, 255, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0xff800000 };
+		
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				assertBinaryComparison(new PactInteger(values[i]), new PactInteger(values[j]));
+			}
+		}
+	}
+	
+	@Test
+	public void testPactLong() {
+		final long[] values = { 10, -10, 255, 0, Long.MAX_VALUE, Long.MIN_VALUE, 0xff80000000000000L, 0xffffffffL };
+		
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				assertBinaryComparison(new PactLong(values[i]), new PactLong(values[j]));
+			}
+		}
+	}
+	
+	@Test
+	public void testPactDouble() {
+		final double[] values = { 10.5, -10.5, 0.0, -0.0, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE,
+			Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				assertBinaryComparison(new PactDouble(values[i]), new PactDouble(values[j]));
+			}
+		}
+	}
+	
+	@Test
+	public void testPactString() {
+		final String[] values = { "This is a test", "This is a test with some longer String", "This is a tesa",
+			"This", "", "Ünlaut ßtring µ avec é y ¢", "Ünlaut ßtring µ avec é y €", "￿", "\u0080" };
+		
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < values.length; j++) {
+				assertBinaryComparison(new PactString(values[i]), new PactString(values[j]));
+			}
+		}
+	}
+	
+	@Test
+	public void testNullField() {
+		final PactRecord record1 = new PactRecord(2);
+		record1.setField(0, new PactInteger(1));
+		record1.setField(1, new PactInteger(2));
+		
+		final PactRecord record2 = new PactRecord(2);
+		record2.setField(1, new PactInteger(2));
+		
+		Assert.assertEquals(0, record1.compareSerializedField(1, record2, new PactInteger()));
+		
+		try {
+			record1.compareSerializedField(0, record2, new PactInteger());
+			Assert.fail("Comparison of a null field did not fail");
+		} catch (NullKeyFieldException nkfex) {
+			// expected
+		}
+	}
+	
+	private void assertBinaryComparison(BinaryComparableKey key1, BinaryComparableKey key2) {
+		
+		// place the keys at different positions to make sure the offsets are respected
+		final PactRecord record1 = new PactRecord(2);
+		record1.setField(0, new PactString("prefix"));
+		record1.setField(1, key1);
+		
+		final PactRecord record2 = new PactRecord(3);
+		record2.setField(1, key2);
+		record2.setField(2, new PactInteger(42));
+		
+		final int comp = record1.compareSerializedField(1, record2, key1);
+		
+		if (Math.signum(key1.compareTo(key2)) != Math.signum(comp)) {
+			Assert.fail("Binary key comparison differs from actual key comparison for " + key1 + " and " + key2);
+		}
+	}
+}
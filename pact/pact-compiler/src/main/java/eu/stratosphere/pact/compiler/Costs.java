@@ -22,6 +22,9 @@ package eu.stratosphere.pact.compiler;
  * <p>
  * If an unknown cost is added with a known cost, the result is unknown. If an unknown cost is compared with a known
  * cost, it is always larger.
+ * <p>
+ * The CPU cost is expressed in the number of bytes of secondary storage I/O that take the same time, such that it can
+ * be added to the secondary storage cost. It defaults to zero, which means that the CPU cost is not considered.
  */
 public class Costs implements Comparable<Costs>, Cloneable {
 
@@ -29,8 +32,11 @@ public class Costs implements Comparable<Costs>, Cloneable {
 
 	private long secondaryStorageCost; // bytes to be written and read, in bytes
 
+	private long cpuCost; // CPU cost, in equivalent bytes of secondary storage I/O
+
 	/**
-	 * Default constructor. Initialized the costs to "unknown" (-1).
+	 * Default constructor. Initialized the network and secondary storage costs to "unknown" (-1) and the CPU cost
+	 * to zero.
 	 */
 	public Costs() {
 		this.networkCost = -1;
@@ -38,7 +44,7 @@ public class Costs implements Comparable<Costs>, Cloneable {
 	}
 
 	/**
-	 * Creates a new costs object using the given values for the network and storage cost.
+	 * Creates a new costs object using the given values for the network and storage cost. The CPU cost is zero.
 	 * 
 	 * @param networkCost
 	 *        The network cost, in bytes to be transferred.
@@ -50,6 +56,22 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		this.secondaryStorageCost = secondaryStorageCost;
 	}
 
+	/**
+	 * Creates a new costs object using the given values for the network, storage and CPU cost.
+	 * 
+	 * @param networkCost
+	 *        The network cost, in bytes to be transferred.
+	 * @param secondaryStorageCost
+	 *        The cost for secondary storage, in bytes to be written and read.
+	 * @param cpuCost
+	 *        The CPU cost, in equivalent bytes of secondary storage I/O.
+	 */
+	public Costs(long networkCost, long secondaryStorageCost, long cpuCost) {
+		this.networkCost = networkCost;
+		this.secondaryStorageCost = secondaryStorageCost;
+		this.cpuCost = cpuCost;
+	}
+
 	/**
 	 * Gets the network cost.
 	 * 
@@ -89,8 +111,40 @@ public class Costs implements Comparable<Costs>, Cloneable {
 	}
 
 	/**
-	 * Adds the given costs to these costs. If for one of the different cost components (network, secondary storage),
-	 * the costs are unknown, the resulting costs will be unknown.
+	 * Gets the CPU cost.
+	 * 
+	 * @return The CPU cost, in equivalent bytes of secondary storage I/O.
+	 */
+	public long getCpuCost() {
+		return cpuCost;
+	}
+
+	/**
+	 * Sets the CPU cost for this Costs object.
+	 * 
+	 * @param bytes
+	 *        The CPU cost to set, in equivalent bytes of secondary storage I/O.
+	 */
+	public void setCpuCost(long bytes) {
+		this.cpuCost = bytes;
+	}
+
+	/**
+	 * Gets the local costs, which are the sum of the secondary storage and the CPU cost.
+	 * 
+	 * @return The local costs, or -1, if one of the components is unknown.
+	 */
+	private long getLocalCost() {
+		if (this.secondaryStorageCost == -1 || this.cpuCost == -1) {
+			return -1;
+		}
+		final long sum = this.secondaryStorageCost + this.cpuCost;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * Adds the given costs to these costs. If for one of the different cost components (network, secondary storage,
+	 * CPU), the costs are unknown, the resulting costs will be unknown.
 	 * 
 	 * @param other The costs to add.
 	 */
@@ -106,6 +160,12 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		} else {
 			this.networkCost += other.networkCost;
 		}
+
+		if (this.cpuCost == -1 || other.cpuCost == -1) {
+			this.cpuCost = -1;
+		} else {
+			this.cpuCost += other.cpuCost;
+		}
 	}
 	
 	/**
@@ -128,11 +188,19 @@ public class Costs implements Comparable<Costs>, Cloneable {
 				this.networkCost = -1;
 			}
 		}
+		
+		if (this.cpuCost != -1 && other.cpuCost != -1) {
+			this.cpuCost -= other.cpuCost;
+			if (this.cpuCost < 0) {
+				this.cpuCost = -1;
+			}
+		}
 	}
 
 	/**
 	 * Checks, if the given other costs are by more than the given delta larger that these costs.
-	 * As in comparisons, the network cost is weighted more than the secondary storage cost.
+	 * As in comparisons, the network cost is weighted more than the local costs, which are the sum of the secondary
+	 * storage and the CPU cost.
 	 * <p>
 	 * If during a comparison, any value is undefined (-1), the result of the comparison is false.
 	 * 
@@ -148,10 +216,13 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		} else if (other.networkCost > this.networkCost + delta.networkCost) {
 			return true;
 		} else if (other.networkCost == this.networkCost + delta.networkCost) {
-			// net costs match, so determine by secondary storage cost
-			if (this.secondaryStorageCost == -1 || other.secondaryStorageCost == -1 || delta.secondaryStorageCost == -1) {
+			// net costs match, so determine by local costs
+			final long thisLocal = getLocalCost();
+			final long otherLocal = other.getLocalCost();
+			final long deltaLocal = delta.getLocalCost();
+			if (thisLocal == -1 || otherLocal == -1 || deltaLocal == -1) {
 				return false;
-			} else if (other.secondaryStorageCost > this.secondaryStorageCost + delta.secondaryStorageCost) {
+			} else if (otherLocal > thisLocal + deltaLocal) {
 				return true;
 			} else {
 				return false;
@@ -176,11 +247,14 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		} else if (this.networkCost == -1 && o.networkCost == -1) {
 			// if both have unknown network costs, they are equal
 			return 0;
-		} else if (this.secondaryStorageCost != -1
-			&& (this.secondaryStorageCost < o.secondaryStorageCost || o.secondaryStorageCost == -1)) {
+		}
+		
+		// network costs match, so determine by local costs
+		final long thisLocal = getLocalCost();
+		final long otherLocal = o.getLocalCost();
+		if (thisLocal != -1 && (thisLocal < otherLocal || otherLocal == -1)) {
 			return -1;
-		} else if (o.secondaryStorageCost != -1
-			&& (this.secondaryStorageCost > o.secondaryStorageCost || this.secondaryStorageCost == -1)) {
+		} else if (otherLocal != -1 && (thisLocal > otherLocal || thisLocal == -1)) {
 			return 1;
 		} else {
 			return 0;
@@ -197,6 +271,7 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		int result = 1;
 		result = prime * result + (int) (networkCost ^ (networkCost >>> 32));
 		result = prime * result + (int) (secondaryStorageCost ^ (secondaryStorageCost >>> 32));
+		result = prime * result + (int) (cpuCost ^ (cpuCost >>> 32));
 		return result;
 	}
 
@@ -217,6 +292,8 @@ public class Costs implements Comparable<Costs>, Cloneable {
 			return false;
 		if (secondaryStorageCost != other.secondaryStorageCost)
 			return false;
+		if (cpuCost != other.cpuCost)
+			return false;
 		return true;
 	}
 
@@ -226,7 +303,8 @@ public class Costs implements Comparable<Costs>, Cloneable {
 	 */
 	@Override
 	public String toString() {
-		return "Costs [networkCost=" + networkCost + ", secondaryStorageCost=" + secondaryStorageCost + "]";
+		return "Costs [networkCost=" + networkCost + ", secondaryStorageCost=" + secondaryStorageCost + ", cpuCost="
+			+ cpuCost + "]";
 	}
 
 	/*
@@ -15,15 +15,19 @@
 
 package eu.stratosphere.pact.compiler;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.io.statistics.ObservedStatistics;
+import eu.stratosphere.pact.common.io.statistics.StatisticsCatalog;
 
 /**
  * The collection of access methods that can be used to retrieve statistical information about the
- * data processed in a job. Currently this method acts as an entry point only for obtaining cached
- * statistics.
+ * data processed in a job. It acts as an entry point for obtaining cached statistics and the statistics
+ * that previous jobs recorded in the persistent {@link StatisticsCatalog}.
  * <p>
  * This class is thread safe.
  * 
@@ -33,14 +37,28 @@ public class DataStatistics
 {
 	private final Map<String, BaseStatistics> baseStatisticsCache;
 	
+	private final StatisticsCatalog catalog;
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
-	 * Creates a new statistics object, with an empty cache. 
+	 * Creates a new statistics object, with an empty cache, using the statistics catalog from the
+	 * global configuration, if one is configured. 
 	 */
 	public DataStatistics()
+	{
+		this(StatisticsCatalog.getConfiguredCatalog());
+	}
+	
+	/**
+	 * Creates a new statistics object, with an empty cache, using the given statistics catalog.
+	 * 
+	 * @param catalog The catalog with the recorded statistics, or null, if no catalog is used.
+	 */
+	public DataStatistics(StatisticsCatalog catalog)
 	{
 		this.baseStatisticsCache = new HashMap<String, BaseStatistics>();
+		this.catalog = catalog;
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -70,4 +88,17 @@ public class DataStatistics
 			this.baseStatisticsCache.put(identifyer, statistics);
 		}
 	}
+	
+	/**
+	 * Gets the statistics that were recorded in the statistics catalog for the current version of the given
+	 * file (or directory of files).
+	 * 
+	 * @param path The path of the file or directory.
+	 * @return The recorded statistics, or null, if no catalog is used or no complete statistics are recorded.
+	 * @throws IOException Thrown, if the file or the catalog could not be accessed.
+	 */
+	public ObservedStatistics getObservedStatistics(Path path) throws IOException
+	{
+		return this.catalog == null ? null : this.catalog.lookup(path);
+	}
 }
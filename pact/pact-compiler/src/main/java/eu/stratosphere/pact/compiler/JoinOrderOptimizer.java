@@ -0,0 +1,549 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.contract.CompilerHints;
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.contract.DualInputContract;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.contract.SingleInputContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.plan.Visitor;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsFirstExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsSecondExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.OutCardBounds;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.TwoInputNode;
+
+/**
+ * Enumerates the orders of connected matches and picks the one with the smallest estimated intermediate
+ * results, before the compiler chooses the shipping and local strategies.
+ * <p>
+ * A match may take part in a reordering, if its stub keeps all fields of both inputs (it is annotated with
+ * {@link ConstantFieldsFirstExcept} and {@link ConstantFieldsSecondExcept} with empty field lists) and emits
+ * exactly one record per pair of matching records ({@link OutCardBounds} of one and one). Such a match
+ * concatenates the fields of its inputs, which implies that its inputs carry disjoint fields, and every field
+ * keeps its position no matter in which order the inputs are joined. A cluster is a tree of such matches in
+ * which every intermediate result is consumed only by its parent. The inputs of the cluster are left as they
+ * are.
+ * <p>
+ * The key fields of a match input that is itself a join are attributed to the cluster input that is directly
+ * joined on these fields. Clusters whose key fields cannot be attributed unambiguously are not reordered.
+ * The result size of a join is estimated as the product of the input sizes, divided by the larger distinct
+ * count of the two join keys, as given by the compiler hints or the observed statistics of the inputs.
+ * <p>
+ * The user's plan is not modified. Instead, the reordered clusters are described as a map from the original
+ * root match of each cluster to a newly created root match, which the graph creation visits in its place.
+ */
+public final class JoinOrderOptimizer
+{
+	/**
+	 * The log handle of the join order optimizer.
+	 */
+	private static final Log LOG = LogFactory.getLog(JoinOrderOptimizer.class);
+	
+	/**
+	 * The maximal number of inputs of a cluster of matches. Larger clusters keep their order, because the
+	 * number of enumerated join orders grows exponentially with the number of inputs.
+	 */
+	public static final int MAX_CLUSTER_INPUTS = 10;
+	
+	/**
+	 * The fraction of the intermediate result size that a different join order must save to be chosen
+	 * over the order given in the plan.
+	 */
+	private static final double MIN_RELATIVE_SAVINGS = 0.01;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final Map<Contract, OptimizerNode> con2node; // the nodes with estimates for the plan's contracts
+	
+	/**
+	 * Creates a new join order optimizer that takes the size estimates of the cluster inputs from
+	 * the given optimizer nodes.
+	 * 
+	 * @param con2node The map from the contracts of the plan to their optimizer nodes, which must have
+	 *                 their output estimates computed.
+	 */
+	public JoinOrderOptimizer(Map<Contract, OptimizerNode> con2node)
+	{
+		this.con2node = con2node;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Computes the cheapest join order for every cluster of reorderable matches in the given plan.
+	 * 
+	 * @param plan The plan to reorder the matches of.
+	 * @return A map from the root match of every reordered cluster to the root of its new join order.
+	 *         Empty, if no cluster was reordered.
+	 */
+	public Map<Contract, Contract> computeSubstitutes(Plan plan)
+	{
+		// count the consumers of every contract and collect the reorderable matches
+		final Map<Contract, Integer> consumers = new HashMap<Contract, Integer>();
+		final List<MatchContract> matches = new ArrayList<MatchContract>();
+		
+		plan.accept(new Visitor<Contract>() {
+			
+			private final Set<Contract> visited = new HashSet<Contract>();
+			
+			@Override
+			public boolean preVisit(Contract c) {
+				if (!this.visited.add(c)) {
+					return false;
+				}
+				for (List<Contract> inputs : getInputLists(c)) {
+					for (Contract input : inputs) {
+						final Integer num = consumers.get(input);
+						consumers.put(input, num == null ? 1 : num + 1);
+					}
+				}
+				if (c instanceof MatchContract && isReorderable((MatchContract) c)) {
+					matches.add((MatchContract) c);
+				}
+				return true;
+			}
+			
+			@Override
+			public void postVisit(Contract c) {}
+		});
+		
+		// a match that is the only input of a reorderable match and has no other consumer
+		// belongs to the cluster of that match
+		final Set<Contract> reorderable = new HashSet<Contract>(matches);
+		final Set<Contract> absorbed = new HashSet<Contract>();
+		for (MatchContract m : matches) {
+			for (List<Contract> inputs : getInputLists(m)) {
+				if (inputs.size() == 1 && reorderable.contains(inputs.get(0)) && consumers.get(inputs.get(0)) == 1) {
+					absorbed.add(inputs.get(0));
+				}
+			}
+		}
+		
+		final Map<Contract, Contract> substitutes = new HashMap<Contract, Contract>();
+		for (MatchContract m : matches) {
+			if (absorbed.contains(m)) {
+				continue;
+			}
+			
+			final Cluster cluster = new Cluster(m);
+			if (cluster.collect(m, absorbed) == -1 || cluster.edges.size() < 2 || !cluster.attributeKeys()) {
+				continue;
+			}
+			
+			final Contract substitute = cluster.reorder();
+			if (substitute != null) {
+				substitutes.put(m, substitute);
+			}
+		}
+		return substitutes;
+	}
+	
+	/**
+	 * Checks whether the given match may be reordered with the matches it is connected to.
+	 * 
+	 * @param match The match to check.
+	 * @return True, if the stub of the match concatenates its inputs, false otherwise.
+	 */
+	public static boolean isReorderable(MatchContract match)
+	{
+		final Class<?> udf = match.getUserCodeClass();
+		
+		final ConstantFieldsFirstExcept notConstant1 = udf.getAnnotation(ConstantFieldsFirstExcept.class);
+		final ConstantFieldsSecondExcept notConstant2 = udf.getAnnotation(ConstantFieldsSecondExcept.class);
+		final OutCardBounds bounds = udf.getAnnotation(OutCardBounds.class);
+		
+		return notConstant1 != null && notConstant1.fields().length == 0 &&
+			notConstant2 != null && notConstant2.fields().length == 0 &&
+			bounds != null && bounds.lowerBound() == 1 && bounds.upperBound() == 1;
+	}
+	
+	/**
+	 * Gets the lists of inputs of the given contract, one list per logical input.
+	 * 
+	 * @param c The contract to get the inputs of.
+	 * @return The lists of inputs.
+	 */
+	private static List<List<Contract>> getInputLists(Contract c)
+	{
+		final List<List<Contract>> lists = new ArrayList<List<Contract>>(2);
+		if (c instanceof DualInputContract<?>) {
+			lists.add(((DualInputContract<?>) c).getFirstInputs());
+			lists.add(((DualInputContract<?>) c).getSecondInputs());
+		} else if (c instanceof SingleInputContract<?>) {
+			lists.add(((SingleInputContract<?>) c).getInputs());
+		} else if (c instanceof GenericDataSink) {
+			lists.add(((GenericDataSink) c).getInputs());
+		}
+		return lists;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * An input of a cluster of matches.
+	 */
+	private static final class Leaf
+	{
+		private final List<Contract> inputs; // the contracts producing the input
+		
+		private final long numRecords; // the estimated number of records
+		
+		private final double width; // the estimated average record width in bytes
+		
+		private final OptimizerNode node; // the node holding the estimates of the input
+		
+		private final Set<Integer> fields = new HashSet<Integer>(); // the fields known to be in the input
+		
+		private Leaf(List<Contract> inputs, OptimizerNode node)
+		{
+			this.inputs = inputs;
+			this.node = node;
+			this.numRecords = node.getEstimatedNumRecords();
+			this.width = this.numRecords > 0 ? node.getEstimatedOutputSize() / (double) this.numRecords : -1.0;
+		}
+		
+		private double getDistinctCount(int[] keys)
+		{
+			final long distinct = this.node.getEstimatedCardinality(new FieldSet(keys));
+			return distinct > 0 && distinct < this.numRecords ? distinct : this.numRecords;
+		}
+	}
+	
+	/**
+	 * A match of a cluster, describing which inputs it joins on which fields.
+	 */
+	private static final class Edge
+	{
+		private final MatchContract contract; // the match of the plan
+		
+		private final int inputs1; // the bit mask of the cluster inputs below the first input
+		
+		private final int inputs2; // the bit mask of the cluster inputs below the second input
+		
+		private final int[] keys1; // the key fields of the first input
+		
+		private final int[] keys2; // the key fields of the second input
+		
+		private int leaf1 = -1; // the cluster input holding the key fields of the first input
+		
+		private int leaf2 = -1; // the cluster input holding the key fields of the second input
+		
+		private Edge(MatchContract contract, int inputs1, int inputs2)
+		{
+			this.contract = contract;
+			this.inputs1 = inputs1;
+			this.inputs2 = inputs2;
+			this.keys1 = contract.getKeyColumnNumbers(0);
+			this.keys2 = contract.getKeyColumnNumbers(1);
+		}
+	}
+	
+	/**
+	 * A tree of reorderable matches.
+	 */
+	private final class Cluster
+	{
+		private final MatchContract root; // the root match of the plan
+		
+		private final List<Leaf> leaves = new ArrayList<Leaf>();
+		
+		private final List<Edge> edges = new ArrayList<Edge>();
+		
+		// the dynamic programming table, indexed by the bit mask of the joined inputs
+		private double[] cardinality;
+		
+		private double[] cost;
+		
+		private int[] split;
+		
+		private Edge[] join;
+		
+		private Cluster(MatchContract root)
+		{
+			this.root = root;
+		}
+		
+		/**
+		 * Collects the inputs and matches of the tree below the given match.
+		 * 
+		 * @return The bit mask of the inputs below the match, or -1, if the inputs are unsuited.
+		 */
+		private int collect(MatchContract match, Set<Contract> absorbed)
+		{
+			final TwoInputNode node = (TwoInputNode) JoinOrderOptimizer.this.con2node.get(match);
+			final int[] masks = new int[2];
+			
+			for (int i = 0; i < 2; i++) {
+				final List<Contract> inputs = i == 0 ? match.getFirstInputs() : match.getSecondInputs();
+				
+				if (inputs.size() == 1 && absorbed.contains(inputs.get(0))) {
+					masks[i] = collect((MatchContract) inputs.get(0), absorbed);
+				} else if (this.leaves.size() < MAX_CLUSTER_INPUTS) {
+					final Leaf leaf = new Leaf(inputs, i == 0 ? node.getFirstPredNode() : node.getSecondPredNode());
+					if (leaf.numRecords <= 0 || leaf.width <= 0.0) {
+						return -1;
+					}
+					masks[i] = 1 << this.leaves.size();
+					this.leaves.add(leaf);
+				} else {
+					return -1;
+				}
+				
+				if (masks[i] == -1) {
+					return -1;
+				}
+			}
+			
+			this.edges.add(new Edge(match, masks[0], masks[1]));
+			return masks[0] | masks[1];
+		}
+		
+		/**
+		 * Determines for every match the cluster inputs that hold its key fields.
+		 * 
+		 * @return True, if all key fields could be attributed unambiguously, false otherwise.
+		 */
+		private boolean attributeKeys()
+		{
+			// the key fields of matches that directly join a cluster input are in that input
+			final Map<Integer, Integer> fieldToLeaf = new HashMap<Integer, Integer>();
+			for (Edge e : this.edges) {
+				if (Integer.bitCount(e.inputs1) == 1) {
+					e.leaf1 = Integer.numberOfTrailingZeros(e.inputs1);
+					if (!addFields(e.leaf1, e.keys1, fieldToLeaf)) {
+						return false;
+					}
+				}
+				if (Integer.bitCount(e.inputs2) == 1) {
+					e.leaf2 = Integer.numberOfTrailingZeros(e.inputs2);
+					if (!addFields(e.leaf2, e.keys2, fieldToLeaf)) {
+						return false;
+					}
+				}
+			}
+			
+			// the key fields of joined inputs are in the input that is known to hold them
+			for (Edge e : this.edges) {
+				if (e.leaf1 == -1 && (e.leaf1 = findLeaf(e.inputs1, e.keys1, fieldToLeaf)) == -1) {
+					return false;
+				}
+				if (e.leaf2 == -1 && (e.leaf2 = findLeaf(e.inputs2, e.keys2, fieldToLeaf)) == -1) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private boolean addFields(int leaf, int[] keys, Map<Integer, Integer> fieldToLeaf)
+		{
+			for (int key : keys) {
+				final Integer previous = fieldToLeaf.put(key, leaf);
+				if (previous != null && previous != leaf) {
+					// two inputs hold the same field, the result depends on the join order
+					return false;
+				}
+				this.leaves.get(leaf).fields.add(key);
+			}
+			return true;
+		}
+		
+		private int findLeaf(int inputs, int[] keys, Map<Integer, Integer> fieldToLeaf)
+		{
+			final Integer leaf = fieldToLeaf.get(keys[0]);
+			if (leaf == null || (inputs & (1 << leaf)) == 0) {
+				return -1;
+			}
+			for (int key : keys) {
+				if (!this.leaves.get(leaf).fields.contains(key)) {
+					return -1;
+				}
+			}
+			return leaf;
+		}
+		
+		/**
+		 * Enumerates the join orders of the cluster and creates the matches for the cheapest one.
+		 * 
+		 * @return The root of the new join order, or null, if the order of the plan is kept.
+		 */
+		private Contract reorder()
+		{
+			final int numLeaves = this.leaves.size();
+			final int all = (1 << numLeaves) - 1;
+			
+			this.cardinality = new double[all + 1];
+			this.cost = new double[all + 1];
+			this.split = new int[all + 1];
+			this.join = new Edge[all + 1];
+			
+			for (int i = 0; i < numLeaves; i++) {
+				this.cardinality[1 << i] = this.leaves.get(i).numRecords;
+			}
+			
+			// bushy join trees over connected sets of inputs, without cross products
+			for (int set = 1; set <= all; set++) {
+				if (Integer.bitCount(set) < 2) {
+					continue;
+				}
+				this.cost[set] = Double.POSITIVE_INFINITY;
+				
+				for (int sub = (set - 1) & set; sub > 0; sub = (sub - 1) & set) {
+					final int rest = set ^ sub;
+					if (sub > rest || this.join[sub] == null && Integer.bitCount(sub) > 1 ||
+							this.join[rest] == null && Integer.bitCount(rest) > 1)
+					{
+						continue;
+					}
+					
+					final Edge e = getConnectingEdge(sub, rest);
+					if (e == null) {
+						continue;
+					}
+					
+					final double card = this.cardinality[sub] * this.cardinality[rest] / getDistinctCount(e);
+					final double c = this.cost[sub] + this.cost[rest] + (set == all ? 0.0 : card * getWidth(set));
+					if (c < this.cost[set]) {
+						this.cost[set] = c;
+						this.cardinality[set] = card;
+						this.split[set] = sub;
+						this.join[set] = e;
+					}
+				}
+			}
+			
+			// the cost of the order given in the plan
+			double planCost = 0.0;
+			for (Edge e : this.edges) {
+				final int set = e.inputs1 | e.inputs2;
+				if (set != all) {
+					planCost += this.cardinality[set] * getWidth(set);
+				}
+			}
+			
+			if (this.join[all] == null || this.cost[all] >= planCost * (1.0 - MIN_RELATIVE_SAVINGS)) {
+				return null;
+			}
+			
+			if (LOG.isInfoEnabled()) {
+				LOG.info("Reordering the matches below '" + this.root.getName() + "'. Estimated intermediate result size " +
+					"drops from " + (long) planCost + " to " + (long) this.cost[all] + " bytes.");
+			}
+			
+			final MatchContract newRoot = (MatchContract) build(all).get(0);
+			copyHints(this.root.getCompilerHints(), newRoot.getCompilerHints());
+			return newRoot;
+		}
+		
+		private Edge getConnectingEdge(int set1, int set2)
+		{
+			Edge connecting = null;
+			for (Edge e : this.edges) {
+				final int m1 = 1 << e.leaf1;
+				final int m2 = 1 << e.leaf2;
+				if ((set1 & m1) != 0 && (set2 & m2) != 0 || (set1 & m2) != 0 && (set2 & m1) != 0) {
+					if (connecting != null) {
+						return null;
+					}
+					connecting = e;
+				}
+			}
+			return connecting;
+		}
+		
+		private double getDistinctCount(Edge e)
+		{
+			final double d1 = this.leaves.get(e.leaf1).getDistinctCount(e.keys1);
+			final double d2 = this.leaves.get(e.leaf2).getDistinctCount(e.keys2);
+			return Math.max(1.0, Math.max(d1, d2));
+		}
+		
+		private double getWidth(int set)
+		{
+			double width = 0.0;
+			for (int i = 0; i < this.leaves.size(); i++) {
+				if ((set & (1 << i)) != 0) {
+					width += this.leaves.get(i).width;
+				}
+			}
+			return width;
+		}
+		
+		/**
+		 * Creates the matches that join the given set of inputs in the chosen order.
+		 * 
+		 * @return The contracts producing the joined inputs.
+		 */
+		private List<Contract> build(int set)
+		{
+			if (Integer.bitCount(set) == 1) {
+				return this.leaves.get(Integer.numberOfTrailingZeros(set)).inputs;
+			}
+			
+			final Edge e = this.join[set];
+			final int sub = this.split[set];
+			
+			// keep the inputs on the sides of the match they had in the plan
+			final int set1 = (sub & (1 << e.leaf1)) != 0 ? sub : set ^ sub;
+			final int set2 = set ^ set1;
+			
+			final Class<? extends Key>[] keyClasses = e.contract.getKeyClasses();
+			final MatchContract.Builder builder = MatchContract.builder(e.contract.getUserCodeClass(),
+				keyClasses[0], e.keys1[0], e.keys2[0]);
+			for (int i = 1; i < keyClasses.length; i++) {
+				builder.keyField(keyClasses[i], e.keys1[i], e.keys2[i]);
+			}
+			
+			final MatchContract match = builder.inputs1(build(set1)).inputs2(build(set2))
+				.name(e.contract.getName()).build();
+			match.getParameters().addAll(e.contract.getParameters(), "");
+			match.setDegreeOfParallelism(e.contract.getDegreeOfParallelism());
+			return Collections.<Contract>singletonList(match);
+		}
+	}
+	
+	/**
+	 * Copies the hints that describe the result of a cluster to the new root of the cluster.
+	 */
+	private static void copyHints(CompilerHints from, CompilerHints to)
+	{
+		to.getDistinctCounts().putAll(from.getDistinctCounts());
+		to.getAvgNumRecordsPerDistinctFields().putAll(from.getAvgNumRecordsPerDistinctFields());
+		if (from.getAvgBytesPerRecord() >= 0.0f) {
+			to.setAvgBytesPerRecord(from.getAvgBytesPerRecord());
+		}
+		if (from.getUniqueFields() != null) {
+			to.setUniqueField(from.getUniqueFields());
+		}
+	}
+}
@@ -117,6 +117,16 @@ public class PactCompiler {
 	 */
 	public static final String HINT_SHIP_STRATEGY_REPARTITION = "SHIP_REPARTITION";
 
+	/**
+	 * Value for the shipping strategy compiler hint that enforces a <b>skew-aware repartition</b> strategy on
+	 * the input channel. The strategy partitions by hash, but spreads the records of very frequent keys over
+	 * several receivers, whose partial results are merged afterwards. It is only applicable to the input of
+	 * combinable <i>Reduce</i> contracts.
+	 * 
+	 * @see #HINT_SHIP_STRATEGY
+	 */
+	public static final String HINT_SHIP_STRATEGY_REPARTITION_SKEW = "SHIP_REPARTITION_SKEW";
+
 	/**
 	 * Value for the shipping strategy compiler hint that enforces a <b>broadcast</b> strategy on the
 	 * input channel.
@@ -164,6 +174,15 @@ public class PactCompiler {
 	 */
 	public static final String HINT_LOCAL_STRATEGY_COMBINING_SORT = "LOCAL_STRATEGY_COMBINING_SORT";
 	
+	/**
+	 * Value for the local strategy compiler hint that enforces a <b>hash based</b> grouping, which keeps one
+	 * partial aggregate per key, computed with the combine method. Spilled parts of the data are grouped by sorting.
+	 * For example, a <i>Reduce</i> contract with a combiner will aggregate its data in a hash table.
+	 * 
+	 * @see #HINT_LOCAL_STRATEGY
+	 */
+	public static final String HINT_LOCAL_STRATEGY_HASH_AGGREGATE = "LOCAL_STRATEGY_HASH_AGGREGATE";
+	
 	/**
 	 * Value for the local strategy compiler hint that enforces a <b>sort merge based</b> local strategy on both
 	 * inputs with subsequent merging of inputs. 
@@ -353,6 +372,11 @@ public class PactCompiler {
 	 */
 	private final int maxIntraNodeParallelism;
 
+	/**
+	 * Flag indicating whether chains of matches are reordered by their estimated cost.
+	 */
+	private final boolean joinReordering;
+
 	// ------------------------------------------------------------------------
 	// Constructor & Setup
 	// ------------------------------------------------------------------------
@@ -457,6 +481,10 @@ public class PactCompiler {
 		}
 		this.maxIntraNodeParallelism = maxInNodePar;
 
+		// determine whether to reorder matches
+		this.joinReordering = config.getBoolean(PactConfigConstants.COMPILER_JOIN_REORDERING_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_JOIN_REORDERING);
+
 		// assign the connection to the job-manager
 		if (jobManagerConnection != null) {
 			this.jobManagerAddress = jobManagerConnection;
@@ -490,6 +518,7 @@ public class PactCompiler {
 	 * The compilation process itself goes through several phases:
 	 * <ol>
 	 * <li>Create <tt>OptimizerNode</tt> representations of the PACTs, assign parallelism and compute size estimates.</li>
+	 * <li>Reorder connected matches by their estimated cost, where the annotations of their stubs allow it.</li>
 	 * <li>Compute interesting properties and auxiliary structures.</li>
 	 * <li>Enumerate plan alternatives. This cannot be done in the same step as the interesting property computation (as
 	 * opposed to the Database approaches), because we support plans that are not trees.</li>
@@ -542,6 +571,7 @@ public class PactCompiler {
 	 * and all channels have a shipping strategy assigned. The process goes through several phases:
 	 * <ol>
 	 * <li>Create <tt>OptimizerNode</tt> representations of the PACTs, assign parallelism and compute size estimates.</li>
+	 * <li>Reorder connected matches by their estimated cost, where the annotations of their stubs allow it.</li>
 	 * <li>Compute interesting properties and auxiliary structures.</li>
 	 * <li>Enumerate plan alternatives. This cannot be done in the same step as the interesting property computation (as
 	 * opposed to the Database approaches), because we support plans that are not trees.</li>
@@ -642,6 +672,35 @@ public class PactCompiler {
 		GraphCreatingVisitor graphCreator = new GraphCreatingVisitor(this.statistics, maxMachinesJob, defaultParallelism, true);
 		pactPlan.accept(graphCreator);
 
+		// with the estimates in place, enumerate the orders of connected matches. if a cheaper order
+		// was found for any of them, create the optimizer plan representation again, with the reordered
+		// matches in place of the ones given in the plan
+		if (this.joinReordering) {
+			final Map<Contract, Contract> substitutes =
+				new JoinOrderOptimizer(graphCreator.con2node).computeSubstitutes(pactPlan);
+			if (!substitutes.isEmpty()) {
+				graphCreator = new GraphCreatingVisitor(this.statistics, maxMachinesJob, defaultParallelism, true,
+					substitutes);
+				pactPlan.accept(graphCreator);
+			}
+		}
+
+		// estimate the memory that the memory consuming tasks will get, so that memory dependent strategies
+		// can be costed. every node other than the sources and sinks is assumed to consume memory, a
+		// combinable reduce twice for its combiner
+		final Set<OptimizerNode> graphNodes = new HashSet<OptimizerNode>(graphCreator.con2node.values());
+		int memoryConsumers = 0;
+		for (OptimizerNode n : graphNodes) {
+			if (!(n instanceof DataSourceNode || n instanceof DataSinkNode)) {
+				final boolean combinable = n instanceof ReduceNode && ((ReduceNode) n).isCombineable();
+				memoryConsumers += (combinable ? 2 : 1) * Math.max(1, n.getInstancesPerMachine());
+			}
+		}
+		final int estimatedMemoryPerTask = memoryMegabytes / Math.max(1, memoryConsumers);
+		for (OptimizerNode n : graphNodes) {
+			n.setEstimatedMemoryPerTask(estimatedMemoryPerTask);
+		}
+
 		// if we have a plan with multiple data sinks, add logical optimizer nodes that have two data-sinks as children
 		// each until we have only a single root node. This allows to transparently deal with the nodes with
 		// multiple outputs
@@ -753,10 +812,22 @@ public class PactCompiler {
 
 		private final boolean computeEstimates; // flag indicating whether to compute additional info
 
+		private final Map<Contract, Contract> substitutes; // contracts that are visited in place of others
+
 		/**
 		 * Creates a new node creating visitor.
 		 */
 		private GraphCreatingVisitor(DataStatistics statistics, int maxMachines, int defaultParallelism, boolean computeEstimates)
+		{
+			this(statistics, maxMachines, defaultParallelism, computeEstimates, new HashMap<Contract, Contract>());
+		}
+
+		/**
+		 * Creates a new node creating visitor that visits the given substitutes in place of the contracts
+		 * they are mapped from.
+		 */
+		private GraphCreatingVisitor(DataStatistics statistics, int maxMachines, int defaultParallelism,
+				boolean computeEstimates, Map<Contract, Contract> substitutes)
 		{
 			this.con2node = new HashMap<Contract, OptimizerNode>();
 			this.sources = new ArrayList<DataSourceNode>(4);
@@ -770,6 +841,7 @@ public class PactCompiler {
 			this.id = 1;
 
 			this.computeEstimates = computeEstimates;
+			this.substitutes = substitutes;
 		}
 
 		/*
@@ -784,6 +856,14 @@ public class PactCompiler {
 				return false;
 			}
 
+			// create the nodes for the substitute instead and let the consumers of the contract connect to them
+			final Contract substitute = this.substitutes.get(c);
+			if (substitute != null) {
+				substitute.accept(this);
+				this.con2node.put(c, this.con2node.get(substitute));
+				return false;
+			}
+
 			OptimizerNode n = null;
 
 			// create a node for the pact (or sink or source) if we have not been here before
@@ -1203,6 +1283,7 @@ public class PactCompiler {
 					(
 					conn.getShipStrategy().type() == ShipStrategyType.BROADCAST ||
 					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH || 
+					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH_SKEW || 
 					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE || 
 					conn.getShipStrategy().type() == ShipStrategyType.SFR
 					)
@@ -31,12 +31,16 @@ public abstract class CostEstimator {
 	public abstract void getRangePartitionCost(PactConnection conn, Costs costs);
 
 	public abstract void getHashPartitioningCost(PactConnection conn, Costs costs);
+	
+	public abstract void getSkewedHashPartitioningCost(PactConnection conn, Costs costs);
 
 	public abstract void getBroadcastCost(PactConnection conn, Costs costs);
 
 	// ------------------------------------------------------------------------
 
 	public abstract void getLocalSortCost(OptimizerNode node, PactConnection input, Costs costs);
+	
+	public abstract void getLocalHashAggregationCost(OptimizerNode node, PactConnection input, Costs costs);
 
 	public abstract void getLocalDoubleSortMergeCost(OptimizerNode node, PactConnection input1, PactConnection input2,
 			Costs costs);
@@ -83,6 +87,7 @@ public abstract class CostEstimator {
 		
 		globCost.setNetworkCost(0);
 		globCost.setSecondaryStorageCost(0);
+		globCost.setCpuCost(0);
 		
 		List<PactConnection> incomingConnections = n.getIncomingConnections();
 		
@@ -100,10 +105,14 @@ public abstract class CostEstimator {
 			case PARTITION_LOCAL_HASH:
 				tempGlobalCost.setNetworkCost(0);
 				tempGlobalCost.setSecondaryStorageCost(0);
+				tempGlobalCost.setCpuCost(0);
 				break;
 			case PARTITION_HASH:
 				getHashPartitioningCost(connection, tempGlobalCost);
 				break;
+			case PARTITION_HASH_SKEW:
+				getSkewedHashPartitioningCost(connection, tempGlobalCost);
+				break;
 			case PARTITION_RANGE:
 				getRangePartitionCost(connection, tempGlobalCost);
 				break;
@@ -139,11 +148,15 @@ public abstract class CostEstimator {
 		case NONE:
 			locCost.setNetworkCost(0);
 			locCost.setSecondaryStorageCost(0);
+			locCost.setCpuCost(0);
 			break;
 		case COMBININGSORT:
 		case SORT:
 			getLocalSortCost(n, primConn, locCost);
 			break;
+		case HASH_AGGREGATE:
+			getLocalHashAggregationCost(n, primConn, locCost);
+			break;
 		case SORT_BOTH_MERGE:
 			getLocalDoubleSortMergeCost(n, primConn, secConn, locCost);
 			break;
@@ -0,0 +1,347 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.types.TypePairComparator;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordPairComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.sort.NormalizedKeySorter;
+import eu.stratosphere.pact.runtime.sort.QuickSort;
+
+/**
+ * A micro-benchmark that calibrates the coefficients of the {@link CpuCostModel} for the local machine. It runs the
+ * sort, merge, hash and nested loop primitives of the runtime against a local memory manager and I/O manager and
+ * prints the measured coefficients as configuration entries, which can be added to the configuration of the
+ * optimizer.
+ * <p>
+ * Usage: <code>CostModelCalibrator [memory in megabytes] [temp directory]</code>
+ */
+public class CostModelCalibrator {
+
+	private static final int DEFAULT_MEMORY_MEGABYTES = 64;
+
+	private static final int PAGE_SIZE = 32 * 1024;
+
+	private static final int NUM_WARMUP_ROUNDS = 2;
+
+	private static final int NUM_NESTED_LOOP_RECORDS = 2000;
+
+	private final DefaultMemoryManager memoryManager;
+
+	private final IOManager ioManager;
+
+	private final AbstractInvokable owner;
+
+	private final int numPages;
+
+	/**
+	 * Creates a new calibrator that runs the benchmarks with the given amount of memory.
+	 * 
+	 * @param memorySize
+	 *        The amount of memory, in bytes.
+	 * @param ioManager
+	 *        The I/O manager to measure the secondary storage with.
+	 */
+	public CostModelCalibrator(long memorySize, IOManager ioManager) {
+		this.memoryManager = new DefaultMemoryManager(memorySize, PAGE_SIZE);
+		this.ioManager = ioManager;
+		this.numPages = (int) (memorySize / PAGE_SIZE);
+		this.owner = new AbstractInvokable() {
+			@Override
+			public void registerInputOutput() {}
+
+			@Override
+			public void invoke() {}
+		};
+	}
+
+	/**
+	 * Runs all benchmarks, including warm-up rounds, and returns the calibrated model.
+	 * 
+	 * @return The calibrated CPU cost model.
+	 * @throws Exception
+	 *         Thrown, if one of the benchmarks fails.
+	 */
+	public CpuCostModel calibrate() throws Exception {
+		for (int i = 0; i < NUM_WARMUP_ROUNDS; i++) {
+			measureSortAndMerge();
+			measureHash();
+			measureNestedLoop();
+		}
+
+		final int[] sortAndMerge = measureSortAndMerge();
+		final int[] hash = measureHash();
+		final int nestedLoop = measureNestedLoop();
+		final int disk = measureDisk();
+
+		return new CpuCostModel(sortAndMerge[0], sortAndMerge[1], hash[0], hash[1], nestedLoop, disk);
+	}
+
+	/**
+	 * Releases the memory of the calibrator.
+	 */
+	public void shutdown() {
+		this.memoryManager.releaseAll(this.owner);
+		this.memoryManager.shutdown();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Measures the nanoseconds per comparison of the quick sort over a sorter that fills all memory, and the
+	 * nanoseconds per record of a merge that compares each record of the sorted sequence with its predecessor.
+	 * 
+	 * @return An array holding the sort and the merge coefficient.
+	 */
+	private int[] measureSortAndMerge() throws Exception {
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, this.numPages);
+		final PactRecordComparator comparator = createComparator();
+		final NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(
+			PactRecordSerializer.get(), comparator, memory);
+
+		final RecordGenerator generator = new RecordGenerator(Integer.MAX_VALUE, true);
+		final PactRecord record = new PactRecord();
+		while (generator.next(record) && sorter.write(record))
+			;
+
+		final int numRecords = sorter.size();
+		long start = System.nanoTime();
+		new QuickSort().sort(sorter);
+		final long sortNanos = System.nanoTime() - start;
+
+		// the merge compares every record with the current head of the other input
+		final PactRecordComparator otherComparator = comparator.duplicate();
+		long order = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < numRecords; i++) {
+			sorter.getRecord(record, i);
+			comparator.setReference(record);
+			if (i > 0) {
+				order += comparator.compareToReference(otherComparator);
+			}
+			otherComparator.setReference(record);
+		}
+		final long mergeNanos = System.nanoTime() - start;
+
+		this.memoryManager.release(sorter.dispose());
+		if (order == 0 && numRecords > 2) {
+			throw new IllegalStateException("The sort of the calibration benchmark produced duplicate keys.");
+		}
+
+		final double comparisons = numRecords * (Math.log(numRecords) / Math.log(2));
+		return new int[] { toCoefficient(sortNanos / comparisons), toCoefficient(mergeNanos / (double) numRecords) };
+	}
+
+	/**
+	 * Measures the nanoseconds per record to build and to probe a hash table that fits into memory.
+	 * 
+	 * @return An array holding the build side and the probe side coefficient.
+	 */
+	private int[] measureHash() throws Exception {
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, this.numPages);
+		final PactRecordComparator buildComparator = createComparator();
+		final PactRecordComparator probeComparator = createComparator();
+		final TypePairComparator<PactRecord, PactRecord> pairComparator =
+			PactRecordPairComparatorFactory.get().createComparator12(probeComparator, buildComparator);
+
+		// use a quarter of the memory for the build side, to stay clear of spilling
+		final int numRecords = (int) (((long) this.numPages) * PAGE_SIZE / 4 / 16);
+		final MutableHashTable<PactRecord, PactRecord> table = new MutableHashTable<PactRecord, PactRecord>(
+			PactRecordSerializer.get(), PactRecordSerializer.get(), buildComparator, probeComparator, pairComparator,
+			memory, this.ioManager);
+
+		long start = System.nanoTime();
+		table.open(new RecordGenerator(numRecords, false), new RecordGenerator(numRecords, false));
+		final long buildNanos = System.nanoTime() - start;
+
+		final PactRecord record = new PactRecord();
+		start = System.nanoTime();
+		while (table.nextRecord()) {
+			final MutableHashTable.HashBucketIterator<PactRecord, PactRecord> matches = table.getBuildSideIterator();
+			while (matches.next(record))
+				;
+		}
+		final long probeNanos = System.nanoTime() - start;
+
+		table.close();
+		this.memoryManager.release(table.getFreedMemory());
+
+		return new int[] { toCoefficient(buildNanos / (double) numRecords),
+			toCoefficient(probeNanos / (double) numRecords) };
+	}
+
+	/**
+	 * Measures the nanoseconds per pair of records that a nested loop spends to evaluate the pair.
+	 * 
+	 * @return The nested loop coefficient.
+	 */
+	private int measureNestedLoop() throws Exception {
+		final PactRecord[] inner = new PactRecord[NUM_NESTED_LOOP_RECORDS];
+		final RecordGenerator generator = new RecordGenerator(NUM_NESTED_LOOP_RECORDS, true);
+		for (int i = 0; i < inner.length; i++) {
+			inner[i] = new PactRecord();
+			generator.next(inner[i]);
+		}
+
+		final TypePairComparator<PactRecord, PactRecord> pairComparator =
+			PactRecordPairComparatorFactory.get().createComparator12(createComparator(), createComparator());
+
+		long matches = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < inner.length; i++) {
+			pairComparator.setReference(inner[i]);
+			for (int k = 0; k < inner.length; k++) {
+				if (pairComparator.equalToReference(inner[k])) {
+					matches++;
+				}
+			}
+		}
+		final long nanos = System.nanoTime() - start;
+
+		if (matches < inner.length) {
+			throw new IllegalStateException("The nested loop of the calibration benchmark missed matches.");
+		}
+		return toCoefficient(nanos / (((double) inner.length) * inner.length));
+	}
+
+	/**
+	 * Measures the picoseconds per byte to write a spill file and read it back.
+	 * 
+	 * @return The secondary storage coefficient.
+	 */
+	private int measureDisk() throws Exception {
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, this.numPages);
+		final Channel.ID channel = this.ioManager.createChannel();
+
+		final long start = System.nanoTime();
+		final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channel);
+		for (int i = 0; i < memory.size(); i++) {
+			writer.writeBlock(memory.get(i));
+		}
+		for (int i = 0; i < memory.size(); i++) {
+			writer.getNextReturnedSegment();
+		}
+		writer.close();
+
+		final BlockChannelReader reader = this.ioManager.createBlockChannelReader(channel);
+		for (int i = 0; i < memory.size(); i++) {
+			reader.readBlock(memory.get(i));
+		}
+		for (int i = 0; i < memory.size(); i++) {
+			reader.getNextReturnedSegment();
+		}
+		reader.closeAndDelete();
+		final long nanos = System.nanoTime() - start;
+
+		this.memoryManager.release(memory);
+
+		// every byte has been written and read once
+		final double bytes = 2.0 * memory.size() * PAGE_SIZE;
+		return Math.max(1, (int) Math.round(nanos * 1000 / bytes));
+	}
+
+	// ------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private static PactRecordComparator createComparator() {
+		return new PactRecordComparator(new int[] { 0 }, new Class[] { PactInteger.class });
+	}
+
+	private static int toCoefficient(double nanos) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.round(nanos));
+	}
+
+	/**
+	 * Generates records with an integer key and an integer value, either with ascending or with pseudo-random keys.
+	 */
+	private static final class RecordGenerator implements MutableObjectIterator<PactRecord> {
+
+		private final PactInteger key = new PactInteger();
+
+		private final PactInteger value = new PactInteger();
+
+		private final int numRecords;
+
+		private final boolean random;
+
+		private int count;
+
+		private RecordGenerator(int numRecords, boolean random) {
+			this.numRecords = numRecords;
+			this.random = random;
+		}
+
+		@Override
+		public boolean next(PactRecord target) {
+			if (this.count >= this.numRecords) {
+				return false;
+			}
+			// a multiplicative hash spreads the keys, while keeping them unique
+			this.key.setValue(this.random ? this.count * 0x9E3779B1 : this.count);
+			this.value.setValue(this.count++);
+			target.setField(0, this.key);
+			target.setField(1, this.value);
+			return true;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Runs the calibration and prints the coefficients as configuration entries.
+	 * 
+	 * @param args
+	 *        The optional amount of memory in megabytes, and the optional temp directory.
+	 * @throws Exception
+	 *         Thrown, if the calibration fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MEMORY_MEGABYTES;
+		final IOManager ioManager = args.length > 1 ? new IOManager(args[1]) : new IOManager();
+
+		final CostModelCalibrator calibrator = new CostModelCalibrator(megabytes * 1024L * 1024L, ioManager);
+		final CpuCostModel model;
+		try {
+			model = calibrator.calibrate();
+		} finally {
+			calibrator.shutdown();
+			ioManager.shutdown();
+		}
+
+		System.out.println(CpuCostModel.SORT_COMPARISON_NANOS_KEY + ": " + model.getSortComparisonNanos());
+		System.out.println(CpuCostModel.MERGE_RECORD_NANOS_KEY + ": " + model.getMergeRecordNanos());
+		System.out.println(CpuCostModel.HASH_BUILD_RECORD_NANOS_KEY + ": " + model.getHashBuildRecordNanos());
+		System.out.println(CpuCostModel.HASH_PROBE_RECORD_NANOS_KEY + ": " + model.getHashProbeRecordNanos());
+		System.out.println(CpuCostModel.NESTED_LOOP_PAIR_NANOS_KEY + ": " + model.getNestedLoopPairNanos());
+		System.out.println(CpuCostModel.DISK_BYTE_PICOS_KEY + ": " + model.getDiskBytePicos());
+	}
+}
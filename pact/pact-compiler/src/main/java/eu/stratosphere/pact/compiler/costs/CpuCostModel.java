@@ -0,0 +1,275 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+
+/**
+ * The CPU cost model of the optimizer. It holds per-strategy coefficients that describe the time spent by the
+ * local strategies per record (or per pair of records), and converts that time into the number of bytes of secondary
+ * storage I/O that take the same time, such that the CPU cost can be compared and added to the I/O costs.
+ * <p>
+ * The default coefficients are reference values. The coefficients of a specific machine may be measured with the
+ * {@link CostModelCalibrator} and set in the configuration.
+ */
+public class CpuCostModel {
+
+	/**
+	 * The config parameter defining the nanoseconds that a sort spends per record comparison.
+	 */
+	public static final String SORT_COMPARISON_NANOS_KEY = "compiler.costs.cpu.sortComparisonNanos";
+
+	/**
+	 * The config parameter defining the nanoseconds that a merge spends per record.
+	 */
+	public static final String MERGE_RECORD_NANOS_KEY = "compiler.costs.cpu.mergeRecordNanos";
+
+	/**
+	 * The config parameter defining the nanoseconds that a hash table spends per inserted record.
+	 */
+	public static final String HASH_BUILD_RECORD_NANOS_KEY = "compiler.costs.cpu.hashBuildRecordNanos";
+
+	/**
+	 * The config parameter defining the nanoseconds that a hash table spends per probe record.
+	 */
+	public static final String HASH_PROBE_RECORD_NANOS_KEY = "compiler.costs.cpu.hashProbeRecordNanos";
+
+	/**
+	 * The config parameter defining the nanoseconds that a nested loop spends per pair of records.
+	 */
+	public static final String NESTED_LOOP_PAIR_NANOS_KEY = "compiler.costs.cpu.nestedLoopPairNanos";
+
+	/**
+	 * The config parameter defining the picoseconds that the secondary storage spends per written or read byte.
+	 */
+	public static final String DISK_BYTE_PICOS_KEY = "compiler.costs.cpu.diskBytePicos";
+
+	private static final int DEFAULT_SORT_COMPARISON_NANOS = 40;
+
+	private static final int DEFAULT_MERGE_RECORD_NANOS = 60;
+
+	private static final int DEFAULT_HASH_BUILD_RECORD_NANOS = 150;
+
+	private static final int DEFAULT_HASH_PROBE_RECORD_NANOS = 100;
+
+	private static final int DEFAULT_NESTED_LOOP_PAIR_NANOS = 30;
+
+	private static final int DEFAULT_DISK_BYTE_PICOS = 10000;
+
+	// ------------------------------------------------------------------------
+
+	private final int sortComparisonNanos;
+
+	private final int mergeRecordNanos;
+
+	private final int hashBuildRecordNanos;
+
+	private final int hashProbeRecordNanos;
+
+	private final int nestedLoopPairNanos;
+
+	private final int diskBytePicos;
+
+	/**
+	 * Creates a new CPU cost model with the coefficients from the global configuration.
+	 */
+	public CpuCostModel() {
+		this(GlobalConfiguration.getInteger(SORT_COMPARISON_NANOS_KEY, DEFAULT_SORT_COMPARISON_NANOS),
+			GlobalConfiguration.getInteger(MERGE_RECORD_NANOS_KEY, DEFAULT_MERGE_RECORD_NANOS),
+			GlobalConfiguration.getInteger(HASH_BUILD_RECORD_NANOS_KEY, DEFAULT_HASH_BUILD_RECORD_NANOS),
+			GlobalConfiguration.getInteger(HASH_PROBE_RECORD_NANOS_KEY, DEFAULT_HASH_PROBE_RECORD_NANOS),
+			GlobalConfiguration.getInteger(NESTED_LOOP_PAIR_NANOS_KEY, DEFAULT_NESTED_LOOP_PAIR_NANOS),
+			GlobalConfiguration.getInteger(DISK_BYTE_PICOS_KEY, DEFAULT_DISK_BYTE_PICOS));
+	}
+
+	/**
+	 * Creates a new CPU cost model with the given coefficients.
+	 * 
+	 * @param sortComparisonNanos
+	 *        The nanoseconds that a sort spends per record comparison.
+	 * @param mergeRecordNanos
+	 *        The nanoseconds that a merge spends per record.
+	 * @param hashBuildRecordNanos
+	 *        The nanoseconds that a hash table spends per inserted record.
+	 * @param hashProbeRecordNanos
+	 *        The nanoseconds that a hash table spends per probe record.
+	 * @param nestedLoopPairNanos
+	 *        The nanoseconds that a nested loop spends per pair of records.
+	 * @param diskBytePicos
+	 *        The picoseconds that the secondary storage spends per written or read byte.
+	 */
+	public CpuCostModel(int sortComparisonNanos, int mergeRecordNanos, int hashBuildRecordNanos,
+			int hashProbeRecordNanos, int nestedLoopPairNanos, int diskBytePicos)
+	{
+		if (sortComparisonNanos < 0 || mergeRecordNanos < 0 || hashBuildRecordNanos < 0 || hashProbeRecordNanos < 0
+				|| nestedLoopPairNanos < 0) {
+			throw new IllegalArgumentException("The CPU cost coefficients must not be negative.");
+		}
+		if (diskBytePicos <= 0) {
+			throw new IllegalArgumentException("The secondary storage cost per byte must be positive.");
+		}
+
+		this.sortComparisonNanos = sortComparisonNanos;
+		this.mergeRecordNanos = mergeRecordNanos;
+		this.hashBuildRecordNanos = hashBuildRecordNanos;
+		this.hashProbeRecordNanos = hashProbeRecordNanos;
+		this.nestedLoopPairNanos = nestedLoopPairNanos;
+		this.diskBytePicos = diskBytePicos;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the nanoseconds that a sort spends per record comparison.
+	 * 
+	 * @return The nanoseconds that a sort spends per record comparison.
+	 */
+	public int getSortComparisonNanos() {
+		return this.sortComparisonNanos;
+	}
+
+	/**
+	 * Gets the nanoseconds that a merge spends per record.
+	 * 
+	 * @return The nanoseconds that a merge spends per record.
+	 */
+	public int getMergeRecordNanos() {
+		return this.mergeRecordNanos;
+	}
+
+	/**
+	 * Gets the nanoseconds that a hash table spends per inserted record.
+	 * 
+	 * @return The nanoseconds that a hash table spends per inserted record.
+	 */
+	public int getHashBuildRecordNanos() {
+		return this.hashBuildRecordNanos;
+	}
+
+	/**
+	 * Gets the nanoseconds that a hash table spends per probe record.
+	 * 
+	 * @return The nanoseconds that a hash table spends per probe record.
+	 */
+	public int getHashProbeRecordNanos() {
+		return this.hashProbeRecordNanos;
+	}
+
+	/**
+	 * Gets the nanoseconds that a nested loop spends per pair of records.
+	 * 
+	 * @return The nanoseconds that a nested loop spends per pair of records.
+	 */
+	public int getNestedLoopPairNanos() {
+		return this.nestedLoopPairNanos;
+	}
+
+	/**
+	 * Gets the picoseconds that the secondary storage spends per written or read byte.
+	 * 
+	 * @return The picoseconds that the secondary storage spends per written or read byte.
+	 */
+	public int getDiskBytePicos() {
+		return this.diskBytePicos;
+	}
+
+	/**
+	 * Gets the CPU cost of sorting the given number of records, assuming <i>n log n</i> comparisons.
+	 * 
+	 * @param numRecords
+	 *        The number of records, or -1, if unknown.
+	 * @return The CPU cost, in equivalent bytes of secondary storage I/O, or zero, if the number of records is unknown.
+	 */
+	public long getSortCost(long numRecords) {
+		if (numRecords < 2) {
+			return 0;
+		}
+		final double comparisons = numRecords * (Math.log(numRecords) / Math.log(2));
+		return toStorageCost(comparisons * this.sortComparisonNanos);
+	}
+
+	/**
+	 * Gets the CPU cost of merging sorted inputs with the given total number of records.
+	 * 
+	 * @param numRecords
+	 *        The number of records, or -1, if unknown.
+	 * @return The CPU cost, in equivalent bytes of secondary storage I/O, or zero, if the number of records is unknown.
+	 */
+	public long getMergeCost(long numRecords) {
+		return numRecords < 0 ? 0 : toStorageCost(((double) numRecords) * this.mergeRecordNanos);
+	}
+
+	/**
+	 * Gets the CPU cost of building a hash table from the given number of records and probing it with the given number
+	 * of records.
+	 * 
+	 * @param buildRecords
+	 *        The number of records on the build side, or -1, if unknown.
+	 * @param probeRecords
+	 *        The number of records on the probe side, or -1, if unknown.
+	 * @return The CPU cost, in equivalent bytes of secondary storage I/O, or zero, if a number of records is unknown.
+	 */
+	public long getHashCost(long buildRecords, long probeRecords) {
+		if (buildRecords < 0 || probeRecords < 0) {
+			return 0;
+		}
+		return toStorageCost(((double) buildRecords) * this.hashBuildRecordNanos +
+			((double) probeRecords) * this.hashProbeRecordNanos);
+	}
+
+	/**
+	 * Gets the CPU cost of a nested loop over the given numbers of records.
+	 * 
+	 * @param outerRecords
+	 *        The number of records on the outer side, or -1, if unknown.
+	 * @param innerRecords
+	 *        The number of records on the inner side, or -1, if unknown.
+	 * @return The CPU cost, in equivalent bytes of secondary storage I/O, or zero, if a number of records is unknown.
+	 */
+	public long getNestedLoopCost(long outerRecords, long innerRecords) {
+		if (outerRecords < 0 || innerRecords < 0) {
+			return 0;
+		}
+		return toStorageCost(((double) outerRecords) * innerRecords * this.nestedLoopPairNanos);
+	}
+
+	/**
+	 * Converts the given time into the number of bytes of secondary storage I/O that take the same time.
+	 * 
+	 * @param nanos
+	 *        The time in nanoseconds.
+	 * @return The equivalent number of bytes, capped at <code>Long.MAX_VALUE</code>.
+	 */
+	private long toStorageCost(double nanos) {
+		final double bytes = nanos * 1000 / this.diskBytePicos;
+		return bytes >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) bytes;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CpuCostModel [sortComparisonNanos=" + this.sortComparisonNanos + ", mergeRecordNanos="
+			+ this.mergeRecordNanos + ", hashBuildRecordNanos=" + this.hashBuildRecordNanos
+			+ ", hashProbeRecordNanos=" + this.hashProbeRecordNanos + ", nestedLoopPairNanos="
+			+ this.nestedLoopPairNanos + ", diskBytePicos=" + this.diskBytePicos + "]";
+	}
+}
@@ -28,10 +28,27 @@ import eu.stratosphere.pact.compiler.plan.PactConnection;
  * the typical estimate of <code>(n - 1) / n</code> (with <i>n</i> being the number of nodes), because for a parallelism
  * of 1, that would yield a shipping of zero bytes. While this is usually correct, the runtime scheduling may still
  * choose to move tasks to different nodes, so that we do not know that no data is shipped.
+ * <p>
+ * The local strategies are additionally charged with a CPU cost from the {@link CpuCostModel}, as far as the number
+ * of records of their inputs is known.
  * 
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  */
 public class FixedSizeClusterCostEstimator extends CostEstimator {
+	
+	/**
+	 * The fraction of a task's memory that the aggregates of a hash aggregation may occupy. The rest
+	 * is needed by the buckets of the hash table.
+	 */
+	private static final float HASH_AGGREGATION_MEMORY_FRACTION = 0.75f;
+	
+	/**
+	 * The number of counters that the skew-aware partitioning updates per record, one per row of its
+	 * count-min sketch.
+	 */
+	private static final int SKEW_SKETCH_UPDATES_PER_RECORD = 4;
+
+	private final CpuCostModel cpuCostModel;	// the model for the CPU costs of the local strategies
 
 	/**
 	 * Creates a new cost estimator that assumes four nodes, unless
@@ -39,6 +56,29 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 	 * 
 	 */
 	public FixedSizeClusterCostEstimator() {
+		this(new CpuCostModel());
+	}
+
+	/**
+	 * Creates a new cost estimator that uses the given model for the CPU costs of the local strategies.
+	 * 
+	 * @param cpuCostModel
+	 *        The model for the CPU costs.
+	 */
+	public FixedSizeClusterCostEstimator(CpuCostModel cpuCostModel) {
+		if (cpuCostModel == null) {
+			throw new NullPointerException("The CPU cost model must not be null.");
+		}
+		this.cpuCostModel = cpuCostModel;
+	}
+
+	/**
+	 * Gets the model for the CPU costs of the local strategies.
+	 * 
+	 * @return The CPU cost model.
+	 */
+	public CpuCostModel getCpuCostModel() {
+		return this.cpuCostModel;
 	}
 
 	/*
@@ -66,6 +106,7 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 				costs.setNetworkCost(-1);
 				costs.setSecondaryStorageCost(-1);
 			}
+			costs.setCpuCost(0);
 			
 		// TODO: reactivate if data distribution becomes available
 //		} else {
@@ -102,6 +143,36 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		}
 
 		costs.setSecondaryStorageCost(0);
+		costs.setCpuCost(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getSkewedHashPartitioningCost(
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getSkewedHashPartitioningCost(PactConnection conn, Costs costs) {
+		// the data is shipped twice: to the pre-aggregation vertex and from there to the reducer. conservative
+		// estimate: the pre-aggregation does not reduce the data. the pre-aggregation sorts the data, like the
+		// input in a two phase merge sort.
+		final long estOutShipSize = conn.getReplicationFactor() * conn.getSourcePact().getEstimatedOutputSize();
+		
+		if (estOutShipSize < 0) {
+			costs.setNetworkCost(-1);
+			costs.setSecondaryStorageCost(-1);
+		} else {
+			costs.setNetworkCost(2 * estOutShipSize);
+			costs.setSecondaryStorageCost(2 * estOutShipSize);
+		}
+		
+		// the sender updates one counter per row of its heavy hitter sketch for every record, the
+		// pre-aggregation sorts all records
+		final long n = getNumRecords(conn);
+		final long samplingCpu = this.cpuCostModel.getHashCost(0, n < 0 ? -1 : n * SKEW_SKETCH_UPDATES_PER_RECORD);
+		final long sortCpu = this.cpuCostModel.getSortCost(n);
+		costs.setCpuCost(samplingCpu + sortCpu < 0 ? Long.MAX_VALUE : samplingCpu + sortCpu);
 	}
 
 	/*
@@ -124,6 +195,7 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 
 		// no disk costs.
 		costs.setSecondaryStorageCost(0);
+		costs.setCpuCost(0);
 	}
 
 	/*
@@ -140,6 +212,39 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		long s = input.getSourcePact().getEstimatedOutputSize() * input.getReplicationFactor();
 		// we assume a two phase merge sort, so all in all 2 I/O operations per block
 		costs.setSecondaryStorageCost(s < 0 ? -1 : 2 * s);
+		costs.setCpuCost(this.cpuCostModel.getSortCost(getNumRecords(input)));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalHashAggregationCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalHashAggregationCost(OptimizerNode node, PactConnection input, Costs costs) {
+		costs.setNetworkCost(0);
+
+		final long s = input.getSourcePact().getEstimatedOutputSize() * input.getReplicationFactor();
+		final long a = node.getEstimatedOutputSize();
+		final long memory = (((long) node.getEstimatedMemoryPerTask()) << 20) * Math.max(1, node.getDegreeOfParallelism());
+		final long n = getNumRecords(input);
+		
+		// every input record is looked up in the table, and updates or inserts an aggregate
+		final long hashCpu = this.cpuCostModel.getHashCost(n, 0);
+		
+		if (a >= 0 && a <= memory * HASH_AGGREGATION_MEMORY_FRACTION) {
+			// the aggregates stay in memory, nothing is written to disk
+			costs.setSecondaryStorageCost(0);
+			costs.setCpuCost(hashCpu);
+		} else {
+			// the aggregates do not fit, or we cannot tell: the spilled partitions are sorted, which costs
+			// at least as much as sorting right away
+			costs.setSecondaryStorageCost(s < 0 ? -1 : 2 * s);
+			final long sortCpu = this.cpuCostModel.getSortCost(n);
+			costs.setCpuCost(hashCpu + sortCpu < 0 ? Long.MAX_VALUE : hashCpu + sortCpu);
+		}
 	}
 
 	/*
@@ -159,6 +264,11 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		
 		// we assume a two phase merge sort, so all in all 2 I/O operations per block for both sides
 		costs.setSecondaryStorageCost(s1 < 0 || s2 < 0 ? -1 : 2 * (s1 + s2));
+		
+		final long c1 = getNumRecords(input1);
+		final long c2 = getNumRecords(input2);
+		costs.setCpuCost(this.cpuCostModel.getSortCost(c1) + this.cpuCostModel.getSortCost(c2) +
+			(c1 < 0 || c2 < 0 ? 0 : this.cpuCostModel.getMergeCost(c1 + c2)));
 	}
 
 	/*
@@ -176,6 +286,11 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		long s1 = unsortedInput.getSourcePact().getEstimatedOutputSize() * unsortedInput.getReplicationFactor();
 		// we assume a two phase merge sort, so all in all 2 I/O operations per block for the unsorted input
 		costs.setSecondaryStorageCost(s1 < 0 ? -1 : 2 * s1);
+		
+		final long c1 = getNumRecords(unsortedInput);
+		final long c2 = getNumRecords(sortedInput);
+		costs.setCpuCost(this.cpuCostModel.getSortCost(c1) +
+			(c1 < 0 || c2 < 0 ? 0 : this.cpuCostModel.getMergeCost(c1 + c2)));
 	}
 
 	/*
@@ -192,6 +307,10 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 
 		// inputs are sorted. No network and secondary storage costs produced
 		costs.setSecondaryStorageCost(0);
+		
+		final long c1 = getNumRecords(input1);
+		final long c2 = getNumRecords(input2);
+		costs.setCpuCost(c1 < 0 || c2 < 0 ? 0 : this.cpuCostModel.getMergeCost(c1 + c2));
 	}
 	
 	/*
@@ -214,6 +333,9 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		// plus I/O for the SpillingResettableIterators: 2 for writing plus reading 
 		costs.setSecondaryStorageCost(is < 0 ? -1 : (loops + 4) * is);
 		
+		// every record is paired with the records of its buffer
+		final long c = getNumRecords(input);
+		costs.setCpuCost(this.cpuCostModel.getSortCost(c) + this.cpuCostModel.getNestedLoopCost(c, bufferSize));
 	}
 
 	/*
@@ -233,6 +355,8 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		
 		costs.setSecondaryStorageCost(is == -1 ? -1 : (loops + 2) * is);
 		
+		// every record is paired with the records of its buffer
+		costs.setCpuCost(this.cpuCostModel.getNestedLoopCost(getNumRecords(input), bufferSize));
 	}
 
 	/*
@@ -256,6 +380,7 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		// NOTE: This is currently artificially expensive to prevent the compiler from using the hash-strategies, which are
 		// being reworked from in-memory and grace towards a gradually degrading hybrid hash join
 		costs.setSecondaryStorageCost(bs < 0 || ps < 0 ? -1 : 2 * bs + ps);
+		costs.setCpuCost(this.cpuCostModel.getHashCost(getNumRecords(buildSideInput), getNumRecords(probeSideInput)));
 	}
 
 	/*
@@ -271,6 +396,7 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 			Costs target) {
 		target.setNetworkCost(0);
 		target.setSecondaryStorageCost(0);
+		target.setCpuCost(this.cpuCostModel.getHashCost(getNumRecords(buildSideInput), getNumRecords(probeSideInput)));
 	}
 
 	/*
@@ -297,6 +423,7 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		}
 
 		costs.setSecondaryStorageCost(is >= 0 && oc >= 0 ? oc * is : -1);
+		costs.setCpuCost(this.cpuCostModel.getNestedLoopCost(getNumRecords(outerSide), getNumRecords(innerSide)));
 	}
 
 	/*
@@ -319,5 +446,20 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		long loops = Math.max(os < 0 ? 1000 : os / blockSize, 1);
 
 		costs.setSecondaryStorageCost(is == -1 ? -1 : loops * is);
+		costs.setCpuCost(this.cpuCostModel.getNestedLoopCost(getNumRecords(outerSide), getNumRecords(innerSide)));
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the estimated number of records that are shipped through the given connection.
+	 * 
+	 * @param conn
+	 *        The connection.
+	 * @return The estimated number of records, or -1, if unknown.
+	 */
+	private static long getNumRecords(PactConnection conn) {
+		final long records = conn.getSourcePact().getEstimatedNumRecords();
+		return records < 0 ? -1 : records * Math.max(conn.getReplicationFactor(), 1);
 	}
 }
@@ -74,12 +74,16 @@ import eu.stratosphere.pact.runtime.task.DataSinkTask;
 import eu.stratosphere.pact.runtime.task.DataSourceTask;
 import eu.stratosphere.pact.runtime.task.MapDriver;
 import eu.stratosphere.pact.runtime.task.MatchDriver;
+import eu.stratosphere.pact.runtime.task.RangeBoundaryDriver;
+import eu.stratosphere.pact.runtime.task.RangePartitionDriver;
+import eu.stratosphere.pact.runtime.task.RangeSampleDriver;
 import eu.stratosphere.pact.runtime.task.ReduceDriver;
 import eu.stratosphere.pact.runtime.task.RegularPactTask;
 import eu.stratosphere.pact.runtime.task.TempDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedCombineDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedMapDriver;
+import eu.stratosphere.pact.runtime.task.util.NoOpStub;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
@@ -98,6 +102,10 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	
 	private static final int DEFAULT_MERGE_FACTOR = 64; // the number of streams to merge at once
 	
+	private static final int RANGE_SAMPLES_PER_PARTITION = 1000; // the number of samples drawn per range partition
+	
+	private static final int MIN_RANGE_SAMPLES_PER_TASK = 100; // the minimal number of samples drawn per sampling task
+	
 	// ------------------------------------------------------------------------
 
 	private JobGraph jobGraph; // the job that is currently built
@@ -112,6 +120,10 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 
 	private AbstractJobVertex maxDegreeVertex; // the vertex with the highest degree of parallelism
 	
+	private Map<AbstractJobVertex, JobTaskVertex> rangeBoundaryVertices; // the vertices computing range boundaries
+	
+	private Map<AbstractJobVertex, JobTaskVertex> preAggregationVertices; // the vertices merging spread keys
+	
 	// ------------------------------------------------------------------------
 
 	/**
@@ -136,6 +148,8 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = new HashMap<OptimizerNode, TaskInChain>();
 		this.chainedTasksInSequence = new ArrayList<TaskInChain>();
 		this.auxVertices = new ArrayList<AbstractJobVertex>();
+		this.rangeBoundaryVertices = new HashMap<AbstractJobVertex, JobTaskVertex>();
+		this.preAggregationVertices = new HashMap<AbstractJobVertex, JobTaskVertex>();
 		this.maxDegreeVertex = null;
 		
 		// set Nephele JobGraph config
@@ -182,6 +196,8 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = null;
 		this.chainedTasksInSequence = null;
 		this.auxVertices = null;
+		this.rangeBoundaryVertices = null;
+		this.preAggregationVertices = null;
 		this.jobGraph = null;
 
 		// return job graph
@@ -365,6 +381,9 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 					case PARTITION_RANGE:
 						connectWithPartitionStrategy(inConn, inputIndex, outputVertex, outputVertexConfig, inputVertex, inputVertexConfig);
 						break;
+					case PARTITION_HASH_SKEW:
+						connectWithSkewedPartitionStrategy(inConn, inputIndex, outputVertex, outputVertexConfig, inputVertex, inputVertexConfig);
+						break;
 					case BROADCAST:
 						connectWithBroadcastStrategy(inConn, inputIndex, outputVertex, outputVertexConfig, inputVertex, inputVertexConfig);
 						break;
@@ -479,8 +498,18 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		
 		combineConfig.setStubClass(combineNode.getPactContract().getUserCodeClass());
 
-		// we have currently only one strategy for combiners
-		combineConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+		// set local strategy
+		switch (combineNode.getLocalStrategy()) {
+		case COMBININGSORT:
+			combineConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+			break;
+		case HASH_AGGREGATE:
+			combineConfig.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+			break;
+		default:
+			throw new CompilerException("Invalid local strategy for 'Combine' (" + combineNode.getName() + "): "
+				+ combineNode.getLocalStrategy());
+		}
 		
 		final Ordering secondaryOrder = combineNode.getPactContract().getGroupOrder();
 		if (secondaryOrder == null) {
@@ -543,6 +572,9 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		case COMBININGSORT:
 			reduceConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
 			break;
+		case HASH_AGGREGATE:
+			reduceConfig.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+			break;
 		case NONE:
 			reduceConfig.setLocalStrategy(LocalStrategy.NONE);
 			break;
@@ -551,8 +583,13 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				+ reduceNode.getLocalStrategy());
 		}
 
-		// assign the memory
-		assignMemory(reduceConfig, reduceNode.getMemoryPerTask());
+		// assign the memory. with a skew-aware partitioned input, the pre-aggregation vertex takes its share
+		if (reduceNode.isSkewPartitioned()) {
+			final int memory = reduceNode.getMemoryPerTask();
+			assignMemory(reduceConfig, memory - memory / reduceNode.getMemoryConsumerCount());
+		} else {
+			assignMemory(reduceConfig, reduceNode.getMemoryPerTask());
+		}
 
 		// forward stub parameters to task and stub
 		reduceConfig.setStubParameters(reduceNode.getPactContract().getParameters());
@@ -937,7 +974,19 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			throw new CompilerException("ShipStrategy " + connection.getShipStrategy().name() + " does not suit PACT "
 				+ connection.getTargetPact().getPactType().name());
 		}
-		connectJobVertices(connection, inputNumber, outputVertex, outputConfig, inputVertex, inputConfig);
+		
+		// range partitioning without a given data distribution determines the boundaries from a sample
+		final Contract targetContract = connection.getTargetPact().getPactContract();
+		if (connection.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE &&
+				targetContract instanceof GenericDataSink &&
+				((GenericDataSink) targetContract).getDataDistribution() == null &&
+				connection.getTargetPact().getDegreeOfParallelism() > 1)
+		{
+			connectWithSamplingRangePartitionStrategy(connection, inputNumber, outputVertex, outputConfig,
+				inputVertex, inputConfig);
+		} else {
+			connectJobVertices(connection, inputNumber, outputVertex, outputConfig, inputVertex, inputConfig);
+		}
 	}
 
 	/**
@@ -993,199 +1042,199 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		throw new UnsupportedOperationException("SFR shipping strategy not supported yet");
 	}
 	
-//	/**
-//	 * Adds the necessary vertexes for sampling & histogram creation etc for range partitioning
-//	 * @param connection
-//	 * @param outputVertex
-//	 * @param inputVertex
-//	 * @throws JobGraphDefinitionException 
-//	 */
-//	private void connectWithSamplingPartitionRangeStrategy(PactConnection connection, int inputNumber,
-//			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
-//			final AbstractJobVertex inputVertex, final TaskConfig inputConfig, boolean firstCall)
-//	throws JobGraphDefinitionException
-//	{
-//		int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
-//		int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
-//		int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
-////		int targetIPM = connection.getTargetPact().getInstancesPerMachine();
-//		Class<?> sourceStub = connection.getSourcePact().getPactContract().getUserCodeClass();
-//		
-//		//TODO: Check for which pact types it makes sense
-//		
-//		//When parallelism is one there is nothing to partition
-//		//if(sourceDOP == 1 && targetDOP == 1) {
-//		if(targetDOP == 1) {
-//			if(sourceDOP == 1) {
-//				outputVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			} else {
-//				outputVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			}
-//			outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			inputConfig.addInputShipStrategy(ShipStrategy.FORWARD, inputNumber);
-//			return;
-//		}
-//
-//		
-//		//Add sample vertex
-//		JobTaskVertex sampleVertex = new JobTaskVertex("Range partition - sampling", this.jobGraph);
-//		this.auxVertices.add(sampleVertex);
-//		sampleVertex.setTaskClass(SampleTask.class);
-//		TaskConfig sampleConfig = new TaskConfig(sampleVertex.getConfiguration());
-//		//sampleConfig.setStubClass((Class<? extends Stub<?, ?>>) AdaptiveKeySampleStub.class);
-//		sampleVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			sampleVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		sampleConfig.setStubClass(sourceStub);
-//		//Connect with input
-//		outputVertex.connectTo(sampleVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		sampleConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		
-//		
-//		// firstCall indicated that this is the first call for one input which might have multiple predecessors
-//		
-//		// on the first call we have to instantiate the histogram which will be use by all predecessors
-//		// -> on all consecutive calls we connect the new output node to the already instantiated histogramVertex
-//		TaskConfig histogramConfig;
-//		if(firstCall) {
-//			//Add histogram building vertex;
-//			this.histogramVertex = new JobTaskVertex("Range partition - histograming", this.jobGraph);
-//			this.auxVertices.add(this.histogramVertex);
-//			this.histogramVertex.setTaskClass(HistogramTask.class);
-//			this.histogramVertex.setNumberOfSubtasks(1);
-//			// reset counter because we instantiated a new histogram
-//			this.numberOfHistogramInputs = 0;
-//			
-//			histogramConfig = new TaskConfig(this.histogramVertex.getConfiguration());
-//			histogramConfig.setStubClass(sourceStub);
-//			histogramConfig.setLocalStrategy(LocalStrategy.SORT);
-//			Configuration histogramStubConfig = new Configuration();
-//			histogramStubConfig.setInteger(HistogramTask.NUMBER_OF_BUCKETS, targetDOP);
-//			histogramConfig.setStubParameters(histogramStubConfig);
-//			assignMemory(histogramConfig, outputConfig.getStubParameters().getInteger(HistogramTask.HISTOGRAM_MEMORY,-1));
-//		} else {
-//			histogramConfig = new TaskConfig(this.histogramVertex.getConfiguration());
-//		}
-//		//Connect with input
-//		histogramConfig.addInputShipStrategy(ShipStrategy.FORWARD, ++this.numberOfHistogramInputs);
-//		sampleConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		sampleVertex.connectTo(this.histogramVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		
-//		
-//		//Add range distributor vertex
-//		JobTaskVertex partitionVertex = new JobTaskVertex("Range partition - partitioning", this.jobGraph);
-//		this.auxVertices.add(partitionVertex);
-//		partitionVertex.setTaskClass(PartitionTask.class);
-//		partitionVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
-//		partitionConfig.setStubClass(sourceStub);
-//		Configuration partitionStubConfig = new Configuration();
-//		partitionStubConfig.setString(PartitionTask.GLOBAL_PARTITIONING_ORDER, 
-//			connection.getTargetPact().getGlobalProperties().getOrdering().getOrder(0).name());
-//		partitionConfig.setStubParameters(partitionStubConfig);
-//			
-//		//Add temp vertex to avoid blocking
-//		JobTaskVertex tempVertex = generateTempVertex(
-//				// source pact stub contains out key and value
-//				connection.getSourcePact().getPactContract().getUserCodeClass(),
-//				// keep parallelization of source pact
-//				sourceDOP, sourceIPM);
-//		
-//		tempVertex.setVertexToShareInstancesWith(outputVertex);
-//		TaskConfig tempConfig = new TaskConfig(tempVertex.getConfiguration());
-//
-//		//Connect data to tempVertex (partitioner)
-//		outputVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		tempConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		
-//		//Connect tempVertex (data) to partitionVertex
-//		tempVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		// tempVertex is always connected as second input to the partitioner (2-input node).
-//		// the second input is the data input
-//		partitionConfig.addInputShipStrategy(ShipStrategy.FORWARD, 2);
-//		tempConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			
-//		//Connect histogram with partitioner
-//		this.histogramVertex.connectTo(partitionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		// histogramVertex is always connected as first input to the partitioner (2-input node).
-//		// the first input is the statistic input
-//		partitionConfig.addInputShipStrategy(ShipStrategy.BROADCAST, 1);
-//		histogramConfig.addOutputShipStrategy(ShipStrategy.BROADCAST);
-//
-//		//Connect to receiving vertex
-//		partitionVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		inputConfig.addInputShipStrategy(ShipStrategy.PARTITION_RANGE, inputNumber);
-//		partitionConfig.addOutputShipStrategy(ShipStrategy.PARTITION_RANGE);
-//	}
-//	
-//	/**
-//	 * Implements range partitioning with a user-defined data distribution
-//	 * @param connection
-//	 * @param outputVertex
-//	 * @param inputVertex
-//	 * @throws JobGraphDefinitionException 
-//	 */
-//	private void connectWithGivenDistributionPartitionRangeStrategy(PactConnection connection, int inputNumber,
-//			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
-//			final AbstractJobVertex inputVertex, final TaskConfig inputConfig)
-//	throws JobGraphDefinitionException
-//	{
-//		int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
-//		int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
-//		int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
-////		int targetIPM = connection.getTargetPact().getInstancesPerMachine();
-//		Class<?> sourceStub = connection.getSourcePact().getPactContract().getUserCodeClass();
-//		
-//		//When parallelism is one there is nothing to partition
-//		//if(sourceDOP == 1 && targetDOP == 1) {
-//		if(targetDOP == 1) {
-//			if(sourceDOP == 1) {
-//				outputVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			} else {
-//				outputVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			}
-//			outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			inputConfig.addInputShipStrategy(ShipStrategy.FORWARD, inputNumber);
-//			return;
-//		}
-//		
-//		//Add range distributor vertex
-//		JobTaskVertex partitionVertex = new JobTaskVertex("Range partition - partitioning", this.jobGraph);
-//		this.auxVertices.add(partitionVertex);
-//		partitionVertex.setTaskClass(PartitionTask.class);
-//		partitionVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
-//		partitionConfig.setStubClass(sourceStub);
-//		Configuration partitionStubConfig = new Configuration();
-//		partitionStubConfig.setString(PartitionTask.GLOBAL_PARTITIONING_ORDER, 
-//			connection.getTargetPact().getGlobalProperties().getOrdering().getOrder(0).name());
-//		partitionStubConfig.setBoolean(PartitionTask.PARTITION_BY_SAMPLING, false);
-//		partitionStubConfig.setInteger(PartitionTask.NUMBER_OF_PARTITIONS, targetDOP);
-//		partitionStubConfig.setClass(PartitionTask.DATA_DISTRIBUTION_CLASS,
-//			connection.getTargetPact().getPactContract().getCompilerHints().getInputDistributionClass());
-//		partitionConfig.setStubParameters(partitionStubConfig);
-//		
-//		//Connect partitioner with sending vertex
-//		outputVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		// we don't use the statistic input, because the partitioning strategy is given
-//		// hence partitionVertex in now a single input node, hence we connect to input 1
-//		partitionConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		
-//		//Connect to receiving vertex
-//		partitionVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		inputConfig.addInputShipStrategy(ShipStrategy.PARTITION_RANGE, inputNumber);
-//		partitionConfig.addOutputShipStrategy(ShipStrategy.PARTITION_RANGE);
-//	}
+	/**
+	 * Connects the given vertices through the skew-aware hash partitioning. That partitioning spreads the records
+	 * of frequent keys over several instances of the receiver. To merge the partial results of those keys, the
+	 * records are first sent to a pre-aggregation vertex, which runs the reduce contract's combiner with the
+	 * parallelization of the reducer. The pre-aggregated records are then hash partitioned to the reducer.
+	 * <p>
+	 * All sending vertices of the same input share one pre-aggregation vertex.
+	 * 
+	 * @param connection The connection to translate.
+	 * @param inputNumber The number of the input of the receiving vertex.
+	 * @param outputVertex The sending vertex.
+	 * @param outputConfig The configuration of the sending vertex.
+	 * @param inputVertex The receiving vertex.
+	 * @param inputConfig The configuration of the receiving vertex.
+	 * @throws CompilerException Thrown, if the target is no combinable reduce contract.
+	 * @throws JobGraphDefinitionException Thrown, if the vertices cannot be connected.
+	 */
+	private void connectWithSkewedPartitionStrategy(PactConnection connection, int inputNumber,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
+			final AbstractJobVertex inputVertex, final TaskConfig inputConfig)
+	throws CompilerException, JobGraphDefinitionException
+	{
+		if (!(connection.getTargetPact() instanceof ReduceNode) ||
+				!((ReduceNode) connection.getTargetPact()).isCombineable())
+		{
+			throw new CompilerException("ShipStrategy " + connection.getShipStrategy().name() + " does not suit PACT "
+				+ connection.getTargetPact().getPactType().name());
+		}
+		
+		final ReduceNode reduceNode = (ReduceNode) connection.getTargetPact();
+		final ReduceContract reduceContract = reduceNode.getPactContract();
+		
+		JobTaskVertex preAggVertex = this.preAggregationVertices.get(inputVertex);
+		if (preAggVertex == null) {
+			// create the pre-aggregation vertex, keeping the parallelization of the reducer
+			preAggVertex = new JobTaskVertex("Pre-aggregation for " + reduceContract.getName(), this.jobGraph);
+			preAggVertex.setTaskClass(RegularPactTask.class);
+			preAggVertex.setNumberOfSubtasks(reduceNode.getDegreeOfParallelism());
+			preAggVertex.setNumberOfSubtasksPerInstance(reduceNode.getInstancesPerMachine());
+			preAggVertex.setVertexToShareInstancesWith(inputVertex);
+			this.preAggregationVertices.put(inputVertex, preAggVertex);
+			
+			final TaskConfig preAggConfig = new TaskConfig(preAggVertex.getConfiguration());
+			preAggConfig.setDriver(CombineDriver.class);
+			preAggConfig.setStubClass(reduceContract.getUserCodeClass());
+			preAggConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+			preAggConfig.setStubParameters(reduceContract.getParameters());
+			
+			final int[] keyPositions = reduceContract.getKeyColumnNumbers(0);
+			final Class<? extends Key>[] keyTypes = reduceContract.getKeyClasses();
+			final boolean[] keyDirections = getTrueArrayOfSize(keyTypes.length);
+			PactRecordComparatorFactory.writeComparatorSetupToConfig(preAggConfig.getConfigForInputParameters(0),
+				keyPositions, keyTypes, keyDirections);
+			
+			// the reducer's memory is shared between the pre-aggregation and the reduce vertex
+			assignMemory(preAggConfig, reduceNode.getMemoryPerTask() / reduceNode.getMemoryConsumerCount());
+			
+			// connect the pre-aggregation vertex to the reducer through a regular hash partitioning
+			preAggVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION,
+				DistributionPattern.BIPARTITE);
+			preAggConfig.addOutputShipStrategy(ShipStrategyType.PARTITION_HASH);
+			preAggConfig.setComparatorFactoryForOutput(PactRecordComparatorFactory.class, 0);
+			PactRecordComparatorFactory.writeComparatorSetupToConfig(preAggConfig.getConfigForOutputParameters(0),
+				keyPositions, keyTypes, keyDirections);
+			inputConfig.addInputToGroup(inputNumber);
+		}
+		
+		// connect the sender to the pre-aggregation vertex through the skew-aware partitioning
+		final TaskConfig preAggConfig = new TaskConfig(preAggVertex.getConfiguration());
+		connectJobVertices(connection, 1, outputVertex, outputConfig, preAggVertex, preAggConfig);
+	}
+	
+	/**
+	 * Connects the given vertices through a range partitioning whose boundaries are determined at runtime from
+	 * a sample of the data, because no data distribution was given for the target. For the sending vertex, a
+	 * sampling vertex draws a sample of its records and a single boundary vertex computes the range boundaries
+	 * from the samples. A partitioning vertex receives the boundaries and range partitions the records, which a
+	 * temp vertex holds back until the boundaries are known.
+	 * <p>
+	 * All sending vertices of the same input share one boundary vertex, such that all of them partition their
+	 * records with the same boundaries.
+	 * 
+	 * @param connection The connection to translate.
+	 * @param inputNumber The number of the input of the receiving vertex.
+	 * @param outputVertex The sending vertex.
+	 * @param outputConfig The configuration of the sending vertex.
+	 * @param inputVertex The receiving vertex.
+	 * @param inputConfig The configuration of the receiving vertex.
+	 * @throws CompilerException Thrown, if the target defines no ordering to partition by.
+	 * @throws JobGraphDefinitionException Thrown, if the vertices cannot be connected.
+	 */
+	private void connectWithSamplingRangePartitionStrategy(PactConnection connection, int inputNumber,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
+			final AbstractJobVertex inputVertex, final TaskConfig inputConfig)
+	throws CompilerException, JobGraphDefinitionException
+	{
+		final int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
+		final int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
+		final int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
+		
+		final Ordering ordering = ((GenericDataSink) connection.getTargetPact().getPactContract()).getPartitionOrdering();
+		if (ordering == null) {
+			throw new CompilerException("Range partitioning requires an ordering on the data sink.");
+		}
+		
+		final int numFields = ordering.getNumberOfFields();
+		final int[] keyPositions = new int[numFields];
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyTypes = new Class[numFields];
+		final boolean[] keyDirections = new boolean[numFields];
+		for (int i = 0; i < numFields; i++) {
+			keyPositions[i] = ordering.getFieldNumber(i);
+			keyTypes[i] = ordering.getType(i);
+			keyDirections[i] = ordering.getOrder(i) != Order.DESCENDING;
+		}
+		
+		// create the sampling vertex, keeping the parallelization of the sender
+		final JobTaskVertex sampleVertex = new JobTaskVertex("Range partition - sampling", this.jobGraph);
+		sampleVertex.setTaskClass(RegularPactTask.class);
+		sampleVertex.setNumberOfSubtasks(sourceDOP);
+		sampleVertex.setNumberOfSubtasksPerInstance(sourceIPM);
+		sampleVertex.setVertexToShareInstancesWith(outputVertex);
+		
+		final TaskConfig sampleConfig = new TaskConfig(sampleVertex.getConfiguration());
+		sampleConfig.setDriver(RangeSampleDriver.class);
+		sampleConfig.setStubClass(NoOpStub.class);
+		final int sampleSize = Math.max(MIN_RANGE_SAMPLES_PER_TASK, RANGE_SAMPLES_PER_PARTITION * targetDOP / sourceDOP);
+		sampleConfig.setStubParameter(RangeSampleDriver.SAMPLE_SIZE, String.valueOf(sampleSize));
+		
+		outputVertex.connectTo(sampleVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		sampleConfig.addInputToGroup(1);
+		
+		// get or create the boundary vertex of the receiver's input
+		JobTaskVertex boundaryVertex = this.rangeBoundaryVertices.get(inputVertex);
+		if (boundaryVertex == null) {
+			boundaryVertex = new JobTaskVertex("Range partition - boundaries", this.jobGraph);
+			boundaryVertex.setTaskClass(RegularPactTask.class);
+			boundaryVertex.setNumberOfSubtasks(1);
+			this.auxVertices.add(boundaryVertex);
+			this.rangeBoundaryVertices.put(inputVertex, boundaryVertex);
+			
+			final TaskConfig boundaryConfig = new TaskConfig(boundaryVertex.getConfiguration());
+			boundaryConfig.setDriver(RangeBoundaryDriver.class);
+			boundaryConfig.setStubClass(NoOpStub.class);
+			boundaryConfig.setStubParameter(RangeBoundaryDriver.NUM_PARTITIONS, String.valueOf(targetDOP));
+			PactRecordComparatorFactory.writeComparatorSetupToConfig(boundaryConfig.getConfigForInputParameters(0),
+				keyPositions, keyTypes, keyDirections);
+		}
+		final TaskConfig boundaryConfig = new TaskConfig(boundaryVertex.getConfiguration());
+		
+		sampleVertex.connectTo(boundaryVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		sampleConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		boundaryConfig.addInputToGroup(1);
+		
+		// create the temp vertex that holds back the records until the boundaries are known
+		final JobTaskVertex tempVertex = generateTempVertex(NoOpStub.class, sourceDOP, sourceIPM);
+		tempVertex.setVertexToShareInstancesWith(outputVertex);
+		final TaskConfig tempConfig = new TaskConfig(tempVertex.getConfiguration());
+		
+		outputVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		tempConfig.addInputToGroup(1);
+		
+		// create the partitioning vertex. the boundaries are its first input, the records its second input
+		final JobTaskVertex partitionVertex = new JobTaskVertex("Range partition - partitioning", this.jobGraph);
+		partitionVertex.setTaskClass(RegularPactTask.class);
+		partitionVertex.setNumberOfSubtasks(sourceDOP);
+		partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
+		partitionVertex.setVertexToShareInstancesWith(outputVertex);
+		
+		final TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
+		partitionConfig.setDriver(RangePartitionDriver.class);
+		partitionConfig.setStubClass(NoOpStub.class);
+		
+		boundaryVertex.connectTo(partitionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		boundaryConfig.addOutputShipStrategy(ShipStrategyType.BROADCAST);
+		partitionConfig.addInputToGroup(1);
+		
+		tempVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		tempConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		partitionConfig.addInputToGroup(2);
+		
+		// connect the partitioning vertex to the receiver
+		partitionVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		partitionConfig.addOutputShipStrategy(ShipStrategyType.PARTITION_RANGE);
+		inputConfig.addInputToGroup(inputNumber);
+		
+		final int outputNum = partitionConfig.getNumOutputs() - 1;
+		partitionConfig.setComparatorFactoryForOutput(PactRecordComparatorFactory.class, outputNum);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(partitionConfig.getConfigForOutputParameters(outputNum),
+			keyPositions, keyTypes, keyDirections);
+	}
 
 
 	/**
@@ -1223,6 +1272,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			break;
 		case PARTITION_RANGE:
 		case PARTITION_HASH:
+		case PARTITION_HASH_SKEW:
 		case BROADCAST:
 			channelType = ChannelType.NETWORK;
 			distributionPattern = DistributionPattern.BIPARTITE;
@@ -25,7 +25,9 @@ import eu.stratosphere.pact.common.contract.CompilerHints;
 import eu.stratosphere.pact.common.contract.Contract;
 import eu.stratosphere.pact.common.contract.GenericDataSource;
 import eu.stratosphere.pact.common.generic.io.InputFormat;
+import eu.stratosphere.pact.common.io.FileInputFormat;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.io.statistics.ObservedStatistics;
 import eu.stratosphere.pact.common.plan.Visitor;
 import eu.stratosphere.pact.common.util.FieldSet;
 import eu.stratosphere.pact.compiler.Costs;
@@ -161,12 +163,26 @@ public class DataSourceNode extends OptimizerNode
 			final BaseStatistics cachedStatistics = statistics.getBaseStatistics(statisticsKey);
 			
 			BaseStatistics bs = null;
-			try {
-				bs = format.getStatistics(cachedStatistics);
+			
+			// prefer the statistics that previous jobs observed on the file over sampling it
+			if (format instanceof FileInputFormat) {
+				try {
+					bs = statistics.getObservedStatistics(((FileInputFormat) format).getFilePath());
+				}
+				catch (Throwable t) {
+					if (PactCompiler.LOG.isWarnEnabled())
+						PactCompiler.LOG.warn("Error obtaining statistics from the statistics catalog: " + t.getMessage(), t);
+				}
 			}
-			catch (Throwable t) {
-				if (PactCompiler.LOG.isWarnEnabled())
-					PactCompiler.LOG.warn("Error obtaining statistics from input format: " + t.getMessage(), t);
+			
+			if (bs == null) {
+				try {
+					bs = format.getStatistics(cachedStatistics);
+				}
+				catch (Throwable t) {
+					if (PactCompiler.LOG.isWarnEnabled())
+						PactCompiler.LOG.warn("Error obtaining statistics from input format: " + t.getMessage(), t);
+				}
 			}
 			
 			if (bs != null) {
@@ -189,6 +205,18 @@ public class DataSourceNode extends OptimizerNode
 				if (card != BaseStatistics.UNKNOWN) {
 					this.estimatedNumRecords = card;
 				}
+				
+				// the observed distinct counts of single fields, unless the hints specify them
+				if (bs instanceof ObservedStatistics) {
+					final ObservedStatistics os = (ObservedStatistics) bs;
+					for (int i = 0; i < os.getNumberOfObservedFields(); i++) {
+						final long distinct = os.getDistinctCount(i);
+						final FieldSet field = new FieldSet(i);
+						if (distinct > 0 && hints.getDistinctCount(field) == -1) {
+							this.estimatedCardinality.put(field, distinct);
+						}
+					}
+				}
 			}
 		}
 
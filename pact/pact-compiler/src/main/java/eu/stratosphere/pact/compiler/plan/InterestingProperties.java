@@ -108,6 +108,7 @@ public class InterestingProperties implements Cloneable {
 	public void copyMaximalCosts(Costs c) {
 		this.maximalCosts.setNetworkCost(c.getNetworkCost());
 		this.maximalCosts.setSecondaryStorageCost(c.getSecondaryStorageCost());
+		this.maximalCosts.setCpuCost(c.getCpuCost());
 	}
 
 	/**
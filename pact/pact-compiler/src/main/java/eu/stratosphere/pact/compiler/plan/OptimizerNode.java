@@ -161,6 +161,8 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 
 	private int memoryPerTask; // the amount of memory dedicated to each task, in MiBytes
 
+	private int estimatedMemoryPerTask; // the memory expected for each task before it is assigned, in MiBytes
+
 	protected int id = -1; // the id for this node.
 
 	protected boolean pFlag = false; // flag for the internal pruning algorithm
@@ -223,6 +225,7 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 		this.id = toClone.id;
 		this.degreeOfParallelism = toClone.degreeOfParallelism;
 		this.instancesPerMachine = toClone.instancesPerMachine;
+		this.estimatedMemoryPerTask = toClone.estimatedMemoryPerTask;
 		
 		if (toClone.uniqueFields != null && toClone.uniqueFields.size() > 0) {
 			for (FieldSet uniqueField : toClone.uniqueFields) {
@@ -471,6 +474,26 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 		this.memoryPerTask = memoryPerTask;
 	}
 
+	/**
+	 * Gets the memory that each task of this node is expected to get. The estimate is used to cost memory
+	 * dependent strategies during the plan enumeration, before the actual memory is assigned.
+	 * 
+	 * @return The expected memory per task, in MiBytes, or 0, if unknown.
+	 */
+	public int getEstimatedMemoryPerTask() {
+		return this.estimatedMemoryPerTask;
+	}
+
+	/**
+	 * Sets the memory that each task of this node is expected to get.
+	 * 
+	 * @param estimatedMemoryPerTask
+	 *        The expected memory per task, in MiBytes.
+	 */
+	public void setEstimatedMemoryPerTask(int estimatedMemoryPerTask) {
+		this.estimatedMemoryPerTask = estimatedMemoryPerTask;
+	}
+
 	/**
 	 * Gets the costs incurred by this node. The costs reflect also the costs incurred by the shipping strategies
 	 * of the incoming connections.
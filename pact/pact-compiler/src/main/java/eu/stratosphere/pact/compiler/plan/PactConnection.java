@@ -374,6 +374,8 @@ public class PactConnection {
 			gp.setOrdering(null);
 			break;
 		case PARTITION_HASH:
+		case PARTITION_HASH_SKEW:
+			// the skewed partitioning merges the spread keys afterwards, resulting in a hash partitioning
 			gp.setPartitioning(PartitionProperty.HASH_PARTITIONED, ((PartitionShipStrategy)shipMode).getPartitionFields());
 			gp.setOrdering(null);
 			break;
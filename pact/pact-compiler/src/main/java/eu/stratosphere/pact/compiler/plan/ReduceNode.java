@@ -69,6 +69,12 @@ public class ReduceNode extends SingleInputNode {
 				setLocalStrategy(LocalStrategy.SORT);
 			} else if (PactCompiler.HINT_LOCAL_STRATEGY_COMBINING_SORT.equals(localStrategy)) {
 				setLocalStrategy(LocalStrategy.COMBININGSORT);
+			} else if (PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATE.equals(localStrategy)) {
+				if (!isCombineable() || getPactContract().getGroupOrder() != null) {
+					throw new CompilerException("Local strategy hint '" + localStrategy + 
+						"' requires a combinable reduce contract without group order.");
+				}
+				setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
 			} else {
 				throw new CompilerException("Invalid local strategy hint for match contract: " + localStrategy);
 			}
@@ -119,6 +125,17 @@ public class ReduceNode extends SingleInputNode {
 	public boolean isCombineable() {
 		return getPactContract().isCombinable();
 	}
+	
+	/**
+	 * Checks, whether the groups of this reduce contract can be formed by hash aggregation. That is the case
+	 * if a combiner has been given, which computes the partial aggregates, and if no order within the groups
+	 * is required.
+	 * 
+	 * @return True, if hash aggregation can be used, false otherwise.
+	 */
+	public boolean isHashAggregatable() {
+		return isCombineable() && getPactContract().getGroupOrder() == null;
+	}
 
 	/**
 	 * Provides the optimizers decision whether an external combiner should be used or not.
@@ -136,6 +153,10 @@ public class ReduceNode extends SingleInputNode {
 			return true;
 		}
 		
+		if(this.inConn.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH_SKEW) {
+			return true;
+		}
+		
 		if(this.inConn.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE) {
 			return true;
 		}
@@ -159,12 +180,38 @@ public class ReduceNode extends SingleInputNode {
 	 */
 	@Override
 	public int getMemoryConsumerCount() {
+		final int count;
 		switch(this.localStrategy) {
-			case SORT:          return 1;
-			case COMBININGSORT: return 1;
-			case NONE:          return getPactContract().getGroupOrder() == null ? 0 : 1;
-			default:	        return 0;
+			case SORT:          count = 1; break;
+			case COMBININGSORT: count = 1; break;
+			case HASH_AGGREGATE: count = 1; break;
+			case NONE:          count = getPactContract().getGroupOrder() == null ? 0 : 1; break;
+			default:	        count = 0;
 		}
+		// the skew-aware partitioning adds a task that pre-aggregates the spread keys
+		return isSkewPartitioned() ? count + 1 : count;
+	}
+	
+	/**
+	 * Checks, whether the input of this reduce contract is partitioned with the skew-aware hash partitioning.
+	 * In that case, the records of frequent keys are spread over several instances, which pre-aggregate them
+	 * with the combiner, before the partial aggregates are hash partitioned to the reduce function.
+	 * 
+	 * @return True, if the input is skew-aware hash partitioned, false otherwise.
+	 */
+	public boolean isSkewPartitioned() {
+		return this.inConn != null && this.inConn.getShipStrategy() != null &&
+			this.inConn.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH_SKEW;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.plan.SingleInputNode#isSkewedPartitioningSupported()
+	 */
+	@Override
+	protected boolean isSkewedPartitioningSupported() {
+		// the partial results of the spread keys are merged with the combiner
+		return isCombineable();
 	}
 
 	/*
@@ -286,13 +333,16 @@ public class ReduceNode extends SingleInputNode {
 			
 
 			LocalStrategy ls = getLocalStrategy();
+			LocalStrategy alternativeLs = null;
 
 			// see, whether we need a local strategy
 			if (localStrategyNeeded) {
 			
 				// we need one
 				if (ls != LocalStrategy.NONE) {
-					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT) {
+					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT &&
+							ls != LocalStrategy.HASH_AGGREGATE)
+					{
 						// no valid plan possible
 						continue;
 					}
@@ -300,46 +350,77 @@ public class ReduceNode extends SingleInputNode {
 				// local strategy free to choose
 				else {
 					ls = isCombineable() ? LocalStrategy.COMBININGSORT : LocalStrategy.SORT;
+					
+					// grouping by hash aggregation is an alternative, which the costs decide on
+					if (isHashAggregatable()) {
+						alternativeLs = LocalStrategy.HASH_AGGREGATE;
+					}
 				}
 			}
 
-			// adapt the local properties
-			if (ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.SORT) {
-				Ordering ordering = new Ordering();
-				for (Integer index :keySet) {
-					ordering.appendOrdering(index, null, Order.ASCENDING);
-				}
-				lp.setOrdering(ordering);
-				lp.setGrouped(true, keySet);
+			if (alternativeLs != null) {
+				final GlobalProperties altGp = gp.createCopy();
+				final LocalProperties altLp = lp.createCopy();
+				createPlanAlternative(subPlan, ss, gp, lp, ls, keySet, estimator, outputPlans);
+				createPlanAlternative(subPlan, ss, altGp, altLp, alternativeLs, keySet, estimator, outputPlans);
+			} else {
+				createPlanAlternative(subPlan, ss, gp, lp, ls, keySet, estimator, outputPlans);
+			}
+		}
+	}
+	
+	/**
+	 * Creates the plan candidate for the given sub-plan, shipping strategy and local strategy, and adds it to
+	 * the list of output plans.
+	 */
+	private void createPlanAlternative(OptimizerNode subPlan, ShipStrategy ss, GlobalProperties gp,
+			LocalProperties lp, LocalStrategy ls, FieldSet keySet, CostEstimator estimator,
+			List<OptimizerNode> outputPlans)
+	{
+		// adapt the local properties
+		if (ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.SORT) {
+			Ordering ordering = new Ordering();
+			for (Integer index :keySet) {
+				ordering.appendOrdering(index, null, Order.ASCENDING);
 			}
+			lp.setOrdering(ordering);
+			lp.setGrouped(true, keySet);
+		} else if (ls == LocalStrategy.HASH_AGGREGATE) {
+			// hashing groups the data, but destroys any order
+			lp.setOrdering(null);
+			lp.setGrouped(true, keySet);
+		}
 
-			// ----------------------------------------------------------------
-			// see, if we have a combiner before shipping
-			
-			OptimizerNode reducePred = subPlan;
-			
-			if (isCombineable() && ss.type() != ShipStrategyType.FORWARD) {
-				// this node contains the estimates for the costs of the combiner,
-				// as well as the updated size and cardinality estimates
-
-				OptimizerNode combiner = new CombinerNode(getPactContract(), subPlan, this.combinerReducingFactor);
-				combiner.setDegreeOfParallelism(subPlan.getDegreeOfParallelism());
-				estimator.costOperator(combiner);
-				reducePred = combiner;
+		// ----------------------------------------------------------------
+		// see, if we have a combiner before shipping
+		
+		OptimizerNode reducePred = subPlan;
+		
+		if (isCombineable() && ss.type() != ShipStrategyType.FORWARD) {
+			// this node contains the estimates for the costs of the combiner,
+			// as well as the updated size and cardinality estimates
+
+			OptimizerNode combiner = new CombinerNode(getPactContract(), subPlan, this.combinerReducingFactor);
+			combiner.setDegreeOfParallelism(subPlan.getDegreeOfParallelism());
+			combiner.setEstimatedMemoryPerTask(getEstimatedMemoryPerTask());
+			if (ls == LocalStrategy.HASH_AGGREGATE) {
+				combiner.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
 			}
-			
-			ReduceNode n = new ReduceNode(this, reducePred, this.inConn, gp, lp);
-			n.inConn.setShipStrategy(ss);
-			n.setLocalStrategy(ls);
+			estimator.costOperator(combiner);
+			reducePred = combiner;
+		}
+		
+		ReduceNode n = new ReduceNode(this, reducePred, this.inConn, gp, lp);
+		n.inConn.setShipStrategy(ss);
+		n.setLocalStrategy(ls);
 
-			// compute, which of the properties survive, depending on the output contract
-			n.getGlobalProperties().filterByNodesConstantSet(this, 0);
-			n.getLocalProperties().filterByNodesConstantSet(this, 0);
+		// compute, which of the properties survive, depending on the output contract
+		n.getGlobalProperties().filterByNodesConstantSet(this, 0);
+		n.getLocalProperties().filterByNodesConstantSet(this, 0);
 
-			estimator.costOperator(n);
+		estimator.costOperator(n);
 
-			outputPlans.add(n);		
-		}
+		outputPlans.add(n);
 	}
 	
 	/**
@@ -37,6 +37,7 @@ import eu.stratosphere.pact.compiler.PactCompiler;
 import eu.stratosphere.pact.compiler.costs.CostEstimator;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ForwardSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSS;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSkewSS;
 
 /**
  * A node in the optimizer plan that represents a PACT with a single input.
@@ -183,6 +184,12 @@ public abstract class SingleInputNode extends OptimizerNode {
 				conn.setShipStrategy(new ForwardSS());
 			} else if (PactCompiler.HINT_SHIP_STRATEGY_REPARTITION.equals(shipStrategy)) {
 				conn.setShipStrategy(new PartitionHashSS(this.keyList));
+			} else if (PactCompiler.HINT_SHIP_STRATEGY_REPARTITION_SKEW.equals(shipStrategy)) {
+				if (!isSkewedPartitioningSupported()) {
+					throw new CompilerException("The skew-aware repartition strategy is not applicable to " + 
+						getName() + " (" + getPactContract().getName() + ").");
+				}
+				conn.setShipStrategy(new PartitionHashSkewSS(this.keyList));
 			} else {
 				throw new CompilerException("Invalid hint for the shipping strategy of a single input connection: "
 					+ shipStrategy);
@@ -190,6 +197,17 @@ public abstract class SingleInputNode extends OptimizerNode {
 		}
 	}
 
+	/**
+	 * Checks, whether the input of this node may be partitioned with the skew-aware hash partitioning, which
+	 * spreads the records of frequent keys over several instances. That is only possible, if the partial
+	 * results for such a key can be merged afterwards.
+	 * 
+	 * @return True, if the skew-aware hash partitioning may be used, false otherwise.
+	 */
+	protected boolean isSkewedPartitioningSupported() {
+		return false;
+	}
+
 	// ----------------- Recursive Optimization
 	
 	/*
@@ -0,0 +1,172 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.contract.ReduceContract.Combinable;
+import eu.stratosphere.pact.common.io.DelimitedInputFormat;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.ReduceStub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.ReduceNode;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
+
+/**
+ * Tests that the compiler groups a combinable reduce by hashing only if its aggregates fit into memory.
+ */
+public class HashAggregationCompilerTest {
+	
+	private static final String IN_FILE = "file:///test/file";
+	
+	private static final String OUT_FILE = "file:///test/output";
+	
+	private static final String NUM_RECORDS_PARAMETER = "test.num-records";
+	
+	private static final int defaultParallelism = 8;
+	
+	// ------------------------------------------------------------------------
+	
+	private PactCompiler compiler;
+	
+	private InstanceTypeDescription instanceType;
+	
+	// ------------------------------------------------------------------------
+	
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			
+			// prepare the statistics
+			DataStatistics dataStats = new DataStatistics();
+			this.compiler = new PactCompiler(dataStats, new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+		
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+	
+	@Test
+	public void testHashAggregationForFewKeys()
+	{
+		Assert.assertEquals(LocalStrategy.HASH_AGGREGATE, getReduceStrategy(1000000000L, 100L));
+	}
+	
+	@Test
+	public void testSortForAggregatesExceedingMemory()
+	{
+		Assert.assertEquals(LocalStrategy.COMBININGSORT, getReduceStrategy(1000000000L, 1000000000L));
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Compiles a combinable reduce over an input with the given number of records and distinct keys
+	 * and returns the chosen local strategy of the reduce.
+	 */
+	private LocalStrategy getReduceStrategy(long numRecords, long numKeys)
+	{
+		FileDataSource source = new FileDataSource(SizedInputFormat.class, IN_FILE, "Source");
+		source.setParameter(NUM_RECORDS_PARAMETER, String.valueOf(numRecords));
+		source.getCompilerHints().setDistinctCount(new FieldSet(0), numKeys);
+		
+		ReduceContract reduce = new ReduceContract.Builder(SumReduce.class, PactInteger.class, 0)
+			.input(source)
+			.name("Reduce")
+			.build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce);
+		OptimizedPlan oPlan = this.compiler.compile(new Plan(sink, "Hash Aggregation"), this.instanceType);
+		
+		for (OptimizerNode node : oPlan.getAllNodes()) {
+			if (node instanceof ReduceNode) {
+				return node.getLocalStrategy();
+			}
+		}
+		Assert.fail("The optimized plan has no reduce.");
+		return null;
+	}
+	
+	/**
+	 * An input format whose statistics report the configured number of records of 100 bytes each.
+	 */
+	public static final class SizedInputFormat extends DelimitedInputFormat
+	{
+		private long numRecords;
+		
+		@Override
+		public void configure(Configuration parameters) {
+			super.configure(parameters);
+			this.numRecords = Long.parseLong(parameters.getString(NUM_RECORDS_PARAMETER, "1"));
+		}
+		
+		@Override
+		public boolean readRecord(PactRecord target, byte[] bytes, int offset, int numBytes) {
+			return false;
+		}
+		
+		@Override
+		public FileBaseStatistics getStatistics(BaseStatistics cachedStatistics) {
+			return new FileBaseStatistics(0L, this.numRecords * 100, 100);
+		}
+	}
+	
+	/**
+	 * A combinable reduce that forwards the first record of every group.
+	 */
+	@Combinable
+	public static final class SumReduce extends ReduceStub
+	{
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception {
+			out.collect(records.next());
+		}
+	}
+}
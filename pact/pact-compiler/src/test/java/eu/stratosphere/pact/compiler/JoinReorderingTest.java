@@ -0,0 +1,212 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.MatchStub;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsFirstExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsSecondExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.OutCardBounds;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.MatchNode;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+
+/**
+ * Tests the reordering of chains of matches by their estimated cost.
+ */
+public class JoinReorderingTest {
+	
+	private static final String IN_FILE = "file:///test/file";
+	
+	private static final String OUT_FILE = "file:///test/output";
+	
+	private static final int defaultParallelism = 8;
+	
+	// ------------------------------------------------------------------------
+	
+	private PactCompiler compiler;
+	
+	private InstanceTypeDescription instanceType;
+	
+	// ------------------------------------------------------------------------
+	
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			
+			// prepare the statistics
+			DataStatistics dataStats = new DataStatistics();
+			this.compiler = new PactCompiler(dataStats, new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+		
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+	
+	/**
+	 * Joins A with B on a key with few distinct values and the result with C on a unique key. Joining
+	 * B with C first has the much smaller intermediate result.
+	 */
+	@Test
+	public void testReorderChain()
+	{
+		Plan plan = createChain(ConcatMatch.class, 10, 10, 10000);
+		MatchContract upper = (MatchContract) plan.getDataSinks().iterator().next().getInputs().get(0);
+		MatchContract lower = (MatchContract) upper.getFirstInputs().get(0);
+		
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		new JobGraphGenerator().compileJobGraph(oPlan);
+		
+		MatchNode ab = getMatch(oPlan, "AB");
+		MatchNode bc = getMatch(oPlan, "BC");
+		
+		Assert.assertEquals("A", ab.getFirstPredNode().getPactContract().getName());
+		Assert.assertSame(bc, ab.getSecondPredNode());
+		Assert.assertEquals("B", bc.getFirstPredNode().getPactContract().getName());
+		Assert.assertEquals("C", bc.getSecondPredNode().getPactContract().getName());
+		
+		// the keys follow the inputs they belong to
+		Assert.assertEquals(0, ab.getInputKeySet(0).get(0).intValue());
+		Assert.assertEquals(2, ab.getInputKeySet(1).get(0).intValue());
+		Assert.assertEquals(2, bc.getInputKeySet(0).get(0).intValue());
+		Assert.assertEquals(4, bc.getInputKeySet(1).get(0).intValue());
+		
+		// the plan of the user is left as it is
+		Assert.assertSame(lower, upper.getFirstInputs().get(0));
+		Assert.assertEquals("A", lower.getFirstInputs().get(0).getName());
+		Assert.assertEquals("B", lower.getSecondInputs().get(0).getName());
+	}
+	
+	/**
+	 * Checks that the order of the plan is kept, if it is the cheapest one.
+	 */
+	@Test
+	public void testKeepCheapestChain()
+	{
+		Plan plan = createChain(ConcatMatch.class, 10000, 10, 10);
+		MatchContract upper = (MatchContract) plan.getDataSinks().iterator().next().getInputs().get(0);
+		
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		
+		Assert.assertSame(upper, getMatch(oPlan, "BC").getPactContract());
+		Assert.assertSame(getMatch(oPlan, "AB"), getMatch(oPlan, "BC").getFirstPredNode());
+	}
+	
+	/**
+	 * Checks that matches whose stubs do not keep all fields of both inputs are not reordered.
+	 */
+	@Test
+	public void testKeepChainOfUnannotatedMatches()
+	{
+		Plan plan = createChain(DummyMatchStub.class, 10, 10, 10000);
+		
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		
+		Assert.assertSame(getMatch(oPlan, "AB"), getMatch(oPlan, "BC").getFirstPredNode());
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates the plan (A join B on A.0 = B.2) join C on B.2 = C.4, with the given distinct counts
+	 * of the key fields.
+	 */
+	private static Plan createChain(Class<? extends MatchStub> stub, long distinctA, long distinctB, long distinctC)
+	{
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "A");
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE, "B");
+		FileDataSource sourceC = new FileDataSource(DummyInputFormat.class, IN_FILE, "C");
+		
+		sourceA.getCompilerHints().setDistinctCount(new FieldSet(0), distinctA);
+		sourceB.getCompilerHints().setDistinctCount(new FieldSet(2), distinctB);
+		sourceC.getCompilerHints().setDistinctCount(new FieldSet(4), distinctC);
+		
+		MatchContract ab = MatchContract.builder(stub, PactInteger.class, 0, 2)
+			.input1(sourceA)
+			.input2(sourceB)
+			.name("AB")
+			.build();
+		MatchContract bc = MatchContract.builder(stub, PactInteger.class, 2, 4)
+			.input1(ab)
+			.input2(sourceC)
+			.name("BC")
+			.build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, bc);
+		return new Plan(sink, "Join Chain");
+	}
+	
+	private static MatchNode getMatch(OptimizedPlan plan, String name)
+	{
+		for (OptimizerNode node : plan.getAllNodes()) {
+			if (node instanceof MatchNode && name.equals(node.getPactContract().getName())) {
+				return (MatchNode) node;
+			}
+		}
+		Assert.fail("No match named " + name + " in the optimized plan.");
+		return null;
+	}
+	
+	/**
+	 * A match that concatenates its inputs.
+	 */
+	@ConstantFieldsFirstExcept(fields={})
+	@ConstantFieldsSecondExcept(fields={})
+	@OutCardBounds(lowerBound=1, upperBound=1)
+	public static final class ConcatMatch extends MatchStub
+	{
+		@Override
+		public void match(PactRecord value1, PactRecord value2, Collector<PactRecord> out) throws Exception {
+			value1.unionFields(value2);
+			out.collect(value1);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.compiler.Costs;
+
+/**
+ * Tests the CPU cost model and the ordering of costs with a CPU component.
+ */
+public class CpuCostModelTest {
+
+	private final CpuCostModel model = new CpuCostModel(10, 20, 100, 50, 5, 1000);
+
+	@Test
+	public void testCostFormulas() {
+		// one nanosecond corresponds to one byte of secondary storage I/O
+		assertEquals(1024 * 10 * 10, this.model.getSortCost(1024));
+		assertEquals(1000 * 20, this.model.getMergeCost(1000));
+		assertEquals(10 * 100 + 20 * 50, this.model.getHashCost(10, 20));
+		assertEquals(100 * 200 * 5, this.model.getNestedLoopCost(100, 200));
+	}
+
+	@Test
+	public void testUnknownRecordCounts() {
+		assertEquals(0, this.model.getSortCost(-1));
+		assertEquals(0, this.model.getMergeCost(-1));
+		assertEquals(0, this.model.getHashCost(-1, 20));
+		assertEquals(0, this.model.getNestedLoopCost(100, -1));
+	}
+
+	@Test
+	public void testOverflowIsCapped() {
+		assertEquals(Long.MAX_VALUE, this.model.getNestedLoopCost(Long.MAX_VALUE / 2, Long.MAX_VALUE / 2));
+	}
+
+	@Test
+	public void testCpuCostsDecideBetweenEqualIOCosts() {
+		final Costs cheap = new Costs(100, 1000, 10);
+		final Costs expensive = new Costs(100, 1000, 500);
+
+		assertTrue(cheap.compareTo(expensive) < 0);
+		assertTrue(expensive.compareTo(cheap) > 0);
+		assertTrue(cheap.isOtherMoreThanDeltaAbove(expensive, new Costs(0, 0, 100)));
+
+		// the local costs are the sum of secondary storage and CPU
+		assertEquals(0, new Costs(100, 1000, 500).compareTo(new Costs(100, 1500, 0)));
+
+		// network costs still dominate
+		assertTrue(new Costs(10, 1000, 100000).compareTo(new Costs(100, 0, 0)) < 0);
+	}
+
+	@Test
+	public void testAddAndSubtract() {
+		final Costs costs = new Costs(1, 2, 3);
+		costs.addCosts(new Costs(1, 2, 3));
+		assertEquals(new Costs(2, 4, 6), costs);
+
+		costs.subtractCosts(new Costs(1, 1, 1));
+		assertEquals(new Costs(1, 3, 5), costs);
+
+		costs.addCosts(new Costs(0, 0, -1));
+		assertEquals(-1, costs.getCpuCost());
+		assertTrue(new Costs(1, 3, 5).compareTo(costs) < 0);
+	}
+}
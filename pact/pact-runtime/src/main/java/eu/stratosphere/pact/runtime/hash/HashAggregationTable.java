@@ -0,0 +1,1150 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.AbstractPagedInputView;
+import eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.SeekableDataInputView;
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.util.MathUtils;
+
+
+/**
+ * A hash table that keeps one running partial aggregate per key. Every record that is inserted into the
+ * table is looked up by its key. If no aggregate exists for that key, the record itself becomes the aggregate.
+ * Otherwise, the existing aggregate and the record are handed to the {@link GenericReducer#combine(Iterator, Collector)}
+ * method and the result replaces the aggregate. The combine function is expected to emit exactly one record
+ * per invocation.
+ * <p>
+ * The table uses the same bucket layout as the {@link MutableHashTable}: the buckets hold the hash codes and
+ * pointers to the serialized aggregates, which are stored in the record buffers of the partition that the bucket
+ * belongs to. An aggregate whose new serialized form is not longer than the old one is overwritten in place,
+ * otherwise it is appended to the partition's record buffers and the pointer is redirected.
+ * <p>
+ * When the memory is exhausted, the table behaves in one of two ways:
+ * <ul>
+ *   <li>If it was created with an {@link IOManager}, it spills the largest partition to disk. The aggregates of
+ *       that partition are written out and all further records for that partition are written to the spill
+ *       file directly. The spilled partitions have to be aggregated by a different means (for example by
+ *       sorting) after the table is finished.</li>
+ *   <li>If it was created with a {@link Collector}, it emits all current aggregates to that collector and clears
+ *       the table. That mode is suitable for combiners, where the aggregates need not be unique per key.</li>
+ * </ul>
+ * 
+ * <pre>
+ * +----------------------------- Bucket x ----------------------------
+ * |Partition (1 byte) | Status (1 byte) | element count (2 bytes) |
+ * | next-bucket-in-chain-pointer (8 bytes) | reserved (4 bytes) |
+ * |
+ * |hashCode 1 (4 bytes) | hashCode 2 (4 bytes) | hashCode 3 (4 bytes) |
+ * | ... hashCode n-1 (4 bytes) | hashCode n (4 bytes)
+ * |
+ * |pointer 1 (8 bytes) | pointer 2 (8 bytes) | pointer 3 (8 bytes) |
+ * | ... pointer n-1 (8 bytes) | pointer n (8 bytes)
+ * +-------------------------------------------------------------------
+ * </pre>
+ * 
+ *
+ * @param <T> The type of the records aggregated by the table.
+ */
+public class HashAggregationTable<T>
+{
+	// ------------------------------------------------------------------------
+	//                         Internal Constants
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * The minimum number of memory segments the table needs, if it spills partitions.
+	 */
+	public static final int MIN_NUM_MEMORY_SEGMENTS_SPILLING = 33;
+	
+	/**
+	 * The minimum number of memory segments the table needs, if it emits its aggregates when full.
+	 */
+	public static final int MIN_NUM_MEMORY_SEGMENTS_FLUSHING = 4;
+	
+	/**
+	 * The default record width that is used when no width is given. The record width is
+	 * used to determine the ratio of the number of memory segments intended for partition
+	 * buffers and the number of memory segments in the hash-table structure. 
+	 */
+	private static final int DEFAULT_RECORD_LEN = 24;
+	
+	private static final int HASH_CODE_LEN = 4;
+	
+	private static final int POINTER_LEN = 8;
+	
+	private static final int NUM_INTRA_BUCKET_BITS = 7;
+	
+	private static final int HASH_BUCKET_SIZE = 0x1 << NUM_INTRA_BUCKET_BITS;
+	
+	private static final int BUCKET_HEADER_LENGTH = 16;
+	
+	private static final int NUM_ENTRIES_PER_BUCKET = (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) / (HASH_CODE_LEN + POINTER_LEN);
+	
+	private static final int BUCKET_POINTER_START_OFFSET = BUCKET_HEADER_LENGTH + (NUM_ENTRIES_PER_BUCKET * HASH_CODE_LEN);
+	
+	private static final int HEADER_PARTITION_OFFSET = 0;
+	
+	private static final int HEADER_STATUS_OFFSET = 1;
+	
+	private static final int HEADER_COUNT_OFFSET = 2;
+	
+	private static final int HEADER_FORWARD_OFFSET = 4;
+	
+	private static final long BUCKET_FORWARD_POINTER_NOT_SET = ~0x0L;
+	
+	private static final byte BUCKET_STATUS_IN_MEMORY = 0;
+	
+	/**
+	 * The pointer value marking an entry whose aggregate is currently not stored in the partition buffers.
+	 * Entries with that pointer are skipped when the table is spilled, emitted, or iterated.
+	 */
+	private static final long ENTRY_POINTER_DETACHED = -1L;
+	
+	// ------------------------------------------------------------------------
+	//                              Members
+	// ------------------------------------------------------------------------
+	
+	private final TypeSerializer<T> serializer;
+	
+	private final TypeComparator<T> comparator;
+	
+	private final GenericReducer<T, ?> combiner;
+	
+	private final ArrayList<MemorySegment> availableMemory;
+	
+	private final IOManager ioManager;
+	
+	private final Collector<T> flushTarget;
+	
+	private final AggregationPartition<T>[] partitions;
+	
+	private final MemorySegment[] buckets;
+	
+	private final int numBuckets;
+	
+	private final int segmentSize;
+	
+	private final int bucketsPerSegmentMask;
+	
+	private final int bucketsPerSegmentBits;
+	
+	private final Channel.Enumerator channelEnumerator;
+	
+	private final T candidate;
+	
+	private final PairIterator<T> pairIterator;
+	
+	private final SingleRecordCollector<T> resultCollector;
+	
+	private MemorySegment spillingReserve;
+	
+	private long numSpilledPartitions;
+	
+	private boolean closed;
+	
+	// ------------------------------------------------------------------------
+	//                         Construction and Teardown
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates a hash aggregation table that spills partitions to disk when its memory is exhausted.
+	 * 
+	 * @param serializer The serializer for the aggregated records.
+	 * @param comparator The comparator used to hash and compare the keys.
+	 * @param combiner The stub whose combine function computes the partial aggregates.
+	 * @param memorySegments The memory for the table.
+	 * @param ioManager The I/O manager used to spill partitions.
+	 */
+	public HashAggregationTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memorySegments, IOManager ioManager)
+	{
+		this(serializer, comparator, combiner, memorySegments, ioManager, null, DEFAULT_RECORD_LEN);
+		
+		if (ioManager == null) {
+			throw new NullPointerException();
+		}
+	}
+	
+	/**
+	 * Creates a hash aggregation table that emits all its aggregates to the given collector and starts over
+	 * empty, when its memory is exhausted.
+	 * 
+	 * @param serializer The serializer for the aggregated records.
+	 * @param comparator The comparator used to hash and compare the keys.
+	 * @param combiner The stub whose combine function computes the partial aggregates.
+	 * @param memorySegments The memory for the table.
+	 * @param flushTarget The collector that receives the aggregates when the table is full.
+	 */
+	public HashAggregationTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memorySegments, Collector<T> flushTarget)
+	{
+		this(serializer, comparator, combiner, memorySegments, null, flushTarget, DEFAULT_RECORD_LEN);
+		
+		if (flushTarget == null) {
+			throw new NullPointerException();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private HashAggregationTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memorySegments, IOManager ioManager,
+			Collector<T> flushTarget, int avgRecordLen)
+	{
+		// some sanity checks first
+		if (serializer == null || comparator == null || combiner == null || memorySegments == null) {
+			throw new NullPointerException();
+		}
+		final int minSegments = ioManager != null ? MIN_NUM_MEMORY_SEGMENTS_SPILLING : MIN_NUM_MEMORY_SEGMENTS_FLUSHING;
+		if (memorySegments.size() < minSegments) {
+			throw new IllegalArgumentException("Too few memory segments provided. Hash Aggregation needs at least " + 
+				minSegments + " memory segments.");
+		}
+		
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.combiner = combiner;
+		this.ioManager = ioManager;
+		this.flushTarget = flushTarget;
+		this.availableMemory = new ArrayList<MemorySegment>(memorySegments);
+		
+		// check the size of the first buffer and record it. all further buffers must have the same size.
+		// the size must also be a power of 2
+		final int numBuffers = memorySegments.size();
+		this.segmentSize = memorySegments.get(0).size();
+		if ( (this.segmentSize & this.segmentSize - 1) != 0) {
+			throw new IllegalArgumentException("Hash Table requires buffers whose size is a power of 2.");
+		}
+		final int bucketsPerSegment = this.segmentSize >> NUM_INTRA_BUCKET_BITS;
+		if (bucketsPerSegment == 0) {
+			throw new IllegalArgumentException("Hash Table requires buffers of at least " + HASH_BUCKET_SIZE + " bytes.");
+		}
+		this.bucketsPerSegmentMask = bucketsPerSegment - 1;
+		this.bucketsPerSegmentBits = MathUtils.log2strict(bucketsPerSegment);
+		
+		// the flushing table works with a single partition, the spilling table partitions like the hash join
+		final int numPartitions;
+		if (ioManager != null) {
+			numPartitions = MutableHashTable.getPartitioningFanOutNoEstimates(numBuffers);
+			this.channelEnumerator = ioManager.createChannelEnumerator();
+			this.spillingReserve = this.availableMemory.remove(this.availableMemory.size() - 1);
+		} else {
+			numPartitions = 1;
+			this.channelEnumerator = null;
+		}
+		
+		// determine the table size. the table must leave at least two buffers to the partitions
+		// beyond their initial buffers
+		final int recordLen = avgRecordLen > 0 ? avgRecordLen :
+				serializer.getLength() == -1 ? DEFAULT_RECORD_LEN : serializer.getLength();
+		final int maxTableSegments = this.availableMemory.size() - numPartitions - 2;
+		int numBuckets = Math.max(MutableHashTable.getInitialTableSize(numBuffers, this.segmentSize, numPartitions,
+				recordLen), numPartitions);
+		if ( ((numBuckets + bucketsPerSegment - 1) >>> this.bucketsPerSegmentBits) > maxTableSegments) {
+			numBuckets = maxTableSegments << this.bucketsPerSegmentBits;
+		}
+		
+		this.partitions = new AggregationPartition[numPartitions];
+		for (int i = 0; i < numPartitions; i++) {
+			this.partitions[i] = new AggregationPartition<T>(i, this.segmentSize, this.availableMemory);
+			this.partitions[i].initialize();
+		}
+		
+		this.numBuckets = numBuckets;
+		this.buckets = initTable(numBuckets, (byte) numPartitions);
+		
+		this.candidate = serializer.createInstance();
+		this.pairIterator = new PairIterator<T>();
+		this.resultCollector = new SingleRecordCollector<T>();
+	}
+	
+	/**
+	 * Closes the table, deletes the spill files of all partitions that have been spilled, and returns all
+	 * memory segments. After that method has been called, the table cannot be used any more.
+	 * 
+	 * @return All memory segments that were originally given to the table.
+	 */
+	public List<MemorySegment> close()
+	{
+		if (this.closed) {
+			return Collections.emptyList();
+		}
+		this.closed = true;
+		
+		for (int i = 0; i < this.partitions.length; i++) {
+			this.partitions[i].clearAllMemory();
+			this.partitions[i].discardSpilledData(this.availableMemory);
+		}
+		for (int i = 0; i < this.buckets.length; i++) {
+			this.availableMemory.add(this.buckets[i]);
+		}
+		if (this.spillingReserve != null) {
+			this.availableMemory.add(this.spillingReserve);
+			this.spillingReserve = null;
+		}
+		
+		final List<MemorySegment> memory = new ArrayList<MemorySegment>(this.availableMemory);
+		this.availableMemory.clear();
+		return memory;
+	}
+	
+	// ------------------------------------------------------------------------
+	//                              Aggregation
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Adds the given record to the aggregate for its key.
+	 * 
+	 * @param record The record to aggregate.
+	 * @throws IOException Thrown, if spilling or reading a partition fails.
+	 */
+	public void aggregate(T record) throws IOException
+	{
+		final int hashCode = MutableHashTable.hash(this.comparator.hash(record), 0);
+		final int posHashCode = hashCode % this.numBuckets;
+		
+		// get the bucket for the given hash code
+		final MemorySegment bucket = this.buckets[posHashCode >> this.bucketsPerSegmentBits];
+		final int bucketInSegmentPos = (posHashCode & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+		final AggregationPartition<T> p = this.partitions[bucket.get(bucketInSegmentPos + HEADER_PARTITION_OFFSET)];
+		
+		if (p.isSpilled()) {
+			p.spillRecord(this.serializer, record);
+			return;
+		}
+		
+		// search the chain of buckets for an aggregate with the same key
+		this.comparator.setReference(record);
+		
+		MemorySegment seg = bucket;
+		int bucketOffset = bucketInSegmentPos;
+		while (true) {
+			final int count = seg.getShort(bucketOffset + HEADER_COUNT_OFFSET);
+			for (int i = 0; i < count; i++) {
+				if (seg.getInt(bucketOffset + BUCKET_HEADER_LENGTH + (i * HASH_CODE_LEN)) == hashCode) {
+					final int pointerOffset = bucketOffset + BUCKET_POINTER_START_OFFSET + (i * POINTER_LEN);
+					final long pointer = seg.getLong(pointerOffset);
+					
+					p.setReadPosition(pointer);
+					this.serializer.deserialize(this.candidate, p);
+					if (this.comparator.equalToReference(this.candidate)) {
+						updateAggregate(p, seg, pointerOffset, pointer, p.getReadPointer(), record, hashCode,
+							bucket, bucketInSegmentPos);
+						return;
+					}
+				}
+			}
+			
+			final long forwardPointer = seg.getLong(bucketOffset + HEADER_FORWARD_OFFSET);
+			if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
+				break;
+			}
+			seg = p.overflowSegments[(int) (forwardPointer >>> 32)];
+			bucketOffset = (int) (forwardPointer & 0xffffffff);
+		}
+		
+		// first record for this key
+		insertAggregate(p, bucket, bucketInSegmentPos, hashCode, record);
+	}
+	
+	/**
+	 * Gets an iterator over all aggregates that are currently held in memory. The aggregates of
+	 * spilled partitions are not returned by this iterator. The table must not be modified while
+	 * the iterator is used.
+	 * 
+	 * @return An iterator over the in-memory aggregates.
+	 */
+	public MutableObjectIterator<T> getAggregates()
+	{
+		return new AggregateIterator();
+	}
+	
+	/**
+	 * Emits all aggregates that are currently held in memory to the given collector and clears the table.
+	 * 
+	 * @param out The collector to emit the aggregates to.
+	 * @throws IOException Thrown, if the aggregates could not be read from the partition buffers.
+	 */
+	public void emitAndClear(Collector<T> out) throws IOException
+	{
+		final MutableObjectIterator<T> aggregates = getAggregates();
+		final T target = this.serializer.createInstance();
+		while (aggregates.next(target)) {
+			out.collect(target);
+		}
+		
+		// reset the buckets and the partitions
+		for (int i = 0; i < this.partitions.length; i++) {
+			final AggregationPartition<T> p = this.partitions[i];
+			if (!p.isSpilled()) {
+				p.clearAllMemory();
+				p.initialize();
+			}
+		}
+		clearBuckets(0, 1);
+	}
+	
+	/**
+	 * Finishes the spilled partitions. After this method has been called, no more records can be added to
+	 * the table. The spill files of the returned partitions stay valid until the table is closed.
+	 * 
+	 * @return A descriptor for each partition that has been spilled.
+	 * @throws IOException Thrown, if the spill files could not be completely written.
+	 */
+	public List<SpilledPartition> finishSpilledPartitions() throws IOException
+	{
+		final ArrayList<SpilledPartition> spilled = new ArrayList<SpilledPartition>();
+		for (int i = 0; i < this.partitions.length; i++) {
+			final AggregationPartition<T> p = this.partitions[i];
+			if (p.isSpilled()) {
+				spilled.add(p.finishSpilling(this.availableMemory));
+			}
+		}
+		return spilled;
+	}
+	
+	/**
+	 * Gets the number of partitions that have been spilled to disk so far.
+	 * 
+	 * @return The number of spilled partitions.
+	 */
+	public long getNumSpilledPartitions() {
+		return this.numSpilledPartitions;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final void updateAggregate(AggregationPartition<T> p, MemorySegment seg, int pointerOffset,
+			long oldPointer, long oldEnd, T record, int hashCode, MemorySegment bucket, int bucketInSegmentPos)
+	throws IOException
+	{
+		// combine the current aggregate with the record
+		this.pairIterator.set(this.candidate, record);
+		this.resultCollector.reset();
+		try {
+			this.combiner.combine(this.pairIterator, this.resultCollector);
+		}
+		catch (IOException ioex) {
+			throw ioex;
+		}
+		catch (RuntimeException rex) {
+			throw rex;
+		}
+		catch (Exception ex) {
+			throw new IOException("An error occurred in the combiner user code.", ex);
+		}
+		final T result = this.resultCollector.getResult();
+		
+		long newPointer;
+		while ((newPointer = p.append(this.serializer, result)) < 0) {
+			// no memory for the new aggregate. the old aggregate must not be written out while the
+			// combined one is pending, so we detach it from the bucket entry
+			seg.putLong(pointerOffset, ENTRY_POINTER_DETACHED);
+			if (!makeRoom(p)) {
+				if (p.isSpilled()) {
+					p.spillRecord(this.serializer, result);
+				} else {
+					// the table was emitted and cleared
+					insertAggregate(p, bucket, bucketInSegmentPos, hashCode, result);
+				}
+				return;
+			}
+			seg.putLong(pointerOffset, oldPointer);
+		}
+		
+		final long newLength = p.getWritePointer() - newPointer;
+		if (newLength <= oldEnd - oldPointer) {
+			// the new aggregate fits into the place of the old one
+			p.copyWithin(newPointer, oldPointer, (int) newLength);
+			p.truncate(newPointer);
+		} else {
+			seg.putLong(pointerOffset, newPointer);
+		}
+	}
+	
+	private final void insertAggregate(AggregationPartition<T> p, MemorySegment bucket, int bucketInSegmentPos,
+			int hashCode, T record)
+	throws IOException
+	{
+		boolean tableCleared = false;
+		while (true) {
+			final long pointer = p.append(this.serializer, record);
+			if (pointer >= 0) {
+				if (insertBucketEntry(p, bucket, bucketInSegmentPos, hashCode, pointer)) {
+					return;
+				}
+				// no memory for an overflow bucket
+				p.truncate(pointer);
+			}
+			
+			if (tableCleared) {
+				throw new RuntimeException("Hash Aggregation has too little memory to hold a single record.");
+			}
+			if (!makeRoom(p)) {
+				if (p.isSpilled()) {
+					p.spillRecord(this.serializer, record);
+					return;
+				}
+				tableCleared = true;
+			}
+		}
+	}
+	
+	private final boolean insertBucketEntry(final AggregationPartition<T> p, final MemorySegment bucket, 
+			final int bucketInSegmentPos, final int hashCode, final long pointer)
+	{
+		// find the position to put the hash code and pointer
+		final int count = bucket.getShort(bucketInSegmentPos + HEADER_COUNT_OFFSET);
+		if (count < NUM_ENTRIES_PER_BUCKET) {
+			// we are good in our current bucket, put the values
+			bucket.putInt(bucketInSegmentPos + BUCKET_HEADER_LENGTH + (count * HASH_CODE_LEN), hashCode);
+			bucket.putLong(bucketInSegmentPos + BUCKET_POINTER_START_OFFSET + (count * POINTER_LEN), pointer);
+			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) (count + 1));
+			return true;
+		}
+		
+		// we need to go to the overflow buckets
+		final long originalForwardPointer = bucket.getLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET);
+		if (originalForwardPointer != BUCKET_FORWARD_POINTER_NOT_SET) {
+			final MemorySegment seg = p.overflowSegments[(int) (originalForwardPointer >>> 32)];
+			final int segOffset = (int) (originalForwardPointer & 0xffffffff);
+			final short obCount = seg.getShort(segOffset + HEADER_COUNT_OFFSET);
+			
+			// check if there is space in this overflow bucket
+			if (obCount < NUM_ENTRIES_PER_BUCKET) {
+				seg.putInt(segOffset + BUCKET_HEADER_LENGTH + (obCount * HASH_CODE_LEN), hashCode);
+				seg.putLong(segOffset + BUCKET_POINTER_START_OFFSET + (obCount * POINTER_LEN), pointer);
+				seg.putShort(segOffset + HEADER_COUNT_OFFSET, (short) (obCount + 1));
+				return true;
+			}
+		}
+		
+		// we need a new overflow bucket, which is put at the head of the chain
+		final MemorySegment overflowSeg;
+		final int overflowBucketNum;
+		final int overflowBucketOffset;
+		
+		if (p.nextOverflowBucket == 0) {
+			// no space left in last bucket, or no bucket yet, so create an overflow segment
+			if (this.availableMemory.isEmpty()) {
+				return false;
+			}
+			overflowSeg = this.availableMemory.remove(this.availableMemory.size() - 1);
+			overflowBucketOffset = 0;
+			overflowBucketNum = p.numOverflowSegments;
+			
+			if (p.overflowSegments.length <= p.numOverflowSegments) {
+				MemorySegment[] newSegsArray = new MemorySegment[p.overflowSegments.length * 2];
+				System.arraycopy(p.overflowSegments, 0, newSegsArray, 0, p.overflowSegments.length);
+				p.overflowSegments = newSegsArray;
+			}
+			p.overflowSegments[p.numOverflowSegments] = overflowSeg;
+			p.numOverflowSegments++;
+		}
+		else {
+			overflowBucketNum = p.numOverflowSegments - 1;
+			overflowSeg = p.overflowSegments[overflowBucketNum];
+			overflowBucketOffset = p.nextOverflowBucket << NUM_INTRA_BUCKET_BITS;
+		}
+		
+		p.nextOverflowBucket = (p.nextOverflowBucket == this.bucketsPerSegmentMask ? 0 : p.nextOverflowBucket + 1);
+		
+		overflowSeg.putLong(overflowBucketOffset + HEADER_FORWARD_OFFSET, originalForwardPointer);
+		bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET,
+			(((long) overflowBucketNum) << 32) | ((long) overflowBucketOffset));
+		
+		overflowSeg.putInt(overflowBucketOffset + BUCKET_HEADER_LENGTH, hashCode);
+		overflowSeg.putLong(overflowBucketOffset + BUCKET_POINTER_START_OFFSET, pointer);
+		overflowSeg.putShort(overflowBucketOffset + HEADER_COUNT_OFFSET, (short) 1);
+		return true;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                                    Memory Handling
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Frees memory, either by spilling the largest partition, or by emitting and clearing the whole table.
+	 * 
+	 * @param current The partition that needs the memory.
+	 * @return True, if the given partition is still in memory and unchanged, false if it has been spilled
+	 *         or cleared.
+	 * @throws IOException Thrown, if the spilling or emitting failed.
+	 */
+	private final boolean makeRoom(AggregationPartition<T> current) throws IOException
+	{
+		if (this.flushTarget != null) {
+			emitAndClear(this.flushTarget);
+			return false;
+		}
+		
+		// select the largest in-memory partition
+		AggregationPartition<T> largest = null;
+		int largestSize = 1;
+		for (int i = 0; i < this.partitions.length; i++) {
+			final AggregationPartition<T> p = this.partitions[i];
+			if (!p.isSpilled() && p.getNumOccupiedSegments() > largestSize) {
+				largest = p;
+				largestSize = p.getNumOccupiedSegments();
+			}
+		}
+		if (largest == null) {
+			throw new RuntimeException("Hash Aggregation has too little memory to spill a partition.");
+		}
+		
+		spillPartition(largest);
+		return largest != current;
+	}
+	
+	private final void spillPartition(AggregationPartition<T> p) throws IOException
+	{
+		final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(this.channelEnumerator.next(),
+			new LinkedBlockingQueue<MemorySegment>());
+		final ChannelWriterOutputView out = new ChannelWriterOutputView(writer,
+			Collections.singletonList(this.spillingReserve), this.segmentSize);
+		this.spillingReserve = null;
+		
+		// write all aggregates of the partition and reset its buckets
+		long numRecords = 0;
+		for (int b = p.getPartitionNumber(); b < this.numBuckets; b += this.partitions.length) {
+			final MemorySegment bucket = this.buckets[b >> this.bucketsPerSegmentBits];
+			final int bucketInSegmentPos = (b & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			
+			MemorySegment seg = bucket;
+			int bucketOffset = bucketInSegmentPos;
+			while (true) {
+				final int count = seg.getShort(bucketOffset + HEADER_COUNT_OFFSET);
+				for (int i = 0; i < count; i++) {
+					final long pointer = seg.getLong(bucketOffset + BUCKET_POINTER_START_OFFSET + (i * POINTER_LEN));
+					if (pointer != ENTRY_POINTER_DETACHED) {
+						p.setReadPosition(pointer);
+						this.serializer.copy(p, out);
+						numRecords++;
+					}
+				}
+				final long forwardPointer = seg.getLong(bucketOffset + HEADER_FORWARD_OFFSET);
+				if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
+					break;
+				}
+				seg = p.overflowSegments[(int) (forwardPointer >>> 32)];
+				bucketOffset = (int) (forwardPointer & 0xffffffff);
+			}
+			
+			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) 0);
+			bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+		}
+		
+		p.clearAllMemory();
+		p.startSpilling(writer, out, numRecords);
+		this.spillingReserve = this.availableMemory.remove(this.availableMemory.size() - 1);
+		this.numSpilledPartitions++;
+	}
+	
+	private final MemorySegment[] initTable(int numBuckets, byte numPartitions)
+	{
+		final int bucketsPerSegment = this.bucketsPerSegmentMask + 1;
+		final int numSegs = (numBuckets >>> this.bucketsPerSegmentBits) + ( (numBuckets & this.bucketsPerSegmentMask) == 0 ? 0 : 1);
+		final MemorySegment[] table = new MemorySegment[numSegs];
+		
+		// go over all segments that are part of the table
+		for (int i = 0, bucket = 0; i < numSegs && bucket < numBuckets; i++) {
+			final MemorySegment seg = this.availableMemory.remove(this.availableMemory.size() - 1);
+			
+			// go over all buckets in the segment
+			for (int k = 0; k < bucketsPerSegment && bucket < numBuckets; k++, bucket++) {
+				final int bucketOffset = k * HASH_BUCKET_SIZE;	
+				seg.put(bucketOffset + HEADER_PARTITION_OFFSET, MutableHashTable.assignPartition(bucket, numPartitions));
+				seg.put(bucketOffset + HEADER_STATUS_OFFSET, BUCKET_STATUS_IN_MEMORY);
+				seg.putShort(bucketOffset + HEADER_COUNT_OFFSET, (short) 0);
+				seg.putLong(bucketOffset + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+			}
+			
+			table[i] = seg;
+		}
+		return table;
+	}
+	
+	private final void clearBuckets(int firstBucket, int stride)
+	{
+		for (int b = firstBucket; b < this.numBuckets; b += stride) {
+			final MemorySegment bucket = this.buckets[b >> this.bucketsPerSegmentBits];
+			final int bucketInSegmentPos = (b & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) 0);
+			bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * Describes a partition that has been spilled to disk.
+	 */
+	public static final class SpilledPartition
+	{
+		private final Channel.ID channel;
+		
+		private final int numBlocks;
+		
+		private final long numRecords;
+		
+		SpilledPartition(Channel.ID channel, int numBlocks, long numRecords) {
+			this.channel = channel;
+			this.numBlocks = numBlocks;
+			this.numRecords = numRecords;
+		}
+		
+		public Channel.ID getChannel() {
+			return this.channel;
+		}
+		
+		public int getNumBlocks() {
+			return this.numBlocks;
+		}
+		
+		public long getNumRecords() {
+			return this.numRecords;
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * Iterator over all entries in the table's buckets.
+	 */
+	private final class AggregateIterator implements MutableObjectIterator<T>
+	{
+		private int bucketNum = -1;
+		
+		private MemorySegment seg;
+		
+		private int bucketOffset;
+		
+		private int posInBucket;
+		
+		private int countInBucket;
+		
+		private AggregationPartition<T> partition;
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			while (true) {
+				// entries remaining in the current bucket
+				while (this.posInBucket < this.countInBucket) {
+					final long pointer = this.seg.getLong(this.bucketOffset + BUCKET_POINTER_START_OFFSET +
+						(this.posInBucket++ * POINTER_LEN));
+					if (pointer != ENTRY_POINTER_DETACHED) {
+						this.partition.setReadPosition(pointer);
+						HashAggregationTable.this.serializer.deserialize(target, this.partition);
+						return true;
+					}
+				}
+				
+				// go to the next bucket in the chain, or the next bucket in the table
+				final long forwardPointer = this.seg == null ? BUCKET_FORWARD_POINTER_NOT_SET :
+						this.seg.getLong(this.bucketOffset + HEADER_FORWARD_OFFSET);
+				if (forwardPointer != BUCKET_FORWARD_POINTER_NOT_SET) {
+					this.seg = this.partition.overflowSegments[(int) (forwardPointer >>> 32)];
+					this.bucketOffset = (int) (forwardPointer & 0xffffffff);
+				}
+				else if (++this.bucketNum < HashAggregationTable.this.numBuckets) {
+					this.seg = HashAggregationTable.this.buckets[this.bucketNum >> HashAggregationTable.this.bucketsPerSegmentBits];
+					this.bucketOffset = (this.bucketNum & HashAggregationTable.this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+					this.partition = HashAggregationTable.this.partitions[this.seg.get(this.bucketOffset + HEADER_PARTITION_OFFSET)];
+				}
+				else {
+					return false;
+				}
+				this.posInBucket = 0;
+				this.countInBucket = this.seg.getShort(this.bucketOffset + HEADER_COUNT_OFFSET);
+			}
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * A partition of the aggregation table. The partition holds the serialized aggregates in its record buffers,
+	 * which it writes to in an append fashion and reads from at random positions. Once spilled, it writes all
+	 * records to its spill file.
+	 */
+	private static final class AggregationPartition<T> extends AbstractPagedInputView implements SeekableDataInputView
+	{
+		MemorySegment[] overflowSegments;	// segments in which overflow buckets from the table structure are stored
+		
+		int numOverflowSegments;			// the number of actual segments in the overflowSegments array
+		
+		int nextOverflowBucket;				// the next free bucket in the current overflow segment
+		
+		private final ArrayList<MemorySegment> recordSegments;
+		
+		private final ArrayList<MemorySegment> freeMemory;
+		
+		private final RecordArea writeView;
+		
+		private final int partitionNumber;
+		
+		private final int segmentSize;
+		
+		private final int segmentSizeBits;
+		
+		private final int segmentSizeMask;
+		
+		private int currentReadSegment;
+		
+		private BlockChannelWriter spillWriter;
+		
+		private ChannelWriterOutputView spillView;
+		
+		private long numSpilledRecords;
+		
+		
+		AggregationPartition(int partitionNumber, int segmentSize, ArrayList<MemorySegment> freeMemory)
+		{
+			super(0);
+			
+			this.partitionNumber = partitionNumber;
+			this.segmentSize = segmentSize;
+			this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+			this.segmentSizeMask = segmentSize - 1;
+			this.freeMemory = freeMemory;
+			this.recordSegments = new ArrayList<MemorySegment>();
+			this.overflowSegments = new MemorySegment[2];
+			this.writeView = new RecordArea();
+		}
+		
+		int getPartitionNumber() {
+			return this.partitionNumber;
+		}
+		
+		boolean isSpilled() {
+			return this.spillView != null;
+		}
+		
+		int getNumOccupiedSegments() {
+			return this.recordSegments.size() + this.numOverflowSegments;
+		}
+		
+		/**
+		 * Takes the first record buffer from the free memory.
+		 */
+		void initialize()
+		{
+			final MemorySegment first = this.freeMemory.remove(this.freeMemory.size() - 1);
+			this.recordSegments.add(first);
+			this.writeView.seekOutput(first, 0);
+			this.overflowSegments = new MemorySegment[2];
+			this.numOverflowSegments = 0;
+			this.nextOverflowBucket = 0;
+		}
+		
+		/**
+		 * Returns all record buffers and overflow buckets to the free memory.
+		 */
+		void clearAllMemory()
+		{
+			this.freeMemory.addAll(this.recordSegments);
+			this.recordSegments.clear();
+			for (int i = 0; i < this.numOverflowSegments; i++) {
+				this.freeMemory.add(this.overflowSegments[i]);
+			}
+			this.overflowSegments = null;
+			this.numOverflowSegments = 0;
+			this.nextOverflowBucket = 0;
+			this.writeView.clear();
+			clear();
+		}
+		
+		// ----------------------------------------------------------------------------------------
+		
+		/**
+		 * Appends the record to the record buffers.
+		 * 
+		 * @return The pointer to the record, or -1, if the record buffers could not be extended.
+		 */
+		long append(TypeSerializer<T> serializer, T record) throws IOException
+		{
+			final long pointer = getWritePointer();
+			try {
+				serializer.serialize(record, this.writeView);
+				return pointer;
+			} catch (EOFException eofex) {
+				truncate(pointer);
+				return -1;
+			}
+		}
+		
+		long getWritePointer() {
+			return (((long) (this.recordSegments.size() - 1)) << this.segmentSizeBits) + 
+					this.writeView.getCurrentPositionInSegment();
+		}
+		
+		/**
+		 * Sets the write position back to the given pointer and releases all record buffers behind it.
+		 */
+		void truncate(long pointer)
+		{
+			int segNum = (int) (pointer >>> this.segmentSizeBits);
+			int offset = (int) (pointer & this.segmentSizeMask);
+			if (offset == 0 && segNum > 0) {
+				segNum--;
+				offset = this.segmentSize;
+			}
+			
+			for (int i = this.recordSegments.size() - 1; i > segNum; i--) {
+				this.freeMemory.add(this.recordSegments.remove(i));
+			}
+			this.writeView.seekOutput(this.recordSegments.get(segNum), offset);
+		}
+		
+		/**
+		 * Copies bytes between two positions in the record buffers.
+		 */
+		void copyWithin(long from, long to, int len)
+		{
+			while (len > 0) {
+				final int fromOffset = (int) (from & this.segmentSizeMask);
+				final int toOffset = (int) (to & this.segmentSizeMask);
+				final int n = Math.min(len, Math.min(this.segmentSize - fromOffset, this.segmentSize - toOffset));
+				
+				this.recordSegments.get((int) (from >>> this.segmentSizeBits)).copyTo(fromOffset,
+					this.recordSegments.get((int) (to >>> this.segmentSizeBits)), toOffset, n);
+				from += n;
+				to += n;
+				len -= n;
+			}
+		}
+		
+		// ----------------------------------------------------------------------------------------
+		
+		void startSpilling(BlockChannelWriter writer, ChannelWriterOutputView view, long numRecords)
+		{
+			this.spillWriter = writer;
+			this.spillView = view;
+			this.numSpilledRecords = numRecords;
+		}
+		
+		void spillRecord(TypeSerializer<T> serializer, T record) throws IOException
+		{
+			serializer.serialize(record, this.spillView);
+			this.numSpilledRecords++;
+		}
+		
+		SpilledPartition finishSpilling(List<MemorySegment> target) throws IOException
+		{
+			final int numBlocks = this.spillView.getBlockCount();
+			target.addAll(this.spillView.close());
+			this.spillView = null;
+			
+			final Channel.ID channel = this.spillWriter.getChannelID();
+			this.spillWriter = null;
+			return new SpilledPartition(channel, numBlocks, this.numSpilledRecords);
+		}
+		
+		void discardSpilledData(List<MemorySegment> target)
+		{
+			if (this.spillView != null) {
+				try {
+					target.addAll(this.spillView.close());
+				} catch (IOException ioex) {
+					// the file is deleted anyways
+				}
+				this.spillView = null;
+			}
+			if (this.spillWriter != null) {
+				try {
+					this.spillWriter.closeAndDelete();
+				} catch (IOException ioex) {
+					// best effort cleanup
+				}
+				this.spillWriter = null;
+			}
+		}
+		
+		// ----------------------------------------------------------------------------------------
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.services.memorymanager.SeekableDataInputView#setReadPosition(long)
+		 */
+		@Override
+		public void setReadPosition(long pointer)
+		{
+			final int segNum = (int) (pointer >>> this.segmentSizeBits);
+			final int offset = (int) (pointer & this.segmentSizeMask);
+			
+			this.currentReadSegment = segNum;
+			seekInput(this.recordSegments.get(segNum), offset, this.segmentSize);
+		}
+		
+		long getReadPointer() {
+			return (((long) this.currentReadSegment) << this.segmentSizeBits) + getCurrentPositionInSegment();
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.services.memorymanager.AbstractPagedInputView#nextSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment)
+		 */
+		@Override
+		protected MemorySegment nextSegment(MemorySegment current) throws IOException
+		{
+			if (++this.currentReadSegment < this.recordSegments.size()) {
+				return this.recordSegments.get(this.currentReadSegment);
+			} else {
+				throw new EOFException();
+			}
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.services.memorymanager.AbstractPagedInputView#getLimitForSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment)
+		 */
+		@Override
+		protected int getLimitForSegment(MemorySegment segment) {
+			return this.segmentSize;
+		}
+		
+		// ----------------------------------------------------------------------------------------
+		
+		/**
+		 * The output view appending to the partition's record buffers.
+		 */
+		private final class RecordArea extends AbstractPagedOutputView
+		{
+			private RecordArea() {
+				super(AggregationPartition.this.segmentSize, 0);
+			}
+			
+			/* (non-Javadoc)
+			 * @see eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView#nextSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment, int)
+			 */
+			@Override
+			protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent) throws IOException
+			{
+				final ArrayList<MemorySegment> free = AggregationPartition.this.freeMemory;
+				if (free.isEmpty()) {
+					throw new EOFException();
+				}
+				final MemorySegment next = free.remove(free.size() - 1);
+				AggregationPartition.this.recordSegments.add(next);
+				return next;
+			}
+			
+			@Override
+			protected void seekOutput(MemorySegment seg, int position) {
+				super.seekOutput(seg, position);
+			}
+			
+			@Override
+			protected void clear() {
+				super.clear();
+			}
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * Iterator returning the current aggregate and the new record, as input to the combine function.
+	 */
+	private static final class PairIterator<T> implements Iterator<T>
+	{
+		private T first;
+		
+		private T second;
+		
+		private int pos;
+		
+		void set(T first, T second) {
+			this.first = first;
+			this.second = second;
+			this.pos = 0;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return this.pos < 2;
+		}
+		
+		@Override
+		public T next() {
+			switch (this.pos++) {
+			case 0:
+				return this.first;
+			case 1:
+				return this.second;
+			default:
+				throw new NoSuchElementException();
+			}
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Collector that captures the single result of a combine call.
+	 */
+	private static final class SingleRecordCollector<T> implements Collector<T>
+	{
+		private T result;
+		
+		private int count;
+		
+		void reset() {
+			this.result = null;
+			this.count = 0;
+		}
+		
+		T getResult() {
+			if (this.count != 1) {
+				throw new RuntimeException("The combine function emitted " + this.count + " records for one key. " +
+					"Hash aggregation requires the combine function to emit exactly one record per call.");
+			}
+			return this.result;
+		}
+		
+		@Override
+		public void collect(T record) {
+			this.result = record;
+			this.count++;
+		}
+		
+		@Override
+		public void close() {}
+	}
+}
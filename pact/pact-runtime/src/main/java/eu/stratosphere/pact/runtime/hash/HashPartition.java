@@ -48,6 +48,16 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  */
 class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDataInputView
 {
+	/**
+	 * The number of high-order bits of the hash code that select the histogram bin.
+	 */
+	static final int HISTOGRAM_BITS = 6;
+	
+	/**
+	 * The number of bins in the histogram over the build side hash codes.
+	 */
+	static final int NUM_HISTOGRAM_BINS = 0x1 << HISTOGRAM_BITS;
+	
 	// --------------------------------- Table Structure Auxiliaries ------------------------------------
 	
 	MemorySegment[] overflowSegments;	// segments in which overflow buckets from the table structure are stored
@@ -80,6 +90,8 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 	
 	private long probeSideRecordCounter;				// number of probe-side records in this partition 
 	
+	private final long[] buildSideHistogram;			// number of build-side records per bin of hash codes
+	
 	// ----------------------------------------- General ------------------------------------------------
 	
 	private final int segmentSizeBits;					// the number of bits in the mem segment size;
@@ -126,6 +138,7 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 		this.numOverflowSegments = 0;
 		this.nextOverflowBucket = 0;
 		
+		this.buildSideHistogram = new long[NUM_HISTOGRAM_BINS];
 		this.buildSideWriteBuffer = new BuildSideBuffer<BT>(initialBuffer, memSource);
 	}
 	
@@ -162,6 +175,8 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 		this.overflowSegments = new MemorySegment[2];
 		this.numOverflowSegments = 0;
 		this.nextOverflowBucket = 0;
+		
+		this.buildSideHistogram = new long[NUM_HISTOGRAM_BINS];
 	}
 	
 	// --------------------------------------------------------------------------------------------------
@@ -208,6 +223,17 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 	public long getProbeSideRecordCount() {
 		return this.probeSideRecordCounter;
 	}
+	
+	/**
+	 * Gets the histogram over the hash codes of the build side records that were inserted into this partition.
+	 * Bin <i>i</i> counts the records whose hash code has the value <i>i</i> in its {@link #HISTOGRAM_BITS}
+	 * highest bits.
+	 * 
+	 * @return The histogram over the build side hash codes.
+	 */
+	public long[] getBuildSideHistogram() {
+		return this.buildSideHistogram;
+	}
 
 	public BlockChannelWriter getBuildSideChannel() {
 		return this.buildSideChannel;
@@ -223,14 +249,18 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 	 * Inserts the given object into the current buffer. This method returns a pointer that
 	 * can be used to address the written record in this partition, if it is in-memory. The returned
 	 * pointers have no expressiveness in the case where the partition is spilled.
+	 * <p>
+	 * The hash code of the record is accounted for in the build side histogram.
 	 * 
 	 * @param object The object to be written to the partition.
+	 * @param hashCode The (non-negative) hash code of the record, as used by the hash table.
 	 * @return A pointer to the object in the partition, or <code>-1</code>, if the partition is spilled.
 	 * @throws IOException Thrown, when this is a spilled partition and the write failed.
 	 */
-	public final long insertIntoBuildBuffer(BT record) throws IOException
+	public final long insertIntoBuildBuffer(BT record, int hashCode) throws IOException
 	{
 		this.buildSideRecordCounter++;
+		this.buildSideHistogram[hashCode >>> (Integer.SIZE - 1 - HISTOGRAM_BITS)]++;
 		
 		if (isInMemory()) {
 			final long pointer = this.buildSideWriteBuffer.getCurrentPointer();
@@ -0,0 +1,332 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HashAggregationTable.SpilledPartition;
+import eu.stratosphere.pact.runtime.sort.CombiningUnilateralSortMerger;
+import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
+
+
+/**
+ * An input provider that groups its input by hashing. The input is aggregated into a
+ * {@link HashAggregationTable}, which keeps one partial aggregate per key, computed with the combine
+ * function of the given stub. The provider returns first the aggregates that stayed in memory. The partitions
+ * that the table spilled are afterwards grouped by a {@link CombiningUnilateralSortMerger}, which uses the memory
+ * that the hash table released.
+ * <p>
+ * The records returned by the provider are grouped by key, but not sorted. Each key of an in-memory partition
+ * occurs exactly once.
+ *
+ * 
+ * @param <T> The type of the records that are grouped.
+ */
+public class HybridHashAggregator<T> implements CloseableInputProvider<T>
+{
+	private static final Log LOG = LogFactory.getLog(HybridHashAggregator.class);
+	
+	/**
+	 * The number of memory segments that are retained for reading back the spilled partitions.
+	 */
+	private static final int NUM_READ_BUFFERS = 2;
+	
+	// ------------------------------------------------------------------------
+	
+	private final MemoryManager memoryManager;
+	
+	private final IOManager ioManager;
+	
+	private final MutableObjectIterator<T> input;
+	
+	private final AbstractInvokable parentTask;
+	
+	private final TypeSerializer<T> serializer;
+	
+	private final TypeComparator<T> comparator;
+	
+	private final GenericReducer<T, ?> combiner;
+	
+	private final HashAggregationTable<T> table;
+	
+	private final long totalMemory;
+	
+	private final int maxNumFileHandles;
+	
+	private final float startSpillingFraction;
+	
+	private final MutableObjectIterator<T> iterator;
+	
+	private List<MemorySegment> readMemory;
+	
+	private List<SpilledPartition> spilledPartitions;
+	
+	private CombiningUnilateralSortMerger<T> sortMerger;
+	
+	private volatile boolean closed;
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new hash aggregator that consumes the given input.
+	 * 
+	 * @param combiner The stub whose combine function computes the partial aggregates.
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to spill partitions.
+	 * @param input The input that is aggregated.
+	 * @param parentTask The parent task, which owns all resources used by this aggregator.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator used to hash and compare the keys.
+	 * @param totalMemory The total amount of memory dedicated to the aggregation.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once, when spilled partitions are sorted.
+	 * @param startSpillingFraction The fraction of the memory at which the sort of spilled partitions starts spilling.
+	 * 
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager.
+	 */
+	public HybridHashAggregator(GenericReducer<T, ?> combiner, MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<T> input, AbstractInvokable parentTask,
+			TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			long totalMemory, int maxNumFileHandles, float startSpillingFraction)
+	throws MemoryAllocationException
+	{
+		if (combiner == null || memoryManager == null || ioManager == null || input == null ||
+				serializer == null || comparator == null) {
+			throw new NullPointerException();
+		}
+		
+		this.memoryManager = memoryManager;
+		this.ioManager = ioManager;
+		this.input = input;
+		this.parentTask = parentTask;
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.combiner = combiner;
+		this.totalMemory = totalMemory;
+		this.maxNumFileHandles = maxNumFileHandles;
+		this.startSpillingFraction = startSpillingFraction;
+		
+		final List<MemorySegment> memory = memoryManager.allocatePages(parentTask, totalMemory);
+		try {
+			this.table = new HashAggregationTable<T>(serializer, comparator.duplicate(), combiner, memory, ioManager);
+		} catch (RuntimeException rex) {
+			memoryManager.release(memory);
+			throw rex;
+		}
+		this.iterator = new AggregatingIterator();
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.CloseableInputProvider#getIterator()
+	 */
+	@Override
+	public MutableObjectIterator<T> getIterator() {
+		return this.iterator;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+		}
+		
+		if (this.sortMerger != null) {
+			this.sortMerger.close();
+			this.sortMerger = null;
+		}
+		this.memoryManager.release(this.table.close());
+		if (this.readMemory != null) {
+			this.memoryManager.release(this.readMemory);
+			this.readMemory = null;
+		}
+		
+		// delete the spill files that have not been consumed
+		if (this.spilledPartitions != null) {
+			for (SpilledPartition p : this.spilledPartitions) {
+				try {
+					this.ioManager.createBlockChannelReader(p.getChannel()).closeAndDelete();
+				} catch (IOException ioex) {
+					LOG.error("Could not delete spilled partition file: " + ioex.getMessage(), ioex);
+				}
+			}
+			this.spilledPartitions = null;
+		}
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Aggregates the complete input into the hash table.
+	 */
+	private void build() throws IOException
+	{
+		final T record = this.serializer.createInstance();
+		while (!this.closed && this.input.next(record)) {
+			this.table.aggregate(record);
+		}
+		
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Hash aggregation consumed its input, " + this.table.getNumSpilledPartitions() +
+				" partitions were spilled.");
+		}
+	}
+	
+	/**
+	 * Releases the hash table's memory and starts sorting the spilled partitions.
+	 * 
+	 * @return An iterator over the grouped records of the spilled partitions, or null, if no partition was spilled.
+	 */
+	private MutableObjectIterator<T> startSortingSpilledPartitions() throws IOException
+	{
+		final List<SpilledPartition> spilled = this.table.finishSpilledPartitions();
+		final List<MemorySegment> memory = this.table.close();
+		
+		if (spilled.isEmpty()) {
+			this.memoryManager.release(memory);
+			return null;
+		}
+		
+		// keep some buffers to read the partitions back, and give the rest to the sorter
+		this.spilledPartitions = new ArrayList<SpilledPartition>(spilled);
+		this.readMemory = new ArrayList<MemorySegment>(NUM_READ_BUFFERS);
+		for (int i = 0; i < NUM_READ_BUFFERS; i++) {
+			this.readMemory.add(memory.remove(memory.size() - 1));
+		}
+		final long readMemorySize = ((long) NUM_READ_BUFFERS) * this.readMemory.get(0).size();
+		this.memoryManager.release(memory);
+		
+		try {
+			this.sortMerger = new CombiningUnilateralSortMerger<T>(this.combiner, this.memoryManager, this.ioManager,
+				new SpilledPartitionsIterator(), this.parentTask, this.serializer, this.comparator.duplicate(),
+				this.totalMemory - readMemorySize, this.maxNumFileHandles, this.startSpillingFraction, false);
+			return this.sortMerger.getIterator();
+		}
+		catch (MemoryAllocationException maex) {
+			throw new IOException("Could not obtain the memory to sort the spilled partitions: " + maex.getMessage(), maex);
+		}
+		catch (InterruptedException iex) {
+			throw new IOException("Interrupted while waiting for the sorted spilled partitions.", iex);
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * The iterator returned by this provider. It aggregates the input upon the first call, then returns the
+	 * in-memory aggregates, and finally the sorted records of the spilled partitions.
+	 */
+	private final class AggregatingIterator implements MutableObjectIterator<T>
+	{
+		private MutableObjectIterator<T> current;
+		
+		private boolean inMemoryPhase = true;
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			if (this.current == null) {
+				if (!this.inMemoryPhase) {
+					return false;
+				}
+				build();
+				this.current = HybridHashAggregator.this.table.getAggregates();
+			}
+			
+			if (this.current.next(target)) {
+				return true;
+			}
+			else if (this.inMemoryPhase) {
+				this.inMemoryPhase = false;
+				this.current = startSortingSpilledPartitions();
+				return this.current != null && this.current.next(target);
+			}
+			else {
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Iterator reading the records of all spilled partitions one after the other. Consumed spill files
+	 * are deleted.
+	 */
+	private final class SpilledPartitionsIterator implements MutableObjectIterator<T>
+	{
+		private BlockChannelReader reader;
+		
+		private ChannelReaderInputView inView;
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			final HybridHashAggregator<T> outer = HybridHashAggregator.this;
+			while (true) {
+				if (this.inView == null) {
+					if (outer.spilledPartitions == null || outer.spilledPartitions.isEmpty()) {
+						return false;
+					}
+					final SpilledPartition p = outer.spilledPartitions.remove(0);
+					this.reader = outer.ioManager.createBlockChannelReader(p.getChannel(),
+						new LinkedBlockingQueue<MemorySegment>());
+					this.inView = new ChannelReaderInputView(this.reader, outer.readMemory, p.getNumBlocks(), false);
+				}
+				
+				try {
+					outer.serializer.deserialize(target, this.inView);
+					return true;
+				}
+				catch (EOFException eofex) {
+					outer.readMemory = this.inView.close();
+					this.reader.deleteChannel();
+					this.inView = null;
+					this.reader = null;
+				}
+			}
+		}
+	}
+}
@@ -48,8 +48,15 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * how large the input will be.
  * <p>
  * The design of this class follows on many parts the design presented in
- * "Hash joins and hash teams in Microsoft SQL Server", by Goetz Graefe et al. In its current state, the
- * implementation lacks features like dynamic role reversal, partition tuning, or histogram guided partitioning. 
+ * "Hash joins and hash teams in Microsoft SQL Server", by Goetz Graefe et al.
+ * <p>
+ * Spilled partitions are processed with dynamic role reversal: If the probe side of a spilled partition turns
+ * out to be smaller than its build side and fits into memory, while the build side does not, the hash table is
+ * built from the probe side records and the build side records are streamed against it. In that case, a probe
+ * side record may be returned multiple times, each time with a subset of its matching build side records.
+ * Spilled partitions that need to be partitioned again choose their fan-out guided by a histogram over the
+ * key hash codes that is collected while the partitions are built. The implementation currently lacks
+ * partition tuning. 
  *<p>
  *
  *
@@ -82,6 +89,11 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * |
  * </pre>
  * 
+ * Once a partition is spilled, the hash codes and pointers of its buckets are no longer needed. The bucket
+ * status is then set to indicate that the space after the bucket header holds a bloom filter over the hash
+ * codes of all build side records in the bucket. Probe side records that fail the filter cannot have a match
+ * and are dropped, rather than being written to the spilled partition's probe side.
+ * 
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  * 
  * @param <BT> The type of records from the build side that are stored in the hash table.
@@ -111,6 +123,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private static final int MAX_NUM_PARTITIONS = Byte.MAX_VALUE;
 	
+	/**
+	 * The factor by which the fan-out for re-partitioning a spilled partition exceeds the minimal fan-out
+	 * estimated from the histogram, to account for estimation errors.
+	 */
+	private static final int FAN_OUT_SAFETY_FACTOR = 4;
+	
 	/**
 	 * The default record width that is used when no width is given. The record width is
 	 * used to determine the ratio of the number of memory segments intended for partition
@@ -186,13 +204,30 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private static final long BUCKET_FORWARD_POINTER_NOT_SET = ~0x0L;
 	
-//	private static final byte BUCKET_STATUS_SPILLED = 1;
-	
 	/**
 	 * Constant for the bucket status, indicating that the bucket is in memory.
 	 */
 	private static final byte BUCKET_STATUS_IN_MEMORY = 0;
 	
+	/**
+	 * Constant for the bucket status, indicating that the bucket belongs to a spilled partition and
+	 * holds a bloom filter over the hash codes of its records.
+	 */
+	private static final byte BUCKET_STATUS_IN_FILTER = 1;
+	
+	// ------------------------------ Bloom Filters ------------------------------
+	
+	/**
+	 * The number of bits in the bloom filter of a bucket.
+	 */
+	private static final int BLOOM_FILTER_NUM_BITS = (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) * 8;
+	
+	/**
+	 * The number of hash functions of the bloom filters. Three functions keep the false positive
+	 * rate low for the up to few hundred records per bucket that spilled partitions typically have.
+	 */
+	private static final int BLOOM_FILTER_NUM_HASH_FUNCTIONS = 3;
+	
 	// ------------------------------------------------------------------------
 	//                              Members
 	// ------------------------------------------------------------------------
@@ -300,6 +335,57 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private BlockChannelReader currentSpilledProbeSide;
 	
+	/**
+	 * The reader for the spilled build side of a partition that is processed with reversed roles.
+	 */
+	private BlockChannelReader currentSpilledBuildSide;
+	
+	/**
+	 * The view over the spilled build side of a partition that is processed with reversed roles.
+	 */
+	private ChannelReaderInputView reversedBuildSideView;
+	
+	/**
+	 * The iterator over the spilled build side of a partition that is processed with reversed roles.
+	 */
+	private ChannelReaderInputViewIterator<BT> reversedBuildSideIterator;
+	
+	/**
+	 * The in-memory partition holding the probe side records of a partition that is processed with
+	 * reversed roles, or null, if the current partition is processed regularly.
+	 */
+	private HashPartition<PT, BT> reversedPartition;
+	
+	/**
+	 * The iterator over the probe side records matching the current build side record, when roles are reversed.
+	 */
+	private HashBucketIterator<PT, BT> reversedBucketIterator;
+	
+	/**
+	 * The comparator used to match build side records against the probe side records, when roles are reversed.
+	 */
+	private ReversedPairComparator<BT, PT> reversedComparator;
+	
+	/**
+	 * The build side record that is currently matched against the table, when roles are reversed.
+	 */
+	private BT reversedBuildRecord;
+	
+	/**
+	 * The current probe side record, when roles are reversed.
+	 */
+	private PT reversedProbeRecord;
+	
+	/**
+	 * Flag indicating whether the reversed bucket iterator is set for the current build side record.
+	 */
+	private boolean reversedBuildRecordValid;
+	
+	/**
+	 * The number of spilled partitions that were processed with reversed roles since the table was opened.
+	 */
+	private int numReversedPartitions;
+	
 	/**
 	 * The channel enumerator that is used while processing the current partition to create
 	 * channels for the spill partitions it requires.
@@ -429,6 +515,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		// open builds the initial table by consuming the build-side input
 		this.currentRecursionDepth = 0;
+		this.numReversedPartitions = 0;
 		buildInitialTable(buildSide);
 		
 		// the first prober is the probe-side input
@@ -437,6 +524,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		// the bucket iterator can remain constant over the time
 		this.bucketIterator = new HashBucketIterator<BT, PT>(this.buildSideSerializer, this.recordComparator);
 		this.lazyBucketIterator = new LazyHashBucketIterator<BT, PT>(this.recordComparator);
+		
+		// the structures for partitions that are processed with reversed roles
+		this.reversedComparator = new ReversedPairComparator<BT, PT>(this.recordComparator);
+		this.reversedBucketIterator = new HashBucketIterator<PT, BT>(this.probeSideSerializer, this.reversedComparator);
+		this.reversedBuildRecord = this.buildSideSerializer.createInstance();
+		this.reversedProbeRecord = this.probeSideSerializer.createInstance();
 	}
 	
 	/**
@@ -445,6 +538,13 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	public boolean nextRecord() throws IOException
 	{
+		if (this.reversedPartition != null) {
+			if (nextReversedRecord()) {
+				return true;
+			}
+			return prepareNextPartition() && nextRecord();
+		}
+		
 		final ProbeIterator<PT> probeIter = this.probeIterator;
 		final TypeComparator<PT> probeAccessors = this.probeSideComparator;
 		
@@ -469,7 +569,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				this.bucketIterator.set(bucket, p.overflowSegments, p, hash, bucketInSegmentOffset);
 				return true;
 			}
-			else {
+			else if (bucket.get(bucketInSegmentOffset + HEADER_STATUS_OFFSET) != BUCKET_STATUS_IN_FILTER ||
+					bloomFilterMayContain(bucket, bucketInSegmentOffset, hash))
+			{
 				p.insertIntoProbeBuffer(next);
 			}
 		}
@@ -493,11 +595,33 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.currentSpilledProbeSide = null;
 		}
 		
+		return prepareNextPartition() && nextRecord();
+	}
+	
+	/**
+	 * Sets up the hash table for the next pending partition, if there is one. Depending on the sizes of
+	 * the partition's build and probe side, the partition is processed regularly or with reversed roles.
+	 * 
+	 * @return True, if a pending partition was set up, false, if no more partitions are pending.
+	 * @throws IOException Thrown, if an I/O problem occurs while reading or spilling the partition.
+	 */
+	protected boolean prepareNextPartition() throws IOException
+	{
 		// check if there are pending partitions
 		if (!this.partitionsPending.isEmpty())
 		{
 			final HashPartition<BT, PT> p = this.partitionsPending.get(0);
 			
+			if (isRoleReversalBeneficial(p)) {
+				// build the next table from the probe side and stream the build side against it
+				buildReversedTableFromSpilledPartition(p);
+				this.numReversedPartitions++;
+				
+				this.partitionsPending.remove(0);
+				this.currentRecursionDepth = p.getRecursionLevel() + 1;
+				return true;
+			}
+			
 			// build the next table
 			buildTableFromSpilledPartition(p);
 			
@@ -516,9 +640,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			// unregister the pending partition
 			this.partitionsPending.remove(0);
 			this.currentRecursionDepth = p.getRecursionLevel() + 1;
-			
-			// recursively get the next
-			return nextRecord();
+			return true;
 		}
 		else {
 			// no more data
@@ -526,6 +648,46 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 	}
 	
+	/**
+	 * Advances to the next match of a partition that is processed with reversed roles. The matches are
+	 * presented as a probe side record, together with a build side iterator that returns the single
+	 * build side record that the probe side record matched.
+	 * 
+	 * @return True, if a next match was found, false, if the partition is exhausted.
+	 * @throws IOException Thrown, if an I/O problem occurs while reading the spilled build side.
+	 */
+	private final boolean nextReversedRecord() throws IOException
+	{
+		final BT buildRecord = this.reversedBuildRecord;
+		
+		while (true)
+		{
+			if (this.reversedBuildRecordValid && this.reversedBucketIterator.next(this.reversedProbeRecord)) {
+				this.bucketIterator.setSingleRecord(buildRecord);
+				return true;
+			}
+			
+			if (!this.reversedBuildSideIterator.next(buildRecord)) {
+				this.reversedBuildRecordValid = false;
+				releaseReversedPartition();
+				return false;
+			}
+			
+			final int hash = hash(this.buildSideComparator.hash(buildRecord), this.currentRecursionDepth);
+			final int posHashCode = hash % this.numBuckets;
+			
+			// get the bucket for the given hash code
+			final int bucketArrayPos = posHashCode >> this.bucketsPerSegmentBits;
+			final int bucketInSegmentOffset = (posHashCode & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			final MemorySegment bucket = this.buckets[bucketArrayPos];
+			
+			final HashPartition<PT, BT> p = this.reversedPartition;
+			this.reversedComparator.setReference(buildRecord);
+			this.reversedBucketIterator.set(bucket, p.overflowSegments, p, hash, bucketInSegmentOffset);
+			this.reversedBuildRecordValid = true;
+		}
+	}
+	
 	public HashBucketIterator<BT, PT> getMatchesFor(PT record) throws IOException
 	{
 		final TypeComparator<PT> probeAccessors = this.probeSideComparator;
@@ -583,7 +745,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	public PT getCurrentProbeRecord()
 	{
-		return this.probeIterator.getCurrent();
+		return this.reversedPartition == null ? this.probeIterator.getCurrent() : this.reversedProbeRecord;
 	}
 	
 	/**
@@ -629,6 +791,19 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			}
 		}
 		
+		// clear the partition that is currently processed with reversed roles, if there is one
+		if (this.reversedPartition != null) {
+			try {
+				if (!this.reversedBuildSideView.isClosed()) {
+					this.availableMemory.addAll(this.reversedBuildSideView.close());
+				}
+			}
+			catch (Throwable t) {
+				LOG.warn("Could not close the reader for the current spilled partition build side.", t);
+			}
+			releaseReversedPartition();
+		}
+		
 		// clear the partitions that are still to be done (that have files on disk)
 		for (int i = 0; i < this.partitionsPending.size(); i++) {
 			final HashPartition<BT, PT> p = this.partitionsPending.get(i);
@@ -646,6 +821,17 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 	}
 	
+	/**
+	 * Gets the number of spilled partitions that were processed with reversed roles, i.e. whose table was
+	 * built from the probe side records, since the table was opened.
+	 * 
+	 * @return The number of partitions processed with reversed roles.
+	 */
+	public int getNumberOfReversedPartitions()
+	{
+		return this.numReversedPartitions;
+	}
+	
 	public List<MemorySegment> getFreedMemory()
 	{
 		if (!this.closed) {
@@ -721,11 +907,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			throw new RuntimeException("Hash Join bug in memory management: Memory buffers leaked.");
 		}
 		
-		long numBuckets = (p.getBuildSideRecordCount() * RECORD_TABLE_BYTES) / (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) + 1;
-		
-		// we need to consider the worst case where everything hashes to one bucket which needs to overflow by the same
-		// number of total buckets again.
-		final long totalBuffersNeeded = (numBuckets * 2) / (this.bucketsPerSegmentMask + 1) + p.getBuildSideBlockCount() + 1;
+		final long numBuckets = getNumBucketsForRecords(p.getBuildSideRecordCount());
+		final long totalBuffersNeeded = getNumBuffersForInMemoryTable(numBuckets, p.getBuildSideBlockCount());
 		
 		if (totalBuffersNeeded < totalBuffersAvailable)
 		{
@@ -770,9 +953,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			final int bucketCount = (int) (((long) totalBuffersAvailable) * RECORD_TABLE_BYTES / 
 					(avgRecordLenPartition + RECORD_OVERHEAD_BYTES));
 			
-			// compute in how many splits, we'd need to partition the result 
-			final int splits = (int) (totalBuffersNeeded / totalBuffersAvailable) + 1;
-			final int partitionFanOut = Math.min(10 * splits /* being conservative */, MAX_NUM_PARTITIONS);
+			// compute how many partitions we create, guided by the partition's histogram
+			final int partitionFanOut = getPartitioningFanOut(p.getBuildSideHistogram(), totalBuffersNeeded,
+				totalBuffersAvailable);
 			
 			createPartitions(partitionFanOut, nextRecursionLevel);
 			
@@ -807,6 +990,131 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 	}
 	
+	/**
+	 * Checks whether the given spilled partition should be processed with reversed roles. That is the case,
+	 * if its probe side is smaller than its build side and fits into memory together with the table
+	 * structure, while its build side does not. Building the table from the probe side then saves the
+	 * recursive partitioning of the build side.
+	 * 
+	 * @param p The spilled partition.
+	 * @return True, if the table should be built from the partition's probe side, false otherwise.
+	 */
+	protected boolean isRoleReversalBeneficial(final HashPartition<BT, PT> p)
+	{
+		if (p.getProbeSideBlockCount() >= p.getBuildSideBlockCount()) {
+			return false;
+		}
+		
+		final int totalBuffersAvailable = this.availableMemory.size() + this.writeBehindBuffersAvailable;
+		final long buildSideBuffersNeeded = getNumBuffersForInMemoryTable(
+			getNumBucketsForRecords(p.getBuildSideRecordCount()), p.getBuildSideBlockCount());
+		if (buildSideBuffersNeeded < totalBuffersAvailable) {
+			// the build side fits into memory as well
+			return false;
+		}
+		
+		// the probe side needs two more buffers for reading the build side
+		final long probeSideBuffersNeeded = getNumBuffersForInMemoryTable(
+			getNumBucketsForRecords(p.getProbeSideRecordCount()), p.getProbeSideBlockCount()) + 2;
+		return probeSideBuffersNeeded < totalBuffersAvailable;
+	}
+	
+	/**
+	 * Builds an in-memory hash table from the probe side of the given spilled partition and sets up the
+	 * spilled build side to be streamed against that table. The caller must have made sure, through
+	 * {@link #isRoleReversalBeneficial(HashPartition)}, that the probe side fits into memory.
+	 * 
+	 * @param p The spilled partition.
+	 * @throws IOException Thrown, if an I/O problem occurs while reading the spilled partition.
+	 */
+	protected void buildReversedTableFromSpilledPartition(final HashPartition<BT, PT> p)
+	throws IOException
+	{
+		final int nextRecursionLevel = p.getRecursionLevel() + 1;
+		
+		final int totalBuffersAvailable = this.availableMemory.size() + this.writeBehindBuffersAvailable;
+		if (totalBuffersAvailable != this.totalNumBuffers - this.numWriteBehindBuffers) {
+			throw new RuntimeException("Hash Join bug in memory management: Memory buffers leaked.");
+		}
+		
+		// set up the reader for the probe side
+		final LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<MemorySegment>();
+		final BlockChannelReader probeReader = this.ioManager.createBlockChannelReader(
+			p.getProbeSideChannel().getChannelID(), returnQueue);
+		
+		final List<MemorySegment> memory = new ArrayList<MemorySegment>(2);
+		memory.add(getNextBuffer());
+		memory.add(getNextBuffer());
+		
+		final ChannelReaderInputViewIterator<PT> probeIter = new ChannelReaderInputViewIterator<PT>(probeReader, 
+			returnQueue, memory, this.availableMemory, this.probeSideSerializer, p.getProbeSideBlockCount());
+		
+		// erect the buckets and create the partition that holds the probe side records
+		initTable((int) getNumBucketsForRecords(p.getProbeSideRecordCount()), (byte) 1);
+		final HashPartition<PT, BT> newPart = new HashPartition<PT, BT>(this.probeSideSerializer, 
+			this.buildSideSerializer, 0, nextRecursionLevel, getNextBuffer(), this, this.segmentSize);
+		
+		// read the probe side and index it through the hash table
+		final TypeComparator<PT> ptComparator = this.probeSideComparator;
+		final PT record = this.reversedProbeRecord;
+		while (probeIter.next(record))
+		{
+			final int hashCode = hash(ptComparator.hash(record), nextRecursionLevel);
+			final int posHashCode = hashCode % this.numBuckets;
+			
+			// get the bucket for the given hash code
+			final int bucketArrayPos = posHashCode >> this.bucketsPerSegmentBits;
+			final int bucketInSegmentPos = (posHashCode & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			final MemorySegment bucket = this.buckets[bucketArrayPos];
+			
+			final long pointer = newPart.insertIntoBuildBuffer(record, hashCode);
+			insertBucketEntry(newPart, bucket, bucketInSegmentPos, hashCode, pointer);
+		}
+		newPart.finalizeBuildPhase(this.ioManager, this.currentEnumerator, this.writeBehindBuffers);
+		
+		// the probe side is now in memory, the reader has been closed by the iterator
+		p.getProbeSideChannel().deleteChannel();
+		
+		// set up the build side to be streamed against the table
+		final List<MemorySegment> segments = new ArrayList<MemorySegment>(2);
+		segments.add(getNextBuffer());
+		segments.add(getNextBuffer());
+		
+		this.currentSpilledBuildSide = this.ioManager.createBlockChannelReader(p.getBuildSideChannel().getChannelID());
+		this.reversedBuildSideView = new HeaderlessChannelReaderInputView(this.currentSpilledBuildSide, segments,
+					p.getBuildSideBlockCount(), p.getLastSegmentLimit(), false);
+		this.reversedBuildSideIterator = new ChannelReaderInputViewIterator<BT>(this.reversedBuildSideView, 
+					this.availableMemory, this.buildSideSerializer);
+		
+		this.reversedPartition = newPart;
+		this.reversedBuildRecordValid = false;
+	}
+	
+	/**
+	 * Releases the partition that was processed with reversed roles. The partition's memory and the
+	 * memory of the table structure are returned and the spilled build side file is deleted.
+	 */
+	private void releaseReversedPartition()
+	{
+		final HashPartition<PT, BT> p = this.reversedPartition;
+		this.reversedPartition = null;
+		this.reversedBuildSideView = null;
+		this.reversedBuildSideIterator = null;
+		
+		if (this.currentSpilledBuildSide != null) {
+			try {
+				this.currentSpilledBuildSide.deleteChannel();
+			}
+			catch (Throwable t) {
+				LOG.warn("Could not delete the temp file for the current spilled partition build side.", t);
+			}
+			this.currentSpilledBuildSide = null;
+		}
+		
+		p.clearAllMemory(this.availableMemory);
+		releaseTable();
+	}
+	
 	/**
 	 * @param pair
 	 * @param hashCode
@@ -833,11 +1141,15 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		// --------- Step 1: Get the partition for this pair and put the pair into the buffer ---------
 		
-		long pointer = p.insertIntoBuildBuffer(record);
+		long pointer = p.insertIntoBuildBuffer(record, hashCode);
 		if (pointer != -1) {
 			// record was inserted into an in-memory partition. a pointer must be inserted into the buckets
 			insertBucketEntry(p, bucket, bucketInSegmentPos, hashCode, pointer);
 		}
+		else {
+			// record was inserted into a spilled partition. its hash code goes into the bucket's bloom filter
+			addToBloomFilter(bucket, bucketInSegmentPos, hashCode);
+		}
 	}
 	
 	/**
@@ -848,7 +1160,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 * @param pointer
 	 * @throws IOException
 	 */
-	private final void insertBucketEntry(final HashPartition<BT, PT> p, final MemorySegment bucket, 
+	private final void insertBucketEntry(final HashPartition<?, ?> p, final MemorySegment bucket, 
 			final int bucketInSegmentPos, final int hashCode, final long pointer)
 	throws IOException
 	{
@@ -908,7 +1220,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 					// no memory available to create overflow bucket. we need to spill a partition
 					final int spilledPart = spillPartition();
 					if (spilledPart == p.getPartitionNumber()) {
-						// this bucket is no longer in-memory
+						// this bucket is no longer in-memory. the record was spilled with its partition,
+						// so its hash code goes into the bucket's bloom filter
+						addToBloomFilter(bucket, bucketInSegmentPos, hashCode);
 						return;
 					}
 					overflowSeg = getNextBuffer();
@@ -1078,6 +1392,10 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 		final HashPartition<BT, PT> p = partitions.get(largestPartNum);
 		
+		// the table entries of the partition are replaced by bloom filters, before the
+		// overflow buckets are released through spilling
+		buildBloomFiltersForPartition(p);
+		
 		// spill the partition
 		int numBuffersFreed = p.spillPartition(this.availableMemory, this.ioManager, 
 										this.currentEnumerator.next(), this.writeBehindBuffers);
@@ -1093,6 +1411,61 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		return largestPartNum;
 	}
 	
+	/**
+	 * Replaces the entries of all buckets of the given partition with bloom filters over the entries'
+	 * hash codes. This method must be called before the partition is spilled and releases its overflow
+	 * buckets. Afterwards, the buckets only serve to filter probe side records.
+	 * 
+	 * @param p The partition that is about to be spilled.
+	 */
+	protected void buildBloomFiltersForPartition(final HashPartition<BT, PT> p)
+	{
+		final int numPartitions = this.partitionsBeingBuilt.size();
+		int[] hashCodes = new int[NUM_ENTRIES_PER_BUCKET * 4];
+		
+		// buckets are assigned to the partitions round robin
+		for (int bucketNum = p.getPartitionNumber(); bucketNum < this.numBuckets; bucketNum += numPartitions)
+		{
+			final MemorySegment bucket = this.buckets[bucketNum >> this.bucketsPerSegmentBits];
+			final int bucketInSegmentPos = (bucketNum & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			
+			// gather the hash codes of the bucket and all its overflow buckets
+			int numHashCodes = 0;
+			MemorySegment seg = bucket;
+			int segOffset = bucketInSegmentPos;
+			while (true) {
+				final int count = seg.getShort(segOffset + HEADER_COUNT_OFFSET);
+				if (numHashCodes + count > hashCodes.length) {
+					final int[] newHashCodes = new int[Math.max(hashCodes.length * 2, numHashCodes + count)];
+					System.arraycopy(hashCodes, 0, newHashCodes, 0, numHashCodes);
+					hashCodes = newHashCodes;
+				}
+				for (int i = 0; i < count; i++) {
+					hashCodes[numHashCodes++] = seg.getInt(segOffset + BUCKET_HEADER_LENGTH + (i * HASH_CODE_LEN));
+				}
+				
+				final long forwardPointer = seg.getLong(segOffset + HEADER_FORWARD_OFFSET);
+				if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
+					break;
+				}
+				seg = p.overflowSegments[(int) (forwardPointer >>> 32)];
+				segOffset = (int) (forwardPointer & 0xffffffff);
+			}
+			
+			// clear the bucket and set up the filter
+			for (int i = bucketInSegmentPos + BUCKET_HEADER_LENGTH; i < bucketInSegmentPos + HASH_BUCKET_SIZE; i++) {
+				bucket.put(i, (byte) 0);
+			}
+			bucket.put(bucketInSegmentPos + HEADER_STATUS_OFFSET, BUCKET_STATUS_IN_FILTER);
+			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) 0);
+			bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+			
+			for (int i = 0; i < numHashCodes; i++) {
+				addToBloomFilter(bucket, bucketInSegmentPos, hashCodes[i]);
+			}
+		}
+	}
+	
 	/**
 	 * This method makes sure that at least a certain number of memory segments is in the list of free segments.
 	 * Free memory can be in the list of free segments, or in the return-queue where segments used to write behind are
@@ -1223,6 +1596,71 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		return Math.max(10, Math.min(numBuffers / 10, MAX_NUM_PARTITIONS));
 	}
 	
+	/**
+	 * Determines the fan-out for partitioning a spilled partition again, when it does not fit into memory.
+	 * <p>
+	 * The fan-out is guided by the histogram over the hash codes of the partition's build side. Records of a
+	 * frequent key all fall into the same histogram bin and end up in the same partition, regardless of
+	 * the fan-out. The fraction of records in the fullest bin that exceeds the bin's uniform share is
+	 * hence treated as unsplittable: The fan-out is chosen such that the largest new partition is expected to
+	 * fit into memory, and is increased by a safety factor. If the frequent keys alone do not fit into memory,
+	 * the maximal fan-out is used to split the remaining keys as much as possible.
+	 * 
+	 * @param histogram The histogram over the hash codes of the spilled partition's build side.
+	 * @param buffersNeeded The number of buffers needed to hold the partition in memory.
+	 * @param buffersAvailable The number of buffers available to the hash table.
+	 * @return The number of partitions to use.
+	 */
+	public static final int getPartitioningFanOut(long[] histogram, long buffersNeeded, int buffersAvailable)
+	{
+		long total = 0;
+		long largestBin = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			total += histogram[i];
+			largestBin = Math.max(largestBin, histogram[i]);
+		}
+		
+		// compute in how many splits, we'd need to partition the result, if the keys were uniformly distributed
+		final int splits = (int) (buffersNeeded / buffersAvailable) + 1;
+		
+		// the fraction of the records that belongs to the frequent keys
+		final double skew = total == 0 ? 0.0 :
+			Math.max(0.0, (largestBin - ((double) total) / histogram.length) / total);
+		final double splittable = 1.0 - skew * splits;
+		
+		final int fanOut = splittable <= 0.0 ? MAX_NUM_PARTITIONS : 
+			(int) Math.min(Math.ceil(FAN_OUT_SAFETY_FACTOR * splits / splittable), MAX_NUM_PARTITIONS);
+		
+		// each partition needs at least one buffer, and some must remain for the table structure
+		return Math.max(2, Math.min(fanOut, buffersAvailable / 2));
+	}
+	
+	/**
+	 * Computes the number of buckets for a table that holds the given number of records.
+	 * 
+	 * @param numRecords The number of records.
+	 * @return The number of buckets.
+	 */
+	private static final long getNumBucketsForRecords(long numRecords)
+	{
+		return (numRecords * RECORD_TABLE_BYTES) / (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) + 1;
+	}
+	
+	/**
+	 * Computes the number of buffers needed to hold a partition with the given number of blocks in memory,
+	 * together with a table of the given number of buckets.
+	 * 
+	 * @param numBuckets The number of buckets of the table.
+	 * @param numBlocks The number of blocks of the partition.
+	 * @return The number of buffers needed.
+	 */
+	private final long getNumBuffersForInMemoryTable(long numBuckets, int numBlocks)
+	{
+		// we need to consider the worst case where everything hashes to one bucket which needs to overflow by the same
+		// number of total buckets again.
+		return (numBuckets * 2) / (this.bucketsPerSegmentMask + 1) + numBlocks + 1;
+	}
+	
 	public static final int getInitialTableSize(int numBuffers, int bufferSize, int numPartitions, int recordLenBytes)
 	{
 		// ----------------------------------------------------------------------------------------
@@ -1250,6 +1688,49 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		return numBuckets > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) numBuckets;
 	}
 	
+	/**
+	 * Adds the given hash code to the bloom filter held by the bucket at the given position. The bit
+	 * positions are derived from the two halves of the hash code, following Kirsch and Mitzenmacher.
+	 * 
+	 * @param bucket The memory segment holding the bucket.
+	 * @param bucketInSegmentPos The position of the bucket in the memory segment.
+	 * @param hashCode The hash code to add.
+	 */
+	private static final void addToBloomFilter(MemorySegment bucket, int bucketInSegmentPos, int hashCode)
+	{
+		final int filterOffset = bucketInSegmentPos + BUCKET_HEADER_LENGTH;
+		final int hash2 = hashCode >>> 16;
+		
+		for (int i = 1; i <= BLOOM_FILTER_NUM_HASH_FUNCTIONS; i++) {
+			final int bit = ((hashCode + i * hash2) & Integer.MAX_VALUE) % BLOOM_FILTER_NUM_BITS;
+			final int pos = filterOffset + (bit >>> 3);
+			bucket.put(pos, (byte) (bucket.get(pos) | (1 << (bit & 0x7))));
+		}
+	}
+	
+	/**
+	 * Checks whether the bloom filter held by the bucket at the given position may contain the given
+	 * hash code.
+	 * 
+	 * @param bucket The memory segment holding the bucket.
+	 * @param bucketInSegmentPos The position of the bucket in the memory segment.
+	 * @param hashCode The hash code to check.
+	 * @return False, if the hash code was definitely not added to the filter, true otherwise.
+	 */
+	private static final boolean bloomFilterMayContain(MemorySegment bucket, int bucketInSegmentPos, int hashCode)
+	{
+		final int filterOffset = bucketInSegmentPos + BUCKET_HEADER_LENGTH;
+		final int hash2 = hashCode >>> 16;
+		
+		for (int i = 1; i <= BLOOM_FILTER_NUM_HASH_FUNCTIONS; i++) {
+			final int bit = ((hashCode + i * hash2) & Integer.MAX_VALUE) % BLOOM_FILTER_NUM_BITS;
+			if ((bucket.get(filterOffset + (bit >>> 3)) & (1 << (bit & 0x7))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * Assigns a partition to a bucket.
 	 * 
@@ -1318,6 +1799,10 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		private long lastPointer;
 		
+		private BT singleRecord;
+		
+		private boolean singleRecordReturned;
+		
 		
 		HashBucketIterator(TypeSerializer<BT> accessor, TypePairComparator<PT, BT> comparator)
 		{
@@ -1340,11 +1825,33 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
 			this.countInSegment = bucket.getShort(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 			this.numInSegment = 0;
+			
+			this.singleRecord = null;
 		}
 		
+		/**
+		 * Sets the iterator to return only the given record, which is not part of the table. This is used
+		 * for partitions that are processed with reversed roles.
+		 * 
+		 * @param record The single record to return.
+		 */
+		void setSingleRecord(BT record)
+		{
+			this.singleRecord = record;
+			this.singleRecordReturned = false;
+		}
 
 		public boolean next(BT target)
 		{
+			if (this.singleRecord != null) {
+				if (this.singleRecordReturned) {
+					return false;
+				}
+				this.accessor.copyTo(this.singleRecord, target);
+				this.singleRecordReturned = true;
+				return true;
+			}
+			
 			// loop over all segments that are involved in the bucket (original bucket plus overflow buckets)
 			while (true)
 			{
@@ -1396,6 +1903,10 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		public void writeBack(BT value) throws IOException
 		{
+			if (this.singleRecord != null) {
+				throw new IllegalStateException("Build side records of partitions that are processed with " +
+						"reversed roles cannot be written back.");
+			}
 			final SeekableDataOutputView outView = this.partition.getWriteView();
 			outView.setWritePosition(this.lastPointer);
 			this.accessor.serialize(value, outView);
@@ -1403,6 +1914,10 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		public void reset()
 		{
+			if (this.singleRecord != null) {
+				this.singleRecordReturned = false;
+				return;
+			}
 			this.bucket = this.originalBucket;
 			this.bucketInSegmentOffset = this.originalBucketInSegmentOffset;
 			
@@ -1505,6 +2020,51 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	} // end HashBucketIterator
 	
 
+	// ======================================================================================================
+	
+	/**
+	 * A pair comparator that uses a build side record as the reference and checks probe side records
+	 * against it. It is used to match the build side against a table built from the probe side, when
+	 * the roles of a partition are reversed.
+	 */
+	private static final class ReversedPairComparator<BT, PT> implements TypePairComparator<BT, PT>
+	{
+		private final TypePairComparator<PT, BT> comparator;
+		
+		private BT reference;
+		
+		private ReversedPairComparator(TypePairComparator<PT, BT> comparator)
+		{
+			this.comparator = comparator;
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.generic.types.TypePairComparator#setReference(java.lang.Object)
+		 */
+		@Override
+		public void setReference(BT reference) {
+			this.reference = reference;
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.generic.types.TypePairComparator#equalToReference(java.lang.Object)
+		 */
+		@Override
+		public boolean equalToReference(PT candidate) {
+			this.comparator.setReference(candidate);
+			return this.comparator.equalToReference(this.reference);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.generic.types.TypePairComparator#compareToReference(java.lang.Object)
+		 */
+		@Override
+		public int compareToReference(PT candidate) {
+			this.comparator.setReference(candidate);
+			return -this.comparator.compareToReference(this.reference);
+		}
+	}
+	
 	// ======================================================================================================
 	
 	public static final class ProbeIterator<PT>
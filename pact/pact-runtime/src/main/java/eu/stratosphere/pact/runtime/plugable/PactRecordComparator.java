@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import eu.stratosphere.nephele.services.memorymanager.DataInputView;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.type.BinaryComparableKey;
 import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.KeyFieldOutOfBoundsException;
 import eu.stratosphere.pact.common.type.NormalizableKey;
@@ -30,6 +31,9 @@ import eu.stratosphere.pact.common.util.InstantiationUtil;
 /**
  * Implementation of the {@link TypeComparator} interface for the pact record. Instances of this class
  * are parameterized with which fields are relevant to the comparison. 
+ * <p>
+ * Key fields whose types implement {@link BinaryComparableKey} are compared on their serialized representation
+ * when serialized records are compared, without deserializing them into key objects.
  *
  * @author Stephan Ewen
  */
@@ -39,6 +43,8 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 	
 	private final Key[] keyHolders, transientKeyHolders;
 	
+	private final BinaryComparableKey[] binaryComparableKeys;
+	
 	private final PactRecord temp1, temp2;
 	
 	private final boolean[] ascending;
@@ -85,6 +91,7 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 			this.keyHolders[i] = InstantiationUtil.instantiate(keyTypes[i], Key.class);
 			this.transientKeyHolders[i] = InstantiationUtil.instantiate(keyTypes[i], Key.class);
 		}
+		this.binaryComparableKeys = getBinaryComparableKeys(this.keyHolders);
 		
 		// set up auxiliary fields for normalized key support
 		this.normalizedKeyLengths = new int[keyFields.length];
@@ -156,6 +163,7 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 			// this should never happen, because the classes have been instantiated before. Report for debugging.
 			throw new RuntimeException("Could not instantiate key classes when duplicating PactRecordComparator.", ex);
 		}
+		this.binaryComparableKeys = getBinaryComparableKeys(this.keyHolders);
 		
 		this.normalizedKeyLengths = toCopy.normalizedKeyLengths;
 		this.numLeadingNormalizableKeys = toCopy.numLeadingNormalizableKeys;
@@ -245,13 +253,20 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 		this.temp2.read(source2);
 		
 		for (int i = 0; i < this.keyFields.length; i++) {
-			final Key k1 = this.temp1.getField(this.keyFields[i], this.keyHolders[i]);
-			final Key k2 = this.temp2.getField(this.keyFields[i], this.transientKeyHolders[i]);
-			
-			if (k1 == null || k2 == null)
-				throw new NullKeyFieldException(this.keyFields[i]);
+			final int comp;
+			if (this.binaryComparableKeys[i] != null) {
+				// compare the serialized fields directly
+				comp = this.temp1.compareSerializedField(this.keyFields[i], this.temp2, this.binaryComparableKeys[i]);
+			} else {
+				final Key k1 = this.temp1.getField(this.keyFields[i], this.keyHolders[i]);
+				final Key k2 = this.temp2.getField(this.keyFields[i], this.transientKeyHolders[i]);
+				
+				if (k1 == null || k2 == null)
+					throw new NullKeyFieldException(this.keyFields[i]);
+				
+				comp = k1.compareTo(k2);
+			}
 			
-			final int comp = k1.compareTo(k2);
 			if (comp != 0)
 				return this.ascending[i] ? comp : -comp;
 		}
@@ -329,6 +344,24 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 		return new PactRecordComparator(this);
 	}
 	
+	/**
+	 * Collects the key holders that can be compared in their serialized form.
+	 * 
+	 * @param keyHolders The key holders.
+	 * @return An array with the key holders that implement {@link BinaryComparableKey} and <i>null</i> entries for
+	 *         all other key holders.
+	 */
+	private static BinaryComparableKey[] getBinaryComparableKeys(Key[] keyHolders)
+	{
+		final BinaryComparableKey[] binaryComparableKeys = new BinaryComparableKey[keyHolders.length];
+		for (int i = 0; i < keyHolders.length; i++) {
+			if (keyHolders[i] instanceof BinaryComparableKey) {
+				binaryComparableKeys[i] = (BinaryComparableKey) keyHolders[i];
+			}
+		}
+		return binaryComparableKeys;
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                           Non Standard Comparator Methods
 	// --------------------------------------------------------------------------------------------
@@ -0,0 +1,99 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.shipping;
+
+/**
+ * A count-min sketch over 32 bit hash codes. The sketch estimates the frequencies of the hash codes added
+ * to it in constant memory. The estimates never underestimate the true frequency, but may overestimate it
+ * due to collisions in the sketch's rows.
+ */
+public final class CountMinSketch
+{
+	private static final int[] ROW_SEEDS = new int[] { 0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f,
+	                                                   0x165667b1, 0xd3a2646c, 0xfd7046c5, 0xb55a4f09 };
+	
+	private final long[][] counts;		// the counters, one row per hash function
+	
+	private final int mask;				// the mask to map hash codes to a counter within a row
+	
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new sketch with the given number of rows and counters per row.
+	 * 
+	 * @param depth The number of rows, i.e. independent hash functions. At most 8.
+	 * @param width The number of counters per row. Must be a power of two.
+	 */
+	public CountMinSketch(int depth, int width)
+	{
+		if (depth < 1 || depth > ROW_SEEDS.length) {
+			throw new IllegalArgumentException("The depth must be between 1 and " + ROW_SEEDS.length + ".");
+		}
+		if (width < 1 || (width & (width - 1)) != 0) {
+			throw new IllegalArgumentException("The width must be a power of two.");
+		}
+		
+		this.counts = new long[depth][width];
+		this.mask = width - 1;
+	}
+	
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Counts one occurrence of the given hash code and returns the estimated frequency of the hash code,
+	 * including this occurrence.
+	 * 
+	 * @param hash The hash code to count.
+	 * @return The estimated number of occurrences of the hash code.
+	 */
+	public long addAndEstimate(int hash)
+	{
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < this.counts.length; i++) {
+			final long count = ++this.counts[i][index(hash, i)];
+			min = count < min ? count : min;
+		}
+		return min;
+	}
+	
+	/**
+	 * Returns the estimated frequency of the given hash code.
+	 * 
+	 * @param hash The hash code to estimate the frequency for.
+	 * @return The estimated number of occurrences of the hash code.
+	 */
+	public long estimate(int hash)
+	{
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < this.counts.length; i++) {
+			final long count = this.counts[i][index(hash, i)];
+			min = count < min ? count : min;
+		}
+		return min;
+	}
+	
+	private final int index(int hash, int row)
+	{
+		// the finalizer of murmur hash 3, applied to the hash code mixed with the row's seed
+		int h = hash ^ ROW_SEEDS[row];
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h & this.mask;
+	}
+}
@@ -35,6 +35,12 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 
 	private static final byte[] DEFAULT_SALT = new byte[] { 17, 31, 47, 51, 83, 1 };
 	
+	private static final int SKEW_SKETCH_DEPTH = 4;				// the number of rows of the heavy hitter sketch
+	
+	private static final int SKEW_SKETCH_WIDTH = 1024;			// the number of counters per row of the sketch
+	
+	private static final int SKEW_WARMUP_RECORDS = 1000;		// records seen before keys count as heavy hitters
+	
 	private final ShipStrategyType strategy;			// the shipping strategy used by this output emitter
 	
 	private final PactRecordComparator comparator;	// the comparator for hashing / sorting
@@ -43,9 +49,15 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	
 	private Key[][] partitionBoundaries;		// the partition boundaries for range partitioning
 	
-	private final DataDistribution distribution;
+	private DataDistribution distribution;			// the distribution defining the range partition boundaries
 	
 	private int nextChannelToSendTo;				// counter to go over channels round robin
+	
+	private CountMinSketch keyFrequencies;			// the sketch detecting heavy hitters for skewed partitioning
+	
+	private long numRecordsSeen;					// the number of records partitioned by the skew-aware strategy
+	
+	private int nextSpreadOffset;					// counter to spread heavy hitters over channels round robin
 
 	// ------------------------------------------------------------------------
 	// Constructors
@@ -79,7 +91,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	 * 
 	 * @param strategy The distribution strategy to be used.
 	 * @param comparator The comparator used to hash / compare the records.
-	 * @param distr The distribution pattern used in the case of a range partitioning.
+	 * @param distr The distribution pattern used in the case of a range partitioning. May be null, if
+	 *              the distribution is supplied later through {@link #setDataDistribution(DataDistribution)}.
 	 */
 	public PactRecordOutputEmitter(ShipStrategyType strategy, PactRecordComparator comparator, DataDistribution distr)
 	{
@@ -96,6 +109,7 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		case PARTITION_HASH:
 		case PARTITION_LOCAL_HASH:
 		case PARTITION_RANGE:
+		case PARTITION_HASH_SKEW:
 			this.channels = new int[1];
 			break;
 		case BROADCAST:
@@ -103,9 +117,19 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		default:
 			throw new IllegalArgumentException("Invalid shipping strategy for OutputEmitter: " + strategy.name());
 		}
-		
-		if ((strategy == ShipStrategyType.PARTITION_LOCAL_RANGE || strategy == ShipStrategyType.PARTITION_RANGE) && distr == null)
-			throw new NullPointerException("Data distribution must not be null when the ship strategy is range partitioning.");
+	}
+	
+	/**
+	 * Sets the distribution that defines the partition boundaries for range partitioning. This is used
+	 * when the boundaries are not known in advance, but determined at runtime, for example from a sample
+	 * of the data. The distribution must be set before the first record is range partitioned.
+	 * 
+	 * @param distr The distribution pattern used for range partitioning.
+	 */
+	public void setDataDistribution(DataDistribution distr)
+	{
+		this.distribution = distr;
+		this.partitionBoundaries = null;
 	}
 
 	// ------------------------------------------------------------------------
@@ -125,6 +149,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		case PARTITION_HASH:
 		case PARTITION_LOCAL_HASH:
 			return hashPartitionDefault(record, numberOfChannels);
+		case PARTITION_HASH_SKEW:
+			return hashPartitionSkewed(record, numberOfChannels);
 		case PARTITION_RANGE:
 			return rangePartiton(record, numberOfChannels);
 		case BROADCAST:
@@ -158,17 +184,53 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 
 	private final int[] hashPartitionDefault(final PactRecord record, int numberOfChannels)
 	{
-		int hash = this.comparator.hash(record);
+		this.channels[0] = channelForHash(this.comparator.hash(record), numberOfChannels);
+		return this.channels;
+	}
+	
+	/**
+	 * Partitions the records by the hash of their key, like {@link #hashPartitionDefault(PactRecord, int)},
+	 * except for heavy hitters. A key is a heavy hitter, if it accounts for more than half the share of records
+	 * that a channel receives on average. The frequencies of the keys are estimated with a count-min sketch.
+	 * The records of a heavy hitter are spread round robin over a number of consecutive channels that grows
+	 * with the key's frequency. The receivers must hence merge the partial results of heavy hitters.
+	 */
+	private final int[] hashPartitionSkewed(final PactRecord record, int numberOfChannels)
+	{
+		final int hash = this.comparator.hash(record);
+		final int channel = channelForHash(hash, numberOfChannels);
+		
+		if (this.keyFrequencies == null) {
+			this.keyFrequencies = new CountMinSketch(SKEW_SKETCH_DEPTH, SKEW_SKETCH_WIDTH);
+		}
+		final long frequency = this.keyFrequencies.addAndEstimate(hash);
+		final long total = ++this.numRecordsSeen;
+		
+		if (total >= SKEW_WARMUP_RECORDS && 2 * frequency * numberOfChannels > total) {
+			final int spread = (int) Math.min(numberOfChannels, (2 * frequency * numberOfChannels) / total + 1);
+			final int offset = this.nextSpreadOffset;
+			this.nextSpreadOffset = offset < Integer.MAX_VALUE ? offset + 1 : 0;
+			this.channels[0] = (channel + (offset % spread)) % numberOfChannels;
+		} else {
+			this.channels[0] = channel;
+		}
+		return this.channels;
+	}
+	
+	private static final int channelForHash(int hash, int numberOfChannels)
+	{
 		for (int i = 0; i < DEFAULT_SALT.length; i++) {
 			hash ^= ((hash << 5) + DEFAULT_SALT[i] + (hash >> 2));
 		}
-		this.channels[0] = (hash < 0) ? -hash % numberOfChannels : hash % numberOfChannels;
-		return this.channels;
+		return (hash < 0) ? -hash % numberOfChannels : hash % numberOfChannels;
 	}
 	
 	private final int[] rangePartiton(final PactRecord record, int numberOfChannels)
 	{
 		if (this.partitionBoundaries == null) {
+			if (this.distribution == null && numberOfChannels > 1) {
+				throw new IllegalStateException("No data distribution has been set for range partitioning.");
+			}
 			this.partitionBoundaries = new Key[numberOfChannels - 1][];
 			for (int i = 0; i < numberOfChannels - 1; i++) {
 				final PactRecord boundary = this.distribution.getBucketBoundary(i, numberOfChannels);
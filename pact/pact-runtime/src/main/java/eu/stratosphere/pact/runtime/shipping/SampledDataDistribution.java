@@ -0,0 +1,97 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.shipping;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * A data distribution whose bucket boundaries have been determined at runtime from a sample of the data,
+ * rather than being known in advance. The boundaries are computed for a fixed number of buckets, which
+ * is the number of boundaries plus one.
+ */
+public class SampledDataDistribution implements DataDistribution
+{
+	private PactRecord[] boundaries;		// the upper bounds of all buckets but the last one, in sorted order
+	
+	/**
+	 * Creates an empty distribution. Required for deserialization.
+	 */
+	public SampledDataDistribution() {
+		this.boundaries = new PactRecord[0];
+	}
+	
+	/**
+	 * Creates a new distribution with the given bucket boundaries.
+	 * 
+	 * @param boundaries The upper bounds of all buckets but the last one, in sorted order.
+	 */
+	public SampledDataDistribution(List<PactRecord> boundaries) {
+		this.boundaries = boundaries.toArray(new PactRecord[boundaries.size()]);
+	}
+	
+	/**
+	 * Gets the number of buckets that this distribution has boundaries for.
+	 * 
+	 * @return The number of buckets.
+	 */
+	public int getNumberOfBuckets() {
+		return this.boundaries.length + 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.contract.DataDistribution#getBucketBoundary(int, int)
+	 */
+	@Override
+	public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets)
+	{
+		if (totalNumBuckets != this.boundaries.length + 1) {
+			throw new IllegalArgumentException("The distribution was sampled for " + (this.boundaries.length + 1) +
+				" buckets, but " + totalNumBuckets + " buckets were requested.");
+		}
+		return this.boundaries[bucketNum];
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeInt(this.boundaries.length);
+		for (int i = 0; i < this.boundaries.length; i++) {
+			this.boundaries[i].write(out);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException
+	{
+		this.boundaries = new PactRecord[in.readInt()];
+		for (int i = 0; i < this.boundaries.length; i++) {
+			this.boundaries[i] = new PactRecord();
+			this.boundaries[i].read(in);
+		}
+	}
+}
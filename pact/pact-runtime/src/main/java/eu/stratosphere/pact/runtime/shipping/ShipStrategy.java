@@ -26,6 +26,7 @@ public abstract class ShipStrategy {
 	public enum ShipStrategyType {
 		FORWARD,
 		PARTITION_HASH,
+		PARTITION_HASH_SKEW,
 		PARTITION_LOCAL_HASH,
 		PARTITION_RANGE,
 		PARTITION_LOCAL_RANGE,
@@ -93,6 +94,14 @@ public abstract class ShipStrategy {
 		
 	}
 
+	public static class PartitionHashSkewSS extends PartitionShipStrategy {
+		
+		public PartitionHashSkewSS(FieldList partitionFields) { 
+			super(ShipStrategyType.PARTITION_HASH_SKEW, partitionFields);
+		}
+		
+	}
+
 	public static class PartitionLocalHashSS extends PartitionShipStrategy {
 		
 		public PartitionLocalHashSS(FieldList partitionFields) { 
@@ -308,7 +308,7 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 																channel, this.numWriteBuffersToCluster);
 				registerOpenChannelToBeRemovedAtShudown(writer);
 				final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, this.writeMemory,
-																			this.memManager.getPageSize());
+								this.memManager.getPageSize(), CombiningUnilateralSortMerger.this.spillCompression);
 
 				// write sort-buffer to channel
 				if (LOG.isDebugEnabled())
@@ -450,8 +450,8 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 			final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(
 															mergedChannelID, this.numWriteBuffersToCluster);
 			registerOpenChannelToBeRemovedAtShudown(writer);
-			final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, writeBuffers, 
-																			this.memManager.getPageSize());
+			final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, writeBuffers,
+								this.memManager.getPageSize(), CombiningUnilateralSortMerger.this.spillCompression);
 			
 			final WriterCollector<E> collector = new WriterCollector<E>(output, this.serializer);
 			final GenericReducer<E, ?> combineStub = CombiningUnilateralSortMerger.this.combineStub;
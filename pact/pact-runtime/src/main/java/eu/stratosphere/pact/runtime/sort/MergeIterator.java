@@ -16,7 +16,6 @@
 package eu.stratosphere.pact.runtime.sort;
 
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.List;
 
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
@@ -26,41 +25,77 @@ import eu.stratosphere.pact.common.util.MutableObjectIterator;
 /**
  * An iterator that returns a sorted merge of the sequences of elements from a
  * set of iterators, assuming those sequences are ordered themselves.
- * The iterators to be merged are kept internally as a heap, making each access
- * to the next smallest element logarithmic in complexity, with respect to the
+ * The iterators to be merged are kept internally in a tournament tree of losers, making each access
+ * to the next smallest element take one comparison per level of the tree, i.e. logarithmic in the
  * number of streams to be merged.
- * The order among the elements is established using the methods from the
- * {@link TypeSerializer} class, specifically {@link TypeSerializer#setReference(Object)}
- * and {@link TypeSerializer#compareToReference(TypeSerializer)}.
+ * <p>
+ * If the comparator supports normalized keys, the first bytes of the normalized key of each stream's
+ * head element are cached. Elements are compared by their cached key prefixes first, and only if those
+ * are equal and do not fully determine the order, through the methods from the {@link TypeComparator}
+ * class, specifically {@link TypeComparator#setReference(Object)} and
+ * {@link TypeComparator#compareToReference(TypeComparator)}.
  * 
- * @see TypeSerializer
- * @see TypeSerializer#setReference(Object)
- * @see TypeSerializer#compareToReference(TypeSerializer)
+ * @see TypeComparator
+ * @see TypeComparator#setReference(Object)
+ * @see TypeComparator#compareToReference(TypeComparator)
  * 
  * @author Erik Nijkamp
  * @author Stephan Ewen
  */
 public class MergeIterator<E> implements MutableObjectIterator<E>
 {
-	private final PartialOrderPriorityQueue<HeadStream<E>> heap;	// heap over the head elements of the stream
+	/**
+	 * The maximal number of normalized key bytes that are cached per stream.
+	 */
+	private static final int MAX_NORMALIZED_KEY_LEN = 8;
+	
+	private final HeadStream<E>[] streams;			// the streams, with their current head elements
+	
+	private final int[] tree;						// the tree of losers, position zero holds the overall winner
 	
 	private final TypeSerializer<E> serializer;
 	
+	private final int numKeyBytes;					// the number of normalized key bytes cached per stream
+	
+	private final boolean normalizedKeyFullyDetermines;	// flag whether the cached key bytes determine the order
+	
+	private final boolean useNormKeyUninverted;		// flag whether the normalized key order is ascending
+	
 	/**
 	 * @param iterators
 	 * @param accessors The accessors used to establish an order among the elements.
 	 *                  The accessors will not be used directly, but a duplicate will be used.
 	 * @throws IOException
 	 */
+	@SuppressWarnings("unchecked")
 	public MergeIterator(List<MutableObjectIterator<E>> iterators,
 			TypeSerializer<E> serializer, TypeComparator<E> comparator)
 	throws IOException
 	{
-		this.heap = new PartialOrderPriorityQueue<HeadStream<E>>(new HeadStreamComparator<E>(), iterators.size());
 		this.serializer = serializer;
 		
-		for (MutableObjectIterator<E> iterator : iterators) {
-			this.heap.add(new HeadStream<E>(iterator, serializer, comparator.duplicate()));
+		// set up normalized key characteristics
+		if (comparator.supportsNormalizedKey()) {
+			this.numKeyBytes = Math.min(comparator.getNormalizeKeyLen(), MAX_NORMALIZED_KEY_LEN);
+			this.normalizedKeyFullyDetermines = !comparator.isNormalizedKeyPrefixOnly(this.numKeyBytes);
+		}
+		else {
+			this.numKeyBytes = 0;
+			this.normalizedKeyFullyDetermines = false;
+		}
+		this.useNormKeyUninverted = !comparator.invertNormalizedKey();
+		
+		final byte[] keyBuffer = new byte[this.numKeyBytes];
+		this.streams = new HeadStream[iterators.size()];
+		for (int i = 0; i < this.streams.length; i++) {
+			this.streams[i] = new HeadStream<E>(iterators.get(i), serializer, comparator.duplicate(),
+				keyBuffer, this.numKeyBytes);
+		}
+		
+		// play the initial tournament
+		this.tree = new int[Math.max(this.streams.length, 1)];
+		if (this.streams.length > 0) {
+			this.tree[0] = playTournament(1);
 		}
 	}
 
@@ -78,22 +113,91 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 	@Override
 	public boolean next(E target) throws IOException
 	{
-		if (this.heap.size() > 0) {
-			// get the smallest element
-			final HeadStream<E> top = this.heap.peek();
-			this.serializer.copyTo(top.getHead(), target);
-			
-			// read an element
-			if (!top.nextHead()) {
-				this.heap.poll();
-			} else {
-				this.heap.adjustTop();
+		if (this.streams.length == 0) {
+			return false;
+		}
+		
+		// get the smallest element
+		int winner = this.tree[0];
+		final HeadStream<E> top = this.streams[winner];
+		if (top.isExhausted()) {
+			// the overall winner is only exhausted when all streams are
+			return false;
+		}
+		this.serializer.copyTo(top.getHead(), target);
+		
+		// read an element and replay the matches on the path from the stream's leaf to the root
+		top.nextHead();
+		for (int node = (winner + this.streams.length) >>> 1; node > 0; node >>>= 1) {
+			final int loser = this.tree[node];
+			if (precedes(loser, winner)) {
+				this.tree[node] = winner;
+				winner = loser;
 			}
-			return true;
 		}
-		else {
+		this.tree[0] = winner;
+		return true;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Plays the tournament in the subtree below the given node, recording the losers in the tree.
+	 * The tree is laid out like a binary heap: Node <i>n</i> has the children <i>2n</i> and <i>2n + 1</i>,
+	 * and the nodes from the number of streams upwards are the leaves, standing for the streams.
+	 * 
+	 * @param node The root of the subtree.
+	 * @return The index of the stream that wins the subtree.
+	 */
+	private final int playTournament(int node)
+	{
+		if (node >= this.streams.length) {
+			return node - this.streams.length;
+		}
+		
+		final int left = playTournament(node << 1);
+		final int right = playTournament((node << 1) + 1);
+		if (precedes(right, left)) {
+			this.tree[node] = left;
+			return right;
+		} else {
+			this.tree[node] = right;
+			return left;
+		}
+	}
+	
+	/**
+	 * Checks whether the head element of the first stream strictly precedes the head element of the
+	 * second stream. Exhausted streams succeed all others.
+	 * 
+	 * @param first The index of the first stream.
+	 * @param second The index of the second stream.
+	 * @return True, if the head of the first stream precedes the head of the second stream, false otherwise.
+	 */
+	private final boolean precedes(int first, int second)
+	{
+		final HeadStream<E> s1 = this.streams[first];
+		final HeadStream<E> s2 = this.streams[second];
+		
+		if (s1.isExhausted()) {
 			return false;
 		}
+		if (s2.isExhausted()) {
+			return true;
+		}
+		
+		if (this.numKeyBytes > 0) {
+			// compare the cached key prefixes as unsigned values
+			final long k1 = s1.getNormalizedKey() + Long.MIN_VALUE;
+			final long k2 = s2.getNormalizedKey() + Long.MIN_VALUE;
+			if (k1 != k2) {
+				return (k1 < k2) == this.useNormKeyUninverted;
+			}
+			if (this.normalizedKeyFullyDetermines) {
+				return false;
+			}
+		}
+		return s2.comparator.compareToReference(s1.comparator) < 0;
 	}
 
 	// ============================================================================================
@@ -107,42 +211,61 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 		private final TypeComparator<E> comparator;
 		
 		private final E head;
+		
+		private final byte[] keyBuffer;
+		
+		private final int numKeyBytes;
+		
+		private long normalizedKey;
+		
+		private boolean exhausted;
 
-		public HeadStream(MutableObjectIterator<E> iterator, TypeSerializer<E> serializer, TypeComparator<E> comparator)
+		public HeadStream(MutableObjectIterator<E> iterator, TypeSerializer<E> serializer, TypeComparator<E> comparator,
+				byte[] keyBuffer, int numKeyBytes)
 		throws IOException
 		{
 			this.iterator = iterator;
 			this.comparator = comparator;
 			this.head = serializer.createInstance();
+			this.keyBuffer = keyBuffer;
+			this.numKeyBytes = numKeyBytes;
 			
-			if (!nextHead())
-				throw new IllegalStateException();
+			nextHead();
 		}
 
 		public E getHead() {
 			return this.head;
 		}
+		
+		public long getNormalizedKey() {
+			return this.normalizedKey;
+		}
+		
+		public boolean isExhausted() {
+			return this.exhausted;
+		}
 
 		public boolean nextHead() throws IOException
 		{
 			if (this.iterator.next(this.head)) {
 				this.comparator.setReference(this.head);
+				
+				if (this.numKeyBytes > 0) {
+					// cache the key prefix, left-aligned in a long
+					final byte[] buffer = this.keyBuffer;
+					this.comparator.putNormalizedKey(this.head, buffer, 0, this.numKeyBytes);
+					long key = 0;
+					for (int i = 0; i < this.numKeyBytes; i++) {
+						key = (key << 8) | (buffer[i] & 0xff);
+					}
+					this.normalizedKey = key << ((MAX_NORMALIZED_KEY_LEN - this.numKeyBytes) << 3);
+				}
 				return true;
 			}
 			else {
+				this.exhausted = true;
 				return false;
 			}
 		}
 	}
-
-	// --------------------------------------------------------------------------------------------
-	
-	private static final class HeadStreamComparator<E> implements Comparator<HeadStream<E>>
-	{		
-		@Override
-		public int compare(HeadStream<E> o1, HeadStream<E> o2)
-		{
-			return o2.comparator.compareToReference(o1.comparator);
-		}
-	}
 }
@@ -0,0 +1,49 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An {@link IndexedSortable} whose elements carry a fixed-length, byte-wise comparable normalized key. The
+ * key bytes give access to the order of the elements without comparing them pairwise, which allows
+ * distribution based sort algorithms such as the {@link RadixSort}.
+ */
+public interface NormalizedKeySortable extends IndexedSortable {
+
+	/**
+	 * Gets the number of normalized key bytes stored per element.
+	 * 
+	 * @return The length of the normalized key, in bytes.
+	 */
+	int getNormalizedKeyLength();
+	
+	/**
+	 * Checks whether the normalized keys fully determine the order of the elements. If not, elements with
+	 * equal normalized keys have to be ordered through {@link IndexedSortable#compare(int, int)}.
+	 * 
+	 * @return True, if the normalized keys fully determine the order, false otherwise.
+	 */
+	boolean isNormalizedKeyFullyDetermining();
+	
+	/**
+	 * Gets a byte of the normalized key of the element at the given position, as an unsigned value between
+	 * 0 and 255. The values are already adjusted to the sort direction, such that smaller values sort first.
+	 * 
+	 * @param i The logical position of the element.
+	 * @param keyByte The number of the key byte, starting at zero.
+	 * @return The unsigned value of the key byte.
+	 */
+	int getNormalizedKeyByte(int i, int keyByte);
+}
@@ -33,7 +33,7 @@ import eu.stratosphere.pact.runtime.io.SimpleCollectingOutputView;
  * 
  * @author Stephan Ewen
  */
-public final class NormalizedKeySorter<T> implements IndexedSortable
+public final class NormalizedKeySorter<T> implements NormalizedKeySortable
 {
 	
 	private static final int OFFSET_LEN = 8;
@@ -48,6 +48,8 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 
 	private final byte[] swapBuffer;
 	
+	private final byte[] normalizedKeyBuffer;
+	
 	private final TypeSerializer<T> serializer;
 	
 	private final TypeComparator<T> comparator;
@@ -152,6 +154,7 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		this.indexEntriesPerSegment = segmentSize / this.indexEntrySize;
 		this.lastIndexEntryOffset = (this.indexEntriesPerSegment - 1) * this.indexEntrySize;
 		this.swapBuffer = new byte[this.indexEntrySize];
+		this.normalizedKeyBuffer = new byte[this.numKeyBytes];
 		
 		// set to initial state
 		this.currentSortIndexSegment = nextMemorySegment();
@@ -264,7 +267,13 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		
 		// add the pointer and the normalized key
 		this.currentSortIndexSegment.putLong(this.currentSortIndexOffset, this.currentDataBufferOffset);
-		this.comparator.putNormalizedKey(record, this.currentSortIndexSegment.getBackingArray(), this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		if (this.currentSortIndexSegment.isOffHeap()) {
+			// off-heap segments have no array to write the key into, so the key is staged in a local buffer
+			this.comparator.putNormalizedKey(record, this.normalizedKeyBuffer, 0, this.numKeyBytes);
+			this.currentSortIndexSegment.put(this.currentSortIndexOffset + OFFSET_LEN, this.normalizedKeyBuffer);
+		} else {
+			this.comparator.putNormalizedKey(record, this.currentSortIndexSegment.getBackingArray(), this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		}
 		
 		// serialize the record into the data buffers
 		try {
@@ -337,12 +346,8 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		
 		final MemorySegment segI = this.sortIndex.get(bufferNumI);
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
-		final byte[] bI = segI.getBackingArray();
-		final byte[] bJ = segJ.getBackingArray();
 		
-		int val = 0;
-		for (int pos = 0, posI = segI.translateOffset(segmentOffsetI + OFFSET_LEN), posJ = segJ.translateOffset(segmentOffsetJ + OFFSET_LEN);
-			pos < this.numKeyBytes && (val = (bI[posI] & 0xff) - (bJ[posJ] & 0xff)) == 0; pos++, posI++, posJ++);
+		final int val = segI.compare(segJ, segmentOffsetI + OFFSET_LEN, segmentOffsetJ + OFFSET_LEN, this.numKeyBytes);
 		
 		if (val != 0 || this.normalizedKeyFullyDetermines) {
 			return this.useNormKeyUninverted ? val : -val;
@@ -370,7 +375,7 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
 		
 		segI.get(segmentOffsetI, this.swapBuffer, 0, this.indexEntrySize);
-		System.arraycopy(segJ.getBackingArray(), segJ.translateOffset(segmentOffsetJ), segI.getBackingArray(), segI.translateOffset(segmentOffsetI), this.indexEntrySize);
+		segJ.copyTo(segmentOffsetJ, segI, segmentOffsetI, this.indexEntrySize);
 		segJ.put(segmentOffsetJ, this.swapBuffer, 0, this.indexEntrySize);
 	}
 
@@ -383,6 +388,37 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		return this.numRecords;
 	}
 
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#getNormalizedKeyLength()
+	 */
+	@Override
+	public int getNormalizedKeyLength()
+	{
+		return this.numKeyBytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#isNormalizedKeyFullyDetermining()
+	 */
+	@Override
+	public boolean isNormalizedKeyFullyDetermining()
+	{
+		return this.normalizedKeyFullyDetermines;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#getNormalizedKeyByte(int, int)
+	 */
+	@Override
+	public int getNormalizedKeyByte(int i, int keyByte)
+	{
+		final int bufferNum = i / this.indexEntriesPerSegment;
+		final int segmentOffset = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+		
+		final int val = this.sortIndex.get(bufferNum).get(segmentOffset + OFFSET_LEN + keyByte) & 0xff;
+		return this.useNormKeyUninverted ? val : 0xff - val;
+	}
+
 	// -------------------------------------------------------------------------
 	
 	/**
@@ -0,0 +1,168 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An in-place most-significant-digit radix sort (American flag sort) over the normalized keys of a
+ * {@link NormalizedKeySortable}. The elements are distributed by one key byte at a time, without any pairwise
+ * comparisons. If the normalized keys do not fully determine the order, the groups of elements with equal
+ * normalized keys are sorted by comparison afterwards, making the sort a hybrid of radix sort on the key prefix
+ * and comparison sort within equal-prefix groups.
+ * <p>
+ * Small ranges are handed to a {@link QuickSort}, where the overhead of counting and distributing outweighs
+ * the saved comparisons. Sortables without normalized keys are sorted with the {@link QuickSort} as well.
+ */
+public final class RadixSort implements IndexedSorter {
+	
+	/**
+	 * The number of buckets that the elements are distributed into per key byte.
+	 */
+	private static final int NUM_BUCKETS = 256;
+	
+	/**
+	 * Ranges with fewer elements than this are sorted by comparison.
+	 */
+	private static final int MIN_RADIX_SORT_RANGE = 64;
+	
+	private final IndexedSorter comparisonSorter;
+	
+	
+	public RadixSort() {
+		this.comparisonSorter = new QuickSort();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int p, int r)
+	{
+		if (s instanceof NormalizedKeySortable) {
+			final NormalizedKeySortable nks = (NormalizedKeySortable) s;
+			final int keyLen = nks.getNormalizedKeyLength();
+			if (keyLen > 0) {
+				sortInternal(nks, p, r, 0, keyLen, nks.isNormalizedKeyFullyDetermining(), new Buckets[keyLen]);
+				return;
+			}
+		}
+		this.comparisonSorter.sort(s, p, r);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private void sortInternal(final NormalizedKeySortable s, final int p, final int r,
+			int keyByte, final int keyLen, final boolean fullyDetermines, final Buckets[] bucketsPerKeyByte)
+	{
+		while (true) {
+			if (r - p < 2) {
+				return;
+			}
+			if (keyByte == keyLen) {
+				// all normalized key bytes are equal within the range
+				if (!fullyDetermines) {
+					this.comparisonSorter.sort(s, p, r);
+				}
+				return;
+			}
+			if (r - p < MIN_RADIX_SORT_RANGE) {
+				this.comparisonSorter.sort(s, p, r);
+				return;
+			}
+			
+			// build the histogram of the current key byte
+			final int[] counts = getBuckets(bucketsPerKeyByte, keyByte).counts;
+			for (int i = p; i < r; i++) {
+				counts[s.getNormalizedKeyByte(i, keyByte)]++;
+			}
+			
+			// if all elements share the byte, there is nothing to distribute
+			if (counts[s.getNormalizedKeyByte(p, keyByte)] == r - p) {
+				counts[s.getNormalizedKeyByte(p, keyByte)] = 0;
+				keyByte++;
+				continue;
+			}
+			break;
+		}
+		
+		// compute the bucket boundaries, clearing the histogram for the next range at this key byte
+		final Buckets buckets = bucketsPerKeyByte[keyByte];
+		final int[] counts = buckets.counts;
+		final int[] next = buckets.next;
+		final int[] ends = buckets.ends;
+		for (int b = 0, pos = p; b < NUM_BUCKETS; b++) {
+			next[b] = pos;
+			pos += counts[b];
+			ends[b] = pos;
+			counts[b] = 0;
+		}
+		
+		// permute the elements into their buckets, following the swap cycles
+		for (int b = 0; b < NUM_BUCKETS; b++) {
+			while (next[b] < ends[b]) {
+				final int v = s.getNormalizedKeyByte(next[b], keyByte);
+				if (v == b) {
+					next[b]++;
+				} else {
+					s.swap(next[b], next[v]++);
+				}
+			}
+		}
+		
+		// sort the buckets by the next key byte
+		for (int b = 0, start = p; b < NUM_BUCKETS; b++) {
+			final int end = ends[b];
+			if (end - start > 1) {
+				sortInternal(s, start, end, keyByte + 1, keyLen, fullyDetermines, bucketsPerKeyByte);
+			}
+			start = end;
+		}
+	}
+	
+	/**
+	 * Gets the bucket arrays for the given key byte, creating them on first use. The ranges at the same key byte
+	 * are sorted one after the other, so they share the arrays. The ranges at the next key byte are sorted while
+	 * the bucket boundaries of the current key byte are still needed, so every key byte has its own arrays.
+	 */
+	private static Buckets getBuckets(final Buckets[] bucketsPerKeyByte, final int keyByte)
+	{
+		Buckets buckets = bucketsPerKeyByte[keyByte];
+		if (buckets == null) {
+			buckets = new Buckets();
+			bucketsPerKeyByte[keyByte] = buckets;
+		}
+		return buckets;
+	}
+	
+	/**
+	 * The histogram and the bucket boundaries used to distribute a range by one key byte.
+	 */
+	private static final class Buckets
+	{
+		final int[] counts = new int[NUM_BUCKETS];		// the number of elements per bucket
+		
+		final int[] next = new int[NUM_BUCKETS];		// the next position to fill per bucket
+		
+		final int[] ends = new int[NUM_BUCKETS];		// the end of every bucket
+	}
+}
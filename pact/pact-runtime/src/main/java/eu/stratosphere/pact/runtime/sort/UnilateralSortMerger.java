@@ -25,14 +25,23 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.services.iomanager.BlockChannelAccess;
 import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
 import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.BlockCompression;
 import eu.stratosphere.nephele.services.iomanager.Channel;
 import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
 import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
@@ -46,6 +55,7 @@ import eu.stratosphere.pact.common.generic.types.TypeComparator;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.runtime.io.ChannelReaderInputViewIterator;
 import eu.stratosphere.pact.runtime.util.EmptyMutableObjectIterator;
 import eu.stratosphere.pact.runtime.util.MathUtils;
@@ -98,6 +108,16 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 * The thread that merges the buffer handed from the reading thread.
 	 */
 	private final ThreadBase<E> sortThread;
+	
+	/**
+	 * The number of threads that sort buffers concurrently.
+	 */
+	protected final int sortParallelism;
+	
+	/**
+	 * The compression of the spilled runs.
+	 */
+	protected final BlockCompression spillCompression;
 
 	/**
 	 * The thread that handles spilling to secondary storage.
@@ -226,7 +246,41 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	}
 	
 	/**
-	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically. Up to the given number of sort buffers are sorted concurrently.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param sortParallelism The number of threads that sort buffers concurrently.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int sortParallelism)
+	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, sortParallelism, false);
+	}
+	
+	/**
+	 * Internal constructor and constructor for subclasses that want to circumvent the spilling. The number
+	 * of concurrently sorting threads is taken from the configuration.
 	 * 
 	 * @param memoryManager The memory manager from which to allocate the memory.
 	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
@@ -252,6 +306,41 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean noSpillingMemory)
 	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction,
+			GlobalConfiguration.getInteger(PactConfigConstants.SORT_PARALLELISM_KEY,
+				PactConfigConstants.DEFAULT_SORT_PARALLELISM), noSpillingMemory);
+	}
+	
+	/**
+	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param sortParallelism The number of threads that sort buffers concurrently.
+	 * @param noSpilling When set to true, no memory will be allocated for writing and no spilling thread
+	 *                   will be spawned.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	protected UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int sortParallelism, boolean noSpillingMemory)
+	throws IOException, MemoryAllocationException
 	{
 		// sanity checks
 		if (memoryManager == null | (ioManager == null && !noSpillingMemory) | serializer == null | comparator == null) {
@@ -263,8 +352,14 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		if (maxNumFileHandles < 2) {
 			throw new IllegalArgumentException("Merger cannot work with less than two file handles.");
 		}
+		if (sortParallelism < 1) {
+			throw new IllegalArgumentException("Sort parallelism must be at least one.");
+		}
 		
 		this.memoryManager = memoryManager;
+		this.sortParallelism = sortParallelism;
+		this.spillCompression = BlockCompression.fromString(GlobalConfiguration.getString(
+			PactConfigConstants.SPILL_COMPRESSION_KEY, PactConfigConstants.DEFAULT_SPILL_COMPRESSION));
 		
 		// adjust the memory quotas to the page size
 		totalMemory = memoryManager.roundDownToPageSizeMultiple(totalMemory);
@@ -320,6 +415,13 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			else {
 				numSortBuffers = 1;
 			}
+			
+			// when sorting concurrently, keep one more buffer than sorting threads, so that the input
+			// can be read while the other buffers are sorted
+			if (sortParallelism > 1) {
+				numSortBuffers = Math.max(numSortBuffers, 
+					Math.min(sortParallelism + 1, sortMemPages / MIN_NUM_SORT_MEM_SEGMENTS));
+			}
 		}
 		final int numSegmentsPerSortBuffer = sortMemPages / numSortBuffers;
 		
@@ -569,7 +671,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 
 	/**
 	 * Creates the sorting thread. This thread takes the buffers from the sort queue, sorts them and
-	 * puts them into the spill queue.
+	 * puts them into the spill queue. If the sort parallelism is larger than one, the thread sorts several
+	 * buffers concurrently.
 	 * <p>
 	 * The returned thread is not yet started.
 	 * 
@@ -584,7 +687,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	protected ThreadBase<E> getSortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 			AbstractInvokable parentTask)
 	{
-		return new SortingThread<E>(exceptionHandler, queues, parentTask);
+		return new SortingThread<E>(exceptionHandler, queues, parentTask, this.sortParallelism);
 	}
 
 	/**
@@ -1090,11 +1193,21 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	}
 
 	/**
-	 * The thread that sorts filled buffers.
+	 * The thread that sorts filled buffers. With a sort parallelism larger than one, the buffers are sorted
+	 * concurrently by a pool of helper threads. The sorted buffers and the markers are passed to the spill
+	 * queue in the order in which they were taken from the sort queue.
 	 */
 	protected static class SortingThread<E> extends ThreadBase<E>
-	{		
+	{
+		/**
+		 * The interval (in milliseconds) in which the thread checks for completed buffers, while waiting for
+		 * further buffers to sort.
+		 */
+		private static final long COMPLETION_CHECK_INTERVAL = 10;
+		
 		private final IndexedSorter sorter;
+		
+		private final ExecutorService sortExecutor;
 
 		/**
 		 * Creates a new sorting thread.
@@ -1105,17 +1218,61 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		 */
 		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 				AbstractInvokable parentTask) {
+			this(exceptionHandler, queues, parentTask, 1);
+		}
+		
+		/**
+		 * Creates a new sorting thread that sorts up to the given number of buffers concurrently.
+		 * 
+		 * @param exceptionHandler The exception handler to call for all exceptions.
+		 * @param queues The queues used to pass buffers between the threads.
+		 * @param parentTask The task that started this thread. If non-null, it is used to register this thread.
+		 * @param sortParallelism The number of buffers to sort concurrently.
+		 */
+		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
+				AbstractInvokable parentTask, int sortParallelism)
+		{
 			super(exceptionHandler, "SortMerger sorting thread", queues, parentTask);
 
 			// members
-			this.sorter = new QuickSort();
+			this.sorter = new RadixSort();
+			
+			if (sortParallelism > 1) {
+				final String name = getName();
+				this.sortExecutor = Executors.newFixedThreadPool(sortParallelism, new ThreadFactory() {
+					private int num;
+					
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r, name + " #" + (++this.num));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			} else {
+				this.sortExecutor = null;
+			}
 		}
 
 		/**
 		 * Entry point of the thread.
 		 */
 		public void go() throws IOException
-		{			
+		{
+			if (this.sortExecutor == null) {
+				sortSequentially();
+			} else {
+				try {
+					sortConcurrently();
+				}
+				finally {
+					shutdownExecutor();
+				}
+			}
+		}
+		
+		private void sortSequentially()
+		{
 			boolean alive = true;
 
 			// loop as long as the thread is marked alive
@@ -1154,6 +1311,119 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				this.queues.spill.add(element);
 			}
 		}
+		
+		private void sortConcurrently() throws IOException
+		{
+			final Queue<Future<CircularElement<E>>> pending = new ArrayDeque<Future<CircularElement<E>>>();
+			boolean alive = true;
+
+			// loop as long as the thread is marked alive
+			while (isRunning() && alive) {
+				CircularElement<E> element = null;
+				try {
+					// pass on all buffers that are sorted, keeping their order
+					while (!pending.isEmpty() && pending.peek().isDone()) {
+						this.queues.spill.add(getSortedBuffer(pending.poll()));
+					}
+					
+					element = pending.isEmpty() ? this.queues.sort.take() :
+						this.queues.sort.poll(COMPLETION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+					if (element == null) {
+						continue;
+					}
+					
+					if (element != EOF_MARKER && element != SPILLING_MARKER) {
+						if (LOG.isDebugEnabled())
+							LOG.debug("Sorting buffer " + element.id + ".");
+						
+						pending.add(this.sortExecutor.submit(new SortTask<E>(this.sorter, element)));
+						continue;
+					}
+					
+					// the markers must not overtake any buffer, so all pending buffers are passed on first
+					while (!pending.isEmpty()) {
+						this.queues.spill.add(getSortedBuffer(pending.poll()));
+					}
+				}
+				catch (InterruptedException iex) {
+					if (isRunning()) {
+						if (LOG.isErrorEnabled())
+							LOG.error(
+								"Sorting thread was interrupted (without being shut down) while grabbing a buffer. " +
+								"Retrying to grab buffer...");
+						continue;
+					}
+					else {
+						return;
+					}
+				}
+				
+				if (element == EOF_MARKER) {
+					if (LOG.isDebugEnabled())
+						LOG.debug("Sorting thread done.");
+					alive = false;
+				}
+				this.queues.spill.add(element);
+			}
+		}
+		
+		private CircularElement<E> getSortedBuffer(Future<CircularElement<E>> future)
+		throws IOException, InterruptedException
+		{
+			try {
+				final CircularElement<E> element = future.get();
+				if (LOG.isDebugEnabled())
+					LOG.debug("Sorted buffer " + element.id + ".");
+				return element;
+			}
+			catch (ExecutionException eex) {
+				final Throwable cause = eex.getCause();
+				throw new IOException("Sorting a buffer failed: " + cause.getMessage(), cause);
+			}
+		}
+		
+		/**
+		 * Stops the helper threads and waits until they are done, such that no buffer is touched anymore
+		 * once this thread has terminated.
+		 */
+		private void shutdownExecutor()
+		{
+			this.sortExecutor.shutdownNow();
+			while (true) {
+				try {
+					if (this.sortExecutor.awaitTermination(COMPLETION_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+				}
+				catch (InterruptedException iex) {
+					// the buffers may only be released after the helper threads are done, so we keep waiting
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A task sorting a single buffer, executed by the helper threads of the {@link SortingThread}.
+	 */
+	private static final class SortTask<E> implements Callable<CircularElement<E>>
+	{
+		private final IndexedSorter sorter;
+		
+		private final CircularElement<E> element;
+		
+		SortTask(IndexedSorter sorter, CircularElement<E> element) {
+			this.sorter = sorter;
+			this.element = element;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public CircularElement<E> call() {
+			this.sorter.sort(this.element.buffer);
+			return this.element;
+		}
 	}
 
 	/**
@@ -1314,7 +1584,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 																channel, this.numWriteBuffersToCluster);
 				registerOpenChannelToBeRemovedAtShudown(writer);
 				final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, this.writeMemory,
-																			this.memManager.getPageSize());
+								this.memManager.getPageSize(), UnilateralSortMerger.this.spillCompression);
 
 				// write sort-buffer to channel
 				if (LOG.isDebugEnabled())
@@ -1525,8 +1795,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(
 															mergedChannelID, this.numWriteBuffersToCluster);
 			registerOpenChannelToBeRemovedAtShudown(writer);
-			final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, writeBuffers, 
-																			this.memManager.getPageSize());
+			final ChannelWriterOutputView output = new ChannelWriterOutputView(writer, writeBuffers,
+								this.memManager.getPageSize(), UnilateralSortMerger.this.spillCompression);
 
 			// read the merged stream and write the data back
 			final TypeSerializer<E> serializer = this.serializer;
@@ -15,16 +15,20 @@
 
 package eu.stratosphere.pact.runtime.task;
 
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.pact.common.generic.GenericReducer;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HashAggregationTable;
 import eu.stratosphere.pact.runtime.sort.AsynchronousPartialSorter;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -63,6 +67,14 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 
 	private TypeComparator<T> comparator;
 	
+	private HashAggregationTable<T> hashTable;
+	
+	private List<MemorySegment> hashTableMemory;
+	
+	private MutableObjectIterator<T> hashInput;
+	
+	private MemoryManager memoryManager;
+	
 	private volatile boolean running;
 
 	// ------------------------------------------------------------------------
@@ -128,6 +140,7 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 
 		switch (ls) {
 		case COMBININGSORT:
+		case HASH_AGGREGATE:
 			strategyMinMem = MIN_REQUIRED_MEMORY;
 			break;
 		}
@@ -155,6 +168,16 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 			input = new AsynchronousPartialSorter<T>(memoryManager, in, this.taskContext.getOwningNepheleTask(),
 						this.serializer, this.comparator.duplicate(), availableMemory);
 			break;
+		// local strategy is HASH_AGGREGATE
+		// The input is combined into a hash table that keeps one partial aggregate per key. The aggregates are
+		// emitted whenever the table is full and after the input has been consumed.
+		case HASH_AGGREGATE:
+			this.memoryManager = memoryManager;
+			this.hashTableMemory = memoryManager.allocatePages(this.taskContext.getOwningNepheleTask(), availableMemory);
+			this.hashTable = new HashAggregationTable<T>(this.serializer, this.comparator.duplicate(),
+						this.taskContext.getStub(), this.hashTableMemory, this.taskContext.getOutputCollector());
+			this.hashInput = in;
+			break;
 		// obtain and return a grouped iterator from the combining sort-merger
 		default:
 			throw new RuntimeException("Invalid local strategy provided for CombineTask.");
@@ -171,12 +194,26 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 		if (LOG.isDebugEnabled())
 			LOG.debug(this.taskContext.formatLogString("Preprocessing done, iterator obtained."));
 
-		final KeyGroupedIterator<T> iter = new KeyGroupedIterator<T>(this.input.getIterator(),
-				this.serializer, this.comparator);
-
 		// cache references on the stack
 		final GenericReducer<T, ?> stub = this.taskContext.getStub();
 		final Collector<T> output = this.taskContext.getOutputCollector();
+		
+		if (this.hashTable != null) {
+			final HashAggregationTable<T> table = this.hashTable;
+			final MutableObjectIterator<T> in = this.hashInput;
+			final T record = this.serializer.createInstance();
+			
+			while (this.running && in.next(record)) {
+				table.aggregate(record);
+			}
+			if (this.running) {
+				table.emitAndClear(output);
+			}
+			return;
+		}
+
+		final KeyGroupedIterator<T> iter = new KeyGroupedIterator<T>(this.input.getIterator(),
+				this.serializer, this.comparator);
 
 		// run stub implementation
 		while (this.running && iter.nextKey()) {
@@ -195,6 +232,12 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 			this.input.close();
 			this.input = null;
 		}
+		if (this.hashTable != null) {
+			this.hashTable.close();
+			this.hashTable = null;
+			this.memoryManager.release(this.hashTableMemory);
+			this.hashTableMemory = null;
+		}
 	}
 
 	/* (non-Javadoc)
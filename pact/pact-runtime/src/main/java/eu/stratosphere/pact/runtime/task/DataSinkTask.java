@@ -33,6 +33,8 @@ import eu.stratosphere.pact.common.generic.types.TypeComparatorFactory;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.generic.types.TypeSerializerFactory;
 import eu.stratosphere.pact.common.io.FileOutputFormat;
+import eu.stratosphere.pact.common.io.statistics.ObservedStatistics;
+import eu.stratosphere.pact.common.io.statistics.StatisticsCatalog;
 import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
@@ -78,6 +80,9 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 	
 	// class loader for user code
 	private ClassLoader userCodeClassLoader;
+	
+	// catalog to record the statistics of the written file in, null if none is configured
+	private StatisticsCatalog statisticsCatalog;
 
 	// cancel flag
 	private volatile boolean taskCanceled;
@@ -96,6 +101,8 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 		
 		// initialize input reader
 		initInputReader();
+		
+		this.statisticsCatalog = StatisticsCatalog.getConfiguredCatalog();
 
 		if (LOG.isDebugEnabled())
 			LOG.debug(getLogString("Finished registering input and output"));
@@ -166,6 +173,11 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 				LOG.debug(getLogString("Starting to produce output"));
 			}
 
+			// a speculative attempt must not touch the output of the original attempt before it has finished
+			if (isSpeculativeAttempt() && format instanceof FileOutputFormat) {
+				((FileOutputFormat) format).enableAtomicCommit();
+			}
+
 			// open
 			format.open(this.getEnvironment().getIndexInSubtaskGroup() + 1);
 
@@ -176,10 +188,27 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 				final MutableObjectIterator<PactRecord> pi = (MutableObjectIterator<PactRecord>) reader;
 				final PactRecord pr = (PactRecord) record;
 				final FileOutputFormat pf = (FileOutputFormat) format;
-				while (!this.taskCanceled && pi.next(pr))
-				{
-					pf.writeRecord(pr);
-				}				
+				
+				if (this.statisticsCatalog != null) {
+					final ObservedStatistics observation = this.statisticsCatalog.createObservation();
+					while (!this.taskCanceled && pi.next(pr))
+					{
+						observation.addRecord(pr);
+						pf.writeRecord(pr);
+					}
+					
+					// commit the output before recording its statistics, because that may modify the file
+					if (!this.taskCanceled) {
+						pf.close();
+						this.format = null;
+						recordStatistics(pf.getOutputFile(), observation);
+					}
+				} else {
+					while (!this.taskCanceled && pi.next(pr))
+					{
+						pf.writeRecord(pr);
+					}
+				}
 			} else {
 				while (!this.taskCanceled && reader.next(record))
 				{
@@ -188,7 +217,7 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			}
 			
 			// close. We close here such that a regular close throwing an exception marks a task as failed.
-			if (!this.taskCanceled) {
+			if (!this.taskCanceled && this.format != null) {
 				this.format.close();
 				this.format = null;
 			}
@@ -206,7 +235,7 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 				// close format, if it has not been closed, yet.
 				// This should only be the case if we had a previous error, or were canceled.
 				try {
-					this.format.close();
+					discardFormat(this.format);
 				}
 				catch (Throwable t) {
 					if (LOG.isWarnEnabled())
@@ -243,7 +272,7 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 		OutputFormat<IT> format = this.format;
 		if (format != null) {
 			try {
-				this.format.close();
+				discardFormat(format);
 			} catch (Throwable t) {}
 		}
 		
@@ -251,6 +280,54 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			LOG.warn(getLogString("Cancelling PACT code"));
 	}
 	
+	/**
+	 * Speculative execution is supported for file data sinks, because they can commit their output atomically.
+	 * 
+	 * @see eu.stratosphere.nephele.template.AbstractOutputTask#commitsOutputAtomically()
+	 */
+	@Override
+	public boolean commitsOutputAtomically()
+	{
+		return this.format instanceof FileOutputFormat;
+	}
+	
+	/**
+	 * Closes the given format without committing its output, if the format supports that.
+	 * 
+	 * @param format The format to close.
+	 * @throws IOException Thrown, if the format could not be closed.
+	 */
+	private static void discardFormat(OutputFormat<?> format) throws IOException
+	{
+		if (format instanceof FileOutputFormat) {
+			((FileOutputFormat) format).discard();
+		} else {
+			format.close();
+		}
+	}
+	
+	/**
+	 * Records the statistics observed on the written file in the statistics catalog. Failures are logged, but do
+	 * not fail the task.
+	 * 
+	 * @param file The written file.
+	 * @param observation The statistics observed on the records written to the file.
+	 */
+	private void recordStatistics(Path file, ObservedStatistics observation)
+	{
+		try {
+			final FileStatus status = file.getFileSystem().getFileStatus(file);
+			observation.setTotalInputSize(status.getLen());
+			this.statisticsCatalog.record(file, status.getModificationTime(), 0,
+				getEnvironment().getJobID().toString(), observation);
+		}
+		catch (IOException ioex) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(getLogString("Could not record the statistics of output file " + file + ": " +
+					ioex.getMessage()));
+		}
+	}
+	
 	/**
 	 * Sets the class-loader to be used to load the user code.
 	 * 
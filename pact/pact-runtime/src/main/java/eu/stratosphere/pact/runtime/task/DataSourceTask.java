@@ -23,11 +23,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.template.AbstractInputTask;
 import eu.stratosphere.nephele.template.InputSplit;
 import eu.stratosphere.pact.common.generic.io.InputFormat;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.generic.types.TypeSerializerFactory;
+import eu.stratosphere.pact.common.io.statistics.ObservedStatistics;
+import eu.stratosphere.pact.common.io.statistics.StatisticsCatalog;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
@@ -69,6 +73,9 @@ public class DataSourceTask<OT> extends AbstractInputTask<InputSplit>
 	// tasks chained to this data source
 	private ArrayList<ChainedDriver<?, ?>> chainedTasks;
 	
+	// catalog to record the statistics of the read files in, null if none is configured
+	private StatisticsCatalog statisticsCatalog;
+	
 	private ClassLoader userCodeClassLoader;
 
 	// cancel flag
@@ -94,6 +101,7 @@ public class DataSourceTask<OT> extends AbstractInputTask<InputSplit>
 		}
 		
 		initInputFormat(this.userCodeClassLoader);
+		this.statisticsCatalog = StatisticsCatalog.getConfiguredCatalog();
 		
 		try {
 			initOutputs(this.userCodeClassLoader);
@@ -147,7 +155,26 @@ public class DataSourceTask<OT> extends AbstractInputTask<InputSplit>
 						@SuppressWarnings("unchecked")
 						final InputFormat<PactRecord, InputSplit> inFormat = (InputFormat<PactRecord, InputSplit>) format;
 						
-						if (this.output instanceof PactRecordOutputCollector)
+						if (this.statisticsCatalog != null && split instanceof FileInputSplit)
+						{
+							// PactRecord observed for the statistics catalog
+							@SuppressWarnings("unchecked")
+							final Collector<PactRecord> output = (Collector<PactRecord>) this.output;
+							final ObservedStatistics observation = this.statisticsCatalog.createObservation();
+							
+							while (!this.taskCanceled && !inFormat.reachedEnd()) {
+								// build next pair, observe it before a chained task may modify it, and ship it
+								pactRecord.clear();
+								if (inFormat.nextRecord(pactRecord)) {
+									observation.addRecord(pactRecord);
+									output.collect(pactRecord);
+								}
+							}
+							
+							if (!this.taskCanceled) {
+								recordStatistics((FileInputSplit) split, observation);
+							}
+						} else if (this.output instanceof PactRecordOutputCollector)
 						{
 							// PactRecord going directly into network channels
 							final PactRecordOutputCollector output = (PactRecordOutputCollector) this.output;
@@ -276,6 +303,29 @@ public class DataSourceTask<OT> extends AbstractInputTask<InputSplit>
 			LOG.warn(getLogString("Cancelling PACT code"));
 	}
 	
+	/**
+	 * Records the statistics observed on the given split in the statistics catalog. Failures are logged, but do not
+	 * fail the task.
+	 * 
+	 * @param split The split that has been read completely.
+	 * @param observation The statistics observed on the split.
+	 */
+	private void recordStatistics(FileInputSplit split, ObservedStatistics observation)
+	{
+		try {
+			final Path file = split.getPath();
+			final long modificationTime = file.getFileSystem().getFileStatus(file).getModificationTime();
+			observation.setTotalInputSize(split.getLength());
+			this.statisticsCatalog.record(file, modificationTime, split.getStart(),
+				getEnvironment().getJobID().toString(), observation);
+		}
+		catch (IOException ioex) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(getLogString("Could not record the statistics of input split " + split + ": " +
+					ioex.getMessage()));
+		}
+	}
+	
 	/**
 	 * Sets the class-loader to be used to load the user code.
 	 * 
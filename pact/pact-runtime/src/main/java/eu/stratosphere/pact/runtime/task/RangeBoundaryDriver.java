@@ -0,0 +1,184 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+
+/**
+ * The second stage of the automatic range partitioning. It runs with a degree of parallelism of one and
+ * receives the weighted samples drawn by all instances of the {@link RangeSampleDriver}. The samples are
+ * sorted on the partitioning key and cut into as many ranges of equal weight as there are target partitions.
+ * The driver emits the records at the cut points (without the weight field), in ascending order. The
+ * {@link RangePartitionDriver} uses them as the bucket boundaries of the range partitioning.
+ * 
+ * @see RangeSampleDriver
+ * @see RangePartitionDriver
+ */
+public class RangeBoundaryDriver implements PactDriver<Stub, PactRecord>
+{
+	private static final Log LOG = LogFactory.getLog(RangeBoundaryDriver.class);
+	
+	/**
+	 * The config parameter defining the number of partitions that the boundaries are computed for.
+	 */
+	public static final String NUM_PARTITIONS = "pact.range.partitions.num";
+	
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() {
+		// nothing to prepare
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final int numPartitions = this.taskContext.getTaskConfig().getStubParameters().getInteger(NUM_PARTITIONS, -1);
+		if (numPartitions < 1) {
+			throw new Exception("Invalid number of partitions for range partitioning: " + numPartitions);
+		}
+		
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		
+		// collect the samples and strip their weights
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		final List<Double> weights = new ArrayList<Double>();
+		final PactDouble weight = new PactDouble();
+		double totalWeight = 0.0;
+		
+		PactRecord record = new PactRecord();
+		while (this.running && input.next(record)) {
+			final int weightPos = record.getNumFields() - 1;
+			record.getFieldInto(weightPos, weight);
+			record.setNumFields(weightPos);
+			samples.add(record);
+			weights.add(weight.getValue());
+			totalWeight += weight.getValue();
+			record = new PactRecord();
+		}
+		
+		if (samples.isEmpty() || !this.running) {
+			return;
+		}
+		
+		// sort the samples by their key, carrying the weights along
+		final TypeComparator<PactRecord> comp1 = this.taskContext.getInputComparator(0);
+		final TypeComparator<PactRecord> comp2 = comp1.duplicate();
+		
+		final Integer[] order = new Integer[samples.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				comp1.setReference(samples.get(o1));
+				comp2.setReference(samples.get(o2));
+				return comp2.compareToReference(comp1);
+			}
+		});
+		
+		// cut the samples into ranges of equal weight
+		final double rangeWeight = totalWeight / numPartitions;
+		double cumulated = 0.0;
+		int pos = 0;
+		for (int boundary = 1; boundary < numPartitions && this.running; boundary++) {
+			final double target = boundary * rangeWeight;
+			while (pos < order.length - 1 && cumulated + weights.get(order[pos]) < target) {
+				cumulated += weights.get(order[pos]);
+				pos++;
+			}
+			output.collect(samples.get(order[pos]));
+		}
+		
+		if (LOG.isDebugEnabled())
+			LOG.debug(this.taskContext.formatLogString("Computed " + (numPartitions - 1) + " range boundaries from " +
+				samples.size() + " samples."));
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() {
+		// nothing to clean up
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
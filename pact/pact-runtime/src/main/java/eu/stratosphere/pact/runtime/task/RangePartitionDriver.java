@@ -0,0 +1,156 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.nephele.io.AbstractRecordWriter;
+import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputCollector;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
+
+/**
+ * The last stage of the automatic range partitioning. The driver first reads the range boundaries computed
+ * by the {@link RangeBoundaryDriver} from its first input and installs them as the data distribution of its
+ * range partitioning outputs. Afterwards, it forwards the records of its second input, which are then range
+ * partitioned by the output emitters.
+ * 
+ * @see RangeSampleDriver
+ * @see RangeBoundaryDriver
+ */
+public class RangePartitionDriver implements PactDriver<Stub, PactRecord>
+{
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() {
+		// nothing to prepare
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final MutableObjectIterator<PactRecord> boundaryInput = this.taskContext.getInput(0);
+		final MutableObjectIterator<PactRecord> dataInput = this.taskContext.getInput(1);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		
+		// read the boundaries
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		PactRecord record = new PactRecord();
+		while (this.running && boundaryInput.next(record)) {
+			boundaries.add(record);
+			record = new PactRecord();
+		}
+		
+		// without boundaries, there was no data from which samples could be drawn
+		if (!boundaries.isEmpty()) {
+			installDistribution(output, new SampledDataDistribution(boundaries));
+		}
+		
+		// forward the data
+		while (this.running && dataInput.next(record)) {
+			output.collect(record);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() {
+		// nothing to clean up
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Sets the given distribution at the output emitters of all outputs of the given collector.
+	 * 
+	 * @param output The collector whose output emitters receive the distribution.
+	 * @param distribution The distribution to set.
+	 * @throws IllegalStateException Thrown, if the collector does not emit through output emitters.
+	 */
+	private static void installDistribution(Collector<PactRecord> output, SampledDataDistribution distribution)
+	{
+		if (!(output instanceof PactRecordOutputCollector)) {
+			throw new IllegalStateException("The range partitioning task must write directly to its outputs.");
+		}
+		
+		for (AbstractRecordWriter<PactRecord> writer : ((PactRecordOutputCollector) output).getWriters()) {
+			final ChannelSelector<PactRecord> selector = writer.getChannelSelector();
+			if (selector instanceof PactRecordOutputEmitter) {
+				((PactRecordOutputEmitter) selector).setDataDistribution(distribution);
+			}
+		}
+	}
+}
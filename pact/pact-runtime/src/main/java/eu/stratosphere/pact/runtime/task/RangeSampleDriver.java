@@ -0,0 +1,160 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+
+/**
+ * The first stage of the automatic range partitioning. Every parallel instance draws a uniform sample of
+ * fixed size from its input, using reservoir sampling. After the input is depleted, the sampled records are
+ * emitted, each with the number of input records it represents appended as an additional {@link PactDouble} field.
+ * The weights allow the {@link RangeBoundaryDriver} to combine samples from inputs of different sizes.
+ * 
+ * @see RangeBoundaryDriver
+ * @see RangePartitionDriver
+ */
+public class RangeSampleDriver implements PactDriver<Stub, PactRecord>
+{
+	private static final Log LOG = LogFactory.getLog(RangeSampleDriver.class);
+	
+	/**
+	 * The config parameter defining the number of records sampled by every parallel instance.
+	 */
+	public static final String SAMPLE_SIZE = "pact.range.sample.size";
+	
+	/**
+	 * The default number of records sampled by every parallel instance.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+	
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() {
+		// nothing to prepare
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final int sampleSize = this.taskContext.getTaskConfig().getStubParameters().getInteger(SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE);
+		if (sampleSize < 1) {
+			throw new Exception("Invalid sample size for range partitioning: " + sampleSize);
+		}
+		
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		
+		final PactRecord[] reservoir = new PactRecord[sampleSize];
+		final Random rnd = new Random();
+		final PactRecord record = new PactRecord();
+		long count = 0;
+		
+		// fill the reservoir and replace its records with decreasing probability
+		while (this.running && input.next(record)) {
+			if (count < sampleSize) {
+				reservoir[(int) count] = record.createCopy();
+			} else {
+				final long pos = (long) (rnd.nextDouble() * (count + 1));
+				if (pos < sampleSize) {
+					record.copyTo(reservoir[(int) pos]);
+				}
+			}
+			count++;
+		}
+		
+		if (LOG.isDebugEnabled())
+			LOG.debug(this.taskContext.formatLogString("Sampled " + Math.min(count, sampleSize) + " out of " +
+				count + " records."));
+		
+		// emit the sample, each record weighted with the number of records it represents
+		final int numSampled = (int) Math.min(count, sampleSize);
+		final PactDouble weight = new PactDouble(((double) count) / numSampled);
+		for (int i = 0; i < numSampled && this.running; i++) {
+			final PactRecord sampled = reservoir[i];
+			sampled.setField(sampled.getNumFields(), weight);
+			output.collect(sampled);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() {
+		// nothing to clean up
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
@@ -26,6 +26,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.ReduceStub;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HybridHashAggregator;
 import eu.stratosphere.pact.runtime.sort.CombiningUnilateralSortMerger;
 import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
@@ -124,7 +125,9 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 
 		// test minimum memory requirements
 		final LocalStrategy ls = config.getLocalStrategy();
-		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT) && availableMemory < MIN_REQUIRED_MEMORY) {
+		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.HASH_AGGREGATE) &&
+				availableMemory < MIN_REQUIRED_MEMORY)
+		{
 			throw new Exception("The Reduce task was initialized with too little memory for local strategy " +
 					config.getLocalStrategy() + " : " + availableMemory + " bytes." +
 					"Required is at least " + MIN_REQUIRED_MEMORY + " bytes.");
@@ -166,6 +169,14 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 						ioManager, in, this.taskContext.getOwningNepheleTask(), this.serializer,
 						sortComparator, availableMemory, maxFileHandles, spillThreshold, false);
 			break;
+
+		// The input is grouped by a hash table that keeps one partial aggregate per key, computed through the
+		// combine() method of the stub. Partitions that do not fit into memory are grouped by sorting.
+		case HASH_AGGREGATE:
+			this.input = new HybridHashAggregator<IT>(this.taskContext.getStub(), memoryManager, ioManager, in,
+						this.taskContext.getOwningNepheleTask(), this.serializer, this.comparator,
+						availableMemory, maxFileHandles, spillThreshold);
+			break;
 		default:
 			throw new Exception("Invalid local strategy provided for ReduceTask: " + ls.name());
 		}
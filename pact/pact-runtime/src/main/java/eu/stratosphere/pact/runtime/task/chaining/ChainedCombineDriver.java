@@ -15,8 +15,12 @@
 
 package eu.stratosphere.pact.runtime.task.chaining;
 
+import java.io.IOException;
+import java.util.List;
+
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.template.AbstractInvokable;
 import eu.stratosphere.pact.common.generic.GenericReducer;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
@@ -27,6 +31,7 @@ import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.Stub;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HashAggregationTable;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
 import eu.stratosphere.pact.runtime.plugable.PactRecordSerializerFactory;
 import eu.stratosphere.pact.runtime.sort.AsynchronousPartialSorterCollector;
@@ -55,6 +60,10 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	
 	private AsynchronousPartialSorterCollector<T> sorter;
 	
+	private HashAggregationTable<T> hashTable;
+	
+	private List<MemorySegment> hashTableMemory;
+	
 	private CombinerThread combinerThread;
 	
 	private AbstractInvokable parent;
@@ -111,6 +120,7 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 		long strategyMinMem = 0;
 		switch (ls) {
 			case COMBININGSORT:
+			case HASH_AGGREGATE:
 				strategyMinMem = MIN_REQUIRED_MEMORY;
 				break;
 		}
@@ -170,6 +180,15 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 						serializer, comparator.duplicate(), availableMemory);
 				this.inputCollector = this.sorter.getInputCollector();
 				break;
+			
+			// local strategy is HASH_AGGREGATE
+			// The records are combined into a hash table directly as they are collected. No separate thread
+			// is needed. The aggregates are emitted whenever the table is full and when the input is closed.
+			case HASH_AGGREGATE:
+				this.hashTableMemory = memoryManager.allocatePages(this.parent, availableMemory);
+				this.hashTable = new HashAggregationTable<T>(serializer, comparator.duplicate(), this.combiner,
+						this.hashTableMemory, this.outputCollector);
+				return;
 			default:
 				throw new RuntimeException("Invalid local strategy provided for CombineTask.");
 		}
@@ -189,6 +208,14 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	@Override
 	public void closeTask() throws Exception
 	{
+		if (this.hashTable != null) {
+			releaseHashTable();
+			if (!this.canceled) {
+				RegularPactTask.closeUserCode(this.combiner);
+			}
+			return;
+		}
+		
 		// wait for the thread that runs the combiner to finish
 		while (!this.canceled && this.combinerThread.isAlive()) {
 			try {
@@ -225,6 +252,11 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 		this.canceled = true;
 		this.exception = new Exception("Task has been canceled");
 		
+		if (this.hashTable != null) {
+			releaseHashTable();
+			return;
+		}
+		
 		this.combinerThread.cancel();
 		this.inputCollector.close();
 		this.sorter.close();
@@ -268,7 +300,15 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 			throw new RuntimeException("The combiner failed due to an exception.", 
 				this.exception.getCause() == null ? this.exception : this.exception.getCause());
 		
-		this.inputCollector.collect(record);
+		if (this.hashTable != null) {
+			try {
+				this.hashTable.aggregate(record);
+			} catch (IOException ioex) {
+				throw new RuntimeException("The combiner failed due to an exception.", ioex);
+			}
+		} else {
+			this.inputCollector.collect(record);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -277,7 +317,17 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	@Override
 	public void close()
 	{
-		this.inputCollector.close();
+		if (this.hashTable != null) {
+			if (!this.canceled) {
+				try {
+					this.hashTable.emitAndClear(this.outputCollector);
+				} catch (IOException ioex) {
+					throw new RuntimeException("The combiner failed due to an exception.", ioex);
+				}
+			}
+		} else {
+			this.inputCollector.close();
+		}
 		
 		if (this.exception != null)
 			throw new RuntimeException("The combiner failed due to an exception.", 
@@ -286,6 +336,17 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	
 	// --------------------------------------------------------------------------------------------
 	
+	private synchronized void releaseHashTable()
+	{
+		if (this.hashTableMemory != null) {
+			this.hashTable.close();
+			this.parent.getEnvironment().getMemoryManager().release(this.hashTableMemory);
+			this.hashTableMemory = null;
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
 	private final class CombinerThread extends Thread
 	{
 		private final AsynchronousPartialSorterCollector<T> sorter;
@@ -0,0 +1,38 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task.util;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.pact.common.stubs.Stub;
+
+/**
+ * A stub without any user code. It is used by the auxiliary tasks that the compiler inserts into a job, such as
+ * the tasks sampling the data for range partitioning, which run no user function.
+ */
+public class NoOpStub implements Stub
+{
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Stub#open(eu.stratosphere.nephele.configuration.Configuration)
+	 */
+	@Override
+	public void open(Configuration parameters) {}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Stub#close()
+	 */
+	@Override
+	public void close() {}
+}
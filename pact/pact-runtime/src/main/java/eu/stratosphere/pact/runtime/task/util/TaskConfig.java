@@ -65,6 +65,8 @@ public class TaskConfig
 		SORT,
 		// the input is sorted, during sorting a combiner is applied
 		COMBININGSORT,
+		// the input is grouped by a hash table holding one partial aggregate per key, computed by the combiner
+		HASH_AGGREGATE,
 		// the first input is build side, the second side is probe side of a hybrid hash table
 		HYBRIDHASH_FIRST,
 		// the second input is build side, the first side is probe side of a hybrid hash table
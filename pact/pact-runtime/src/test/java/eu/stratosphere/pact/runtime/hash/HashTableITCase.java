@@ -17,6 +17,7 @@ package eu.stratosphere.pact.runtime.hash;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -1325,6 +1326,171 @@ public class HashTableITCase
 		this.memManager.release(join.getFreedMemory());
 	}
 	
+	/*
+	 * This test validates the join when the build side is much larger than the probe side, such that the
+	 * spilled partitions are processed with reversed roles.
+	 */
+	@Test
+	public void testSpillingHashJoinWithRoleReversalIntPair() throws IOException
+	{
+		final int NUM_KEYS = 200000;
+		final int BUILD_VALS_PER_KEY = 10;
+		final int PROBE_VALS_PER_KEY = 1;
+		
+		MutableObjectIterator<IntPair> buildInput = new UniformIntPairGenerator(NUM_KEYS, BUILD_VALS_PER_KEY, false);
+		MutableObjectIterator<IntPair> probeInput = new UniformIntPairGenerator(NUM_KEYS, PROBE_VALS_PER_KEY, true);
+
+		// allocate the memory for the HashTable
+		List<MemorySegment> memSegments;
+		try {
+			memSegments = this.memManager.allocatePages(MEM_OWNER, 33);
+		}
+		catch (MemoryAllocationException maex) {
+			fail("Memory for the Join could not be provided.");
+			return;
+		}
+		
+		// create the map for validating the results
+		HashMap<Integer, Long> map = new HashMap<Integer, Long>(NUM_KEYS);
+		
+		// ----------------------------------------------------------------------------------------
+		
+		final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+				this.pairBuildSideAccesssor, this.pairProbeSideAccesssor, 
+				this.pairBuildSideComparator, this.pairProbeSideComparator, this.pairComparator,
+				memSegments, ioManager);
+		join.open(buildInput, probeInput);
+		
+		final IntPair record = new IntPair();
+		
+		while (join.nextRecord())
+		{
+			int numBuildValues = 0;
+			
+			final IntPair probeRec = join.getCurrentProbeRecord();
+			int key = probeRec.getKey();
+			
+			HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				numBuildValues++;
+				Assert.assertEquals("Probe-side key was different than build-side key.", key, record.getKey());
+			}
+			if (numBuildValues == 0) {
+				fail("No build side values found for a probe key.");
+			}
+			
+			Long contained = map.get(key);
+			if (contained == null) {
+				contained = new Long(numBuildValues);
+			}
+			else {
+				contained = new Long(contained.longValue() + numBuildValues);
+			}
+			
+			map.put(key, contained);
+		}
+		
+		Assert.assertTrue("No spilled partition was processed with reversed roles.",
+			join.getNumberOfReversedPartitions() > 0);
+		
+		join.close();
+		
+		Assert.assertEquals("Wrong number of keys", NUM_KEYS, map.size());
+		for (Map.Entry<Integer, Long> entry : map.entrySet()) {
+			long val = entry.getValue();
+			int key = entry.getKey();
+	
+			Assert.assertEquals("Wrong number of values in per-key cross product for key " + key, 
+				PROBE_VALS_PER_KEY * BUILD_VALS_PER_KEY, val);
+		}
+		
+		// ----------------------------------------------------------------------------------------
+		
+		this.memManager.release(join.getFreedMemory());
+	}
+	
+	/*
+	 * This test validates a selective join with spilled partitions, where most probe side records are
+	 * filtered out by the bloom filters of the spilled partitions.
+	 */
+	@Test
+	public void testSpillingSelectiveHashJoinIntPair() throws IOException, MemoryAllocationException
+	{
+		final int NUM_BUILD_KEYS = 500000;
+		final int NUM_BUILD_VALS = 2;
+		final int NUM_PROBE_KEYS = 5000000;
+		final int NUM_PROBE_VALS = 1;
+		
+		MutableObjectIterator<IntPair> buildInput = new UniformIntPairGenerator(NUM_BUILD_KEYS, NUM_BUILD_VALS, false);
+		MutableObjectIterator<IntPair> probeInput = new UniformIntPairGenerator(NUM_PROBE_KEYS, NUM_PROBE_VALS, true);
+
+		// allocate the memory for the HashTable
+		List<MemorySegment> memSegments;
+		try {
+			memSegments = this.memManager.allocatePages(MEM_OWNER, 128);
+		}
+		catch (MemoryAllocationException maex) {
+			fail("Memory for the Join could not be provided.");
+			return;
+		}
+		
+		final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+				this.pairBuildSideAccesssor, this.pairProbeSideAccesssor, 
+				this.pairBuildSideComparator, this.pairProbeSideComparator, this.pairComparator,
+				memSegments, ioManager);
+		join.open(buildInput, probeInput);
+		
+		final IntPair record = new IntPair();
+		int numRecordsInJoinResult = 0;
+		
+		int expectedNumResults = (Math.min(NUM_PROBE_KEYS, NUM_BUILD_KEYS) * NUM_BUILD_VALS) * NUM_PROBE_VALS;
+		
+		while (join.nextRecord()) {
+			final int key = join.getCurrentProbeRecord().getKey();
+			HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				numRecordsInJoinResult++;
+				Assert.assertEquals("Probe-side key was different than build-side key.", key, record.getKey());
+			}
+		}
+		Assert.assertEquals("Wrong number of records in join result.", expectedNumResults, numRecordsInJoinResult);
+		
+		join.close();
+		
+		this.memManager.release(join.getFreedMemory());
+	}
+	
+	/*
+	 * This test validates that the fan-out for partitioning a spilled partition again grows with the skew
+	 * of the histogram over the partition's build side hash codes.
+	 */
+	@Test
+	public void testPartitioningFanOutFollowsHistogram()
+	{
+		final long[] uniform = new long[HashPartition.NUM_HISTOGRAM_BINS];
+		Arrays.fill(uniform, 1000);
+		
+		final long[] skewed = uniform.clone();
+		skewed[0] += 7000;
+		
+		final long[] heavilySkewed = uniform.clone();
+		heavilySkewed[0] += 1000000;
+		
+		final int uniformFanOut = MutableHashTable.getPartitioningFanOut(uniform, 4000, 1000);
+		final int skewedFanOut = MutableHashTable.getPartitioningFanOut(skewed, 4000, 1000);
+		final int heavilySkewedFanOut = MutableHashTable.getPartitioningFanOut(heavilySkewed, 4000, 1000);
+		
+		Assert.assertTrue("The fan-out does not split the partition into enough parts to fit into memory.",
+			uniformFanOut >= 5);
+		Assert.assertTrue("The fan-out does not grow with the skew of the histogram.", skewedFanOut > uniformFanOut);
+		Assert.assertTrue("The fan-out does not grow with the skew of the histogram.",
+			heavilySkewedFanOut > skewedFanOut);
+		
+		// some buffers must remain for the table structure
+		Assert.assertTrue("The fan-out exceeds the available memory.",
+			MutableHashTable.getPartitioningFanOut(heavilySkewed, 4000, 20) <= 10);
+	}
+	
 	@Test
 	public void testInMemoryReOpen() throws IOException
 	{
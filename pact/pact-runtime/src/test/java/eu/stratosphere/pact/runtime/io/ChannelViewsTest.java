@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
 import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.BlockCompression;
 import eu.stratosphere.nephele.services.iomanager.Channel;
 import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
 import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
@@ -364,4 +365,162 @@ public class ChannelViewsTest
 		this.memoryManager.release(inView.close());
 		reader.deleteChannel();
 	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                                    Compressed Channels
+	// --------------------------------------------------------------------------------------------
+	
+	@Test
+	public void testWriteReadCompressedSmallRecords() throws Exception
+	{
+		writeAndReadCompressed(BlockCompression.SNAPPY, VALUE_SHORT_LENGTH, NUM_PAIRS_SHORT, NUM_MEMORY_SEGMENTS, true);
+	}
+	
+	@Test
+	public void testWriteReadCompressedLongRecords() throws Exception
+	{
+		writeAndReadCompressed(BlockCompression.SNAPPY, VALUE_LONG_LENGTH, NUM_PAIRS_LONG, NUM_MEMORY_SEGMENTS, true);
+	}
+	
+	@Test
+	public void testWriteReadDeflateOneBufferOnly() throws Exception
+	{
+		writeAndReadCompressed(BlockCompression.DEFLATE, VALUE_SHORT_LENGTH, NUM_PAIRS_SHORT / 10, 1, true);
+	}
+	
+	@Test
+	public void testReadCompressedWithoutKnownBlockCount() throws Exception
+	{
+		writeAndReadCompressed(BlockCompression.SNAPPY, VALUE_SHORT_LENGTH, NUM_PAIRS_SHORT, NUM_MEMORY_SEGMENTS, false);
+	}
+	
+	@Test
+	public void testReadEmptyCompressedChannel() throws Exception
+	{
+		writeAndReadCompressed(BlockCompression.SNAPPY, VALUE_SHORT_LENGTH, 0, NUM_MEMORY_SEGMENTS, true);
+	}
+	
+	@Test
+	public void testCompressedChannelUsesFewerBlocks() throws Exception
+	{
+		final TestData.Generator generator = new TestData.Generator(SEED, 1000, 0, KeyMode.RANDOM, ValueMode.CONSTANT,
+			new Value("a constant value that repeats in every record"));
+		final int[] blockCounts = new int[2];
+		final BlockCompression[] compressions = { BlockCompression.NONE, BlockCompression.SNAPPY };
+		
+		for (int c = 0; c < compressions.length; c++) {
+			final Channel.ID channel = this.ioManager.createChannel();
+			final List<MemorySegment> memory = this.memoryManager.allocatePages(this.parentTask, NUM_MEMORY_SEGMENTS);
+			final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channel);
+			final ChannelWriterOutputView outView = new ChannelWriterOutputView(writer, memory, MEMORY_PAGE_SIZE, compressions[c]);
+			
+			generator.reset();
+			final PactRecord rec = new PactRecord();
+			for (int i = 0; i < NUM_PAIRS_SHORT; i++) {
+				generator.next(rec);
+				rec.write(outView);
+			}
+			this.memoryManager.release(outView.close());
+			blockCounts[c] = outView.getBlockCount();
+			writer.deleteChannel();
+		}
+		
+		Assert.assertTrue("The compressed channel did not use fewer blocks: " + blockCounts[1] + " vs. " + blockCounts[0],
+			blockCounts[1] < blockCounts[0] / 2);
+	}
+	
+	@Test
+	public void testReadTooManyCompressed() throws Exception
+	{
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_SHORT_LENGTH, KeyMode.RANDOM, ValueMode.RANDOM_LENGTH);
+		final Channel.ID channel = this.ioManager.createChannel();
+		
+		// create the writer output view
+		List<MemorySegment> memory = this.memoryManager.allocatePages(this.parentTask, NUM_MEMORY_SEGMENTS);
+		final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channel);
+		final ChannelWriterOutputView outView = new ChannelWriterOutputView(writer, memory, MEMORY_PAGE_SIZE, BlockCompression.SNAPPY);
+		
+		// write a number of pairs
+		final PactRecord rec = new PactRecord();
+		for (int i = 0; i < NUM_PAIRS_SHORT / 10; i++) {
+			generator.next(rec);
+			rec.write(outView);
+		}
+		this.memoryManager.release(outView.close());
+		
+		// create the reader input view
+		memory = this.memoryManager.allocatePages(this.parentTask, NUM_MEMORY_SEGMENTS);
+		final BlockChannelReader reader = this.ioManager.createBlockChannelReader(channel);
+		final ChannelReaderInputView inView = new ChannelReaderInputView(reader, memory, outView.getBlockCount(), true);
+		
+		// read all records and one more
+		final PactRecord readRec = new PactRecord();
+		for (int i = 0; i < NUM_PAIRS_SHORT / 10; i++) {
+			readRec.read(inView);
+		}
+		try {
+			readRec.read(inView);
+			Assert.fail("Expected an EOFException which did not occur.");
+		}
+		catch (EOFException eofex) {
+			// expected
+		}
+		
+		this.memoryManager.release(inView.close());
+		reader.deleteChannel();
+	}
+	
+	private void writeAndReadCompressed(BlockCompression compression, int valueLength, int numPairs,
+			int numSegments, boolean knownBlockCount)
+	throws Exception
+	{
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, valueLength, KeyMode.RANDOM, ValueMode.RANDOM_LENGTH);
+		final Channel.ID channel = this.ioManager.createChannel();
+		
+		// create the writer output view
+		List<MemorySegment> memory = this.memoryManager.allocatePages(this.parentTask, numSegments);
+		final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channel);
+		final ChannelWriterOutputView outView = new ChannelWriterOutputView(writer, memory, MEMORY_PAGE_SIZE, compression);
+		
+		// write a number of pairs
+		final PactRecord rec = new PactRecord();
+		for (int i = 0; i < numPairs; i++) {
+			generator.next(rec);
+			rec.write(outView);
+		}
+		this.memoryManager.release(outView.close());
+		
+		// create the reader input view
+		memory = this.memoryManager.allocatePages(this.parentTask, numSegments);
+		final BlockChannelReader reader = this.ioManager.createBlockChannelReader(channel);
+		final ChannelReaderInputView inView = knownBlockCount ?
+				new ChannelReaderInputView(reader, memory, outView.getBlockCount(), true) :
+				new ChannelReaderInputView(reader, memory, true);
+		generator.reset();
+		
+		// read and re-generate all records and compare them
+		final PactRecord readRec = new PactRecord();
+		for (int i = 0; i < numPairs; i++) {
+			generator.next(rec);
+			readRec.read(inView);
+			
+			Key k1 = rec.getField(0, Key.class);
+			Value v1 = rec.getField(1, Value.class);
+			
+			Key k2 = readRec.getField(0, Key.class);
+			Value v2 = readRec.getField(1, Value.class);
+			
+			Assert.assertTrue("The re-generated and the read record do not match.", k1.equals(k2) && v1.equals(v2));
+		}
+		try {
+			readRec.read(inView);
+			Assert.fail("Expected an EOFException which did not occur.");
+		}
+		catch (EOFException eofex) {
+			// expected
+		}
+		
+		this.memoryManager.release(inView.close());
+		reader.deleteChannel();
+	}
 }
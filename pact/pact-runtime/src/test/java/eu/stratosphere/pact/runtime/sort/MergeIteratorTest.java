@@ -16,8 +16,10 @@
 package eu.stratosphere.pact.runtime.sort;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -160,6 +162,60 @@ public class MergeIteratorTest
 		Assert.assertEquals("Too few elements returned from stream.", 50, elementsFound);
 	}
 	
+	@Test
+	public void testMergeOfManyStreams() throws Exception
+	{
+		final int NUM_STREAMS = 37;
+		final Random rnd = new Random(53298743L);
+		
+		// iterators, some of them empty, with keys spanning negative and positive values
+		List<MutableObjectIterator<PactRecord>> iterators = new ArrayList<MutableObjectIterator<PactRecord>>();
+		int numElements = 0;
+		for (int i = 0; i < NUM_STREAMS; i++) {
+			final int num = i % 9 == 0 ? 0 : rnd.nextInt(200);
+			final int[] keys = new int[num];
+			final String[] values = new String[num];
+			for (int k = 0; k < num; k++) {
+				keys[k] = rnd.nextInt(1000) - 500;
+			}
+			Arrays.sort(keys);
+			for (int k = 0; k < num; k++) {
+				values[k] = String.valueOf(keys[k]);
+			}
+			iterators.add(newIterator(keys, values));
+			numElements += num;
+		}
+
+		// comparator
+		Comparator<TestData.Key> comparator = new TestData.KeyComparator();
+
+		// merge iterator
+		MutableObjectIterator<PactRecord> iterator = new MergeIterator<PactRecord>(iterators, this.serializer, this.comparator);
+
+		int elementsFound = 1;
+		// check expected order
+		PactRecord rec1 = new PactRecord();
+		PactRecord rec2 = new PactRecord();
+		final Key k1 = new Key();
+		final Key k2 = new Key();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		while (iterator.next(rec2)) {
+			elementsFound++;
+			k1.setKey(rec1.getField(0, TestData.Key.class).getKey());
+			k2.setKey(rec2.getField(0, TestData.Key.class).getKey());
+			Assert.assertTrue(comparator.compare(k1, k2) <= 0);
+			Assert.assertEquals(String.valueOf(k2.getKey()), rec2.getField(1, TestData.Value.class).getValue());
+			
+			PactRecord tmp = rec1;
+			rec1 = rec2;
+			rec2 = tmp;
+		}
+		
+		Assert.assertEquals("Wrong number of elements returned from stream.", numElements, elementsFound);
+		Assert.assertFalse(iterator.next(rec2));
+	}
+	
 	@Test
 	public void testInvalidMerge() throws Exception
 	{
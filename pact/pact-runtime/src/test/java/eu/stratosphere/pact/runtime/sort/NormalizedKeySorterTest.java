@@ -454,4 +454,176 @@ public class NormalizedKeySorterTest
 		// release the memory occupied by the buffers
 		this.memoryManager.release(sorter.dispose());
 	}
+	
+	@Test
+	public void testRadixSort() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		Assert.assertTrue("The normalized key should fully determine the order.", 
+			sorter.isNormalizedKeyFullyDetermining());
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		int num = -1;
+		do {
+			generator.next(record);
+			num++;
+		}
+		while (sorter.write(record));
+		
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		int count = 1;
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			count++;
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		Assert.assertEquals("Wrong number of records after sorting.", num, count);
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testRadixSortLongStringKeys() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		@SuppressWarnings("unchecked")
+		PactRecordComparator accessors = new PactRecordComparator(new int[] {1}, new Class[]{Value.class});
+		NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), accessors, memory);
+		
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.FIX_LENGTH);
+		
+		Assert.assertFalse("The normalized key should only be a prefix of the key.", 
+			sorter.isNormalizedKeyFullyDetermining());
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		int num = -1;
+		do {
+			generator.next(record);
+			num++;
+		}
+		while (sorter.write(record));
+		
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Value current = new Value();
+		Value last = new Value();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(1, last);
+		int count = 1;
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(1, current);
+			count++;
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next value is not larger or equal to previous value.");
+			
+			Value tmp = current;
+			current = last;
+			last = tmp;
+		}
+		Assert.assertEquals("Wrong number of records after sorting.", num, count);
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testSortOffHeapMemory() throws Exception
+	{
+		// swapping records copies within a single memory segment, which needs special care off-heap
+		final DefaultMemoryManager offHeapMemoryManager = new DefaultMemoryManager(MEMORY_SIZE, MEMORY_PAGE_SIZE, true);
+		try {
+			final IndexedSorter[] sortAlgorithms = new IndexedSorter[] { new QuickSort(), new RadixSort() };
+			for (IndexedSorter sortAlgorithm : sortAlgorithms) {
+				final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+				final List<MemorySegment> memory = offHeapMemoryManager.allocatePages(new DummyInvokable(), numSegments);
+				Assert.assertTrue("The memory is not off-heap.", memory.get(0).isOffHeap());
+				
+				NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+				TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+					ValueMode.RANDOM_LENGTH);
+				
+				// write the records
+				PactRecord record = new PactRecord();
+				int num = -1;
+				do {
+					generator.next(record);
+					num++;
+				}
+				while (sorter.write(record));
+				
+				sortAlgorithm.sort(sorter);
+				
+				MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+				PactRecord readTarget = new PactRecord();
+				
+				Key current = new Key();
+				Key last = new Key();
+				
+				iter.next(readTarget);
+				readTarget.getFieldInto(0, last);
+				int count = 1;
+				
+				while (iter.next(readTarget)) {
+					readTarget.getFieldInto(0, current);
+					count++;
+					
+					final int cmp = last.compareTo(current);
+					if (cmp > 0)
+						Assert.fail("Next key is not larger or equal to previous key.");
+					
+					Key tmp = current;
+					current = last;
+					last = tmp;
+				}
+				Assert.assertEquals("Wrong number of records after sorting.", num, count);
+				
+				// release the memory occupied by the buffers
+				offHeapMemoryManager.release(sorter.dispose());
+			}
+			
+			Assert.assertTrue("Memory Leak: Some memory has not been returned to the memory manager.",
+				offHeapMemoryManager.verifyEmpty());
+		}
+		finally {
+			offHeapMemoryManager.shutdown();
+		}
+	}
 }
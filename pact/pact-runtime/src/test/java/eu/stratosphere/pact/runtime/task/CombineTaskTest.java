@@ -92,6 +92,93 @@ public class CombineTaskTest extends DriverTestBase<GenericReducer<PactRecord, ?
 		
 	}
 	
+	@Test
+	public void testHashAggregatingCombineTask() {
+
+		int keyCnt = 100;
+		int valCnt = 20;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addOutput(this.outList);
+		
+		CombineDriver<PactRecord> testTask = new CombineDriver<PactRecord>();
+		super.getTaskConfig().setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+		super.getTaskConfig().setMemorySize(3 * 1024 * 1024);
+		super.getTaskConfig().setNumFilehandles(2);
+		
+		final int[] keyPos = new int[]{0};
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyClasses = (Class<? extends Key>[]) new Class[]{ PactInteger.class };
+		addInputComparator(new PactRecordComparator(keyPos, keyClasses));
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for(int i=1;i<valCnt;i++) {
+			expSum+=i;
+		}
+		
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was "+keyCnt, this.outList.size() == keyCnt);
+		
+		for(PactRecord record : this.outList) {
+			Assert.assertTrue("Incorrect result", record.getField(1, PactInteger.class).getValue() == expSum);
+		}
+		
+		this.outList.clear();
+	}
+	
+	@Test
+	public void testFlushingHashAggregatingCombineTask() {
+
+		int keyCnt = 200000;
+		int valCnt = 4;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addOutput(this.outList);
+		
+		CombineDriver<PactRecord> testTask = new CombineDriver<PactRecord>();
+		super.getTaskConfig().setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+		super.getTaskConfig().setMemorySize(1 * 1024 * 1024);
+		super.getTaskConfig().setNumFilehandles(2);
+		
+		final int[] keyPos = new int[]{0};
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyClasses = (Class<? extends Key>[]) new Class[]{ PactInteger.class };
+		addInputComparator(new PactRecordComparator(keyPos, keyClasses));
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for(int i=1;i<valCnt;i++) {
+			expSum+=i;
+		}
+		
+		// the table is emitted whenever it is full, so keys may occur multiple times, but the
+		// partial aggregates per key must add up
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was at least "+keyCnt, 
+			this.outList.size() >= keyCnt);
+		
+		final int[] sums = new int[keyCnt];
+		for(PactRecord record : this.outList) {
+			sums[record.getField(0, PactInteger.class).getValue()] += record.getField(1, PactInteger.class).getValue();
+		}
+		for (int i = 0; i < keyCnt; i++) {
+			Assert.assertEquals("Incorrect result for key " + i, expSum, sums[i]);
+		}
+		
+		this.outList.clear();
+	}
+	
 	@Test
 	public void testFailingCombineTask() {
 
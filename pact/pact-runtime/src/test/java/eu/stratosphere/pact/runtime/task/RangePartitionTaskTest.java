@@ -0,0 +1,157 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.task.util.NoOpStub;
+import eu.stratosphere.pact.runtime.test.util.DriverTestBase;
+import eu.stratosphere.pact.runtime.test.util.MutableObjectIteratorWrapper;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+
+public class RangePartitionTaskTest extends DriverTestBase<Stub>
+{
+	private final List<PactRecord> outList = new ArrayList<PactRecord>();
+	
+	
+	public RangePartitionTaskTest() {
+		super(0);
+	}
+	
+	
+	@Test
+	public void testSampling()
+	{
+		final int keyCnt = 1024;
+		final int valCnt = 4;
+		final int sampleSize = 100;
+		
+		super.addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		super.addOutput(this.outList);
+		super.getTaskConfig().setStubParameter(RangeSampleDriver.SAMPLE_SIZE, String.valueOf(sampleSize));
+		
+		try {
+			testDriver(new RangeSampleDriver(), NoOpStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertEquals("Wrong number of samples.", sampleSize, this.outList.size());
+		
+		final PactDouble weight = new PactDouble();
+		for (PactRecord sample : this.outList) {
+			Assert.assertEquals("Weight field was not appended.", 3, sample.getNumFields());
+			sample.getFieldInto(2, weight);
+			Assert.assertEquals("Wrong sample weight.", keyCnt * valCnt / ((double) sampleSize), weight.getValue(), 0.0001);
+		}
+	}
+	
+	@Test
+	public void testSamplingSmallInput()
+	{
+		final int keyCnt = 10;
+		
+		super.addInput(new UniformPactRecordGenerator(keyCnt, 1, false));
+		super.addOutput(this.outList);
+		super.getTaskConfig().setStubParameter(RangeSampleDriver.SAMPLE_SIZE, "100");
+		
+		try {
+			testDriver(new RangeSampleDriver(), NoOpStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertEquals("Not all records were sampled.", keyCnt, this.outList.size());
+		
+		final PactDouble weight = new PactDouble();
+		for (PactRecord sample : this.outList) {
+			sample.getFieldInto(2, weight);
+			Assert.assertEquals("Wrong sample weight.", 1.0, weight.getValue(), 0.0001);
+		}
+	}
+	
+	@Test
+	public void testBoundaries()
+	{
+		final int numSamples = 1000;
+		final int numPartitions = 4;
+		
+		// equally weighted samples in random order
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < numSamples; i++) {
+			samples.add(new PactRecord(new PactInteger(i), new PactDouble(2.5)));
+		}
+		Collections.shuffle(samples, new Random(4711));
+		
+		super.addInput(new MutableObjectIteratorWrapper(samples.iterator()));
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		super.addInputComparator(comparator);
+		super.addOutput(this.outList);
+		super.getTaskConfig().setStubParameter(RangeBoundaryDriver.NUM_PARTITIONS, String.valueOf(numPartitions));
+		
+		try {
+			testDriver(new RangeBoundaryDriver(), NoOpStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertEquals("Wrong number of boundaries.", numPartitions - 1, this.outList.size());
+		
+		final PactInteger key = new PactInteger();
+		for (int i = 0; i < numPartitions - 1; i++) {
+			final PactRecord boundary = this.outList.get(i);
+			Assert.assertEquals("Weight field was not removed.", 1, boundary.getNumFields());
+			boundary.getFieldInto(0, key);
+			Assert.assertEquals("Wrong boundary.", (i + 1) * numSamples / numPartitions - 1, key.getValue());
+		}
+	}
+	
+	@Test
+	public void testBoundariesFromEmptySample()
+	{
+		super.addInput(new UniformPactRecordGenerator(0, 0, false));
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		super.addInputComparator(comparator);
+		super.addOutput(this.outList);
+		super.getTaskConfig().setStubParameter(RangeBoundaryDriver.NUM_PARTITIONS, "4");
+		
+		try {
+			testDriver(new RangeBoundaryDriver(), NoOpStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertTrue("Boundaries were created without samples.", this.outList.isEmpty());
+	}
+}
@@ -22,6 +22,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -40,6 +42,7 @@ import eu.stratosphere.pact.common.type.base.PactInteger;
 import eu.stratosphere.pact.common.type.base.PactString;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
 
 public class OutputEmitterTest extends TestCase
@@ -104,6 +107,43 @@ public class OutputEmitterTest extends TestCase
 		
 	}
 	
+	@Test
+	public void testPartitionHashSkew()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final ChannelSelector<PactRecord> skewed = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH_SKEW, intComp);
+		final ChannelSelector<PactRecord> plain = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH, intComp.duplicate());
+		
+		final int numChans = 8;
+		final int numRecs = 100000;
+		final int hotKey = 0;
+		final int[] hit = new int[numChans];
+		final boolean[] hotHit = new boolean[numChans];
+		
+		for (int i = 0; i < numRecs; i++) {
+			// every other record has the hot key
+			final boolean hot = i % 2 == 0;
+			final PactRecord rec = new PactRecord(new PactInteger(hot ? hotKey : i));
+			
+			final int[] chans = skewed.selectChannels(rec, numChans);
+			assertEquals("Resulting channels array has more than one channel.", 1, chans.length);
+			hit[chans[0]]++;
+			
+			if (hot) {
+				hotHit[chans[0]] = true;
+			} else {
+				// keys that are no heavy hitters must be partitioned like with the plain hash partitioning
+				assertEquals("Regular key was not hash partitioned.", plain.selectChannels(rec, numChans)[0], chans[0]);
+			}
+		}
+		
+		for (int i = 0; i < numChans; i++) {
+			assertTrue("The heavy hitter was not spread over all channels.", hotHit[i]);
+			assertTrue("Channel " + i + " received too many records.", hit[i] < numRecs / 4);
+		}
+	}
+	
 	@Test
 	public void testForward()
 	{
@@ -370,6 +410,37 @@ public class OutputEmitterTest extends TestCase
 		}
 	}
 	
+	@Test
+	public void testPartitionRangeWithLateDistribution()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final PactRecordOutputEmitter oe = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_RANGE, intComp, null);
+		
+		final PactRecord rec = new PactRecord(new PactInteger(5));
+		try {
+			oe.selectChannels(rec, 4);
+			Assert.fail("Expected an IllegalStateException, because no distribution was set.");
+		} catch (IllegalStateException isex) {
+			// expected
+		}
+		
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		boundaries.add(new PactRecord(new PactInteger(10)));
+		boundaries.add(new PactRecord(new PactInteger(20)));
+		boundaries.add(new PactRecord(new PactInteger(30)));
+		oe.setDataDistribution(new SampledDataDistribution(boundaries));
+		
+		final int[] values =   {-5, 10, 11, 20, 25, 30, 31, 1000};
+		final int[] expected = { 0,  0,  1,  1,  2,  2,  3,    3};
+		for (int i = 0; i < values.length; i++) {
+			rec.setField(0, new PactInteger(values[i]));
+			final int[] channels = oe.selectChannels(rec, 4);
+			Assert.assertEquals("Resulting channels array has more than one channel.", 1, channels.length);
+			Assert.assertEquals("Wrong bucket selected for " + values[i], expected[i], channels[0]);
+		}
+	}
+	
 	private static final class IntegerUniformDistribution implements DataDistribution
 	{
 		private int min;	